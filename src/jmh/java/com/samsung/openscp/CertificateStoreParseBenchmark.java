@@ -0,0 +1,133 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking a GET DATA (Certificate Store) response down to the encoded certificates: collections of Tlvs decoded
+ * level by level versus the {@link TlvReader} cursor.
+ * <p>
+ * The responses are the two-certificate X.509 and GlobalPlatform chains of an SCP11 test card. Certificate parsing
+ * itself is excluded, so that only the TLV handling is compared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CertificateStoreParseBenchmark {
+    private static final int TAG_CERTIFICATE_STORE = 0xBF21;
+
+    private static final String X509_CHAIN_RESPONSE =
+            "BF2182042930820211308201B6A00302010202146DBC19AFE3782C7C0053F19E86DF2F0F00B559EA300A06082A8648CE3D040302" +
+            "3051310B3009060355040613024B52310B300906035504080C0253553110300E060355040A0C0753616D73756E67312330210603" +
+            "5504030C1A43412D4B4C4F4320436572746966696361746520285445535429301E170D3235303230363130323135365A170D3236" +
+            "303530393130323135365A304D310B3009060355040613024B52310B300906035504080C0253553110300E060355040A0C075361" +
+            "6D73756E67311F301D06035504030C164F4345204365727469666963617465202854455354293059301306072A8648CE3D020106" +
+            "082A8648CE3D03010703420004B5C2598092609EFEFBA7A2FBED2F6E9142CA3882E7DE69D47D29476E7F0CE85077480CAC6AD5C1" +
+            "56CE459F2592DA0EECDCB0DE2E8F112C9E49C4655A11C59620A370306E301D0603551D0E04160414E225C62F5E33CA02D23D9D83" +
+            "D0685B4EB2FEBC11301F0603551D23041830168014851A6F60A6B45534647260877A357F3676C35686300E0603551D0F0101FF04" +
+            "0403020308301C0603551D200101FF04123010300E060C2A864886FC6B64000A020100300A06082A8648CE3D0403020349003046" +
+            "022100A0D276B639EE863758B5568ADFA9D3B7F3D906A557C4C7675607FC82A9596EC6022100D7044BDE4CB536055CF93D5C7FCF" +
+            "5C7C5298EB1D4646357CE6515BC0CD9E10FF30820210308201B5A00302010202146A994C23ECC7F71C16325F2CF93878D1B43270" +
+            "86300A06082A8648CE3D0403023051310B3009060355040613024B52310B300906035504080C0253553110300E060355040A0C07" +
+            "53616D73756E673123302106035504030C1A43412D4B4C434320436572746966696361746520285445535429301E170D32353032" +
+            "30363130343634305A170D3236303530393130343634305A304C310B3009060355040613024B52310B300906035504080C025355" +
+            "3110300E060355040A0C0753616D73756E67311E301C06035504030C155344204365727469666963617465202854455354293059" +
+            "301306072A8648CE3D020106082A8648CE3D030107034200044F92A07D168C309959EED99E288381DD192979CD452D8FBE1F1634" +
+            "47979207C5E6CD1F4DD11609E2100C033BBD723BE78B71477E64883EB41EC366713E44AF1EA370306E301D0603551D0E04160414" +
+            "CD7B897E3C1BC6FFAC7F9595FB55AE66C3CE84AB301F0603551D230418301680149E216D9AEF4531670A5B83ADE5DED7FF6CD97B" +
+            "0F300E0603551D0F0101FF040403020308301C0603551D200101FF04123010300E060C2A864886FC6B64000A02010A300A06082A" +
+            "8648CE3D0403020349003046022100AE0814C3B4C715BFCF4DA365944DA532B241C98227184C99364DE3DD2563E803022100D46A" +
+            "B8C79B475262B10487F0065CA8D720E3E275D87E516879DBE5CACDDE1355";
+
+    static final String GP_CHAIN_RESPONSE =
+            "BF218201CA7F2181E193146DBC19AFE3782C7C0053F19E86DF2F0F00B559EA4214851A6F60A6B45534647260877A357F3676C356" +
+            "865F2014E225C62F5E33CA02D23D9D83D0685B4EB2FEBC11950200805F2404141C0C1F7F4946B04104B5C2598092609EFEFBA7A2" +
+            "FBED2F6E9142CA3882E7DE69D47D29476E7F0CE85077480CAC6AD5C156CE459F2592DA0EECDCB0DE2E8F112C9E49C4655A11C596" +
+            "20F001005F3747304502210085941BB4C425EC62AFAFEC6C47BDF5481744F76D76D1BB71FF9353DCA2ED381E0220572584095E48" +
+            "FFC54589A88923CC9FB24F6380388C9BC6BE004A7E7368244DCB7F2181E193146A994C23ECC7F71C16325F2CF93878D1B4327086" +
+            "42149E216D9AEF4531670A5B83ADE5DED7FF6CD97B0F5F2014CD7B897E3C1BC6FFAC7F9595FB55AE66C3CE84AB950200805F2404" +
+            "141C0C1F7F4946B041044F92A07D168C309959EED99E288381DD192979CD452D8FBE1F163447979207C5E6CD1F4DD11609E2100C" +
+            "033BBD723BE78B71477E64883EB41EC366713E44AF1EF001005F3747304502210084BD2834015556ACF7920BF4D599578133AE55" +
+            "118894B0DCDC3EAB45BA0D3DE8022065025536025DE2A98D99758FA7A9E352A02AE3CF9B041BA90A0CE948F3FA6074";
+
+    @Param({"X509", "GP"})
+    public String chain;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        final String hex = "X509".equals(chain) ? X509_CHAIN_RESPONSE : GP_CHAIN_RESPONSE;
+        response = new byte[hex.length() / 2];
+        for (int i = 0; i < response.length; i++) {
+            response[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+    }
+
+    @Benchmark
+    public void decodeList(Blackhole blackhole) throws BadResponseException {
+        for (Tlv der : Tlvs.decodeList(Tlvs.unpackValue(TAG_CERTIFICATE_STORE, response))) {
+            blackhole.consume(der.getBytes());
+        }
+    }
+
+    @Benchmark
+    public void tlvReader(Blackhole blackhole) throws BadResponseException {
+        final TlvReader reader = new TlvReader(response);
+        reader.next(TAG_CERTIFICATE_STORE);
+        reader.enter();
+        while (reader.next()) {
+            blackhole.consume(reader.encodedBytes());
+        }
+    }
+
+    /**
+     * Visits every certificate field without copying, as a parser of GlobalPlatform certificates does
+     */
+    @Benchmark
+    public int tlvReaderWalk() throws BadResponseException {
+        final TlvReader reader = new TlvReader(response);
+        reader.next(TAG_CERTIFICATE_STORE);
+        reader.enter();
+        int tags = 0;
+        while (reader.next()) {
+            reader.enter();
+            while (reader.next()) {
+                tags ^= reader.tag() + reader.valueLength();
+            }
+            reader.exit();
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,118 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time to send a 1-32 KB payload over a fully secured session, chained over short APDUs or as a single extended
+ * APDU.
+ * <p>
+ * The card only answers 9000, after an optional delay emulating the round trip latency of the link, so the numbers
+ * show the host-side cost and the round trips saved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ExtendedApduBenchmark {
+    @Param({"1024", "4096", "16384", "32768"})
+    public int payloadSize;
+
+    @Param({"false", "true"})
+    public boolean extended;
+
+    @Param({"0", "500"})
+    public int roundTripMicros;
+
+    private ScpProcessor processor;
+    private ByteBuffer payload;
+    private ByteBuffer response;
+
+    @Setup
+    public void setUp() {
+        final SessionKeys keys = new SessionKeys(aesKey(0x01), aesKey(0x02), aesKey(0x03), null);
+        final byte[] data = new byte[payloadSize];
+        Arrays.fill(data, (byte) 0x5A);
+        payload = ByteBuffer.wrap(data);
+        response = ByteBuffer.allocate(16);
+        processor = new ScpProcessor(new AcknowledgingCard(extended, roundTripMicros),
+                                     new ScpState(keys, new byte[16]), extended,
+                                     extended ? MaxApduSize.EXTENDED : MaxApduSize.SHORT, (byte) 0xC0, ScpMode.S8,
+                                     SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC);
+    }
+
+    @Benchmark
+    public short send() throws IOException, BadResponseException {
+        payload.rewind();
+        response.clear();
+        return processor.sendApdu((byte) 0x80, (byte) 0xE2, (byte) 0x00, (byte) 0x00, payload, 0, response);
+    }
+
+    private static SecretKey aesKey(int seed) {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) seed);
+        return new SecretKeySpec(key, "AES");
+    }
+
+    private static final class AcknowledgingCard implements SmartCardConnection {
+        private final boolean extended;
+        private final long roundTripNanos;
+
+        AcknowledgingCard(boolean extended, int roundTripMicros) {
+            this.extended = extended;
+            this.roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        }
+
+        @Override
+        public byte[] sendAndReceive(byte[] apdu) {
+            if (roundTripNanos > 0) {
+                LockSupport.parkNanos(roundTripNanos);
+            }
+            return new byte[]{(byte) 0x90, 0x00};
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return extended;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
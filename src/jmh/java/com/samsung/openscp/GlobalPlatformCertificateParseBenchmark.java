@@ -0,0 +1,90 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the fields of a GlobalPlatform SCP11 certificate: nested {@link Tlvs#decodeMap(byte[])} calls, which box
+ * every tag and copy every value, versus {@link TlvIndex} over the certificate bytes.
+ * <p>
+ * Run with the GC profiler ({@code -prof gc}) and compare {@code gc.alloc.rate.norm}, the bytes allocated per
+ * operation. Both field lookups copy out the same values, so the difference is the cost of the TLV handling itself.
+ * {@link #parse()} measures the complete parser, including the public key construction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GlobalPlatformCertificateParseBenchmark {
+    private static final int CERTIFICATE_TAG = 0x7F21;
+    private static final int[] FIELD_TAGS = {0x93, 0x42, 0x5F20, 0x95, 0x5F25, 0x5F24, 0x53, 0x73, 0xBF20, 0x5F37};
+
+    private byte[] certificate;
+
+    @Setup
+    public void setUp() throws BadResponseException {
+        final TlvReader reader = new TlvReader(ByteUtils.hexToBytes(CertificateStoreParseBenchmark.GP_CHAIN_RESPONSE));
+        reader.next(0xBF21);
+        reader.enter();
+        reader.next(CERTIFICATE_TAG);
+        certificate = reader.encodedBytes();
+    }
+
+    @Benchmark
+    public void decodeMap(Blackhole blackhole) {
+        final Map<Integer, byte[]> fields = Tlvs.decodeMap(Tlvs.decodeMap(certificate).get(CERTIFICATE_TAG));
+        for (int tag : FIELD_TAGS) {
+            blackhole.consume(fields.get(tag));
+        }
+        final Map<Integer, byte[]> publicKey = Tlvs.decodeMap(fields.get(0x7F49));
+        blackhole.consume(publicKey.get(0xB0));
+        blackhole.consume(publicKey.get(0xF0));
+    }
+
+    @Benchmark
+    public void tlvIndex(Blackhole blackhole) throws BadResponseException {
+        final TlvIndex fields = new TlvIndex(certificate).getNested(CERTIFICATE_TAG);
+        for (int tag : FIELD_TAGS) {
+            blackhole.consume(fields.getValue(tag));
+        }
+        final TlvIndex publicKey = fields.getNested(0x7F49);
+        blackhole.consume(publicKey.getValue(0xB0));
+        blackhole.consume(publicKey.getValue(0xF0));
+    }
+
+    @Benchmark
+    public GlobalPlatformScpCertificate parse() throws CertificateException {
+        return GlobalPlatformScpCertificate.parse(certificate);
+    }
+}
@@ -0,0 +1,116 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Minimal in-process SCP03 card side for secure messaging benchmarks.
+ * <p>
+ * Tracks the MAC chaining value and the encryption counter, and answers every command with the same data, MACed and
+ * encrypted as required by the security level, after an optional delay emulating the round trip latency of the link.
+ * The C-MAC of the commands is not verified.
+ */
+final class Scp03LoopbackCard implements SmartCardConnection {
+    private static final int MAC_SIZE = 8;
+
+    private final SessionKeys keys;
+    private final SecurityLevel level;
+    private final byte[] data;
+    private final AesCmac cmac;
+    private final AesCmac rmac;
+    private final Cipher ecb;
+    private final Cipher cbc;
+    private final byte[] macChain = new byte[16];
+    private final byte[] icv = new byte[16];
+    private final long roundTripNanos;
+    private int encCounter = 1;
+
+    Scp03LoopbackCard(SessionKeys keys, SecurityLevel level, byte[] data) throws GeneralSecurityException {
+        this(keys, level, data, 0);
+    }
+
+    Scp03LoopbackCard(SessionKeys keys, SecurityLevel level, byte[] data, int roundTripMicros)
+            throws GeneralSecurityException {
+        this.keys = keys;
+        this.level = level;
+        this.data = data;
+        this.roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        cmac = new AesCmac(keys.smac);
+        rmac = new AesCmac(keys.srmac);
+        ecb = Cipher.getInstance("AES/ECB/NoPadding");
+        ecb.init(Cipher.ENCRYPT_MODE, keys.senc);
+        cbc = Cipher.getInstance("AES/CBC/NoPadding");
+    }
+
+    @Override
+    public byte[] sendAndReceive(byte[] apdu) throws IOException {
+        if (roundTripNanos > 0) {
+            LockSupport.parkNanos(roundTripNanos);
+        }
+        try {
+            cmac.update(macChain, 0, macChain.length);
+            cmac.update(apdu, 0, 5 + (apdu[4] & 0xff) - MAC_SIZE);
+            cmac.doFinal(macChain, 0);
+
+            byte[] respData = data;
+            if (level.responseEncryption) {
+                final byte[] padded = Arrays.copyOf(data, ScpState.getPaddedLength(data.length));
+                padded[data.length] = (byte) 0x80;
+                Arrays.fill(icv, (byte) 0);
+                icv[0] = (byte) 0x80;
+                ByteBuffer.wrap(icv, 12, 4).putInt(encCounter);
+                cbc.init(Cipher.ENCRYPT_MODE, keys.senc, new IvParameterSpec(ecb.doFinal(icv)));
+                respData = cbc.doFinal(padded);
+            }
+            if (level.commandEncryption) {
+                encCounter++;
+            }
+            final ByteBuffer resp = ByteBuffer.allocate(respData.length + (level.responseMac ? MAC_SIZE : 0) + 2);
+            resp.put(respData);
+            if (level.responseMac) {
+                final byte[] mac = new byte[16];
+                rmac.update(macChain, 0, macChain.length);
+                rmac.update(respData, 0, respData.length);
+                rmac.update((byte) 0x90);
+                rmac.update((byte) 0x00);
+                rmac.doFinal(mac, 0);
+                resp.put(mac, 0, MAC_SIZE);
+            }
+            resp.putShort(SW.OK);
+            return resp.array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean isExtendedLengthApduSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,78 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SCP11a P-256 handshake latency with and without {@link StaticSharedSecretCache}.
+ * <p>
+ * The Security Domain is emulated in-process by {@link Scp11LoopbackCard}, its cost is the same in both cases.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Scp11HandshakeBenchmark {
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private ApduProcessor processor;
+    private Scp11KeyParams keyParams;
+    private StaticSharedSecretCache cache;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final KeyPair sdStatic = Scp11LoopbackCard.generateP256KeyPair();
+        final KeyPair oceStatic = Scp11LoopbackCard.generateP256KeyPair();
+        processor = new ChainedResponseProcessor(new Scp11LoopbackCard(sdStatic, oceStatic.getPublic()), false,
+                                                 MaxApduSize.SHORT, (byte) 0xC0);
+        cache = cached ? new StaticSharedSecretCache(16) : null;
+        keyParams = new Scp11KeyParams(
+                new KeyRef(ScpKid.SCP11a, (byte) 0x01),
+                sdStatic.getPublic(),
+                new KeyRef((byte) 0x10, (byte) 0x01),
+                oceStatic.getPrivate(),
+                Collections.singletonList(new byte[]{0x7F, 0x21, 0x00}),
+                AesAlg.AES_128,
+                SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC,
+                cache);
+    }
+
+    @Benchmark
+    public ScpState handshake() throws IOException, ApduException, BadResponseException {
+        return ScpState.scp11Init(processor, keyParams, null);
+    }
+}
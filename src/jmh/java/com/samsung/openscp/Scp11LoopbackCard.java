@@ -0,0 +1,142 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Arrays;
+
+/**
+ * Minimal in-process P-256 SCP11a Security Domain for handshake benchmarks.
+ * <p>
+ * Accepts any OCE certificate and answers MUTUAL AUTHENTICATE with a fixed ephemeral key. The static shared secret
+ * is computed once, so the card side costs one ECDH and the key derivation per handshake.
+ */
+final class Scp11LoopbackCard implements SmartCardConnection {
+    private static final int POINT_SIZE = 65;
+    private static final int COORDINATE_SIZE = 32;
+
+    private final KeyPair sdEphemeral;
+    private final byte[] epkSdEckaTlv;
+    private final byte[] shSes;
+
+    Scp11LoopbackCard(KeyPair sdStatic, PublicKey pkOceEcka) throws GeneralSecurityException {
+        final KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(((ECPublicKey) sdStatic.getPublic()).getParams());
+        sdEphemeral = kpg.generateKeyPair();
+        epkSdEckaTlv = ByteBuffer.allocate(3 + POINT_SIZE)
+                .put((byte) 0x5F).put((byte) 0x49).put((byte) POINT_SIZE)
+                .put(encodePoint((ECPublicKey) sdEphemeral.getPublic()))
+                .array();
+        shSes = agree(sdStatic, pkOceEcka);
+    }
+
+    static KeyPair generateP256KeyPair() throws GeneralSecurityException {
+        final KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        return kpg.generateKeyPair();
+    }
+
+    @Override
+    public byte[] sendAndReceive(byte[] apdu) throws IOException {
+        if (apdu[1] != SecurityDomainSession.INS_EXTERNAL_AUTHENTICATE) {
+            // PERFORM SECURITY OPERATION, certificates are not verified
+            return new byte[]{(byte) 0x90, 0x00};
+        }
+        try {
+            final int lc = apdu[4] & 0xff;
+            final byte[] data = Arrays.copyOfRange(apdu, 5, 5 + lc);
+            final byte[] point = Arrays.copyOfRange(data, data.length - POINT_SIZE, data.length);
+            final ECPublicKey epkOceEcka = decodePoint(point, (ECPublicKey) sdEphemeral.getPublic());
+            final byte[] shSee = agree(sdEphemeral, epkOceEcka);
+
+            // AES-128 session keys with full security level
+            final byte[] sharedInfo = new byte[]{0x3C, (byte) 0x88, 0x10};
+            final byte[] keyData = new byte[96];
+            for (int i = 0; i < 3; i++) {
+                final MessageDigest hash = MessageDigest.getInstance("SHA-256");
+                hash.update(shSee);
+                hash.update(shSes);
+                hash.update(ByteBuffer.allocate(4).putInt(i + 1).array());
+                hash.update(sharedInfo);
+                System.arraycopy(hash.digest(), 0, keyData, i * 32, 32);
+            }
+            final byte[] receipt = AesCmac.mac(
+                    new SecretKeySpec(keyData, 0, 16, "AES"),
+                    ByteBuffer.allocate(data.length + epkSdEckaTlv.length).put(data).put(epkSdEckaTlv).array());
+            return ByteBuffer.allocate(epkSdEckaTlv.length + 2 + receipt.length + 2)
+                    .put(epkSdEckaTlv)
+                    .put((byte) 0x86).put((byte) receipt.length).put(receipt)
+                    .putShort(SW.OK)
+                    .array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean isExtendedLengthApduSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static byte[] agree(KeyPair own, PublicKey other) throws GeneralSecurityException {
+        final KeyAgreement keyAgreement = KeyAgreement.getInstance("ECDH");
+        keyAgreement.init(own.getPrivate());
+        keyAgreement.doPhase(other, true);
+        return keyAgreement.generateSecret();
+    }
+
+    private static byte[] encodePoint(ECPublicKey key) {
+        return ByteBuffer.allocate(POINT_SIZE)
+                .put((byte) 0x04)
+                .put(toCoordinate(key.getW().getAffineX()))
+                .put(toCoordinate(key.getW().getAffineY()))
+                .array();
+    }
+
+    private static ECPublicKey decodePoint(byte[] point, ECPublicKey sameCurveKey) throws GeneralSecurityException {
+        final BigInteger x = new BigInteger(1, Arrays.copyOfRange(point, 1, 1 + COORDINATE_SIZE));
+        final BigInteger y = new BigInteger(1, Arrays.copyOfRange(point, 1 + COORDINATE_SIZE, POINT_SIZE));
+        return (ECPublicKey) KeyFactory.getInstance("EC")
+                .generatePublic(new ECPublicKeySpec(new ECPoint(x, y), sameCurveKey.getParams()));
+    }
+
+    private static byte[] toCoordinate(BigInteger value) {
+        final byte[] bytes = value.toByteArray();
+        final byte[] coordinate = new byte[COORDINATE_SIZE];
+        final int length = Math.min(bytes.length, COORDINATE_SIZE);
+        System.arraycopy(bytes, bytes.length - length, coordinate, COORDINATE_SIZE - length, length);
+        return coordinate;
+    }
+}
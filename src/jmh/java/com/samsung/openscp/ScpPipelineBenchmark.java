@@ -0,0 +1,117 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to send 16 independent fully secured commands one by one or through the crypto/transport pipeline.
+ * <p>
+ * The card side is emulated in-process and answers after a delay emulating the round trip latency of the link. With
+ * latency the pipeline hides the wrapping and unwrapping behind the card I/O, without latency it shows the cost of
+ * the hand-off between the stages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ScpPipelineBenchmark {
+    private static final int COMMANDS = 16;
+
+    @Param({"0", "250", "1000"})
+    public int roundTripMicros;
+
+    @Param({"128", "239"})
+    public int payloadSize;
+
+    @Param({"1", "2", "4"})
+    public int depth;
+
+    private ScpProcessor processor;
+    private List<Apdu> apdus;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final SessionKeys keys = new SessionKeys(aesKey(0x01), aesKey(0x02), aesKey(0x03), null);
+        final byte[] data = new byte[payloadSize];
+        Arrays.fill(data, (byte) 0x5A);
+        apdus = new ArrayList<>(COMMANDS);
+        for (int i = 0; i < COMMANDS; i++) {
+            apdus.add(new Apdu(0x80, 0xCA, 0x00, 0x66, data));
+        }
+        processor = new ScpProcessor(new Scp03LoopbackCard(keys, SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC,
+                                                           data, roundTripMicros),
+                                     new ScpState(keys, new byte[16]), false, MaxApduSize.SHORT, (byte) 0xC0,
+                                     ScpMode.S8, SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public int sequential() throws IOException, BadResponseException {
+        int length = 0;
+        for (Apdu apdu : apdus) {
+            length += processor.sendApdu(apdu).dataLength();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int pipelined() throws IOException, BadResponseException {
+        int length = 0;
+        for (byte[] response : processor.sendPipelined(apdus, StopCondition.onError(), executor, depth)) {
+            length += response.length;
+        }
+        return length;
+    }
+
+    private static SecretKey aesKey(int seed) {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) seed);
+        return new SecretKeySpec(key, "AES");
+    }
+}
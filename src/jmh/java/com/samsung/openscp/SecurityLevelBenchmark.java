@@ -0,0 +1,85 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Secured command/response round trip throughput per session security level.
+ * <p>
+ * The card side is emulated in-process: it tracks the MAC chaining value, MACs and encrypts the response as
+ * required by the level. Its cost is included, so the numbers are only comparable between levels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SecurityLevelBenchmark {
+    @Param({"C_MAC", "C_MAC_R_MAC", "C_DECRYPTION_C_MAC", "C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC"})
+    public SecurityLevel level;
+
+    @Param({"16", "128", "239"})
+    public int payloadSize;
+
+    private ScpProcessor processor;
+    private ByteBuffer payload;
+    private ByteBuffer response;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final SessionKeys keys = new SessionKeys(aesKey(0x01), aesKey(0x02), aesKey(0x03), null);
+        final byte[] data = new byte[payloadSize];
+        Arrays.fill(data, (byte) 0x5A);
+        payload = ByteBuffer.wrap(data);
+        response = ByteBuffer.allocate(ScpState.getPaddedLength(payloadSize) + 16);
+        processor = new ScpProcessor(new Scp03LoopbackCard(keys, level, data), new ScpState(keys, new byte[16]),
+                                     false, MaxApduSize.SHORT, (byte) 0xC0, ScpMode.S8, level);
+    }
+
+    @Benchmark
+    public short roundTrip() throws IOException, BadResponseException {
+        payload.rewind();
+        response.clear();
+        return processor.sendApdu((byte) 0x80, (byte) 0xCA, (byte) 0x00, (byte) 0x66, payload, 0, response);
+    }
+
+    private static SecretKey aesKey(int seed) {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) seed);
+        return new SecretKeySpec(key, "AES");
+    }
+}
@@ -0,0 +1,109 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command wrapping cost (padding, encryption and C-MAC) of the per-session crypto engine
+ * compared with a provider lookup and key setup for every command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SessionCryptoBenchmark {
+    @Param({"16", "239", "1024"})
+    public int payloadSize;
+
+    private SessionKeys keys;
+    private ScpState state;
+    private byte[] payload;
+    private ByteBuffer wrapped;
+    private byte[] macChain = new byte[16];
+    private int encCounter = 1;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        keys = new SessionKeys(aesKey(0x01), aesKey(0x02), aesKey(0x03), null);
+        state = new ScpState(keys, new byte[16]);
+        payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 0x5A);
+        wrapped = ByteBuffer.allocate(ScpState.getPaddedLength(payloadSize) + 16);
+    }
+
+    @Benchmark
+    public ByteBuffer sessionEngine() {
+        wrapped.clear();
+        state.encrypt(ByteBuffer.wrap(payload), wrapped);
+        final ByteBuffer cryptogram = wrapped.duplicate();
+        cryptogram.flip();
+        state.mac(cryptogram, ScpMode.S8, wrapped);
+        return wrapped;
+    }
+
+    @Benchmark
+    public byte[] perCommandLookup() throws GeneralSecurityException {
+        int padLen = 16 - (payload.length % 16);
+        byte[] padded = Arrays.copyOf(payload, payload.length + padLen);
+        padded[payload.length] = (byte) 0x80;
+
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, keys.senc);
+        byte[] iv = cipher.doFinal(ByteBuffer.allocate(16).put(new byte[12]).putInt(encCounter++).array());
+        cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, keys.senc, new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(padded);
+
+        Mac mac = Mac.getInstance("AESCMAC");
+        mac.init(keys.smac);
+        mac.update(macChain);
+        macChain = mac.doFinal(encrypted);
+        return Arrays.copyOf(macChain, 8);
+    }
+
+    private static SecretKey aesKey(int seed) {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) seed);
+        return new SecretKeySpec(key, "AES");
+    }
+}
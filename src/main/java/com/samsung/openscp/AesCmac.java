@@ -0,0 +1,189 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * AES-CMAC (NIST SP 800-38B, RFC 4493) on top of a single AES/ECB cipher instance.
+ * <p>
+ * K1/K2 subkeys are derived once per key. The chaining value is carried over between {@link #update} calls, so a
+ * message may be MACed in parts without concatenating them. {@link #doFinal} resets the instance for the next
+ * message with the same key.
+ * <p>
+ * Not thread-safe.
+ */
+final class AesCmac {
+    static final int BLOCK_SIZE = 16;
+
+    private final Cipher cipher;
+    private final byte[] k1 = new byte[BLOCK_SIZE];
+    private final byte[] k2 = new byte[BLOCK_SIZE];
+    private final byte[] chain = new byte[BLOCK_SIZE];
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength = 0;
+
+    /**
+     * @param key AES key of any supported size
+     */
+    AesCmac(SecretKey key) {
+        try {
+            @SuppressWarnings("GetInstance") Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding");
+            ecb.init(Cipher.ENCRYPT_MODE, key);
+            cipher = ecb;
+        } catch (GeneralSecurityException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        }
+
+        // Subkeys generation, RFC 4493 "2.3. Subkey Generation Algorithm"
+        final byte[] l = new byte[BLOCK_SIZE];
+        encryptBlock(l);
+        shiftLeft(l, k1);
+        shiftLeft(k1, k2);
+        Arrays.fill(l, (byte) 0);
+    }
+
+    /**
+     * Computes AES-CMAC of the data with a one-off instance
+     *
+     * @param key  AES key
+     * @param data MACed data
+     * @return 16 bytes MAC
+     */
+    static byte[] mac(SecretKey key, byte[] data) {
+        final AesCmac cmac = new AesCmac(key);
+        cmac.update(data, 0, data.length);
+        final byte[] mac = new byte[BLOCK_SIZE];
+        cmac.doFinal(mac, 0);
+        cmac.destroy();
+        return mac;
+    }
+
+    void update(byte b) {
+        if (blockLength == BLOCK_SIZE) {
+            processBlock();
+        }
+        block[blockLength++] = b;
+    }
+
+    void update(byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (blockLength == BLOCK_SIZE) {
+                processBlock();
+            }
+            final int n = Math.min(length, BLOCK_SIZE - blockLength);
+            System.arraycopy(data, offset, block, blockLength, n);
+            blockLength += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Consumes the remaining bytes of the buffer
+     */
+    void update(ByteBuffer data) {
+        if (data.hasArray()) {
+            update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+        }
+        while (data.hasRemaining()) {
+            if (blockLength == BLOCK_SIZE) {
+                processBlock();
+            }
+            final int n = Math.min(data.remaining(), BLOCK_SIZE - blockLength);
+            data.get(block, blockLength, n);
+            blockLength += n;
+        }
+    }
+
+    /**
+     * Writes the 16 bytes MAC to the output and resets the instance
+     *
+     * @param output array to write the MAC to
+     * @param offset offset in the output array
+     */
+    void doFinal(byte[] output, int offset) {
+        final byte[] subkey;
+        if (blockLength == BLOCK_SIZE) {
+            subkey = k1;
+        } else {
+            block[blockLength] = (byte) 0x80;
+            Arrays.fill(block, blockLength + 1, BLOCK_SIZE, (byte) 0);
+            subkey = k2;
+        }
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            chain[i] ^= block[i] ^ subkey[i];
+        }
+        encryptBlock(chain);
+        System.arraycopy(chain, 0, output, offset, BLOCK_SIZE);
+        reset();
+    }
+
+    /**
+     * Drops the data passed after the last {@link #doFinal}
+     */
+    void reset() {
+        Arrays.fill(chain, (byte) 0);
+        Arrays.fill(block, (byte) 0);
+        blockLength = 0;
+    }
+
+    /**
+     * Zeroizes the subkeys and the intermediate state. The instance can't be used afterwards.
+     */
+    void destroy() {
+        reset();
+        Arrays.fill(k1, (byte) 0);
+        Arrays.fill(k2, (byte) 0);
+    }
+
+    private void processBlock() {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            chain[i] ^= block[i];
+        }
+        encryptBlock(chain);
+        blockLength = 0;
+    }
+
+    private void encryptBlock(byte[] inOut) {
+        try {
+            cipher.doFinal(inOut, 0, BLOCK_SIZE, inOut, 0);
+        } catch (GeneralSecurityException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void shiftLeft(byte[] in, byte[] out) {
+        int carry = 0;
+        for (int i = BLOCK_SIZE - 1; i >= 0; i--) {
+            final int b = in[i] & 0xff;
+            out[i] = (byte) ((b << 1) | carry);
+            carry = b >>> 7;
+        }
+        if ((in[0] & 0x80) != 0) {
+            out[BLOCK_SIZE - 1] ^= (byte) 0x87;
+        }
+    }
+}
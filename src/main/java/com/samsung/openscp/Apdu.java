@@ -34,12 +34,13 @@
  *   - Package and import statements updated during code move from the original project
  *   - Extend API with "force add Le" parameter
  *   - Add missed JavaDocs
+ *   - Hold the command data as a read-only ByteBuffer view, exposed without copying
  */
 
 package com.samsung.openscp;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 /**
  * Data model for encapsulating an APDU command, as defined by ISO/IEC 7816-4 standard.
@@ -49,7 +50,7 @@ public class Apdu {
     private final byte ins;
     private final byte p1;
     private final byte p2;
-    private final byte[] data;
+    private final ByteBuffer data;
     private final int le;
     private final boolean forceAddLe;
 
@@ -75,6 +76,29 @@ public class Apdu {
         );
     }
 
+    /**
+     * Creates a new command APDU with the data given as a buffer. The remaining bytes of the buffer are not copied
+     * and must not be modified while the APDU is in use.
+     *
+     * @param cla        the instruction class
+     * @param ins        the instruction number
+     * @param p1         the first instruction parameter byte
+     * @param p2         the second instruction parameter byte
+     * @param data       the command data, its position is not changed
+     * @param le         the length of expected data in the response
+     * @param forceAddLe should 0x00 Le be forcibly added to the encoded APDU form or not
+     */
+    public Apdu(int cla, int ins, int p1, int p2, ByteBuffer data, int le, boolean forceAddLe) {
+        this(validateByte(cla, "CLA"),
+             validateByte(ins, "INS"),
+             validateByte(p1, "P1"),
+             validateByte(p2, "P2"),
+             data.slice().asReadOnlyBuffer(),
+             le,
+             forceAddLe
+        );
+    }
+
     /**
      * {@link #Apdu(int, int, int, int, byte[], int, boolean)} wrapper for Le=0 and forceAddLe=false
      */
@@ -90,11 +114,15 @@ public class Apdu {
     }
 
     private Apdu(byte cla, byte ins, byte p1, byte p2, @Nullable byte[] data, int le, boolean forceAddLe) {
+        this(cla, ins, p1, p2, ByteBuffer.wrap(data == null ? new byte[0] : data).asReadOnlyBuffer(), le, forceAddLe);
+    }
+
+    private Apdu(byte cla, byte ins, byte p1, byte p2, ByteBuffer data, int le, boolean forceAddLe) {
         this.cla = cla;
         this.ins = ins;
         this.p1 = p1;
         this.p2 = p2;
-        this.data = data == null ? new byte[0] : data;
+        this.data = data;
         this.le = le;
         this.forceAddLe = forceAddLe;
     }
@@ -104,10 +132,26 @@ public class Apdu {
     }
 
     /**
-     * Returns the data payload of the APDU.
+     * Returns a copy of the data payload of the APDU.
      */
     public byte[] getData() {
-        return Arrays.copyOf(data, data.length);
+        final byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        return copy;
+    }
+
+    /**
+     * Returns a read-only view of the data payload of the APDU, without copying it.
+     */
+    public ByteBuffer dataBuffer() {
+        return data.duplicate();
+    }
+
+    /**
+     * Returns the length of the data payload of the APDU.
+     */
+    public int dataLength() {
+        return data.remaining();
     }
 
     /**
@@ -155,7 +199,7 @@ public class Apdu {
     /**
      * Validates that integer passed fits into byte and converts to byte
      */
-    private static byte validateByte(int byteInt, String name) {
+    static byte validateByte(int byteInt, String name) {
         if (byteInt > 255 || byteInt < Byte.MIN_VALUE) {
             throw new IllegalArgumentException("Invalid value for " + name + ", must fit in a byte");
         }
@@ -0,0 +1,141 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable buffers for formatting commands and assembling responses, owned by a single {@link SmartCardProtocol}
+ * <p>
+ * The arena holds one command buffer and one response buffer. Both grow to the largest command or response seen and
+ * are then reused, so that a steady-state exchange loop does not allocate buffers for APDUs.
+ * <p>
+ * Ownership: everything handed out by the arena is a view of its buffers and is only valid until the next exchange.
+ * <ul>
+ *   <li>the buffer returned by {@link #command} is overwritten by the next call to {@link #command}, i.e. when the
+ *   next command is formatted</li>
+ *   <li>the buffer returned by {@link #response} or {@link #extendResponse}, and the {@link ApduResponse} returned
+ *   by {@link #wrapResponse}, are overwritten by the next call to {@link #response}, i.e. when the next command is
+ *   sent</li>
+ * </ul>
+ * A processor therefore must consume or copy a response before it sends the next command, and responses returned
+ * to the callers of {@link SmartCardProtocol} are copied out of the arena. The arena is not thread-safe.
+ */
+final class ApduArena {
+    /**
+     * Short APDU with 255 bytes of command data and Le
+     */
+    static final int SHORT_COMMAND_LENGTH = 4 + 1 + MaxApduSize.SHORT + 1;
+
+    /**
+     * Short APDU response with 256 bytes of data and SW
+     */
+    static final int SHORT_RESPONSE_LENGTH = 256 + 2;
+
+    /**
+     * Extended APDU response with 65536 bytes of data and SW
+     */
+    static final int EXTENDED_RESPONSE_LENGTH = 65536 + 2;
+
+    private ByteBuffer command;
+    private ByteBuffer response;
+    private ApduResponse apduResponse;
+
+    ApduArena() {
+        command = ByteBuffer.allocate(SHORT_COMMAND_LENGTH);
+        response = ByteBuffer.allocate(SHORT_RESPONSE_LENGTH);
+    }
+
+    /**
+     * Clears the command buffer for the next command
+     *
+     * @param length the length of the command to be formatted
+     * @return the command buffer, positioned at its start, with at least {@code length} bytes remaining
+     */
+    ByteBuffer command(int length) {
+        if (command.capacity() < length) {
+            command = ByteBuffer.allocate(length);
+        }
+        command.clear();
+        return command;
+    }
+
+    /**
+     * Clears the response buffer for the response to the next command
+     *
+     * @param length the maximum length of the response to be received
+     * @return the response buffer, positioned at its start, with at least {@code length} bytes remaining
+     */
+    ByteBuffer response(int length) {
+        response.clear();
+        return extendResponse(0, length);
+    }
+
+    /**
+     * Prepares the response buffer for appending another response chunk, keeping the first {@code position} bytes
+     *
+     * @param position the position to append at
+     * @param length   the maximum length of the chunk to be received
+     * @return the response buffer, positioned at {@code position}, with at least {@code length} bytes remaining. It
+     * replaces any response buffer returned before.
+     */
+    ByteBuffer extendResponse(int position, int length) {
+        if (response.capacity() - position < length) {
+            final ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * response.capacity(), position + length));
+            response.position(0);
+            response.limit(position);
+            grown.put(response);
+            response = grown;
+        }
+        response.limit(response.capacity());
+        response.position(position);
+        return response;
+    }
+
+    /**
+     * Sends a command and receives its response into the response buffer, at {@code position}
+     * <p>
+     * The buffer is prepared for a response of {@code length} bytes, and grows, if the connection returns more, e.g.
+     * because its reader sends GET RESPONSE automatically.
+     *
+     * @param command  the formatted command, its remaining bytes are consumed
+     * @param position the position to receive the response at, the bytes before it are kept
+     * @param length   the expected maximum length of the response
+     * @return the length of the response received, the response buffer returned before may have been replaced
+     */
+    int receive(SmartCardConnection connection, ByteBuffer command, int position, int length) throws IOException {
+        try {
+            return connection.sendAndReceive(command, extendResponse(position, length));
+        } catch (ResponseOverflowException e) {
+            final byte[] received = e.getResponse();
+            extendResponse(position, received.length).put(received);
+            return received.length;
+        }
+    }
+
+    /**
+     * @param length the length of the response held at the start of the response buffer, data followed by SW
+     * @return the response, backed by the response buffer
+     */
+    ApduResponse wrapResponse(int length) {
+        if (apduResponse == null) {
+            apduResponse = new ApduResponse(response.array(), 0, length);
+        }
+        return apduResponse.reset(response.array(), 0, length);
+    }
+}
@@ -33,41 +33,74 @@
  * Modifications include:
  *   - Package and import statements updated during code move from the original project
  *   - Extend API with "force add Le" parameter
+ *   - Format commands from the data buffer of the APDU without copying it
+ *   - Format commands and receive responses in the buffers of an arena
+ *   - Encode the logical channel number of the connection into CLA
+ *   - Receive responses longer than the maximum response length of the format
  */
 
 package com.samsung.openscp;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 abstract class ApduFormatProcessor implements ApduProcessor {
     protected final SmartCardConnection connection;
+    protected final ApduArena arena;
+    /**
+     * The logical channel number, that is encoded into CLA of the formatted commands
+     */
+    final int channel;
+    private final int maxResponseLength;
 
-    ApduFormatProcessor(SmartCardConnection connection) {
+    /**
+     * @param maxResponseLength the expected maximum length of a response to the formatted commands, including SW.
+     *                          The arena receives longer responses too.
+     */
+    ApduFormatProcessor(SmartCardConnection connection, ApduArena arena, int maxResponseLength) {
         this.connection = connection;
+        this.arena = arena;
+        this.channel = LogicalChannel.numberOf(connection);
+        this.maxResponseLength = maxResponseLength;
     }
 
-    abstract byte[] formatApdu(byte cla,
+    /**
+     * @param data the command data, its remaining bytes are formatted and its position is not changed
+     * @return the formatted command in the command buffer of the arena, valid until the next command is formatted
+     */
+    abstract ByteBuffer formatApdu(byte cla,
                                byte ins,
                                byte p1,
                                byte p2,
-                               byte[] data,
-                               int offset,
-                               int length,
+                               ByteBuffer data,
                                int le,
                                boolean forceAddLe);
 
+    /**
+     * @return true if the APDU is sent as a single command, without command chaining
+     */
+    boolean isSingleCommand(Apdu apdu) {
+        return true;
+    }
+
     @Override
     public ApduResponse sendApdu(Apdu apdu) throws IOException {
-        byte[] data = apdu.getData();
-        byte[] payload = formatApdu(apdu.getCla(),
-                                    apdu.getIns(),
-                                    apdu.getP1(),
-                                    apdu.getP2(),
-                                    data,
-                                    0,
-                                    data.length,
-                                    apdu.getLe(),
-                                    apdu.isForceAddLe());
-        return new ApduResponse(connection.sendAndReceive(payload));
+        return exchange(formatApdu(apdu.getCla(),
+                                   apdu.getIns(),
+                                   apdu.getP1(),
+                                   apdu.getP2(),
+                                   apdu.dataBuffer(),
+                                   apdu.getLe(),
+                                   apdu.isForceAddLe()));
+    }
+
+    /**
+     * Sends a formatted command and receives its response into the response buffer of the arena
+     *
+     * @param command the formatted command, its remaining bytes are consumed
+     * @return the response, valid until the next command is sent
+     */
+    ApduResponse exchange(ByteBuffer command) throws IOException {
+        return arena.wrapResponse(arena.receive(connection, command, 0, maxResponseLength));
     }
 }
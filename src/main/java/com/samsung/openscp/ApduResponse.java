@@ -34,48 +34,110 @@
  *   - Package and import statements updated during code move from the original project
  *   - YubiKey/YubiKit/Yubico mentions removed from code and comments
  *   - Removed redundant `public` access modifiers
+ *   - Wrap the response bytes without copying, expose data and SW without copying, allow recycling
  */
 
 package com.samsung.openscp;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
  * An APDU response from a smart card, comprising response data, and a status code.
+ * <p>
+ * The response wraps the received bytes without copying them. The accessors {@link #dataBuffer()},
+ * {@link #dataLength()}, {@link #sw1()} and {@link #sw2()} do not copy either, while {@link #getData()} and
+ * {@link #getBytes()} return copies. An instance can be recycled for the next response with {@link #reset}.
  */
 class ApduResponse {
-    private final byte[] bytes;
+    private byte[] bytes;
+    private int offset;
+    private int length;
 
     /**
      * Creates a new response from a key
      *
-     * @param bytes data received from key within session/service provider
+     * @param bytes data received from key within session/service provider, not copied
      */
     ApduResponse(byte[] bytes) {
-        if (bytes.length < 2) {
+        reset(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Creates a new response from a range of an array, which is not copied
+     */
+    ApduResponse(byte[] bytes, int offset, int length) {
+        reset(bytes, offset, length);
+    }
+
+    /**
+     * Recycles the instance for another response
+     *
+     * @param bytes the response bytes, not copied
+     * @return this instance
+     */
+    ApduResponse reset(byte[] bytes) {
+        return reset(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Recycles the instance for another response, held in a range of an array, which is not copied
+     *
+     * @return this instance
+     */
+    ApduResponse reset(byte[] bytes, int offset, int length) {
+        if (length < 2) {
             throw new IllegalArgumentException("Invalid APDU response data");
         }
-        this.bytes = Arrays.copyOf(bytes, bytes.length);
+        if (offset < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("Range is outside of the response bytes");
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
     }
 
     /**
      * @return the SW from a key response (see {@link SW}).
      */
     short getSw() {
-        return (short) (((0xff & bytes[bytes.length - 2]) << 8) | (0xff & bytes[bytes.length - 1]));
+        return (short) (((0xff & sw1()) << 8) | (0xff & sw2()));
+    }
+
+    byte sw1() {
+        return bytes[offset + length - 2];
+    }
+
+    byte sw2() {
+        return bytes[offset + length - 1];
+    }
+
+    /**
+     * @return the length of the data from a key response without the SW.
+     */
+    int dataLength() {
+        return length - 2;
+    }
+
+    /**
+     * @return a read-only view of the data from a key response without the SW.
+     */
+    ByteBuffer dataBuffer() {
+        return ByteBuffer.wrap(bytes, offset, length - 2).slice().asReadOnlyBuffer();
     }
 
     /**
      * @return the data from a key response without the SW.
      */
     byte[] getData() {
-        return Arrays.copyOfRange(bytes, 0, bytes.length - 2);
+        return Arrays.copyOfRange(bytes, offset, offset + length - 2);
     }
 
     /**
      * @return raw data from a key response
      */
     byte[] getBytes() {
-        return Arrays.copyOf(bytes, bytes.length);
+        return Arrays.copyOfRange(bytes, offset, offset + length);
     }
 }
@@ -0,0 +1,85 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link SmartCardConnection} waiting for the responses of an asynchronous connection
+ * <p>
+ * It is only called by the operations of an {@link AsyncSecurityDomainSession}, so the callers of the asynchronous
+ * session never wait for the card. The thread running the operation waits for each response. If the connection
+ * completes its futures on that very thread, e.g. on the same single-thread executor, the response never arrives,
+ * so a warning is logged when a response takes suspiciously long.
+ */
+final class AsyncConnectionBridge implements SmartCardConnection {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(AsyncConnectionBridge.class);
+
+    /**
+     * Time to wait for a response before warning about a possible deadlock, long enough for slow card operations
+     */
+    static final long WARNING_TIMEOUT_SECONDS = 30;
+
+    private final AsyncSmartCardConnection connection;
+
+    AsyncConnectionBridge(AsyncSmartCardConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public byte[] sendAndReceive(byte[] apdu) throws IOException {
+        final CompletableFuture<byte[]> response = connection.sendAndReceive(apdu);
+        try {
+            try {
+                return response.get(WARNING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                Logger.warn(logger, "No response for {} s on thread {}, the connection must not complete its " +
+                                    "futures on the thread of the session operation",
+                            WARNING_TIMEOUT_SECONDS, Thread.currentThread().getName());
+                return response.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } catch (CancellationException e) {
+            throw new IOException("Response cancelled", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public boolean isExtendedLengthApduSupported() {
+        return connection.isExtendedLengthApduSupported();
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+}
@@ -0,0 +1,436 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.annotation.Nullable;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.Provider;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous variant of {@link SecurityDomainSession}
+ * <p>
+ * Every method queues the operation and returns at once. The operations of a session run on the given executor
+ * strictly one after another, in the order they were called, because the C-MAC chain and the encryption counter of
+ * the secure channel are sequential. Operations of different sessions run concurrently, as the executor allows.
+ * <p>
+ * A future completes with the result of its operation, or exceptionally with the exception that the corresponding
+ * method of {@link SecurityDomainSession} throws, e.g. {@link ApduException}. A failed operation does not prevent
+ * the operations queued after it from running.
+ * <p>
+ * The operations are sequences of commands, that wait for the responses of the card:
+ * <ul>
+ *   <li>a blocking connection adapted with {@link AsyncSmartCardConnection#fromBlocking} is called on the executor
+ *   of the adapter. The operations run there, and the futures are completed on the executor of the session, so the
+ *   threads of the session executor don't wait for the card.</li>
+ *   <li>an {@link AsyncSmartCardConnection} is awaited on the executor of the session. The connection must complete
+ *   its futures on other threads than the one running the operation. For example, completing them on the same
+ *   single-thread executor deadlocks, which is reported with a warning while the response is awaited.</li>
+ * </ul>
+ */
+public class AsyncSecurityDomainSession {
+    private final SecurityDomainSession session;
+    private final Executor executor;
+    private final Executor operationExecutor;
+    private final Object lock = new Object();
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+
+    @FunctionalInterface
+    private interface Operation<T> {
+        T run(SecurityDomainSession session) throws Exception;
+    }
+
+    /**
+     * @param connection implementation of asynchronous connection to the smart card
+     * @param executor   executor to run the operations of the session on
+     */
+    public AsyncSecurityDomainSession(AsyncSmartCardConnection connection, Executor executor) {
+        this(new SecurityDomainSession(toBlocking(connection)), executor, operationExecutorOf(connection, executor));
+    }
+
+    /**
+     * @param connection       implementation of asynchronous connection to the smart card
+     * @param executor         executor to run the operations of the session on
+     * @param securityProvider external security provider if your default JCA security provider doesn't support crypto
+     *                         algorithms required by the SCP protocol
+     */
+    public AsyncSecurityDomainSession(AsyncSmartCardConnection connection, Executor executor,
+                                      Provider securityProvider) {
+        this(new SecurityDomainSession(toBlocking(connection), securityProvider), executor,
+             operationExecutorOf(connection, executor));
+    }
+
+    /**
+     * @param connection implementation of blocking connection to the smart card, called on {@code executor} only
+     * @param executor   executor to run the operations of the session on
+     */
+    public AsyncSecurityDomainSession(SmartCardConnection connection, Executor executor) {
+        this(new SecurityDomainSession(connection), executor);
+    }
+
+    /**
+     * @param connection       implementation of blocking connection to the smart card, called on {@code executor} only
+     * @param executor         executor to run the operations of the session on
+     * @param securityProvider external security provider if your default JCA security provider doesn't support crypto
+     *                         algorithms required by the SCP protocol
+     */
+    public AsyncSecurityDomainSession(SmartCardConnection connection, Executor executor, Provider securityProvider) {
+        this(new SecurityDomainSession(connection, securityProvider), executor);
+    }
+
+    AsyncSecurityDomainSession(SecurityDomainSession session, Executor executor) {
+        this(session, executor, executor);
+    }
+
+    /**
+     * @param executor          executor to complete the futures on
+     * @param operationExecutor executor to run the operations on
+     */
+    private AsyncSecurityDomainSession(SecurityDomainSession session, Executor executor, Executor operationExecutor) {
+        this.session = session;
+        this.executor = executor;
+        this.operationExecutor = operationExecutor;
+    }
+
+    /**
+     * A blocking connection, adapted with {@link AsyncSmartCardConnection#fromBlocking}, is called directly by the
+     * operations, which run on the executor of the adapter, see {@link #operationExecutorOf}
+     */
+    private static SmartCardConnection toBlocking(AsyncSmartCardConnection connection) {
+        if (connection instanceof BlockingAsyncConnection) {
+            return ((BlockingAsyncConnection) connection).connection;
+        }
+        return new AsyncConnectionBridge(connection);
+    }
+
+    private static Executor operationExecutorOf(AsyncSmartCardConnection connection, Executor executor) {
+        if (connection instanceof BlockingAsyncConnection) {
+            return ((BlockingAsyncConnection) connection).executor;
+        }
+        return executor;
+    }
+
+    private <T> CompletableFuture<T> submit(Operation<T> operation) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final CompletableFuture<?> next;
+        synchronized (lock) {
+            // The previous operation is awaited whether it succeeded or not
+            next = tail.handleAsync((previous, e) -> {
+                try {
+                    complete(result, operation.run(session), null);
+                } catch (Throwable t) {
+                    complete(result, null, t);
+                }
+                return null;
+            }, operationExecutor);
+            tail = next;
+        }
+        // The executor rejected the operation
+        next.whenComplete((ignored, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Completes the future of an operation on the executor of the session, so that its dependent stages don't delay
+     * the next operation on the executor of the operations
+     */
+    private <T> void complete(CompletableFuture<T> result, @Nullable T value, @Nullable Throwable failure) {
+        if (operationExecutor == executor) {
+            completeNow(result, value, failure);
+            return;
+        }
+        try {
+            executor.execute(() -> completeNow(result, value, failure));
+        } catch (RejectedExecutionException e) {
+            completeNow(result, value, failure);
+        }
+    }
+
+    private static <T> void completeNow(CompletableFuture<T> result, @Nullable T value, @Nullable Throwable failure) {
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        } else {
+            result.complete(value);
+        }
+    }
+
+    /**
+     * Closes the session after all queued operations
+     *
+     * @see SecurityDomainSession#close()
+     */
+    public CompletableFuture<Void> close() {
+        return submit(session -> {
+            session.close();
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#setEphemeralKeyPool(EphemeralKeyPool)
+     */
+    public CompletableFuture<Void> setEphemeralKeyPool(@Nullable EphemeralKeyPool ephemeralKeyPool) {
+        return submit(session -> {
+            session.setEphemeralKeyPool(ephemeralKeyPool);
+            return null;
+        });
+    }
+
+    /**
+     * The transport stage should run on another executor than the operations of the session, unless that executor
+     * runs tasks concurrently, otherwise the commands are sent one by one after waiting for the stage to start
+     *
+     * @see SecurityDomainSession#setPipelineExecutor(Executor, int)
+     */
+    public CompletableFuture<Void> setPipelineExecutor(@Nullable Executor pipelineExecutor, int depth) {
+        return submit(session -> {
+            session.setPipelineExecutor(pipelineExecutor, depth);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#select(byte[])
+     */
+    public CompletableFuture<Void> select(byte[] aid) {
+        return submit(session -> {
+            session.select(aid);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#authenticate(ScpKeyParams, ScpMode)
+     */
+    public CompletableFuture<Void> authenticate(ScpKeyParams keyParams, ScpMode mode) {
+        return submit(session -> {
+            session.authenticate(keyParams, mode);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#authenticate(ScpKeyParams, ScpMode, SecurityLevel)
+     */
+    public CompletableFuture<Void> authenticate(ScpKeyParams keyParams, ScpMode mode, SecurityLevel level) {
+        return submit(session -> {
+            session.authenticate(keyParams, mode, level);
+            return null;
+        });
+    }
+
+    CompletableFuture<Void> authenticate(ScpKeyParams keyParams, ScpMode mode, @Nullable byte[] hostChallenge) {
+        return submit(session -> {
+            session.authenticate(keyParams, mode, hostChallenge);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#getData(short, byte[])
+     */
+    public CompletableFuture<byte[]> getData(short tag, @Nullable byte[] data) {
+        return submit(session -> session.getData(tag, data));
+    }
+
+    /**
+     * @see SecurityDomainSession#getCardRecognitionData()
+     */
+    public CompletableFuture<byte[]> getCardRecognitionData() {
+        return submit(SecurityDomainSession::getCardRecognitionData);
+    }
+
+    /**
+     * @see SecurityDomainSession#getKeyInformation()
+     */
+    public CompletableFuture<Map<KeyRef, Map<Byte, Byte>>> getKeyInformation() {
+        return submit(SecurityDomainSession::getKeyInformation);
+    }
+
+    /**
+     * @see SecurityDomainSession#getCertificateBundle(KeyRef)
+     */
+    public CompletableFuture<List<ScpCertificate>> getCertificateBundle(KeyRef keyRef) {
+        return submit(session -> session.getCertificateBundle(keyRef));
+    }
+
+    /**
+     * @see SecurityDomainSession#getSupportedCaIdentifiers(boolean, boolean)
+     */
+    public CompletableFuture<Map<KeyRef, byte[]>> getSupportedCaIdentifiers(boolean kloc, boolean klcc) {
+        return submit(session -> session.getSupportedCaIdentifiers(kloc, klcc));
+    }
+
+    /**
+     * @see SecurityDomainSession#storeData(byte[])
+     */
+    public CompletableFuture<Void> storeData(byte[] data) {
+        return submit(session -> {
+            session.storeData(data);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#storeCertificateBundle(KeyRef, List)
+     */
+    public CompletableFuture<Void> storeCertificateBundle(KeyRef keyRef, List<X509Certificate> certificates) {
+        return submit(session -> {
+            session.storeCertificateBundle(keyRef, certificates);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#storeAllowlist(KeyRef, List)
+     */
+    public CompletableFuture<Void> storeAllowlist(KeyRef keyRef, List<BigInteger> serials) {
+        return submit(session -> {
+            session.storeAllowlist(keyRef, serials);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#storeAllowlist(KeyRef, List, Integer)
+     */
+    public CompletableFuture<Void> storeAllowlist(KeyRef keyRef, List<BigInteger> serials, Integer allowlistCounter) {
+        return submit(session -> {
+            session.storeAllowlist(keyRef, serials, allowlistCounter);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#storeCaIssuer(KeyRef, byte[])
+     */
+    public CompletableFuture<Void> storeCaIssuer(KeyRef keyRef, byte[] ski) {
+        return submit(session -> {
+            session.storeCaIssuer(keyRef, ski);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#deleteKey(KeyRef, boolean)
+     */
+    public CompletableFuture<Void> deleteKey(KeyRef keyRef, boolean deleteLast) {
+        return submit(session -> {
+            session.deleteKey(keyRef, deleteLast);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#generateEcKey(KeyRef, int)
+     */
+    public CompletableFuture<PublicKeyValues.Ec> generateEcKey(KeyRef keyRef, int replaceKvn) {
+        return submit(session -> session.generateEcKey(keyRef, replaceKvn));
+    }
+
+    /**
+     * @see SecurityDomainSession#putKey(KeyRef, StaticKeys, int)
+     */
+    public CompletableFuture<Void> putKey(KeyRef keyRef, StaticKeys keys, int replaceKvn) {
+        return submit(session -> {
+            session.putKey(keyRef, keys, replaceKvn);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#putKey(KeyRef, PrivateKeyValues, int)
+     */
+    public CompletableFuture<Void> putKey(KeyRef keyRef, PrivateKeyValues secretKey, int replaceKvn) {
+        return submit(session -> {
+            session.putKey(keyRef, secretKey, replaceKvn);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#putKey(KeyRef, PublicKeyValues, int)
+     */
+    public CompletableFuture<Void> putKey(KeyRef keyRef, PublicKeyValues publicKey, int replaceKvn) {
+        return submit(session -> {
+            session.putKey(keyRef, publicKey, replaceKvn);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#reset()
+     */
+    public CompletableFuture<Void> reset() {
+        return submit(session -> {
+            session.reset();
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#sendAndReceive(Apdu)
+     */
+    public CompletableFuture<byte[]> sendAndReceive(Apdu apdu) {
+        return submit(session -> session.sendAndReceive(apdu));
+    }
+
+    /**
+     * @see SecurityDomainSession#sendAndReceive(List)
+     */
+    public CompletableFuture<List<byte[]>> sendAndReceive(List<Apdu> apdus) {
+        return submit(session -> session.sendAndReceive(apdus));
+    }
+
+    /**
+     * @see SecurityDomainSession#sendAndReceiveApdu(Apdu)
+     */
+    public CompletableFuture<byte[]> sendAndReceiveApdu(Apdu apdu) {
+        return submit(session -> session.sendAndReceiveApdu(apdu));
+    }
+
+    /**
+     * The buffers must not be accessed until the returned future completes.
+     *
+     * @see SecurityDomainSession#sendAndReceive(int, int, int, int, ByteBuffer, int, ByteBuffer)
+     */
+    public CompletableFuture<Integer> sendAndReceive(int cla, int ins, int p1, int p2, ByteBuffer data, int le,
+                                                     ByteBuffer response) {
+        return submit(session -> session.sendAndReceive(cla, ins, p1, p2, data, le, response));
+    }
+
+    /**
+     * The stream and the buffer must not be accessed until the returned future completes.
+     *
+     * @see SecurityDomainSession#sendAndReceive(int, int, int, int, InputStream, int, ByteBuffer)
+     */
+    public CompletableFuture<Integer> sendAndReceive(int cla, int ins, int p1, int p2, InputStream data, int le,
+                                                     ByteBuffer response) {
+        return submit(session -> session.sendAndReceive(cla, ins, p1, p2, data, le, response));
+    }
+}
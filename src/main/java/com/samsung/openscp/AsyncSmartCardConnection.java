@@ -0,0 +1,53 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A connection capable of sending APDUs and receiving their responses without blocking the calling thread.
+ */
+public interface AsyncSmartCardConnection extends Closeable {
+    /**
+     * Sends a command APDU to the smart card, and reads a response.
+     *
+     * @param apdu The binary APDU data to be sent.
+     * @return The response back from the smart card, completed exceptionally with {@link IOException} in case of
+     * communication error
+     */
+    CompletableFuture<byte[]> sendAndReceive(byte[] apdu);
+
+    /**
+     * @return true if this connection object supports Extended length APDUs.
+     * @see SmartCardConnection#isExtendedLengthApduSupported()
+     */
+    boolean isExtendedLengthApduSupported();
+
+    /**
+     * Adapts a blocking connection by running its {@link SmartCardConnection#sendAndReceive(byte[])} on an executor.
+     *
+     * @param connection the blocking connection
+     * @param executor   the executor to run the blocking calls on
+     * @return an asynchronous connection, that delegates to {@code connection}
+     */
+    static AsyncSmartCardConnection fromBlocking(SmartCardConnection connection, Executor executor) {
+        return new BlockingAsyncConnection(connection, executor);
+    }
+}
@@ -0,0 +1,75 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A connection capable of sending a batch of APDUs in a single call.
+ * <p>
+ * Reader stacks, that can take several APDUs at once, save a host to reader round trip per command. If the
+ * connection passed to {@link SecurityDomainSession} implements this interface, independent commands are sent
+ * through {@link #transmitBatch}. Within a secure channel the commands are wrapped ahead of time.
+ */
+public interface BatchSmartCardConnection extends SmartCardConnection {
+    /**
+     * Decides after each response of a batch, whether the remaining commands are sent.
+     */
+    @FunctionalInterface
+    interface StopCondition {
+        /**
+         * @param sw the status word of a response
+         * @return true if no more commands of the batch are sent after the response
+         */
+        boolean shouldStop(short sw);
+
+        /**
+         * @return the condition, that stops a batch after the first response other than 9000
+         */
+        static StopCondition onError() {
+            return sw -> sw != SW.OK;
+        }
+    }
+
+    /**
+     * Sends commands to the smart card in order, stopping after the first response, for which the stop condition is
+     * met.
+     *
+     * @param commands      The binary APDUs to be sent, the remaining bytes of each buffer are sent and may be
+     *                      consumed.
+     * @param stopCondition The condition to stop sending the commands.
+     * @return The responses back from the smart card, one per command sent. If fewer responses than commands are
+     * returned, the last one met the stop condition. The returned arrays are owned by the caller.
+     * @throws IOException in case of communication error
+     */
+    List<byte[]> transmitBatch(List<ByteBuffer> commands, StopCondition stopCondition) throws IOException;
+
+    /**
+     * Adapts a connection to send batches command by command, or returns it as is if it supports batches.
+     *
+     * @param connection the connection to adapt
+     * @return a batch connection, that delegates to {@code connection}
+     */
+    static BatchSmartCardConnection sequential(SmartCardConnection connection) {
+        if (connection instanceof BatchSmartCardConnection) {
+            return (BatchSmartCardConnection) connection;
+        }
+        return new SequentialBatchConnection(connection);
+    }
+}
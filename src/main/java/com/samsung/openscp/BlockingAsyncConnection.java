@@ -0,0 +1,57 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncSmartCardConnection} running the calls of a blocking connection on an executor
+ */
+final class BlockingAsyncConnection implements AsyncSmartCardConnection {
+    final SmartCardConnection connection;
+    final Executor executor;
+
+    BlockingAsyncConnection(SmartCardConnection connection, Executor executor) {
+        this.connection = connection;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> sendAndReceive(byte[] apdu) {
+        final CompletableFuture<byte[]> response = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                response.complete(connection.sendAndReceive(apdu));
+            } catch (IOException | RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public boolean isExtendedLengthApduSupported() {
+        return connection.isExtendedLengthApduSupported();
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+}
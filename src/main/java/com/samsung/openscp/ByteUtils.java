@@ -40,6 +40,7 @@
 package com.samsung.openscp;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 final class ByteUtils {
@@ -84,6 +85,20 @@ final class ByteUtils {
         return sb.toString();
     }
 
+    /**
+     * Constructs a hex String from the remaining bytes of a buffer, without changing its position
+     *
+     * @param buffer buffer to construct hex
+     * @return hex value of the remaining bytes
+     */
+    static String bytesToHex(final ByteBuffer buffer) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            sb.append(String.format("%02x", buffer.get(i)));
+        }
+        return sb.toString();
+    }
+
     /**
      * Constructs a byte array from a hex String
      *
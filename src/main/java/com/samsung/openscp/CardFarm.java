@@ -0,0 +1,278 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs card sessions of many readers concurrently, one thread per session
+ * <p>
+ * On JDK 21 and later the sessions run on virtual threads, so thousands of sessions blocked on reader I/O do not
+ * hold platform threads. On earlier JDKs they run on a cached pool of platform threads. The number of concurrent
+ * sessions of each reader is limited, see {@link #setReaderLimit}.
+ * <p>
+ * Each task opens a connection, authenticates a {@link SecurityDomainSession} and runs a job with it, see
+ * {@link #submit}. Tasks, that belong together, are forked in a {@link Scope}, which joins them and cancels the rest
+ * once one of them fails.
+ */
+public final class CardFarm implements Closeable {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(CardFarm.class);
+
+    /**
+     * Opens the connection to the card of a task
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        SmartCardConnection open() throws IOException;
+    }
+
+    /**
+     * A step of a task, run with the session of the task
+     */
+    @FunctionalInterface
+    public interface SessionJob<T> {
+        T run(SecurityDomainSession session) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final int defaultReaderLimit;
+    private final ConcurrentHashMap<String, Semaphore> readers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a farm running the sessions on virtual threads, if the JDK supports them, allowing one session per
+     * reader at a time
+     */
+    public CardFarm() {
+        this(newThreadPerTaskExecutor(), 1);
+    }
+
+    /**
+     * @param executor           executor to run the sessions on, shut down by {@link #close()}
+     * @param defaultReaderLimit number of concurrent sessions of a reader without a limit set by
+     *                           {@link #setReaderLimit}
+     */
+    public CardFarm(ExecutorService executor, int defaultReaderLimit) {
+        if (defaultReaderLimit <= 0) {
+            throw new IllegalArgumentException("Reader limit must be positive");
+        }
+        this.executor = executor;
+        this.defaultReaderLimit = defaultReaderLimit;
+    }
+
+    /**
+     * Virtual threads are created through reflection, so that the library keeps its Java 8 baseline
+     *
+     * @return an executor starting a virtual thread per task on JDK 21 and later, a cached thread pool otherwise
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Logger.debug(logger, "Virtual threads are not available, using platform threads");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Sets the number of sessions of a reader, that run at the same time. Must be called before the first task of
+     * the reader is submitted.
+     *
+     * @param reader reader name
+     * @param limit  number of concurrent sessions, e.g. the number of card slots of the reader
+     */
+    public void setReaderLimit(String reader, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Reader limit must be positive");
+        }
+        if (readers.putIfAbsent(reader, new Semaphore(limit, true)) != null) {
+            throw new IllegalStateException("Reader limit is already in use: " + reader);
+        }
+    }
+
+    /**
+     * Submits a task, that authenticates a session and runs a job with it
+     *
+     * @param reader            reader name, the task waits until the reader is below its concurrency limit
+     * @param connectionFactory opens the connection to the card, which is closed after the job
+     * @param keyParams         SCP key parameters to authenticate with
+     * @param mode              SCP mode
+     * @param job               the job to run with the authenticated session
+     * @return the result of the job
+     */
+    public <T> Future<T> submit(String reader, ConnectionFactory connectionFactory, ScpKeyParams keyParams,
+                                ScpMode mode, SessionJob<T> job) {
+        return executor.submit(task(reader, connectionFactory, session -> {
+            session.authenticate(keyParams, mode);
+            return null;
+        }, job));
+    }
+
+    /**
+     * Submits a task, that authenticates a session and runs a job with it
+     *
+     * @param reader            reader name, the task waits until the reader is below its concurrency limit
+     * @param connectionFactory opens the connection to the card, which is closed after the job
+     * @param authentication    selects the Security Domain, if needed, and authenticates the session
+     * @param job               the job to run with the authenticated session
+     * @return the result of the job
+     */
+    public <T> Future<T> submit(String reader, ConnectionFactory connectionFactory, SessionJob<?> authentication,
+                                SessionJob<T> job) {
+        return executor.submit(task(reader, connectionFactory, authentication, job));
+    }
+
+    /**
+     * @return a new scope to fork related tasks in
+     */
+    public <T> Scope<T> openScope() {
+        return new Scope<>(this);
+    }
+
+    /**
+     * Shuts the executor down, waiting for the submitted tasks to complete
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                Logger.debug(logger, "Waiting for the card sessions to complete");
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> Callable<T> task(String reader, ConnectionFactory connectionFactory, SessionJob<?> authentication,
+                                 SessionJob<T> job) {
+        return () -> {
+            final Semaphore permits = readers.computeIfAbsent(reader, r -> new Semaphore(defaultReaderLimit, true));
+            permits.acquire();
+            try (SecurityDomainSession session = new SecurityDomainSession(connectionFactory.open())) {
+                authentication.run(session);
+                return job.run(session);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * Related tasks, that are joined together
+     * <p>
+     * {@link #join()} waits for all forked tasks. Once a task fails, the others are cancelled. Closing the scope
+     * cancels the tasks, that were not joined.
+     */
+    public static final class Scope<T> implements AutoCloseable {
+        private final CardFarm farm;
+        private final BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<>();
+        private final List<Future<T>> tasks = new ArrayList<>();
+
+        private Scope(CardFarm farm) {
+            this.farm = farm;
+        }
+
+        /**
+         * Forks a task, that authenticates a session and runs a job with it
+         *
+         * @see CardFarm#submit(String, ConnectionFactory, ScpKeyParams, ScpMode, SessionJob)
+         */
+        public Future<T> fork(String reader, ConnectionFactory connectionFactory, ScpKeyParams keyParams,
+                              ScpMode mode, SessionJob<T> job) {
+            return fork(reader, connectionFactory, session -> {
+                session.authenticate(keyParams, mode);
+                return null;
+            }, job);
+        }
+
+        /**
+         * Forks a task, that authenticates a session and runs a job with it
+         *
+         * @see CardFarm#submit(String, ConnectionFactory, SessionJob, SessionJob)
+         */
+        public Future<T> fork(String reader, ConnectionFactory connectionFactory, SessionJob<?> authentication,
+                              SessionJob<T> job) {
+            // The task is queued once it is done, also when cancelled while still running
+            final FutureTask<T> task = new FutureTask<T>(farm.task(reader, connectionFactory, authentication, job)) {
+                @Override
+                protected void done() {
+                    completed.add(this);
+                }
+            };
+            farm.executor.execute(task);
+            tasks.add(task);
+            return task;
+        }
+
+        /**
+         * Waits for all forked tasks
+         *
+         * @return the results of the tasks in the order they were forked
+         * @throws ExecutionException    if a task failed, the other tasks are cancelled
+         * @throws CancellationException if a task was cancelled, the other tasks are cancelled
+         * @throws InterruptedException  if interrupted while waiting, the tasks are cancelled
+         */
+        public List<T> join() throws ExecutionException, InterruptedException {
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    // Completed tasks are taken in completion order, so the first failure is seen at once
+                    completed.take().get();
+                }
+                final List<T> results = new ArrayList<>(tasks.size());
+                for (Future<T> task : tasks) {
+                    results.add(task.get());
+                }
+                return results;
+            } catch (ExecutionException | CancellationException | InterruptedException e) {
+                cancel();
+                throw e;
+            }
+        }
+
+        /**
+         * Cancels the tasks, that are not completed
+         */
+        @Override
+        public void close() {
+            cancel();
+        }
+
+        private void cancel() {
+            for (Future<T> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+}
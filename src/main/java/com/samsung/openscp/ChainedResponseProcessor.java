@@ -33,43 +33,262 @@
  * Modifications include:
  *   - Package and import statements updated during code move from the original project
  *   - Minor updates according to other classes' API changes
+ *   - Send preformatted commands, used by the secure messaging processor
+ *   - Feed response chunks to a TLV decoder as they arrive
+ *   - Assemble chained responses without intermediate copies, recycling the response of each chunk
+ *   - Assemble responses in the response buffer of an arena reused across commands
+ *   - Send independent commands in batches
+ *   - Read full responses outside of the arena, for the transport stage of a pipeline
+ *   - Receive GET RESPONSE chunks longer than a short response
+ *   - Pass the turn of a logical channel on, when a command chain fails before its last command
  */
 
 package com.samsung.openscp;
 
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 class ChainedResponseProcessor implements ApduProcessor {
     private static final byte SW1_HAS_MORE_DATA = 0x61;
 
     private final SmartCardConnection connection;
+    protected final ApduArena arena;
     protected final ApduFormatProcessor processor;
-    private final byte[] getData;
+    private final ByteBuffer getData;
 
     ChainedResponseProcessor(SmartCardConnection connection, boolean extendedApdus, int maxApduSize, byte insSendRemaining) {
+        this(connection, new ApduArena(), extendedApdus, maxApduSize, insSendRemaining);
+    }
+
+    /**
+     * @param arena the buffers to format the commands and assemble the responses in, see {@link ApduArena} for the
+     *              validity of the returned responses
+     */
+    ChainedResponseProcessor(SmartCardConnection connection, ApduArena arena, boolean extendedApdus, int maxApduSize,
+                             byte insSendRemaining) {
         this.connection = connection;
+        this.arena = arena;
         if (extendedApdus) {
-            processor = new ExtendedApduProcessor(connection, maxApduSize);
+            processor = new ExtendedApduProcessor(connection, arena, maxApduSize);
         } else {
-            processor = new ShortApduProcessor(connection);
+            processor = new ShortApduProcessor(connection, arena);
         }
-        getData = processor.formatApdu((byte)0, insSendRemaining, (byte)0, (byte)0, new byte[0], 0, 0, 0, false);
+        // GET RESPONSE is formatted once, outside of the arena, and rewound for every use
+        getData = copy(processor.formatApdu((byte)0, insSendRemaining, (byte)0, (byte)0, ByteBuffer.allocate(0), 0, false));
     }
 
     @Override
     public ApduResponse sendApdu(Apdu apdu) throws IOException, BadResponseException {
+        final ApduResponse response = processor.sendApdu(apdu);
+        if (response.sw1() != SW1_HAS_MORE_DATA) {
+            return response;
+        }
+        return arena.wrapResponse(readRemaining(response.dataLength() + 2).limit());
+    }
+
+    /**
+     * Sends a command and feeds the response data to a decoder chunk by chunk, as each response to GET RESPONSE
+     * arrives, instead of accumulating the full response first
+     *
+     * @param apdu    the command
+     * @param decoder the decoder to feed the response data to
+     * @return the SW of the last response, the data of an error response is not fed to the decoder
+     */
+    short sendApdu(Apdu apdu, TlvDecoder decoder) throws IOException, BadResponseException {
         ApduResponse response = processor.sendApdu(apdu);
-        // Read full response
-        ByteArrayOutputStream readBuffer = new ByteArrayOutputStream();
-        while (response.getSw() >> 8 == SW1_HAS_MORE_DATA) {
-            readBuffer.write(response.getData());
-            response = new ApduResponse(connection.sendAndReceive(getData));
+        while (response.sw1() == SW1_HAS_MORE_DATA) {
+            decoder.feed(response.dataBuffer());
+            getData.rewind();
+            response = processor.exchange(getData);
+        }
+        if (response.getSw() == SW.OK) {
+            decoder.feed(response.dataBuffer());
+        }
+        return response.getSw();
+    }
+
+    /**
+     * Sends independent commands through a batch connection, in as few batches as possible
+     * <p>
+     * Commands are formatted ahead of time and sent in one batch. A batch is cut after a response with more data
+     * available, which is read with GET RESPONSE before the rest of the commands is sent. Commands, that need command
+     * chaining, are sent on their own.
+     *
+     * @param apdus         the commands
+     * @param stopCondition the condition to stop sending the commands after a response
+     * @return the full responses, data followed by SW, one per command sent
+     */
+    List<byte[]> sendBatch(BatchSmartCardConnection batchConnection, List<Apdu> apdus, StopCondition stopCondition)
+            throws IOException, BadResponseException {
+        final List<byte[]> responses = new ArrayList<>(apdus.size());
+        final List<ByteBuffer> commands = new ArrayList<>();
+        int next = 0;
+        while (next < apdus.size()) {
+            commands.clear();
+            try {
+                for (int i = next; i < apdus.size() && isSingleCommand(apdus.get(i)); i++) {
+                    commands.add(formatBatchCommand(apdus.get(i), commands.size()));
+                }
+            } catch (RuntimeException e) {
+                discardBatch();
+                throw e;
+            }
+            if (commands.isEmpty()) {
+                final ApduResponse response = sendApdu(apdus.get(next++));
+                responses.add(response.getBytes());
+                if (stopCondition.shouldStop(response.getSw())) {
+                    return responses;
+                }
+                continue;
+            }
+
+            final List<byte[]> received = batchConnection.transmitBatch(
+                commands, sw -> (byte) (sw >> 8) == SW1_HAS_MORE_DATA || stopCondition.shouldStop(sw));
+            if (received.isEmpty() || received.size() > commands.size()) {
+                throw new IOException("Unexpected number of responses to a batch of " + commands.size() + " commands");
+            }
+            for (int i = 0; i < received.size(); i++) {
+                final byte[] chunk = received.get(i);
+                if (chunk.length < 2) {
+                    throw new IllegalArgumentException("Invalid APDU response data");
+                }
+                arena.response(chunk.length).put(chunk);
+                final ApduResponse response = unwrapBatchResponse(readRemaining(chunk.length), i);
+                responses.add(response.getBytes());
+                if (stopCondition.shouldStop(response.getSw())) {
+                    return responses;
+                }
+            }
+            next += received.size();
         }
-        readBuffer.write(response.getData());
-        readBuffer.write(response.getSw() >> 8);
-        readBuffer.write(response.getSw() & 0xff);
-        return new ApduResponse(readBuffer.toByteArray());
+        return responses;
+    }
+
+    /**
+     * @return true if the APDU is sent as a single command, without command chaining
+     */
+    boolean isSingleCommand(Apdu apdu) {
+        return processor.isSingleCommand(apdu);
+    }
+
+    /**
+     * Formats a command of a batch into its own buffer, since all commands of a batch are sent at once
+     *
+     * @param index the index of the command in the batch
+     */
+    ByteBuffer formatBatchCommand(Apdu apdu, int index) {
+        return copy(processor.formatApdu(apdu.getCla(),
+                                         apdu.getIns(),
+                                         apdu.getP1(),
+                                         apdu.getP2(),
+                                         apdu.dataBuffer(),
+                                         apdu.getLe(),
+                                         apdu.isForceAddLe()));
+    }
+
+    /**
+     * Discards the commands of a batch, that was formatted, but is not sent
+     */
+    void discardBatch() {
+    }
+
+    /**
+     * @param response the full response to a command of a batch, data followed by SW, in the response buffer of the
+     *                 arena
+     * @param index    the index of the command in the batch
+     * @return the response, valid until the next command is sent
+     */
+    ApduResponse unwrapBatchResponse(ByteBuffer response, int index) throws BadResponseException {
+        return arena.wrapResponse(response.limit());
+    }
+
+    /**
+     * Sends an already formatted command and reads the full response
+     *
+     * @param command the formatted command, its remaining bytes are consumed
+     * @return the full response, data followed by SW, in the response buffer of the arena
+     */
+    ByteBuffer transmit(ByteBuffer command) throws IOException {
+        final ApduResponse response = processor.exchange(command);
+        return readRemaining(response.dataLength() + 2);
+    }
+
+    /**
+     * Reads the remaining chunks of a response, if more data is available, appending them to the response buffer of
+     * the arena
+     *
+     * @param length the length of the response received so far, data followed by SW, held at the start of the
+     *               response buffer
+     * @return the full response, data followed by the SW of the last chunk
+     */
+    private ByteBuffer readRemaining(int length) throws IOException {
+        ByteBuffer buffer = arena.extendResponse(length, 0);
+        while (buffer.get(length - 2) == SW1_HAS_MORE_DATA) {
+            // The SW of the previous chunk is overwritten by the next chunk, which may be longer than expected
+            getData.rewind();
+            final int chunkLength = arena.receive(connection, getData, length - 2, ApduArena.SHORT_RESPONSE_LENGTH);
+            if (chunkLength < 2) {
+                throw new IllegalArgumentException("Invalid APDU response data");
+            }
+            length += chunkLength - 2;
+            buffer = arena.extendResponse(length, 0);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Sends an already formatted command and reads the full response into a new array, without the buffers of the
+     * arena, so that it may run on another thread than the one formatting the commands
+     *
+     * @param command the formatted command
+     * @return the full response, data followed by the SW of the last chunk
+     */
+    byte[] transmitDetached(byte[] command) throws IOException {
+        byte[] chunk = checkChunk(connection.sendAndReceive(command));
+        if (chunk[chunk.length - 2] != SW1_HAS_MORE_DATA) {
+            // The response is unwrapped in place, the array of the connection is not modified
+            return chunk.clone();
+        }
+        final ByteBuffer getResponse = getData.duplicate();
+        final byte[] getResponseCommand = new byte[getResponse.rewind().remaining()];
+        getResponse.get(getResponseCommand);
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        while (chunk[chunk.length - 2] == SW1_HAS_MORE_DATA) {
+            response.write(chunk, 0, chunk.length - 2);
+            chunk = checkChunk(connection.sendAndReceive(getResponseCommand));
+        }
+        response.write(chunk, 0, chunk.length);
+        return response.toByteArray();
+    }
+
+    /**
+     * Passes the turn of a logical channel on, if it is kept for a command chain, that fails before its last command
+     * is sent, see {@link ChannelMultiplexer}
+     */
+    void abortChain() {
+        LogicalChannel.abortChain(connection);
+    }
+
+    private static byte[] checkChunk(byte[] chunk) {
+        if (chunk.length < 2) {
+            throw new IllegalArgumentException("Invalid APDU response data");
+        }
+        return chunk;
+    }
+
+    /**
+     * @return a copy of the remaining bytes of {@code buffer}, which are consumed
+     */
+    static ByteBuffer copy(ByteBuffer buffer) {
+        final ByteBuffer copy = ByteBuffer.allocate(buffer.remaining()).put(buffer);
+        copy.flip();
+        return copy;
     }
 
     @Override
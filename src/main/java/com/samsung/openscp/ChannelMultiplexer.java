@@ -0,0 +1,246 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares a single connection between several logical channels
+ * <p>
+ * Each channel is a {@link SmartCardConnection} of its own, so it can host a {@link SecurityDomainSession} with its
+ * own secure channel. For example, a long-lived session with the Security Domain can stay open on one channel while
+ * other channels select and work with applications, without repeating the handshake.
+ * <p>
+ * Sessions on different channels may be used from different threads. Each exchange takes the turn of its channel
+ * as a whole, in the order the exchanges are started: the commands of a command chain are sent without commands of
+ * other channels in between, and the remaining response data, indicated by SW1 {@code 61}, is read with GET RESPONSE
+ * before the turn is passed on. The responses of a channel are therefore returned in full, and the thread sending a
+ * command chain keeps the turn until the last command of the chain is answered.
+ * <p>
+ * A chain, that is not continued, is ended by the next command of the same thread, by closing its channel, or by
+ * the sessions when a chained command fails before its last command is sent. Commands with the chaining bit in CLA
+ * sent directly over a channel connection must therefore be followed by the last command of the chain, or the channel
+ * closed, otherwise the other channels wait for their turn.
+ */
+public final class ChannelMultiplexer implements Closeable {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(ChannelMultiplexer.class);
+
+    private static final byte INS_MANAGE_CHANNEL = (byte) 0x70;
+    private static final byte P1_OPEN = (byte) 0x00;
+    private static final byte P1_CLOSE = (byte) 0x80;
+    private static final byte INS_GET_RESPONSE = (byte) 0xC0;
+    private static final byte SW1_HAS_MORE_DATA = 0x61;
+    private static final byte CLA_CHAINING = 0x10;
+
+    private final SmartCardConnection connection;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final LogicalChannel basicChannel;
+
+    /**
+     * @param connection connection to the smart card, closed when the multiplexer is closed
+     */
+    public ChannelMultiplexer(SmartCardConnection connection) {
+        this.connection = connection;
+        basicChannel = new LogicalChannel(this, LogicalChannel.BASIC_CHANNEL);
+    }
+
+    /**
+     * @return connection to the basic channel
+     */
+    public SmartCardConnection basicChannel() {
+        return basicChannel;
+    }
+
+    /**
+     * Opens a new logical channel with MANAGE CHANNEL. The card selects its default application on the new channel.
+     *
+     * @return connection to the new channel, closing it closes the channel on the card
+     * @throws IOException   in case of connection or communication error
+     * @throws ApduException in case the card does not open a new channel
+     */
+    public SmartCardConnection openChannel() throws IOException, ApduException {
+        final ApduResponse response = new ApduResponse(
+            transmit(new byte[]{0x00, INS_MANAGE_CHANNEL, P1_OPEN, 0x00, 0x01}));
+        if (response.getSw() != SW.OK) {
+            throw new ApduException(response.getSw());
+        }
+        if (response.dataLength() != 1) {
+            throw new IOException("Unexpected MANAGE CHANNEL response length: " + response.dataLength());
+        }
+        final int channel = response.getData()[0] & 0xFF;
+        if (channel == LogicalChannel.BASIC_CHANNEL || channel > LogicalChannel.MAX_CHANNEL) {
+            // The channel can't be addressed in CLA, so it is closed from the basic channel
+            closeChannel(LogicalChannel.BASIC_CHANNEL, channel);
+            throw new IOException("Unsupported logical channel number: " + channel);
+        }
+        Logger.debug(logger, "Logical channel {} opened", channel);
+        return new LogicalChannel(this, channel);
+    }
+
+    /**
+     * Closes the connection. The logical channels, that are still open, are closed by the card.
+     */
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    boolean isExtendedLengthApduSupported() {
+        return connection.isExtendedLengthApduSupported();
+    }
+
+    /**
+     * Sends a command in the turn of its channel, see {@link ChannelMultiplexer}
+     *
+     * @return the full response, data followed by the SW of the last chunk
+     */
+    byte[] transmit(byte[] apdu) throws IOException {
+        lock.lock();
+        boolean chainContinues = false;
+        try {
+            final byte[] response = readRemaining(apdu[0], connection.sendAndReceive(apdu));
+            chainContinues = continuesChain(apdu[0], response, response.length);
+            return response;
+        } finally {
+            endTurn(chainContinues);
+        }
+    }
+
+    /**
+     * Sends a command in the turn of its channel, see {@link ChannelMultiplexer}
+     *
+     * @return the length of the full response written to {@code response}
+     */
+    int transmit(ByteBuffer command, ByteBuffer response) throws IOException {
+        lock.lock();
+        boolean chainContinues = false;
+        try {
+            final byte cla = command.get(command.position());
+            final int start = response.position();
+            int length;
+            try {
+                length = connection.sendAndReceive(command, response);
+            } catch (ResponseOverflowException e) {
+                throw new ResponseOverflowException(readRemaining(cla, e.getResponse()));
+            }
+            if (length >= 2 && response.get(start + length - 2) == SW1_HAS_MORE_DATA) {
+                final byte[] chunk = new byte[length];
+                response.position(start);
+                response.get(chunk);
+                response.position(start);
+                final byte[] full = readRemaining(cla, chunk);
+                if (full.length > response.remaining()) {
+                    throw new ResponseOverflowException(full);
+                }
+                response.put(full);
+                length = full.length;
+            }
+            chainContinues = continuesChain(cla, response, start + length);
+            return length;
+        } finally {
+            endTurn(chainContinues);
+        }
+    }
+
+    /**
+     * Reads the remaining response data with GET RESPONSE, on the channel of the command
+     *
+     * @param cla      CLA of the command, that the response answers
+     * @param response the response to the command
+     * @return the full response, data followed by the SW of the last chunk
+     */
+    private byte[] readRemaining(byte cla, byte[] response) throws IOException {
+        if (response.length < 2 || response[response.length - 2] != SW1_HAS_MORE_DATA) {
+            return response;
+        }
+        // Channel bits of CLA, without secure messaging and chaining
+        final byte getResponseCla = LogicalChannel.encodeCla((byte) 0x00, channelOf(cla));
+        final byte[] getResponse = {getResponseCla, INS_GET_RESPONSE, 0x00, 0x00};
+        final ByteArrayOutputStream full = new ByteArrayOutputStream();
+        byte[] chunk = response;
+        while (chunk.length >= 2 && chunk[chunk.length - 2] == SW1_HAS_MORE_DATA) {
+            full.write(chunk, 0, chunk.length - 2);
+            chunk = connection.sendAndReceive(getResponse);
+        }
+        full.write(chunk, 0, chunk.length);
+        return full.toByteArray();
+    }
+
+    /**
+     * @return the channel number encoded in an interindustry CLA
+     */
+    private static int channelOf(byte cla) {
+        return (cla & 0x40) == 0 ? cla & 0x03 : (cla & 0x0F) + 4;
+    }
+
+    /**
+     * @return true if the command is a command of a chain, that was accepted, so the chain continues
+     */
+    private static boolean continuesChain(byte cla, byte[] response, int length) {
+        return (cla & CLA_CHAINING) != 0 && length >= 2
+            && (short) ((response[length - 2] & 0xFF) << 8 | (response[length - 1] & 0xFF)) == SW.OK;
+    }
+
+    private static boolean continuesChain(byte cla, ByteBuffer response, int end) {
+        return (cla & CLA_CHAINING) != 0 && end >= 2 && response.getShort(end - 2) == SW.OK;
+    }
+
+    /**
+     * Ends the turn of the current exchange, or keeps it held once, if a command chain continues
+     */
+    private void endTurn(boolean chainContinues) {
+        final int kept = chainContinues ? 1 : 0;
+        while (lock.getHoldCount() > kept) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the turn of a command chain of the current thread, that is abandoned before its last command is sent.
+     * Does nothing, if the current thread does not hold the turn.
+     */
+    void abortChain() {
+        if (lock.isHeldByCurrentThread()) {
+            Logger.debug(logger, "Command chain abandoned, the turn is passed on");
+            endTurn(false);
+        }
+    }
+
+    void closeChannel(int channel) throws IOException {
+        closeChannel(channel, channel);
+    }
+
+    /**
+     * @param sendingChannel the channel to send MANAGE CHANNEL on
+     * @param channel        the channel to close
+     */
+    private void closeChannel(int sendingChannel, int channel) throws IOException {
+        final ApduResponse response = new ApduResponse(transmit(new byte[]{
+            LogicalChannel.encodeCla((byte) 0x00, sendingChannel), INS_MANAGE_CHANNEL, P1_CLOSE, (byte) channel}));
+        if (response.getSw() != SW.OK) {
+            throw new IOException("Logical channel " + channel + " couldn't be closed",
+                                  new ApduException(response.getSw()));
+        }
+        Logger.debug(logger, "Logical channel {} closed", channel);
+    }
+}
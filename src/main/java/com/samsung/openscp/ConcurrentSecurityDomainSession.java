@@ -0,0 +1,331 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.annotation.Nullable;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe facade of {@link SecurityDomainSession}, that many threads can submit commands to
+ * <p>
+ * Submitted operations are queued without locking, one queue per {@link Priority}, and run one at a time by a single
+ * drain task on the given executor, which is started when the first operation is queued and ends when the queues are
+ * empty. Operations of a priority run in the order they were submitted. A higher priority is served first, but an
+ * operation of a lower priority is not passed over more than {@value #MAX_PASSED_OVER} times in a row.
+ * <p>
+ * Operations, that depend on each other, e.g. authentication followed by secured commands, must be submitted with the
+ * same priority, or the later one only after the future of the earlier one completes. A failed operation does not
+ * prevent the other operations from running.
+ */
+public class ConcurrentSecurityDomainSession {
+    static final int MAX_PASSED_OVER = 4;
+
+    /**
+     * Priority class of an operation
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    /**
+     * Operation run with the session
+     */
+    @FunctionalInterface
+    public interface Operation<T> {
+        T run(SecurityDomainSession session) throws Exception;
+    }
+
+    private final SecurityDomainSession session;
+    private final Executor executor;
+    private final List<ConcurrentLinkedQueue<Task<?>>> queues;
+    // Number of queued operations, the drain task runs while it is not 0
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ConcurrentHashMap<GetDataKey, Task<byte[]>> queuedGetData = new ConcurrentHashMap<>();
+    private final AtomicBoolean closing = new AtomicBoolean();
+    @Nullable
+    private volatile Task<Void> closeTask;
+
+    // Accessed by the drain task only, the task is started and ended through pending
+    private final int[] passedOver;
+    private boolean closed = false;
+
+    /**
+     * @param connection implementation of connection to the smart card, called on {@code executor} only
+     * @param executor   executor to run the operations of the session on
+     */
+    public ConcurrentSecurityDomainSession(SmartCardConnection connection, Executor executor) {
+        this(new SecurityDomainSession(connection), executor);
+    }
+
+    /**
+     * @param connection       implementation of connection to the smart card, called on {@code executor} only
+     * @param executor         executor to run the operations of the session on
+     * @param securityProvider external security provider if your default JCA security provider doesn't support crypto
+     *                         algorithms required by the SCP protocol
+     */
+    public ConcurrentSecurityDomainSession(SmartCardConnection connection, Executor executor,
+                                           Provider securityProvider) {
+        this(new SecurityDomainSession(connection, securityProvider), executor);
+    }
+
+    ConcurrentSecurityDomainSession(SecurityDomainSession session, Executor executor) {
+        this.session = session;
+        this.executor = executor;
+        final int classes = Priority.values().length;
+        queues = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            queues.add(new ConcurrentLinkedQueue<>());
+        }
+        passedOver = new int[classes];
+    }
+
+    /**
+     * Queues an operation with {@link Priority#NORMAL} priority
+     *
+     * @return the result of the operation, cancelling it before the operation starts keeps the operation from running
+     */
+    public <T> CompletableFuture<T> submit(Operation<T> operation) {
+        return submit(Priority.NORMAL, operation);
+    }
+
+    /**
+     * Queues an operation
+     *
+     * @return the result of the operation, cancelling it before the operation starts keeps the operation from running.
+     * The cancelled operation stays queued until its turn and is skipped then.
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Operation<T> operation) {
+        final Task<T> task = new Task<>(operation);
+        enqueue(priority, task);
+        return task.result;
+    }
+
+    /**
+     * @see SecurityDomainSession#authenticate(ScpKeyParams, ScpMode)
+     */
+    public CompletableFuture<Void> authenticate(ScpKeyParams keyParams, ScpMode mode) {
+        return submit(session -> {
+            session.authenticate(keyParams, mode);
+            return null;
+        });
+    }
+
+    /**
+     * @see SecurityDomainSession#sendAndReceive(Apdu)
+     */
+    public CompletableFuture<byte[]> sendAndReceive(Apdu apdu) {
+        return sendAndReceive(Priority.NORMAL, apdu);
+    }
+
+    /**
+     * @see SecurityDomainSession#sendAndReceive(Apdu)
+     */
+    public CompletableFuture<byte[]> sendAndReceive(Priority priority, Apdu apdu) {
+        return submit(priority, session -> session.sendAndReceive(apdu));
+    }
+
+    /**
+     * @see SecurityDomainSession#getData(short, byte[])
+     */
+    public CompletableFuture<byte[]> getData(short tag, @Nullable byte[] data) {
+        return getData(Priority.NORMAL, tag, data, false);
+    }
+
+    /**
+     * Queues GET DATA
+     * <p>
+     * GET DATA does not change the state of the card, so with {@code coalesce} set a request, that is identical to
+     * a queued one, is not sent again, but completes with the response to the queued request. Requests submitted
+     * after the queued one has been sent are sent again. Cancelling the future of a coalesced request only detaches
+     * that caller, the shared request is sent anyway.
+     *
+     * @param coalesce whether to share the response of an identical queued request, regardless of its priority
+     * @see SecurityDomainSession#getData(short, byte[])
+     */
+    public CompletableFuture<byte[]> getData(Priority priority, short tag, @Nullable byte[] data, boolean coalesce) {
+        if (!coalesce) {
+            return submit(priority, session -> session.getData(tag, data));
+        }
+        final GetDataKey key = new GetDataKey(tag, data);
+        final Task<byte[]> created = new Task<>(session -> session.getData(tag, data));
+        final Task<byte[]> queued = queuedGetData.putIfAbsent(key, created);
+        if (queued != null) {
+            // Every caller gets its own copy of the response and may cancel its future alone
+            return queued.result.thenApply(byte[]::clone);
+        }
+        created.started = () -> queuedGetData.remove(key, created);
+        try {
+            enqueue(priority, created);
+        } catch (IllegalStateException e) {
+            // Requests, that have been coalesced in the meantime, would never complete otherwise
+            queuedGetData.remove(key, created);
+            created.result.completeExceptionally(e);
+            throw e;
+        }
+        return created.result.thenApply(byte[]::clone);
+    }
+
+    /**
+     * Closes the session once all operations queued before are completed. Operations submitted afterwards fail with
+     * {@link IllegalStateException}.
+     *
+     * @see SecurityDomainSession#close()
+     */
+    public CompletableFuture<Void> close() {
+        final Task<Void> task = new Task<>(session -> {
+            session.close();
+            return null;
+        });
+        task.started = () -> closed = true;
+        if (!closing.compareAndSet(false, true)) {
+            throw new IllegalStateException("Session is closed");
+        }
+        closeTask = task;
+        start();
+        return task.result;
+    }
+
+    private void enqueue(Priority priority, Task<?> task) {
+        if (closing.get()) {
+            throw new IllegalStateException("Session is closed");
+        }
+        queues.get(priority.ordinal()).offer(task);
+        start();
+    }
+
+    /**
+     * Counts a queued operation and starts the drain task, if it is not running
+     */
+    private void start() {
+        if (pending.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // The caller owns the queues now, the operations fail without running
+            drain(e);
+        }
+    }
+
+    private void drain() {
+        drain(null);
+    }
+
+    private void drain(@Nullable Throwable failure) {
+        do {
+            final Task<?> task = next();
+            if (failure != null) {
+                task.result.completeExceptionally(failure);
+            } else if (closed) {
+                task.result.completeExceptionally(new IllegalStateException("Session is closed"));
+            } else {
+                task.run(session);
+            }
+        } while (pending.decrementAndGet() != 0);
+    }
+
+    /**
+     * Takes the operation to run next. Every counted operation is queued before it is counted, so a queue is not
+     * empty or the session is to be closed.
+     */
+    private Task<?> next() {
+        int selected = -1;
+        for (int i = 0; i < queues.size(); i++) {
+            if (queues.get(i).isEmpty()) {
+                passedOver[i] = 0;
+            } else if (selected < 0 || passedOver[i] >= MAX_PASSED_OVER) {
+                selected = i;
+            }
+        }
+        if (selected < 0) {
+            final Task<Void> task = closeTask;
+            closeTask = null;
+            return task;
+        }
+        for (int i = 0; i < queues.size(); i++) {
+            if (i != selected && !queues.get(i).isEmpty()) {
+                passedOver[i]++;
+            }
+        }
+        passedOver[selected] = 0;
+        return queues.get(selected).poll();
+    }
+
+    private static final class Task<T> {
+        final Operation<T> operation;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        @Nullable
+        Runnable started;
+
+        Task(Operation<T> operation) {
+            this.operation = operation;
+        }
+
+        void run(SecurityDomainSession session) {
+            if (started != null) {
+                started.run();
+            }
+            // Cancelled while queued
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(operation.run(session));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static final class GetDataKey {
+        private final short tag;
+        @Nullable
+        private final byte[] data;
+
+        GetDataKey(short tag, @Nullable byte[] data) {
+            this.tag = tag;
+            this.data = data == null ? null : data.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GetDataKey)) {
+                return false;
+            }
+            final GetDataKey other = (GetDataKey) o;
+            return tag == other.tag && Arrays.equals(data, other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tag + Arrays.hashCode(data);
+        }
+    }
+}
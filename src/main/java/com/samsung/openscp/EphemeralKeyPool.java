@@ -0,0 +1,239 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECParameterSpec;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-generated SCP11 ephemeral OCE key pairs (eSK.OCE.ECKA, ePK.OCE.ECKA).
+ * <p>
+ * Keeps a bounded pool per elliptic curve, which is refilled in background once the number of available key pairs
+ * drops to the low-water mark. This takes the key generation off the critical path of the session authentication.
+ * Every key pair is handed out exactly once, together with its public key in the encoding sent to the card, which is
+ * also prepared in background. If the pool of the curve is empty, the key pair is generated on the caller's thread.
+ * <p>
+ * The instance is thread-safe and may be shared by several sessions, see
+ * {@link SecurityDomainSession#setEphemeralKeyPool(EphemeralKeyPool)}.
+ */
+public final class EphemeralKeyPool implements Closeable {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(EphemeralKeyPool.class);
+
+    private final int capacity;
+    private final int lowWaterMark;
+    private final Executor executor;
+    private final boolean isExecutorOwned;
+    private final ConcurrentHashMap<EllipticCurveValues, CurvePool> pools = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    // Pool of the last looked up key, sessions keep taking key pairs for the same PK.SD.ECKA
+    @Nullable
+    private volatile Pair<PublicKey, CurvePool> lastPool;
+
+    /**
+     * Creates a pool refilled by its own background daemon thread
+     *
+     * @param capacity     maximum number of key pairs kept per curve
+     * @param lowWaterMark number of available key pairs per curve that triggers refill
+     */
+    public EphemeralKeyPool(final int capacity, final int lowWaterMark) {
+        this(capacity, lowWaterMark, Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "openscp-ephemeral-key-pool");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates a pool refilled by the given executor
+     *
+     * @param capacity     maximum number of key pairs kept per curve
+     * @param lowWaterMark number of available key pairs per curve that triggers refill
+     * @param executor     executor running the refill tasks, is not shut down by {@link #close()}
+     */
+    public EphemeralKeyPool(final int capacity, final int lowWaterMark, final Executor executor) {
+        this(capacity, lowWaterMark, executor, false);
+    }
+
+    private EphemeralKeyPool(final int capacity,
+                             final int lowWaterMark,
+                             final Executor executor,
+                             final boolean isExecutorOwned) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (lowWaterMark < 0 || lowWaterMark >= capacity) {
+            throw new IllegalArgumentException("Low-water mark must be between 0 and capacity - 1");
+        }
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.executor = executor;
+        this.isExecutorOwned = isExecutorOwned;
+    }
+
+    /**
+     * Starts filling the pool for the curve of the given key, e.g. PK.SD.ECKA, ahead of the first authentication
+     *
+     * @param publicKey EC public key defining the curve
+     */
+    public void prefill(final PublicKey publicKey) {
+        poolOf((ECPublicKey) publicKey).refill();
+    }
+
+    /**
+     * @return number of key pairs taken from the pool
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of key pairs generated on the caller's thread because the pool was empty
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Drops all pooled key pairs and stops refilling. The own refill thread, if any, is shut down.
+     */
+    @Override
+    public void close() {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        for (CurvePool pool : pools.values()) {
+            pool.keyPairs.clear();
+        }
+        if (isExecutorOwned) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    /**
+     * Hands out a key pair on the curve of the given key. The key pair is removed from the pool.
+     *
+     * @param publicKey EC public key defining the curve, i.e. PK.SD.ECKA
+     * @return a never used key pair
+     */
+    PooledKeyPair take(final PublicKey publicKey) {
+        final CurvePool pool = poolOf((ECPublicKey) publicKey);
+        final PooledKeyPair keyPair = pool.keyPairs.poll();
+        if (pool.keyPairs.size() <= lowWaterMark) {
+            pool.refill();
+        }
+        if (keyPair != null) {
+            hitCount.incrementAndGet();
+            return keyPair;
+        }
+        missCount.incrementAndGet();
+        Logger.debug(logger, "Ephemeral key pool is empty, generating key pair inline");
+        return pool.generate();
+    }
+
+    private CurvePool poolOf(final ECPublicKey publicKey) {
+        final Pair<PublicKey, CurvePool> last = lastPool;
+        if (last != null && last.first == publicKey) {
+            return last.second;
+        }
+        final EllipticCurveValues curve = ((PublicKeyValues.Ec) PublicKeyValues.fromPublicKey(publicKey)).getCurveParams();
+        final CurvePool pool = pools.computeIfAbsent(curve, c -> new CurvePool(publicKey.getParams()));
+        lastPool = new Pair<>(publicKey, pool);
+        return pool;
+    }
+
+    /**
+     * Ephemeral key pair with its public key converted ahead of the authentication
+     */
+    static final class PooledKeyPair {
+        final KeyPair keyPair;
+        final PublicKeyValues.Ec publicKeyValues;
+
+        PooledKeyPair(final KeyPair keyPair) {
+            this.keyPair = keyPair;
+            this.publicKeyValues = (PublicKeyValues.Ec) PublicKeyValues.fromPublicKey(keyPair.getPublic());
+        }
+    }
+
+    private final class CurvePool {
+        private final ECParameterSpec params;
+        private final ArrayBlockingQueue<PooledKeyPair> keyPairs = new ArrayBlockingQueue<>(capacity);
+        // Number of refill requests, a single refill task runs while it is not 0
+        private final AtomicInteger refillRequests = new AtomicInteger();
+
+        CurvePool(final ECParameterSpec params) {
+            this.params = params;
+        }
+
+        void refill() {
+            if (closed.get() || refillRequests.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this::fill);
+            } catch (RejectedExecutionException e) {
+                refillRequests.set(0);
+                Logger.warn(logger, "Ephemeral key pool refill rejected", e);
+            }
+        }
+
+        /**
+         * Fills the pool up to its capacity, once more for every refill requested meanwhile
+         */
+        private void fill() {
+            int requests = refillRequests.get();
+            do {
+                try {
+                    while (!closed.get() && keyPairs.remainingCapacity() > 0) {
+                        keyPairs.offer(generate());
+                    }
+                } catch (RuntimeException e) {
+                    Logger.warn(logger, "Ephemeral key pool refill failed", e);
+                }
+                requests = refillRequests.addAndGet(-requests);
+            } while (requests != 0);
+        }
+
+        PooledKeyPair generate() {
+            try {
+                final KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+                kpg.initialize(params);
+                return new PooledKeyPair(kpg.generateKeyPair());
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Ephemeral key pair generation failed", e);
+            }
+        }
+    }
+}
@@ -34,6 +34,10 @@
  *   - Package and import statements updated during code move from the original project
  *   - Add flag to force include 0x00 Le in formatApdu() method
  *   - YubiKey/YubiKit/Yubico mentions removed from code and comments
+ *   - Format only the requested data range in formatApdu() method
+ *   - Format commands from a data buffer without copying it
+ *   - Format commands in the command buffer of an arena
+ *   - Encode the logical channel number of the connection into CLA
  */
 
 package com.samsung.openscp;
@@ -45,41 +49,45 @@ class ExtendedApduProcessor extends ApduFormatProcessor {
     private final int maxApduSize;
 
     ExtendedApduProcessor(SmartCardConnection connection, int maxApduSize) {
-        super(connection);
+        this(connection, new ApduArena(), maxApduSize);
+    }
+
+    ExtendedApduProcessor(SmartCardConnection connection, ApduArena arena, int maxApduSize) {
+        super(connection, arena, ApduArena.EXTENDED_RESPONSE_LENGTH);
         this.maxApduSize = maxApduSize;
     }
 
     @Override
-    byte[] formatApdu(byte cla,
+    ByteBuffer formatApdu(byte cla,
                       byte ins,
                       byte p1,
                       byte p2,
-                      byte[] data,
-                      int offset,
-                      int length,
+                      ByteBuffer data,
                       int le,
                       boolean forceAddLe) {
+        final int length = data.remaining();
         boolean shouldAddLe = (le > 0) || forceAddLe;
-        int bufSize = 5 + (data.length > 0 ? 2 : 0) + data.length;
+        int bufSize = 5 + (length > 0 ? 2 : 0) + length;
         if (shouldAddLe) {
             bufSize += 2;
         }
-        ByteBuffer buf = ByteBuffer.allocate(bufSize)
-                .put(cla)
+        if (bufSize > maxApduSize) {
+            throw new UnsupportedOperationException("APDU length exceeds smart card capability");
+        }
+        ByteBuffer buf = arena.command(bufSize)
+                .put(LogicalChannel.encodeCla(cla, channel))
                 .put(ins)
                 .put(p1)
                 .put(p2)
                 .put((byte) 0x00);
-        if (data.length > 0) {
-            buf.putShort((short) data.length).put(data);
+        if (length > 0) {
+            buf.putShort((short) length).put(data.duplicate());
         }
         if (shouldAddLe) {
             buf.putShort((short) le);
         }
-        if (buf.limit() > maxApduSize) {
-            throw new UnsupportedOperationException("APDU length exceeds smart card capability");
-        }
-        return buf.array();
+        buf.flip();
+        return buf;
     }
 
     @Override
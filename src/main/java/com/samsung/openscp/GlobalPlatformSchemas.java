@@ -0,0 +1,131 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import static com.samsung.openscp.TlvSchema.Cardinality.OPTIONAL;
+import static com.samsung.openscp.TlvSchema.Cardinality.REPEATED;
+import static com.samsung.openscp.TlvSchema.Cardinality.REQUIRED;
+import static com.samsung.openscp.TlvSchema.bytes;
+import static com.samsung.openscp.TlvSchema.constructed;
+import static com.samsung.openscp.TlvSchema.unsigned;
+
+/**
+ * {@link TlvSchema}s of the GlobalPlatform data objects exchanged by {@link SecurityDomainSession}
+ * <p>
+ * GP Card Specification v2.3.1 and Amendment F (SCP11) v1.4
+ */
+final class GlobalPlatformSchemas {
+    private GlobalPlatformSchemas() {
+    }
+
+    /**
+     * Key Information Data, GET DATA (E0) response: a Key Information Template per key
+     */
+    static final class KeyInformation {
+        static final TlvSchema.Element KEY_INFORMATION_TEMPLATE = bytes(0xC0, REPEATED);
+        static final TlvSchema SCHEMA = TlvSchema.strict("Key Information", KEY_INFORMATION_TEMPLATE);
+    }
+
+    /**
+     * Card Recognition Data, GET DATA (66) response
+     * <p>
+     * The OIDs in the templates are optional, as the card configuration and chip details templates (65, 66) may
+     * hold proprietary data only.
+     */
+    static final class CardRecognitionData {
+        static final TlvSchema.Element CARD_RECOGNITION_DATA = constructed(0x73, REQUIRED,
+            bytes(0x06, OPTIONAL),
+            constructed(0x60, OPTIONAL, bytes(0x06, OPTIONAL)),
+            constructed(0x63, OPTIONAL, bytes(0x06, OPTIONAL)),
+            constructed(0x64, REPEATED, bytes(0x06, OPTIONAL)),
+            constructed(0x65, OPTIONAL, bytes(0x06, OPTIONAL)),
+            constructed(0x66, OPTIONAL, bytes(0x06, OPTIONAL)));
+        static final TlvSchema SCHEMA = new TlvSchema("Card Recognition Data", CARD_RECOGNITION_DATA);
+    }
+
+    /**
+     * Supported KLOC or KLCC Identifiers, GET DATA (FF33, FF34) response: pairs of CA identifier and key reference
+     */
+    static final class CaIdentifiers {
+        static final TlvSchema.Element IDENTIFIER = bytes(0x42, REPEATED);
+        static final TlvSchema.Element KEY_REFERENCE = bytes(0x83, REPEATED, 2);
+        static final TlvSchema SCHEMA = new TlvSchema("CA Identifiers", IDENTIFIER, KEY_REFERENCE);
+    }
+
+    /**
+     * Certificate Store: GET DATA (BF21) request and response, STORE DATA (Certificate Store) command
+     */
+    static final class CertificateStore {
+        static final TlvSchema.Element REQUEST_KEY_REFERENCE = bytes(0x83, REQUIRED, 2);
+        static final TlvSchema REQUEST = new TlvSchema("Certificate Store request",
+            constructed(0xA6, REQUIRED, REQUEST_KEY_REFERENCE));
+
+        static final TlvSchema.Element GP_CERTIFICATE = bytes(0x7F21, REPEATED);
+        static final TlvSchema.Element X509_CERTIFICATE = bytes(0x30, REPEATED);
+        static final TlvSchema.Element CERTIFICATE_STORE = constructed(0xBF21, REQUIRED,
+            GP_CERTIFICATE,
+            X509_CERTIFICATE);
+        static final TlvSchema RESPONSE = TlvSchema.strict("Certificate Store", CERTIFICATE_STORE);
+
+        static final TlvSchema.Element STORE_KEY_REFERENCE = bytes(0x83, REQUIRED, 2);
+        static final TlvSchema.Element STORE_CERTIFICATE = bytes(0x30, REPEATED);
+        static final TlvSchema STORE = new TlvSchema("Certificate Store",
+            constructed(0xA6, REQUIRED, STORE_KEY_REFERENCE),
+            constructed(0xBF21, REQUIRED, STORE_CERTIFICATE));
+    }
+
+    /**
+     * STORE DATA (Allowlist) command
+     */
+    static final class Allowlist {
+        static final TlvSchema.Element KEY_REFERENCE = bytes(0x83, REQUIRED, 2);
+        static final TlvSchema.Element COUNTER = unsigned(0x92, OPTIONAL, 2);
+        static final TlvSchema.Element SERIAL_NUMBER = bytes(0x93, REPEATED);
+        static final TlvSchema SCHEMA = new TlvSchema("Allowlist",
+            constructed(0xA6, REQUIRED, KEY_REFERENCE),
+            COUNTER,
+            constructed(0x70, REQUIRED, SERIAL_NUMBER));
+    }
+
+    /**
+     * STORE DATA (CA Identifier) command
+     */
+    static final class CaIssuer {
+        static final TlvSchema.Element KLCC = unsigned(0x80, REQUIRED, 1);
+        static final TlvSchema.Element SUBJECT_KEY_IDENTIFIER = bytes(0x42, REQUIRED);
+        static final TlvSchema.Element KEY_REFERENCE = bytes(0x83, REQUIRED, 2);
+        static final TlvSchema SCHEMA = new TlvSchema("CA Issuer",
+            constructed(0xA6, REQUIRED, KLCC, SUBJECT_KEY_IDENTIFIER, KEY_REFERENCE));
+    }
+
+    /**
+     * DELETE (Key) command data
+     */
+    static final class DeleteKey {
+        static final TlvSchema.Element KEY_IDENTIFIER = unsigned(0xD0, OPTIONAL, 1);
+        static final TlvSchema.Element KEY_VERSION_NUMBER = unsigned(0xD2, OPTIONAL, 1);
+        static final TlvSchema SCHEMA = new TlvSchema("Delete Key", KEY_IDENTIFIER, KEY_VERSION_NUMBER);
+    }
+
+    /**
+     * GENERATE KEY response
+     */
+    static final class GeneratedKey {
+        static final TlvSchema.Element PUBLIC_KEY = bytes(0xB0, REQUIRED);
+        static final TlvSchema SCHEMA = new TlvSchema("Generated Key", PUBLIC_KEY);
+    }
+}
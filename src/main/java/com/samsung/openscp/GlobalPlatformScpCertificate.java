@@ -23,7 +23,6 @@ import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
-import java.util.Map;
 
 
 /**
@@ -131,22 +130,31 @@ public class GlobalPlatformScpCertificate implements ScpCertificate {
         if (certificateBytes == null) {
             throw new CertificateException("Certificate is missed");
         }
-        final Map<Integer, byte[]> certificateTlvs = Tlvs.decodeMap(certificateBytes);
-        final byte[] certificateFieldsBytes = certificateTlvs.get(CERTIFICATE_TAG);
-        if (certificateFieldsBytes == null) {
-            throw new CertificateException("Certificate tag is missed");
+        try {
+            final TlvIndex certificateTlvs = new TlvIndex(certificateBytes);
+            if (!certificateTlvs.contains(CERTIFICATE_TAG)) {
+                throw new CertificateException("Certificate tag is missed");
+            }
+            final TlvIndex certificateFields = certificateTlvs.getNested(CERTIFICATE_TAG);
+            return parseFields(certificateBytes, certificateFields);
+        } catch (BadResponseException e) {
+            throw new CertificateException(e.getMessage());
         }
-        final Map<Integer, byte[]> certificateFields = Tlvs.decodeMap(certificateFieldsBytes);
-        final byte[] serialNumber = certificateFields.get(0x93);
-        final byte[] caIdentifier = certificateFields.get(0x42);
-        final byte[] subjectIdentifier = certificateFields.get(0x5F20);
-        final byte[] keyUsage = certificateFields.get(0x95);
-        final byte[] effectiveDate = certificateFields.get(0x5F25);
-        final byte[] expirationDate = certificateFields.get(0x5F24);
+    }
+
+    private static GlobalPlatformScpCertificate parseFields(final byte[] certificateBytes,
+                                                            final TlvIndex certificateFields)
+            throws CertificateException, BadResponseException {
+        final byte[] serialNumber = certificateFields.getValue(0x93);
+        final byte[] caIdentifier = certificateFields.getValue(0x42);
+        final byte[] subjectIdentifier = certificateFields.getValue(0x5F20);
+        final byte[] keyUsage = certificateFields.getValue(0x95);
+        final byte[] effectiveDate = certificateFields.getValue(0x5F25);
+        final byte[] expirationDate = certificateFields.getValue(0x5F24);
         final byte[] discretionaryData = parseDiscretionaryData(certificateFields);
-        final byte[] authorizations = certificateFields.get(0xBF20);
+        final byte[] authorizations = certificateFields.getValue(0xBF20);
         final PublicKey publicKey = parsePublicKeyFromTlv(certificateFields);
-        final byte[] signature = certificateFields.get(0x5F37);
+        final byte[] signature = certificateFields.getValue(0x5F37);
 
         return new GlobalPlatformScpCertificate(
             certificateBytes,
@@ -162,28 +170,27 @@ public class GlobalPlatformScpCertificate implements ScpCertificate {
             signature);
     }
 
-    private static byte[] parseDiscretionaryData(final Map<Integer, byte[]> certificateFields) {
-        byte[] discretionaryData = certificateFields.get(0x53);
+    private static byte[] parseDiscretionaryData(final TlvIndex certificateFields) {
+        byte[] discretionaryData = certificateFields.getValue(0x53);
         if (discretionaryData == null) {
-            discretionaryData = certificateFields.get(0x73);
+            discretionaryData = certificateFields.getValue(0x73);
         }
         return discretionaryData;
     }
 
-    private static PublicKey parsePublicKeyFromTlv(final Map<Integer, byte[]> certificateFields)
-            throws CertificateException {
-        final byte[] publicKeyTlvBytes = certificateFields.get(0x7F49);
-        if (publicKeyTlvBytes == null) {
+    private static PublicKey parsePublicKeyFromTlv(final TlvIndex certificateFields)
+            throws CertificateException, BadResponseException {
+        if (!certificateFields.contains(0x7F49)) {
             throw new CertificateException("Public key is absent");
         }
 
-        final Map<Integer, byte[]> publicKeyFields = Tlvs.decodeMap(publicKeyTlvBytes);
-        final byte[] publicKeyEncodedPoint = publicKeyFields.get(0xB0);
+        final TlvIndex publicKeyFields = certificateFields.getNested(0x7F49);
+        final byte[] publicKeyEncodedPoint = publicKeyFields.getValue(0xB0);
         if (publicKeyEncodedPoint == null) {
             throw new CertificateException("Public key Q value is absent");
         }
 
-        final byte[] publicKeyReference = publicKeyFields.get(0xF0);
+        final byte[] publicKeyReference = publicKeyFields.getValue(0xF0);
         if (publicKeyReference == null) {
             throw new CertificateException("Key Parameter Reference is absent");
         }
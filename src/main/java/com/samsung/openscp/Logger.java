@@ -34,26 +34,16 @@
  *   - Package and import statements updated during code move from the original project
  *   - YubiKey/YubiKit/Yubico mentions removed from code and comments
  *   - Removed redundant `public` access modifiers
+ *   - Removed the static LoggerCore hook, logs always go to SLF4J
  */
 
 package com.samsung.openscp;
 
 import org.slf4j.event.Level;
-import org.slf4j.helpers.FormattingTuple;
-import org.slf4j.helpers.MessageFormatter;
 
-import javax.annotation.Nullable;
-
-@SuppressWarnings({"unused", "deprecation"})
+@SuppressWarnings("unused")
 final class Logger {
 
-    @Nullable
-    private static LoggerCore instance = null;
-
-    static void setLogger(@Nullable LoggerCore logger) {
-        instance = logger;
-    }
-
     static void trace(org.slf4j.Logger logger, String message) {
         log(Level.TRACE, logger, message);
     }
@@ -135,126 +125,82 @@ final class Logger {
     }
 
     private static void log(Level level, org.slf4j.Logger logger, String message) {
-        if (instance != null) {
-            if (Level.ERROR == level) {
-                LoggerCore.e(message, new Exception("Throwable missing in logger.error"));
-            } else {
-                LoggerCore.d(message);
-            }
-        } else {
-            switch (level) {
-                case TRACE:
-                    logger.trace(message);
-                    break;
-                case DEBUG:
-                    logger.debug(message);
-                    break;
-                case INFO:
-                    logger.info(message);
-                    break;
-                case WARN:
-                    logger.warn(message);
-                    break;
-                case ERROR:
-                    logger.error(message);
-                    break;
-            }
+        switch (level) {
+            case TRACE:
+                logger.trace(message);
+                break;
+            case DEBUG:
+                logger.debug(message);
+                break;
+            case INFO:
+                logger.info(message);
+                break;
+            case WARN:
+                logger.warn(message);
+                break;
+            case ERROR:
+                logger.error(message);
+                break;
         }
     }
 
     private static void log(Level level, org.slf4j.Logger logger, String format, Object arg) {
-        if (instance != null) {
-            logToInstance(level, MessageFormatter.format(format, arg));
-        } else {
-            switch (level) {
-                case TRACE:
-                    logger.trace(format, arg);
-                    break;
-                case DEBUG:
-                    logger.debug(format, arg);
-                    break;
-                case INFO:
-                    logger.info(format, arg);
-                    break;
-                case WARN:
-                    logger.warn(format, arg);
-                    break;
-                case ERROR:
-                    logger.error(format, arg);
-                    break;
-            }
+        switch (level) {
+            case TRACE:
+                logger.trace(format, arg);
+                break;
+            case DEBUG:
+                logger.debug(format, arg);
+                break;
+            case INFO:
+                logger.info(format, arg);
+                break;
+            case WARN:
+                logger.warn(format, arg);
+                break;
+            case ERROR:
+                logger.error(format, arg);
+                break;
         }
     }
 
     private static void log(Level level, org.slf4j.Logger logger, String format, Object arg1, Object arg2) {
-        if (instance != null) {
-            logToInstance(level, MessageFormatter.format(format, arg1, arg2));
-        } else {
-            switch (level) {
-                case TRACE:
-                    logger.trace(format, arg1, arg2);
-                    break;
-                case DEBUG:
-                    logger.debug(format, arg1, arg2);
-                    break;
-                case INFO:
-                    logger.info(format, arg1, arg2);
-                    break;
-                case WARN:
-                    logger.warn(format, arg1, arg2);
-                    break;
-                case ERROR:
-                    logger.error(format, arg1, arg2);
-                    break;
-            }
+        switch (level) {
+            case TRACE:
+                logger.trace(format, arg1, arg2);
+                break;
+            case DEBUG:
+                logger.debug(format, arg1, arg2);
+                break;
+            case INFO:
+                logger.info(format, arg1, arg2);
+                break;
+            case WARN:
+                logger.warn(format, arg1, arg2);
+                break;
+            case ERROR:
+                logger.error(format, arg1, arg2);
+                break;
         }
     }
 
     private static void log(Level level, org.slf4j.Logger logger, String format, Object... args) {
-        if (instance != null) {
-            logToInstance(level, MessageFormatter.arrayFormat(format, args));
-        } else {
-            switch (level) {
-                case TRACE:
-                    logger.trace(format, args);
-                    break;
-                case DEBUG:
-                    logger.debug(format, args);
-                    break;
-                case INFO:
-                    logger.info(format, args);
-                    break;
-                case WARN:
-                    logger.warn(format, args);
-                    break;
-                case ERROR:
-                    logger.error(format, args);
-                    break;
-            }
+        switch (level) {
+            case TRACE:
+                logger.trace(format, args);
+                break;
+            case DEBUG:
+                logger.debug(format, args);
+                break;
+            case INFO:
+                logger.info(format, args);
+                break;
+            case WARN:
+                logger.warn(format, args);
+                break;
+            case ERROR:
+                logger.error(format, args);
+                break;
         }
     }
-
-    private static void logToInstance(Level level, FormattingTuple formattingTuple) {
-        if (instance != null) {
-
-            Throwable throwable = formattingTuple.getThrowable();
-            String message = formattingTuple.getMessage();
-
-            if (Level.ERROR == level) {
-                if (throwable != null) {
-                    LoggerCore.e(message, throwable);
-                } else {
-                    LoggerCore.e(message, new Throwable("Throwable missing in logger.error"));
-                }
-            } else {
-                if (throwable != null) {
-                    LoggerCore.d(message + " Throwable: " + throwable.getMessage());
-                } else {
-                    LoggerCore.d(message);
-                }
-            }
-        }
-    }
-
-
 }
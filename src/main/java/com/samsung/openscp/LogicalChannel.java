@@ -0,0 +1,123 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Connection to a logical channel of a {@link ChannelMultiplexer}
+ * <p>
+ * The commands are sent over the connection of the multiplexer. The channel number is encoded into CLA by the
+ * processors of {@link SmartCardProtocol} when the commands are formatted, see {@link #encodeCla}, so that a secure
+ * channel MAC covers the CLA as it is sent.
+ */
+final class LogicalChannel implements SmartCardConnection {
+    static final int BASIC_CHANNEL = 0;
+    static final int MAX_CHANNEL = 19;
+
+    private final ChannelMultiplexer multiplexer;
+    private final int channel;
+    private boolean closed = false;
+
+    LogicalChannel(ChannelMultiplexer multiplexer, int channel) {
+        if (channel < BASIC_CHANNEL || channel > MAX_CHANNEL) {
+            throw new IllegalArgumentException("Channel number must be between 0 and " + MAX_CHANNEL);
+        }
+        this.multiplexer = multiplexer;
+        this.channel = channel;
+    }
+
+    /**
+     * @return the channel number of the connection, 0 for the basic channel and for connections, that are not
+     * logical channels
+     */
+    static int numberOf(SmartCardConnection connection) {
+        return connection instanceof LogicalChannel ? ((LogicalChannel) connection).channel : BASIC_CHANNEL;
+    }
+
+    /**
+     * Encodes a channel number into CLA of the basic channel
+     * <p>
+     * Channels 0 to 3 are encoded in the first interindustry CLA, bits b2-b1. Channels 4 to 19 are encoded in the
+     * further interindustry CLA, bits b4-b1, where secure messaging is indicated by b6 instead of b4-b3.
+     * The proprietary class bit b8 and the command chaining bit b5 are kept as they are.
+     *
+     * @param cla     CLA of the basic channel
+     * @param channel the channel number
+     * @return CLA of the channel
+     */
+    static byte encodeCla(byte cla, int channel) {
+        if (channel < 4) {
+            return (byte) ((cla & 0xFC) | channel);
+        }
+        final int secureMessaging = (cla & 0x0C) != 0 ? 0x20 : 0x00;
+        return (byte) ((cla & 0x80) | 0x40 | secureMessaging | (cla & 0x10) | (channel - 4));
+    }
+
+    /**
+     * Ends the turn of a command chain, that is abandoned before its last command, if the connection is a logical
+     * channel, see {@link ChannelMultiplexer#abortChain()}
+     */
+    static void abortChain(SmartCardConnection connection) {
+        if (connection instanceof LogicalChannel) {
+            ((LogicalChannel) connection).multiplexer.abortChain();
+        }
+    }
+
+    int getChannel() {
+        return channel;
+    }
+
+    @Override
+    public byte[] sendAndReceive(byte[] apdu) throws IOException {
+        checkOpen();
+        return multiplexer.transmit(apdu);
+    }
+
+    @Override
+    public int sendAndReceive(ByteBuffer command, ByteBuffer response) throws IOException {
+        checkOpen();
+        return multiplexer.transmit(command, response);
+    }
+
+    @Override
+    public boolean isExtendedLengthApduSupported() {
+        return multiplexer.isExtendedLengthApduSupported();
+    }
+
+    /**
+     * Closes the logical channel on the card, the basic channel stays open until the multiplexer is closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        multiplexer.abortChain();
+        if (channel != BASIC_CHANNEL) {
+            multiplexer.closeChannel(channel);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Logical channel " + channel + " is closed");
+        }
+    }
+}
@@ -33,6 +33,7 @@
  * Modifications include:
  *   - Package and import statements updated during code move from the original project
  *   - Used standard APDU sizes from ISO 7816-4
+ *   - Added extended APDU overhead size
  */
 
 package com.samsung.openscp;
@@ -41,6 +42,11 @@ final class MaxApduSize {
     static final int SHORT = 0xFF;
     static final int EXTENDED = 0xFFFF;
 
+    /**
+     * Extended APDU bytes besides the command data: header, 3 bytes Lc and 2 bytes Le
+     */
+    static final int EXTENDED_OVERHEAD = 4 + 3 + 2;
+
     private MaxApduSize() {
         throw new IllegalStateException();
     }
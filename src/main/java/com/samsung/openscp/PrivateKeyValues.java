@@ -34,6 +34,7 @@
  *   - Package and import statements updated during code move from the original project
  *   - YubiKey/YubiKit/Yubico mentions removed from code and comments
  *   - Removed redundant `public` access modifiers
+ *   - Parse PKCS#8 encoding with TlvReader and TlvIndex
  */
 
 package com.samsung.openscp;
@@ -45,7 +46,6 @@ import java.security.interfaces.RSAPrivateKey;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.security.auth.DestroyFailedException;
@@ -91,20 +91,34 @@ public abstract class PrivateKeyValues implements Destroyable {
         if (privateKey instanceof RSAPrivateKey) {
             return Rsa.fromRsaPrivateKey((RSAPrivateKey) privateKey);
         } else {
-            byte[] encoded = privateKey.getEncoded();
             try {
-                Map<Integer, byte[]> tlvs = Tlvs.decodeMap(Tlvs.unpackValue(0x30, encoded));
-                List<Tlv> sequence = Tlvs.decodeList(tlvs.get(0x30));
-                byte[] algorithm = sequence.get(0).getValue();
+                // PrivateKeyInfo ::= SEQUENCE { version, privateKeyAlgorithm, privateKey OCTET STRING, ... }
+                TlvIndex privateKeyInfo = new TlvIndex(privateKey.getEncoded()).getNested(0x30);
+                // AlgorithmIdentifier ::= SEQUENCE { algorithm OBJECT IDENTIFIER, parameters OPTIONAL }
+                TlvIndex algorithmIdentifier = privateKeyInfo.getNested(0x30);
+                if (algorithmIdentifier.size() == 0 || algorithmIdentifier.getTagAt(0) != 0x06) {
+                    throw new BadResponseException("Algorithm identifier is missing");
+                }
+                byte[] algorithm = algorithmIdentifier.getValueAt(0);
+                TlvIndex privateKeyOctets = privateKeyInfo.getNested(0x04);
                 if (Arrays.equals(OID_ECDSA, algorithm)) {
-                    byte[] parameter = sequence.get(1).getValue();
-                    EllipticCurveValues curve = EllipticCurveValues.fromOid(parameter);
-                    sequence = Tlvs.decodeList(Tlvs.unpackValue(0x30, tlvs.get(0x04)));
-                    return new Ec(curve, sequence.get(1).getValue());
+                    if (algorithmIdentifier.size() < 2 || algorithmIdentifier.getTagAt(1) != 0x06) {
+                        throw new BadResponseException("Curve identifier is missing");
+                    }
+                    EllipticCurveValues curve = EllipticCurveValues.fromOid(algorithmIdentifier.getValueAt(1));
+                    // ECPrivateKey ::= SEQUENCE { version, privateKey OCTET STRING, ... }
+                    byte[] secret = privateKeyOctets.getNested(0x30).getValue(0x04);
+                    if (secret != null) {
+                        return createEc(curve, secret);
+                    }
                 } else {
                     for (EllipticCurveValues curve : Arrays.asList(EllipticCurveValues.Ed25519, EllipticCurveValues.X25519)) {
                         if (Arrays.equals(curve.getOid(), algorithm)) {
-                            return new Ec(curve, Tlvs.unpackValue(0x04, tlvs.get(0x04)));
+                            // CurvePrivateKey ::= OCTET STRING
+                            byte[] secret = privateKeyOctets.getValue(0x04);
+                            if (secret != null) {
+                                return createEc(curve, secret);
+                            }
                         }
                     }
                 }
@@ -116,6 +130,14 @@ public abstract class PrivateKeyValues implements Destroyable {
         throw new IllegalArgumentException("Unsupported private key type");
     }
 
+    private static Ec createEc(EllipticCurveValues curve, byte[] secret) {
+        try {
+            return new Ec(curve, secret);
+        } finally {
+            Arrays.fill(secret, (byte) 0);
+        }
+    }
+
     static class Ec extends PrivateKeyValues {
         private final EllipticCurveValues ellipticCurveValues;
         private final byte[] secret;
@@ -272,16 +294,20 @@ public abstract class PrivateKeyValues implements Destroyable {
          */
         static List<BigInteger> parsePkcs8RsaKeyValues(byte[] derKey) {
             try {
-                List<Tlv> numbers = Tlvs.decodeList(
-                        Tlvs.decodeMap(
-                                Tlvs.decodeMap(
-                                        Tlvs.unpackValue(0x30, derKey)
-                                ).get(0x04)
-                        ).get(0x30)
-                );
+                // PrivateKeyInfo ::= SEQUENCE { version, privateKeyAlgorithm, privateKey OCTET STRING, ... }
+                TlvReader reader = new TlvReader(derKey);
+                reader.next(0x30);
+                reader.enter();
+                reader.next(0x02);
+                reader.next(0x30);
+                reader.next(0x04);
+                reader.enter();
+                // RSAPrivateKey ::= SEQUENCE { version, n, e, d, p, q, dmp1, dmq1, iqmp }
+                reader.next(0x30);
+                reader.enter();
                 List<BigInteger> values = new ArrayList<>();
-                for (Tlv number : numbers) {
-                    values.add(new BigInteger(number.getValue()));
+                while (reader.next()) {
+                    values.add(new BigInteger(reader.valueBytes()));
                 }
                 BigInteger first = values.remove(0);
                 if (first.intValue() != 0) {
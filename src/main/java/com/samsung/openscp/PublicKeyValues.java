@@ -34,6 +34,8 @@
  *   - Package and import statements updated during code move from the original project
  *   - Removed redundant `public` access modifiers
  *   - Add missed JavaDocs
+ *   - Parse X.509 SubjectPublicKeyInfo encoding with TlvReader
+ *   - Build X.509 SubjectPublicKeyInfo encoding with TlvWriter
  */
 
 package com.samsung.openscp;
@@ -49,8 +51,6 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
 
 import static com.samsung.openscp.ByteUtils.intToLength;
 
@@ -96,15 +96,24 @@ public abstract class PublicKeyValues {
         if (publicKey instanceof RSAPublicKey) {
             return new Rsa(((RSAPublicKey) publicKey).getModulus(), ((RSAPublicKey) publicKey).getPublicExponent());
         }
-        byte[] encoded = publicKey.getEncoded();
         try {
-            Map<Integer, byte[]> tlvs = Tlvs.decodeMap(Tlvs.unpackValue(0x30, encoded));
-            List<Tlv> sequence = Tlvs.decodeList(tlvs.get(0x30));
-            byte[] algorithm = sequence.get(0).getValue();
-            byte[] bitString = tlvs.get(0x03);
-            byte[] encodedKey = Arrays.copyOfRange(bitString, 1, bitString.length);
+            // SubjectPublicKeyInfo ::= SEQUENCE { algorithm AlgorithmIdentifier, subjectPublicKey BIT STRING }
+            TlvReader reader = new TlvReader(publicKey.getEncoded());
+            reader.next(0x30);
+            reader.enter();
+            reader.next(0x30);
+            reader.enter();
+            reader.next(0x06);
+            byte[] algorithm = reader.valueBytes();
+            byte[] parameter = reader.next() ? reader.valueBytes() : null;
+            reader.exit();
+            reader.next(0x03);
+            ByteBuffer bitString = reader.value();
+            // Skip the number of unused bits
+            bitString.get();
+            byte[] encodedKey = new byte[bitString.remaining()];
+            bitString.get(encodedKey);
             if (Arrays.equals(OID_ECDSA, algorithm)) {
-                byte[] parameter = sequence.get(1).getValue();
                 EllipticCurveValues curve = EllipticCurveValues.fromOid(parameter);
                 return Ec.fromEncodedPoint(curve, encodedKey);
             } else {
@@ -144,10 +153,12 @@ public abstract class PublicKeyValues {
 
         @Override
         public byte[] getEncoded() {
-            return new Tlv(0x30, Tlvs.encodeList(Arrays.asList(
-                    new Tlv(0x30, new Tlv(0x06, ellipticCurveValues.getOid()).getBytes()),
-                    new Tlv(0x03, ByteBuffer.allocate(1 + bytes.length).put((byte) 0).put(bytes).array())
-            ))).getBytes();
+            return new TlvWriter()
+                    .begin(0x30)
+                    .begin(0x30).put(0x06, ellipticCurveValues.getOid()).end()
+                    .begin(0x03).putRaw((byte) 0).putRaw(bytes).end()
+                    .end()
+                    .toByteArray();
         }
 
         @Override
@@ -207,14 +218,12 @@ public abstract class PublicKeyValues {
 
         @Override
         public byte[] getEncoded() {
-            byte[] encodedPoint = getEncodedPoint();
-            return new Tlv(0x30, Tlvs.encodeList(Arrays.asList(
-                    new Tlv(0x30, Tlvs.encodeList(Arrays.asList(
-                            new Tlv(0x06, OID_ECDSA),
-                            new Tlv(0x06, ellipticCurveValues.getOid())
-                    ))),
-                    new Tlv(0x03, ByteBuffer.allocate(1 + encodedPoint.length).put((byte) 0).put(encodedPoint).array())
-            ))).getBytes();
+            return new TlvWriter()
+                    .begin(0x30)
+                    .begin(0x30).put(0x06, OID_ECDSA).put(0x06, ellipticCurveValues.getOid()).end()
+                    .begin(0x03).putRaw((byte) 0).putRaw(getEncodedPoint()).end()
+                    .end()
+                    .toByteArray();
         }
 
         @Override
@@ -267,22 +276,15 @@ public abstract class PublicKeyValues {
 
         @Override
         public byte[] getEncoded() {
-            byte[] bitstring = new Tlv(0x30, Tlvs.encodeList(Arrays.asList(
-                    new Tlv(0x02, modulus.toByteArray()),
-                    new Tlv(0x02, publicExponent.toByteArray())
-            ))).getBytes();
-            return new Tlv(0x30, Tlvs.encodeList(Arrays.asList(
-                    new Tlv(0x30, Tlvs.encodeList(Arrays.asList(
-                            new Tlv(0x06, OID_RSA_ENCRYPTION),
-                            new Tlv(0x05, new byte[0])
-                    ))),
-                    new Tlv(0x03, ByteBuffer
-                            .allocate(1 + bitstring.length)
-                            .put((byte) 0)
-                            .put(bitstring)
-                            .array()
-                    )
-            ))).getBytes();
+            return new TlvWriter()
+                    .begin(0x30)
+                    .begin(0x30).put(0x06, OID_RSA_ENCRYPTION).put(0x05, new byte[0]).end()
+                    .begin(0x03)
+                    .putRaw((byte) 0)
+                    .begin(0x30).put(0x02, modulus.toByteArray()).put(0x02, publicExponent.toByteArray()).end()
+                    .end()
+                    .end()
+                    .toByteArray();
         }
 
         @Override
@@ -0,0 +1,43 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.BufferOverflowException;
+
+/**
+ * Thrown by the default {@link SmartCardConnection#sendAndReceive(java.nio.ByteBuffer, java.nio.ByteBuffer)}, when
+ * the response does not fit into the response buffer
+ * <p>
+ * The response has already been received from the card, so it is carried by the exception, and the
+ * {@link ApduArena} receiving it moves it into a larger buffer. Nothing is written to the response buffer.
+ */
+final class ResponseOverflowException extends BufferOverflowException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient byte[] response;
+
+    ResponseOverflowException(byte[] response) {
+        this.response = response;
+    }
+
+    /**
+     * @return the full response, data followed by SW
+     */
+    byte[] getResponse() {
+        return response;
+    }
+}
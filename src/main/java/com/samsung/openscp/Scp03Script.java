@@ -0,0 +1,147 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SCP03 session compiled ahead of time by {@link Scp03ScriptCompiler}: the secured commands in the order they are
+ * sent, each with the exact response the card is expected to return, R-MAC included
+ * <p>
+ * The binary form is: magic 'S' '3', version, the number of steps as 2 bytes, then for each step the command and the
+ * expected response, each preceded by its length as 2 bytes. All numbers are big-endian.
+ */
+public final class Scp03Script {
+    private static final byte[] MAGIC = {'S', '3'};
+    private static final byte VERSION = 1;
+    // Numbers of the binary form are 2 bytes
+    private static final int MAX_LENGTH = 0xFFFF;
+
+    private final List<byte[]> commands;
+    private final List<byte[]> responses;
+
+    Scp03Script(List<byte[]> commands, List<byte[]> responses) {
+        this.commands = Collections.unmodifiableList(commands);
+        this.responses = Collections.unmodifiableList(responses);
+    }
+
+    /**
+     * @return the number of commands of the script
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * @return the command of the step, as it is sent to the card
+     */
+    public byte[] getCommand(int step) {
+        return commands.get(step).clone();
+    }
+
+    /**
+     * @return the full response the card is expected to return to the command of the step, data followed by SW
+     */
+    public byte[] getExpectedResponse(int step) {
+        return responses.get(step).clone();
+    }
+
+    byte[] command(int step) {
+        return commands.get(step);
+    }
+
+    byte[] expectedResponse(int step) {
+        return responses.get(step);
+    }
+
+    /**
+     * @return the binary form of the script
+     * @throws IllegalArgumentException in case the script has more steps, or a step is longer, than the binary form
+     *                                  can hold
+     */
+    public byte[] encode() {
+        checkLength("Number of SCP03 script steps", size());
+        int length = MAGIC.length + 1 + 2;
+        for (int i = 0; i < size(); i++) {
+            checkLength("SCP03 script command length", commands.get(i).length);
+            checkLength("SCP03 script response length", responses.get(i).length);
+            length += 2 + commands.get(i).length + 2 + responses.get(i).length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length)
+                .put(MAGIC)
+                .put(VERSION)
+                .putShort((short) size());
+        for (int i = 0; i < size(); i++) {
+            buffer.putShort((short) commands.get(i).length).put(commands.get(i));
+            buffer.putShort((short) responses.get(i).length).put(responses.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Parses the binary form of a script
+     *
+     * @param encoded the binary form, as returned by {@link #encode()}
+     * @return the script
+     * @throws IllegalArgumentException in case the binary form is malformed or of an unsupported version
+     */
+    public static Scp03Script decode(byte[] encoded) {
+        final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        try {
+            if (buffer.get() != MAGIC[0] || buffer.get() != MAGIC[1]) {
+                throw new IllegalArgumentException("Not an SCP03 script");
+            }
+            final byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported SCP03 script version: " + version);
+            }
+            final int size = buffer.getShort() & 0xFFFF;
+            final List<byte[]> commands = new ArrayList<>(size);
+            final List<byte[]> responses = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                commands.add(readBlock(buffer));
+                final byte[] response = readBlock(buffer);
+                if (response.length < 2) {
+                    throw new IllegalArgumentException("Expected response must contain at least 2 bytes");
+                }
+                responses.add(response);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected data after the last SCP03 script step");
+            }
+            return new Scp03Script(commands, responses);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated SCP03 script", e);
+        }
+    }
+
+    private static void checkLength(String name, int length) {
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException(name + " exceeds " + MAX_LENGTH + ": " + length);
+        }
+    }
+
+    private static byte[] readBlock(ByteBuffer buffer) {
+        final byte[] block = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(block);
+        return block;
+    }
+}
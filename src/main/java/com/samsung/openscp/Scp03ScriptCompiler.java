@@ -0,0 +1,205 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles an SCP03 session into a {@link Scp03Script} before the card is present
+ * <p>
+ * A card configured for the pseudo-random card challenge (bit b5 of the "i" parameter) derives its challenge from
+ * the sequence counter of the key set and the AID of the Security Domain. Knowing them, the whole session is
+ * predictable: INITIALIZE UPDATE with its response, EXTERNAL AUTHENTICATE and every secured command with the
+ * response the card returns to it. The script is then run by {@link Scp03ScriptReplayer} without any cryptography.
+ * <p>
+ * Commands are wrapped as short APDUs on the basic channel. Each command must fit into a single secured command, as
+ * the responses to chained segments are not part of the script.
+ * <p>
+ * A script is valid for a single session, with the sequence counter it was compiled for. Once the card has
+ * incremented its counter, for example by a failed replay, the script must be compiled again.
+ */
+public final class Scp03ScriptCompiler {
+    private static final byte KEY_INFO_SCP03 = 0x03;
+    private static final int DIVERSIFICATION_DATA_SIZE = 10;
+
+    private final ScpMode mode;
+    private final SecurityLevel level;
+    private final ScpState state;
+    private final ScpProcessor processor;
+    private final List<byte[]> commands = new ArrayList<>();
+    private final List<byte[]> responses = new ArrayList<>();
+
+    /**
+     * @param keyParams           the key set of the session, the same as the card has. The key version number must
+     *                            be the one of the key set, KVN 0 ("first available key") is not supported, as the
+     *                            card answers INITIALIZE UPDATE with the actual KVN.
+     * @param mode                SCP mode
+     * @param level               security level of the session
+     * @param sdAid               AID of the Security Domain
+     * @param diversificationData the key diversification data, that the card returns in INITIALIZE UPDATE
+     * @param iParameter          the SCP03 "i" parameter of the card, must have the pseudo-random card challenge set
+     * @param sequenceCounter     the sequence counter, that the card returns in INITIALIZE UPDATE of the session
+     * @throws IllegalArgumentException      in case the key version number is 0, or a parameter is invalid
+     * @throws UnsupportedOperationException in case the card does not support the security level
+     */
+    public Scp03ScriptCompiler(Scp03KeyParams keyParams, ScpMode mode, SecurityLevel level, byte[] sdAid,
+                               byte[] diversificationData, byte iParameter, int sequenceCounter) {
+        this(keyParams, mode, level, sdAid, diversificationData, iParameter, sequenceCounter, null);
+    }
+
+    Scp03ScriptCompiler(Scp03KeyParams keyParams, ScpMode mode, SecurityLevel level, byte[] sdAid,
+                        byte[] diversificationData, byte iParameter, int sequenceCounter,
+                        @Nullable byte[] hostChallenge) {
+        if (keyParams.getKeyRef().getKvn() == 0) {
+            throw new IllegalArgumentException("Key version number must be the one of the card's key set, not 0");
+        }
+        if (diversificationData.length != DIVERSIFICATION_DATA_SIZE) {
+            throw new IllegalArgumentException("Diversification data must be " + DIVERSIFICATION_DATA_SIZE +
+                                               " bytes long");
+        }
+        if ((iParameter & ScpState.I_PSEUDO_RANDOM_CARD_CHALLENGE) == 0) {
+            throw new IllegalArgumentException("Card challenge must be pseudo-random to be known in advance");
+        }
+        if (sequenceCounter < 0 || sequenceCounter >= 1 << 8 * ScpState.SEQUENCE_COUNTER_SIZE) {
+            throw new IllegalArgumentException("Sequence counter must fit into " + ScpState.SEQUENCE_COUNTER_SIZE +
+                                               " bytes");
+        }
+        ScpState.checkCardSecurityLevel(iParameter, level);
+        this.mode = mode;
+        this.level = level;
+
+        final int cryptoBlobSize = ScpMode.getBlobSizeByMode(mode);
+        if (hostChallenge == null) {
+            hostChallenge = RandomUtils.getRandomBytes(cryptoBlobSize);
+        }
+        final byte[] counter = {
+            (byte) (sequenceCounter >> 16), (byte) (sequenceCounter >> 8), (byte) sequenceCounter
+        };
+        final byte[] cardChallenge = ScpState.deriveCardChallenge(keyParams.keys, counter, sdAid, mode);
+        final ScpState.Scp03Handshake handshake =
+                ScpState.deriveScp03Handshake(keyParams.keys, hostChallenge, cardChallenge, mode);
+
+        // INITIALIZE UPDATE, formatted as ScpState.scp03Init() sends it
+        final byte kvn = keyParams.getKeyRef().getKvn();
+        commands.add(ByteBuffer.allocate(5 + cryptoBlobSize + 1)
+                .put((byte) 0x80).put(SecurityDomainSession.INS_INITIALIZE_UPDATE).put(kvn).put((byte) 0x00)
+                .put((byte) cryptoBlobSize).put(hostChallenge).put((byte) 0x00)
+                .array());
+        responses.add(ByteBuffer.allocate(DIVERSIFICATION_DATA_SIZE + 3 + cryptoBlobSize * 2 + counter.length + 2)
+                .put(diversificationData)
+                .put(kvn).put(KEY_INFO_SCP03).put(iParameter)
+                .put(cardChallenge)
+                .put(handshake.cardCryptogram)
+                .put(counter)
+                .putShort(SW.OK)
+                .array());
+
+        state = new ScpState(handshake.sessionKeys, new byte[16]);
+        processor = new ScpProcessor(new OfflineConnection(), state, false, MaxApduSize.SHORT, (byte) 0xC0, mode,
+                                     level);
+
+        // EXTERNAL AUTHENTICATE, the response is neither MACed nor encrypted
+        final Apdu externalAuthenticate = new Apdu(0x84, SecurityDomainSession.INS_EXTERNAL_AUTHENTICATE,
+                                                   level.getScp03SecurityLevel(), 0, handshake.hostCryptogram);
+        commands.add(wrap(externalAuthenticate, false));
+        responses.add(new byte[]{(byte) (SW.OK >> 8), (byte) SW.OK});
+    }
+
+    /**
+     * Adds a command, that the card is expected to process without response data
+     *
+     * @param command the command to wrap
+     * @return this instance
+     * @throws IllegalArgumentException in case the command does not fit into a single secured short APDU
+     */
+    public Scp03ScriptCompiler add(Apdu command) {
+        return add(command, new byte[0]);
+    }
+
+    /**
+     * Adds a command, that the card is expected to process with the given response data
+     *
+     * @param command      the command to wrap
+     * @param expectedData the plain response data, that the card is expected to return with SW 9000
+     * @return this instance
+     * @throws IllegalArgumentException in case the command does not fit into a single secured short APDU
+     */
+    public Scp03ScriptCompiler add(Apdu command, byte[] expectedData) {
+        final int maxLength = processor.getMaxSegmentLength(true);
+        if (command.dataLength() > maxLength) {
+            throw new IllegalArgumentException("Command data must be no longer than " + maxLength + " bytes");
+        }
+        commands.add(wrap(command, true));
+
+        final int macSize = ScpMode.getBlobSizeByMode(mode);
+        final ByteBuffer response = ByteBuffer.allocate(ScpState.getPaddedLength(expectedData.length) + macSize + 2);
+        if (level.responseEncryption) {
+            state.encryptResponse(ByteBuffer.wrap(expectedData), response);
+        } else {
+            response.put(expectedData);
+        }
+        if (level.responseMac) {
+            final ByteBuffer macInput = response.duplicate();
+            macInput.flip();
+            state.rmac(macInput, SW.OK, mode, response);
+        }
+        response.putShort(SW.OK);
+        response.flip();
+        final byte[] expectedResponse = new byte[response.remaining()];
+        response.get(expectedResponse);
+        responses.add(expectedResponse);
+        return this;
+    }
+
+    /**
+     * @return the script of the commands added so far, preceded by the handshake
+     */
+    public Scp03Script compile() {
+        return new Scp03Script(new ArrayList<>(commands), new ArrayList<>(responses));
+    }
+
+    private byte[] wrap(Apdu apdu, boolean encrypt) {
+        final ByteBuffer data = apdu.dataBuffer();
+        final byte[] command = new byte[processor.getWrappedCommandLength(data.remaining(), apdu.getLe(), encrypt)];
+        processor.wrapCommand(apdu.getCla(), apdu.getIns(), apdu.getP1(), apdu.getP2(), data, apdu.getLe(), encrypt,
+                              ByteBuffer.wrap(command));
+        return command;
+    }
+
+    /**
+     * The processor is only used to wrap commands, there is no card to send them to
+     */
+    private static final class OfflineConnection implements SmartCardConnection {
+        @Override
+        public byte[] sendAndReceive(byte[] apdu) throws IOException {
+            throw new IOException("No card is connected while compiling a script");
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+
+/**
+ * Runs a {@link Scp03Script} over a connection: sends the pre-wrapped commands and compares each response to the
+ * expected one byte by byte, so no keys and no cryptography are needed at run time
+ * <p>
+ * Responses split with SW 61XX are read with GET RESPONSE and compared as a whole. The card must have the Security
+ * Domain the script was compiled for selected.
+ */
+public final class Scp03ScriptReplayer {
+    private final ChainedResponseProcessor processor;
+
+    /**
+     * @param connection connection to the smart card
+     */
+    public Scp03ScriptReplayer(SmartCardConnection connection) {
+        processor = new ChainedResponseProcessor(connection, false, MaxApduSize.SHORT, (byte) 0xC0);
+    }
+
+    /**
+     * Sends all commands of the script, stopping at the first unexpected response
+     *
+     * @param script the script to run
+     * @throws IOException          in case of connection or communication error
+     * @throws ApduException        in case the card returns an error SW, that is not expected
+     * @throws BadResponseException in case a response differs from the expected one otherwise
+     */
+    public void replay(Scp03Script script) throws IOException, ApduException, BadResponseException {
+        for (int step = 0; step < script.size(); step++) {
+            final byte[] expected = script.expectedResponse(step);
+            final byte[] response = processor.transmitDetached(script.command(step));
+            if (MessageDigest.isEqual(expected, response)) {
+                continue;
+            }
+            final short sw = (short) (((response[response.length - 2] & 0xFF) << 8) |
+                                      (response[response.length - 1] & 0xFF));
+            final short expectedSw = (short) (((expected[expected.length - 2] & 0xFF) << 8) |
+                                              (expected[expected.length - 1] & 0xFF));
+            if (sw != expectedSw && sw != SW.OK) {
+                throw new ApduException(sw);
+            }
+            throw new BadResponseException("Unexpected response to step " + step + " of the script");
+        }
+    }
+}
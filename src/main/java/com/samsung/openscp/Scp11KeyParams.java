@@ -34,6 +34,9 @@
  *   - Package and import statements updated during code move from the original project
  *   - Added AES algorithm variable
  *   - Add missed JavaDocs
+ *   - Added session security level
+ *   - Added static shared secret cache
+ *   - Compute the static shared secret cache key once, not per handshake
  */
 
 package com.samsung.openscp;
@@ -61,6 +64,14 @@ public class Scp11KeyParams implements ScpKeyParams {
     final PrivateKey skOceEcka;
     final List<byte[]> certificates;
     final AesAlg sessionKeysAlg;
+    final SecurityLevel securityLevel;
+    @Nullable
+    final StaticSharedSecretCache staticSecretCache;
+    /**
+     * The key of the static shared secret in {@link #staticSecretCache}, null if there is no cache or no OCE key
+     */
+    @Nullable
+    final Object staticSecretCacheKey;
 
     /**
      * SCP11a- and SCP11c-specific constructor
@@ -77,12 +88,60 @@ public class Scp11KeyParams implements ScpKeyParams {
                           @Nullable PrivateKey skOceEcka,
                           List<byte[]> certificates,
                           AesAlg sessionKeysAlg) {
+        this(keyRef, pkSdEcka, oceKeyRef, skOceEcka, certificates, sessionKeysAlg,
+             SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC);
+    }
+
+    /**
+     * SCP11a- and SCP11c-specific constructor with the session security level
+     *
+     * @param keyRef the reference to the key set for associated SK.SD.ECKA
+     * @param pkSdEcka public key of the SD used for key agreement (PK.SD.ECKA)
+     * @param oceKeyRef the reference to the key set for associated SK.OCE.ECKA
+     * @param skOceEcka private key of the OCE used for key agreement (SK.OCE.ECKA)
+     * @param certificates OCE certificates in encoded form
+     * @param sessionKeysAlg AES algorithm of session keys that will be generated
+     * @param securityLevel security level of the session, sent as the session keys usage qualifier
+     */
+    public Scp11KeyParams(KeyRef keyRef, PublicKey pkSdEcka,
+                          @Nullable KeyRef oceKeyRef,
+                          @Nullable PrivateKey skOceEcka,
+                          List<byte[]> certificates,
+                          AesAlg sessionKeysAlg,
+                          SecurityLevel securityLevel) {
+        this(keyRef, pkSdEcka, oceKeyRef, skOceEcka, certificates, sessionKeysAlg, securityLevel, null);
+    }
+
+    /**
+     * SCP11a- and SCP11c-specific constructor with the session security level and the static shared secret cache
+     *
+     * @param keyRef the reference to the key set for associated SK.SD.ECKA
+     * @param pkSdEcka public key of the SD used for key agreement (PK.SD.ECKA)
+     * @param oceKeyRef the reference to the key set for associated SK.OCE.ECKA
+     * @param skOceEcka private key of the OCE used for key agreement (SK.OCE.ECKA)
+     * @param certificates OCE certificates in encoded form
+     * @param sessionKeysAlg AES algorithm of session keys that will be generated
+     * @param securityLevel security level of the session, sent as the session keys usage qualifier
+     * @param staticSecretCache cache of ECDH(SK.OCE.ECKA, PK.SD.ECKA), may be shared between key parameters
+     */
+    public Scp11KeyParams(KeyRef keyRef, PublicKey pkSdEcka,
+                          @Nullable KeyRef oceKeyRef,
+                          @Nullable PrivateKey skOceEcka,
+                          List<byte[]> certificates,
+                          AesAlg sessionKeysAlg,
+                          SecurityLevel securityLevel,
+                          @Nullable StaticSharedSecretCache staticSecretCache) {
         this.keyRef = keyRef;
         this.pkSdEcka = pkSdEcka;
         this.oceKeyRef = oceKeyRef;
         this.skOceEcka = skOceEcka;
         this.certificates = Collections.unmodifiableList(new ArrayList<>(certificates));
         this.sessionKeysAlg = sessionKeysAlg;
+        this.securityLevel = securityLevel;
+        this.staticSecretCache = staticSecretCache;
+        this.staticSecretCacheKey = staticSecretCache != null && skOceEcka != null
+            ? StaticSharedSecretCache.keyOf(skOceEcka, pkSdEcka)
+            : null;
         switch (keyRef.getKid()) {
             case ScpKid.SCP11b:
                 if (oceKeyRef != null || skOceEcka != null || !certificates.isEmpty()) {
@@ -111,6 +170,18 @@ public class Scp11KeyParams implements ScpKeyParams {
         this(keyRef, pkSdEcka, null, null, Collections.emptyList(), sessionKeysAlg);
     }
 
+    /**
+     * SCP11b-specific constructor with the session security level
+     *
+     * @param keyRef the reference to the key set for associated SK.SD.ECKA
+     * @param pkSdEcka public key of the SD used for key agreement (PK.SD.ECKA)
+     * @param sessionKeysAlg AES algorithm of session keys that will be generated
+     * @param securityLevel security level of the session, sent as the session keys usage qualifier
+     */
+    public Scp11KeyParams(KeyRef keyRef, PublicKey pkSdEcka, AesAlg sessionKeysAlg, SecurityLevel securityLevel) {
+        this(keyRef, pkSdEcka, null, null, Collections.emptyList(), sessionKeysAlg, securityLevel, null);
+    }
+
     @Override
     public KeyRef getKeyRef() {
         return keyRef;
@@ -36,22 +36,78 @@
  *   - Parametrize with ScpMode variable, add S16 mode support
  *   - Minor updates according to other classes' API changes
  *   - Removed redundant `public` access modifiers
+ *   - Wrap commands and unwrap responses in place over ByteBuffers
+ *   - Apply secure messaging according to the session security level
+ *   - Use extended APDU for secured commands, that do not fit into short APDU, if supported by the connection
+ *   - Chain long secured commands, wrapping each segment as a separate command
+ *   - Feed unwrapped responses to a TLV decoder
+ *   - Read command data and response data through the zero-copy accessors
+ *   - Wrap commands and unwrap responses in place in the buffers of an arena
+ *   - Wrap commands of a batch ahead of time, unwrap their responses with the context of each command
+ *   - Encode the logical channel number of the connection into CLA covered by the C-MAC
+ *   - Pipeline independent commands, wrapping and unwrapping on the caller thread while another thread transmits
+ *   - Send pipelined commands one by one, if the pipeline executor runs tasks on the calling thread, rejects the
+ *     transport stage or does not start it promptly
+ *   - Discard the response data of leading command chain segments
+ *   - Pass the turn of a logical channel on, when a command chain fails before its last segment
  */
 
 package com.samsung.openscp;
 
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class ScpProcessor extends ChainedResponseProcessor {
+    private static final int SHORT_APDU_MAX_CHUNK = 0xff;
+    private static final byte CLA_CHAINING = 0x10;
+    private static final byte[] END_OF_PIPELINE = new byte[0];
+    private static final long PIPELINE_START_TIMEOUT_MS = 100;
+
     private final ScpState state;
+    private final boolean extendedApdus;
+    private final int maxApduSize;
     private final ScpMode mode;
+    private final SecurityLevel level;
+    private final List<ScpState.Context> batchContexts = new ArrayList<>();
+    @Nullable
+    private ScpState.Context batchStart;
+
+    /**
+     * @param extendedApdus whether secured commands exceeding short APDU limits may be sent as extended APDU.
+     *                      Commands that fit are always sent as short APDU.
+     */
+    ScpProcessor(SmartCardConnection connection, ScpState state, boolean extendedApdus, int maxApduSize,
+                 byte insSendRemaining, ScpMode mode, SecurityLevel level) {
+        this(connection, new ApduArena(), state, extendedApdus, maxApduSize, insSendRemaining, mode, level);
+    }
 
-    ScpProcessor(SmartCardConnection connection, ScpState state, int maxApduSize, byte insSendRemaining, ScpMode mode) {
-        super(connection, false /*isExtendedApduUsed*/, maxApduSize, insSendRemaining);
+    ScpProcessor(SmartCardConnection connection, ApduArena arena, ScpState state, boolean extendedApdus,
+                 int maxApduSize, byte insSendRemaining, ScpMode mode, SecurityLevel level) {
+        // GET RESPONSE commands are never secured, so they are always sent as short APDU
+        super(connection, arena, false /*isExtendedApduUsed*/, maxApduSize, insSendRemaining);
         this.state = state;
+        this.extendedApdus = extendedApdus;
+        this.maxApduSize = maxApduSize;
         this.mode = mode;
+        this.level = level;
     }
 
     @Override
@@ -59,43 +115,576 @@ class ScpProcessor extends ChainedResponseProcessor {
         return sendApdu(apdu, true);
     }
 
+    /**
+     * The response MAC and cryptogram cover the complete response, so the response is read and unwrapped before any
+     * of its data is fed to the decoder.
+     */
+    @Override
+    short sendApdu(Apdu apdu, TlvDecoder decoder) throws IOException, BadResponseException {
+        final ApduResponse response = sendApdu(apdu);
+        if (response.getSw() == SW.OK) {
+            decoder.feed(response.dataBuffer());
+        }
+        return response.getSw();
+    }
+
     ApduResponse sendApdu(Apdu apdu, boolean encrypt) throws IOException, BadResponseException {
-        byte[] data = apdu.getData();
-        if (encrypt) {
-            data = state.encrypt(data);
+        try {
+            final ByteBuffer commandData = apdu.dataBuffer();
+            final short chainSw = sendLeadingSegments(apdu.getCla(), apdu.getIns(), apdu.getP1(), apdu.getP2(),
+                                                      commandData, encrypt);
+            if (chainSw != SW.OK) {
+                return new ApduResponse(new byte[]{(byte) (chainSw >> 8), (byte) chainSw});
+            }
+
+            final ByteBuffer command = arena.command(
+                    getWrappedCommandLength(commandData.remaining(), apdu.getLe(), encrypt));
+            wrapCommand(apdu.getCla(), apdu.getIns(), apdu.getP1(), apdu.getP2(), commandData, apdu.getLe(), encrypt,
+                        command);
+            command.flip();
+
+            // The response is held in the arena, so it is decrypted in place and the SW appended to the plaintext
+            final ByteBuffer response = transmit(command);
+            final ByteBuffer data = response.duplicate();
+            final short sw = unwrapResponse(response, data);
+            data.putShort(sw);
+            return arena.wrapResponse(data.position());
+        } catch (IOException | BadResponseException | RuntimeException e) {
+            abortChain();
+            throw e;
+        }
+    }
+
+    @Override
+    boolean isSingleCommand(Apdu apdu) {
+        return apdu.dataLength() <= getMaxSegmentLength(true);
+    }
+
+    /**
+     * Wraps a command of a batch ahead of time. The C-MAC chain only depends on the preceding commands, so all
+     * commands of a batch are wrapped before the first one is sent, and the context to unwrap the response to each
+     * command is kept.
+     */
+    @Override
+    ByteBuffer formatBatchCommand(Apdu apdu, int index) {
+        if (index == 0) {
+            batchContexts.clear();
+            batchStart = state.snapshot();
+        }
+        final ByteBuffer commandData = apdu.dataBuffer();
+        final ByteBuffer command = ByteBuffer.allocate(
+                getWrappedCommandLength(commandData.remaining(), apdu.getLe(), true));
+        wrapCommand(apdu.getCla(), apdu.getIns(), apdu.getP1(), apdu.getP2(), commandData, apdu.getLe(), true,
+                    command);
+        command.flip();
+        batchContexts.add(state.snapshot());
+        return command;
+    }
+
+    @Override
+    void discardBatch() {
+        if (batchStart != null) {
+            state.restore(batchStart);
+        }
+    }
+
+    /**
+     * Restores the context of the command before unwrapping its response. Once the last response of a batch is
+     * unwrapped, the state is the one after the last command, that was actually sent, so that the commands wrapped,
+     * but never sent, are rolled back.
+     */
+    @Override
+    ApduResponse unwrapBatchResponse(ByteBuffer response, int index) throws BadResponseException {
+        state.restore(batchContexts.get(index));
+        final ByteBuffer data = response.duplicate();
+        final short sw = unwrapResponse(response, data);
+        data.putShort(sw);
+        return arena.wrapResponse(data.position());
+    }
+
+    /**
+     * Sends independent commands in a two-stage pipeline
+     * <p>
+     * The C-MAC chain and the encryption counter only depend on the preceding commands, so the calling thread wraps
+     * up to {@code depth} commands ahead, while the transport stage on {@code executor} sends them and reads their
+     * responses. Each response is unwrapped on the calling thread with the context of its command, while the next
+     * commands are on the wire. Commands, that need command chaining, are sent on their own between the runs of the
+     * pipeline.
+     * <p>
+     * When the pipeline stops early, either by the stop condition or by an error, the state is rolled back to the
+     * last command the card responded to, so that the commands wrapped, but never sent, are discarded.
+     *
+     * @param executor executor to run the transport stage on, the only user of the connection while the pipeline
+     *                 runs. If it runs the stage on the calling thread, like a direct executor, rejects it, or does not
+     *                 start it within {@value #PIPELINE_START_TIMEOUT_MS} ms, the commands are sent one by one instead.
+     * @param depth    the maximum number of commands wrapped, but not unwrapped yet
+     * @return the full responses, data followed by SW, one per command sent
+     */
+    List<byte[]> sendPipelined(List<Apdu> apdus, StopCondition stopCondition, Executor executor, int depth)
+            throws IOException, BadResponseException {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Pipeline depth must be positive");
+        }
+        final List<byte[]> responses = new ArrayList<>(apdus.size());
+        int next = 0;
+        while (next < apdus.size()) {
+            if (!isSingleCommand(apdus.get(next))) {
+                final ApduResponse response = sendApdu(apdus.get(next++));
+                responses.add(response.getBytes());
+                if (stopCondition.shouldStop(response.getSw())) {
+                    return responses;
+                }
+                continue;
+            }
+            int end = next;
+            while (end < apdus.size() && isSingleCommand(apdus.get(end))) {
+                end++;
+            }
+            if (!pipeline(apdus.subList(next, end), stopCondition, executor, depth, responses)) {
+                return responses;
+            }
+            next = end;
+        }
+        return responses;
+    }
+
+    /**
+     * Runs the pipeline over commands, that are all sent as single commands
+     *
+     * @return false if the pipeline was stopped by the stop condition
+     */
+    private boolean pipeline(List<Apdu> apdus, StopCondition stopCondition, Executor executor, int depth,
+                             List<byte[]> responses) throws IOException, BadResponseException {
+        final BlockingQueue<byte[]> outbound = new ArrayBlockingQueue<>(depth + 1);
+        final BlockingQueue<byte[]> inbound = new ArrayBlockingQueue<>(depth);
+        final AtomicInteger responded = new AtomicInteger();
+        final CompletableFuture<Void> transport = new CompletableFuture<>();
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean claimed = new AtomicBoolean();
+        try {
+            executor.execute(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    // Started too late, the commands have been sent one by one
+                    return;
+                }
+                started.countDown();
+                if (Thread.currentThread() == caller) {
+                    // A direct executor would wait for commands, that the calling thread never gets to wrap
+                    transport.completeExceptionally(
+                        new IllegalStateException("Transport stage runs on the caller thread"));
+                    return;
+                }
+                transport(outbound, inbound, stopCondition, responded, transport);
+            });
+        } catch (RejectedExecutionException e) {
+            return sendOneByOne(apdus, stopCondition, responses);
+        }
+        if (!awaitStart(started, claimed) || transport.isCompletedExceptionally()) {
+            return sendOneByOne(apdus, stopCondition, responses);
+        }
+
+        int wrapped = 0;
+        int received = 0;
+        boolean stopped = false;
+        try {
+            while (received < apdus.size()) {
+                while (wrapped < apdus.size() && wrapped - received < depth) {
+                    outbound.add(detachedCommand(formatBatchCommand(apdus.get(wrapped), wrapped)));
+                    if (++wrapped == apdus.size()) {
+                        outbound.add(END_OF_PIPELINE);
+                    }
+                }
+                final byte[] raw = inbound.take();
+                if (raw == END_OF_PIPELINE) {
+                    // The transport stage failed, its exception is thrown below
+                    break;
+                }
+                final ByteBuffer response = ByteBuffer.wrap(raw);
+                final ByteBuffer data = response.duplicate();
+                final short sw = unwrapResponse(response, data, batchContexts.get(received++));
+                data.putShort(sw);
+                responses.add(Arrays.copyOf(raw, data.position()));
+                if (stopCondition.shouldStop(sw)) {
+                    stopped = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        } finally {
+            // Stops the transport stage after the command in flight, if it is still running
+            outbound.clear();
+            outbound.add(END_OF_PIPELINE);
+            awaitUninterruptibly(transport);
+            rollBack(responded.get());
+        }
+
+        try {
+            transport.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            // Not reached, the transport stage is complete
+            Thread.currentThread().interrupt();
+        }
+        return !stopped;
+    }
+
+    /**
+     * Waits for the transport stage to start on the pipeline executor, e.g. a saturated pool or the executor the
+     * calling thread runs on may not start it at all
+     *
+     * @param started counted down by the transport stage, once it has claimed the pipeline
+     * @param claimed claimed either by the transport stage when it starts, or by the calling thread giving up on it
+     * @return false if the stage didn't start in time, it then returns without sending anything, if it ever starts
+     */
+    private static boolean awaitStart(CountDownLatch started, AtomicBoolean claimed) {
+        boolean startedInTime;
+        try {
+            startedInTime = started.await(PIPELINE_START_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // The pipeline, if it started meanwhile, is stopped by the interrupt while waiting for the first response
+            Thread.currentThread().interrupt();
+            startedInTime = false;
+        }
+        return startedInTime || !claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Sends the commands of a pipeline one after another, when the pipeline executor can't run the transport stage
+     *
+     * @return false if the commands were stopped by the stop condition
+     */
+    private boolean sendOneByOne(List<Apdu> apdus, StopCondition stopCondition, List<byte[]> responses)
+            throws IOException, BadResponseException {
+        for (Apdu apdu : apdus) {
+            final ApduResponse response = sendApdu(apdu);
+            responses.add(response.getBytes());
+            if (stopCondition.shouldStop(response.getSw())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param command a command formatted by {@link #formatBatchCommand}, into a buffer of its own
+     * @return the array of the buffer, which holds exactly the command
+     */
+    private static byte[] detachedCommand(ByteBuffer command) {
+        if (command.arrayOffset() == 0 && command.position() == 0 && command.limit() == command.array().length) {
+            return command.array();
         }
-        byte cla = (byte) (apdu.getCla() | 0x04);
+        return Arrays.copyOfRange(command.array(), command.arrayOffset() + command.position(),
+                                  command.arrayOffset() + command.limit());
+    }
+
+    /**
+     * The transport stage of the pipeline, sends the wrapped commands and reads their responses, until the end of the
+     * pipeline, a failure, or a response meeting the stop condition
+     */
+    private void transport(BlockingQueue<byte[]> outbound, BlockingQueue<byte[]> inbound,
+                           StopCondition stopCondition, AtomicInteger responded, CompletableFuture<Void> result) {
+        try {
+            while (true) {
+                final byte[] command = outbound.take();
+                if (command == END_OF_PIPELINE) {
+                    break;
+                }
+                final byte[] response = transmitDetached(command);
+                responded.incrementAndGet();
+                // Never blocks, at most depth commands are in the pipeline
+                inbound.add(response);
+                final short sw = (short) (((response[response.length - 2] & 0xFF) << 8)
+                                          | (response[response.length - 1] & 0xFF));
+                if (stopCondition.shouldStop(sw)) {
+                    break;
+                }
+            }
+            result.complete(null);
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+            inbound.add(END_OF_PIPELINE);
+        }
+    }
+
+    /**
+     * Rolls the state back to the context of the last command the card responded to
+     *
+     * @param responded the number of commands of the pipeline, that the card responded to
+     */
+    private void rollBack(int responded) {
+        if (responded == 0) {
+            discardBatch();
+        } else {
+            state.restore(batchContexts.get(responded - 1));
+        }
+    }
+
+    private static void awaitUninterruptibly(CompletableFuture<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends a command wrapped from {@code data} and writes the unwrapped response data to {@code response}.
+     * <p>
+     * Data, that does not fit into a single command, is sent with command chaining: every segment is padded,
+     * encrypted and C-MACed as a separate command. The segments are wrapped directly from {@code data}.
+     *
+     * @param data     the plaintext command data, its remaining bytes are consumed
+     * @param le       the expected response length, is added to the last command if greater than zero
+     * @param response buffer to write the unwrapped response data of the last segment to
+     * @return the status word of the last response, or of the first failed segment
+     */
+    short sendApdu(byte cla, byte ins, byte p1, byte p2, ByteBuffer data, int le, ByteBuffer response)
+            throws IOException, BadResponseException {
+        try {
+            final short sw = sendLeadingSegments(cla, ins, p1, p2, data, true);
+            if (sw != SW.OK) {
+                return sw;
+            }
+            return sendSegment(cla, ins, p1, p2, data, le, true, response);
+        } catch (IOException | BadResponseException | RuntimeException e) {
+            abortChain();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a command wrapped from the data read from {@code data} until the end of the stream, and writes the
+     * unwrapped response data to {@code response}.
+     * <p>
+     * The data is read and sent segment by segment with command chaining, so no more than one segment is buffered
+     * at a time. The stream is not closed.
+     *
+     * @param data     the plaintext command data
+     * @param le       the expected response length, is added to the last command if greater than zero
+     * @param response buffer to write the unwrapped response data of the last segment to
+     * @return the status word of the last response, or of the first failed segment
+     */
+    short sendApdu(byte cla, byte ins, byte p1, byte p2, InputStream data, int le, ByteBuffer response)
+            throws IOException, BadResponseException {
+        try {
+            final ByteBuffer segment = ByteBuffer.allocate(getMaxSegmentLength(true));
+            // One byte is read ahead to tell the last segment, which is sent without the chaining bit
+            int next = data.read();
+            while (true) {
+                segment.clear();
+                if (next != -1) {
+                    segment.put((byte) next);
+                }
+                int read = 0;
+                while (segment.hasRemaining()
+                        && (read = data.read(segment.array(), segment.position(), segment.remaining())) != -1) {
+                    segment.position(segment.position() + read);
+                }
+                next = read == -1 ? -1 : data.read();
+                segment.flip();
+                if (next == -1) {
+                    return sendSegment(cla, ins, p1, p2, segment, le, true, response);
+                }
+                final short sw = sendSegment((byte) (cla | CLA_CHAINING), ins, p1, p2, segment, 0, true, null);
+                if (sw != SW.OK) {
+                    return sw;
+                }
+            }
+        } catch (IOException | BadResponseException | RuntimeException e) {
+            abortChain();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the maximum length of the command data, that fits into a single secured command
+     */
+    int getMaxSegmentLength(boolean encrypt) {
+        encrypt &= level.commandEncryption;
+        final int maxLc = (extendedApdus ? maxApduSize - MaxApduSize.EXTENDED_OVERHEAD : SHORT_APDU_MAX_CHUNK)
+                - ScpMode.getBlobSizeByMode(mode);
+        // Padding always adds at least one byte
+        return encrypt ? maxLc / ScpState.BLOCK_SIZE * ScpState.BLOCK_SIZE - 1 : maxLc;
+    }
+
+    /**
+     * Sends all segments of {@code data} but the last one with the chaining bit set in CLA, leaving the last
+     * segment remaining in {@code data}
+     * <p>
+     * The responses to the leading segments are verified and decrypted, but their data is discarded: the response
+     * to a chained command is the response to its last segment.
+     *
+     * @return {@link SW#OK}, or the status word of the first failed segment
+     */
+    private short sendLeadingSegments(byte cla, byte ins, byte p1, byte p2, ByteBuffer data, boolean encrypt)
+            throws IOException, BadResponseException {
+        final int maxSegmentLength = getMaxSegmentLength(encrypt);
+        final int limit = data.limit();
+        try {
+            while (data.remaining() > maxSegmentLength) {
+                data.limit(data.position() + maxSegmentLength);
+                final short sw = sendSegment((byte) (cla | CLA_CHAINING), ins, p1, p2, data, 0, encrypt, null);
+                data.limit(limit);
+                if (sw != SW.OK) {
+                    return sw;
+                }
+            }
+        } finally {
+            data.limit(limit);
+        }
+        return SW.OK;
+    }
+
+    /**
+     * @param response buffer to write the unwrapped response data to, or null to discard it
+     */
+    private short sendSegment(byte cla, byte ins, byte p1, byte p2, ByteBuffer data, int le, boolean encrypt,
+                              @Nullable ByteBuffer response) throws IOException, BadResponseException {
+        final ByteBuffer command = arena.command(getWrappedCommandLength(data.remaining(), le, encrypt));
+        wrapCommand(cla, ins, p1, p2, data, le, encrypt, command);
+        command.flip();
+        final ByteBuffer received = transmit(command);
+        // Discarded data is decrypted in place in the arena
+        return unwrapResponse(received, response != null ? response : received.duplicate());
+    }
+
+    /**
+     * @return the length of the secured command, that {@link #wrapCommand} writes for the given data length
+     */
+    int getWrappedCommandLength(int dataLength, int le, boolean encrypt) {
+        encrypt &= level.commandEncryption;
+        final int lc = (encrypt ? ScpState.getPaddedLength(dataLength) : dataLength) + ScpMode.getBlobSizeByMode(mode);
+        if (isExtended(lc, le)) {
+            return 7 + lc + (le > 0 ? 2 : 0);
+        }
+        return 5 + lc + (le > 0 ? 1 : 0);
+    }
+
+    /**
+     * Checks the secured command lengths and chooses the encoding: short APDU, if they fit, or extended APDU
+     *
+     * @return true if the command must be sent as extended APDU
+     */
+    private boolean isExtended(int lc, int le) {
+        if (lc <= SHORT_APDU_MAX_CHUNK && le >= 0 && le <= SHORT_APDU_MAX_CHUNK) {
+            return false;
+        }
+        if (!extendedApdus) {
+            if (le < 0 || le > SHORT_APDU_MAX_CHUNK) {
+                throw new IllegalArgumentException("Le must be between 0 and " + SHORT_APDU_MAX_CHUNK);
+            }
+            throw new IllegalArgumentException("Length must be no greater than " + SHORT_APDU_MAX_CHUNK);
+        }
+        if (le < 0 || le > MaxApduSize.EXTENDED) {
+            throw new IllegalArgumentException("Le must be between 0 and " + MaxApduSize.EXTENDED);
+        }
+        if (7 + lc + (le > 0 ? 2 : 0) > maxApduSize) {
+            throw new UnsupportedOperationException("APDU length exceeds smart card capability");
+        }
+        return true;
+    }
 
-        // Calculate and add MAC to data
+    /**
+     * Wraps a command in a single pass: writes the header, Lc, the (optionally encrypted) data and C-MAC to
+     * {@code command}. The data is encrypted only if C-DECRYPTION is part of the session security level.
+     * <p>
+     * Padding, encryption and MAC calculation are done in place in {@code command}, which must have at least
+     * {@link #getWrappedCommandLength} bytes remaining. The remaining bytes of {@code data} are consumed.
+     * <p>
+     * The command is encoded as extended APDU only if Lc or Le do not fit into short APDU, and the C-MAC is
+     * calculated over the header in the same encoding as it is sent.
+     */
+    void wrapCommand(byte cla, byte ins, byte p1, byte p2, ByteBuffer data, int le, boolean encrypt,
+                     ByteBuffer command) {
+        encrypt &= level.commandEncryption;
         final int macSize = ScpMode.getBlobSizeByMode(mode);
-        byte[] macedData = new byte[data.length + macSize];
-        System.arraycopy(data, 0, macedData, 0, data.length);
-        byte[] apduData = processor.formatApdu(
-            cla,
-            apdu.getIns(),
-            apdu.getP1(),
-            apdu.getP2(),
-            macedData,
-            0,
-            macedData.length,
-            0,
-            /* Mandatory for correct MAC calculation over whole APDU blob without Le byte */
-            false );
-
-        byte[] mac = state.mac(Arrays.copyOf(apduData, apduData.length - macSize), mode);
-        System.arraycopy(mac, 0, macedData, macedData.length - macSize, macSize);
-
-        ApduResponse resp = super.sendApdu(new Apdu(cla, apdu.getIns(), apdu.getP1(), apdu.getP2(), macedData, apdu.getLe()));
-        byte[] respData = resp.getData();
-
-        // Un-MAC and decrypt, if needed
-        if (respData.length > 0) {
-            respData = state.unmac(respData, resp.getSw(), mode);
-        }
-        if (respData.length > 0) {
-            respData = state.decrypt(respData);
-        }
-
-        return new ApduResponse(ByteBuffer.allocate(respData.length + 2).put(respData).putShort(resp.getSw()).array());
+        final int dataLength = data.remaining();
+        final int lc = (encrypt ? ScpState.getPaddedLength(dataLength) : dataLength) + macSize;
+        final boolean extended = isExtended(lc, le);
+
+        final int start = command.position();
+        command.put(LogicalChannel.encodeCla((byte) (cla | 0x04), processor.channel)).put(ins).put(p1).put(p2);
+        if (extended) {
+            command.put((byte) 0x00).putShort((short) lc);
+        } else {
+            command.put((byte) lc);
+        }
+        if (encrypt) {
+            state.encrypt(data, command);
+        } else {
+            command.put(data);
+        }
+
+        // MAC is calculated over the whole APDU blob without Le
+        final ByteBuffer macInput = command.duplicate();
+        macInput.flip();
+        macInput.position(start);
+        state.mac(macInput, mode, command);
+        if (le > 0) {
+            if (extended) {
+                command.putShort((short) le);
+            } else {
+                command.put((byte) le);
+            }
+        }
+    }
+
+    /**
+     * Un-MACs and decrypts a response in a single pass, according to the session security level.
+     *
+     * @param response the full response, data followed by SW
+     * @param data     buffer to write the plaintext response data to, may share content with {@code response}
+     * @return the status word of the response
+     */
+    short unwrapResponse(ByteBuffer response, ByteBuffer data) throws BadResponseException {
+        return unwrapResponse(response, data, null);
+    }
+
+    /**
+     * @param context the context of the command to unwrap the response with, the state is not changed. If null, the
+     *                current state is used.
+     */
+    private short unwrapResponse(ByteBuffer response, ByteBuffer data, @Nullable ScpState.Context context)
+            throws BadResponseException {
+        if (response.remaining() < 2) {
+            throw new BadResponseException("Response must contain at least 2 bytes");
+        }
+        final short sw = response.getShort(response.limit() - 2);
+        final ByteBuffer respData = response.duplicate();
+        respData.limit(response.limit() - 2);
+        if (level.responseMac && respData.hasRemaining()) {
+            if (context != null) {
+                state.unmac(respData, sw, mode, context);
+            } else {
+                state.unmac(respData, sw, mode);
+            }
+        }
+        if (level.responseEncryption && respData.hasRemaining()) {
+            if (context != null) {
+                state.decrypt(respData, data, context);
+            } else {
+                state.decrypt(respData, data);
+            }
+        } else {
+            data.put(respData);
+        }
+        response.position(response.limit());
+        return sw;
     }
 }
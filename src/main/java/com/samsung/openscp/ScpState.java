@@ -40,6 +40,19 @@
  *   - Parametrize scp11Init() method with the ephemeral keys
  *   - Removed redundant `public` access modifiers
  *   - Skip zero size payload encryption to meet GP SCP03 specification
+ *   - Reuse per-session cipher and MAC instances instead of looking them up for every command
+ *   - Encrypt, decrypt, MAC and un-MAC in place over ByteBuffers
+ *   - Use built-in AES-CMAC implementation instead of the provider's "AESCMAC" algorithm
+ *   - Negotiate the session security level
+ *   - Reuse cached SCP11a/c static shared secret
+ *   - PERFORM SECURITY OPERATION chunk size derived from the maximum APDU size
+ *   - Build command data with TlvWriter
+ *   - Read APDU data through the zero-copy accessors
+ *   - Added snapshots of the MAC chaining value and the encryption counter, for commands wrapped ahead of time
+ *   - Un-MAC and decrypt responses with a snapshot, without changing the state
+ *   - Verify the SCP03 pseudo-random card challenge, if the Security Domain AID is known
+ *   - Encrypt and R-MAC expected responses, for scripts compiled ahead of time
+ *   - Accept the ephemeral OCE public key converted in advance
  */
 
 package com.samsung.openscp;
@@ -51,7 +64,6 @@ import javax.crypto.*;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.*;
 import java.security.interfaces.ECPrivateKey;
@@ -67,16 +79,56 @@ import java.util.Objects;
  */
 class ScpState {
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(ScpState.class);
+    static final int BLOCK_SIZE = 16;
+    static final int SEQUENCE_COUNTER_SIZE = 3;
+    // Secure Channel Protocol '03' v1.2, "Table 5-1: Values of Parameter “i”"
+    static final byte I_PSEUDO_RANDOM_CARD_CHALLENGE = 0b00010000;
+    private static final byte DERIVATION_CARD_CRYPTOGRAM = 0x00;
+    private static final byte DERIVATION_HOST_CRYPTOGRAM = 0x01;
+    private static final byte DERIVATION_CARD_CHALLENGE = 0x02;
 
     private final SessionKeys keys;
-    private byte[] macChain;
+    private final SessionCrypto crypto;
+    private final byte[] rmac = new byte[BLOCK_SIZE];
+    private final byte[] macChain;
     private int encCounter = 1;
 
     ScpState(SessionKeys keys, byte[] macChain) {
         this.keys = keys;
+        this.crypto = new SessionCrypto(keys);
         this.macChain = macChain;
     }
 
+    /**
+     * The MAC chaining value and the encryption counter right after a command was wrapped, which the response to the
+     * command is unwrapped with
+     */
+    static final class Context {
+        private final byte[] macChain;
+        private final int encCounter;
+
+        private Context(byte[] macChain, int encCounter) {
+            this.macChain = macChain;
+            this.encCounter = encCounter;
+        }
+    }
+
+    /**
+     * @return the context for unwrapping the response to the last wrapped command
+     */
+    Context snapshot() {
+        return new Context(macChain.clone(), encCounter);
+    }
+
+    /**
+     * Restores the state to a snapshot, so that the response to the command wrapped before the snapshot can be
+     * unwrapped, and commands wrapped after it, but never sent, are discarded
+     */
+    void restore(Context context) {
+        System.arraycopy(context.macChain, 0, macChain, 0, macChain.length);
+        encCounter = context.encCounter;
+    }
+
     @Nullable DataEncryptor getDataEncryptor() {
         if (keys.dek == null) {
             return null;
@@ -84,106 +136,224 @@ class ScpState {
         return data -> cbcEncrypt(keys.dek, data);
     }
 
-    byte[] encrypt(byte[] data) {
-        if (data.length == 0) {
+    /**
+     * Pads and encrypts the remaining bytes of {@code data}, writing the cryptogram to {@code dst}.
+     * <p>
+     * Padding and encryption are done in place in {@code dst}, which must have room for
+     * {@link #getPaddedLength(int)} bytes. Zero size payload is not encrypted, but still consumes the counter value.
+     */
+    void encrypt(ByteBuffer data, ByteBuffer dst) {
+        if (!data.hasRemaining()) {
             encCounter++;
-            return data;
+            return;
+        }
+        if (logger.isTraceEnabled()) {
+            Logger.trace(logger, "Plaintext data: {}", ByteUtils.bytesToHex(data));
         }
         // Pad the data
-        Logger.trace(logger, "Plaintext data: {}", ByteUtils.bytesToHex(data));
-        int padLen = 16 - (data.length % 16);
-        byte[] padded = Arrays.copyOf(data, data.length + padLen);
-        padded[data.length] = (byte) 0x80;
+        final int start = dst.position();
+        dst.put(data).put((byte) 0x80);
+        while ((dst.position() - start) % BLOCK_SIZE != 0) {
+            dst.put((byte) 0x00);
+        }
 
         // Encrypt
-        try {
-            @SuppressWarnings("GetInstance") Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, keys.senc);
-            byte[] ivData = ByteBuffer.allocate(16).put(new byte[12]).putInt(encCounter++).array();
-            byte[] iv = cipher.doFinal(ivData);
-
-            cipher = Cipher.getInstance("AES/CBC/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, keys.senc, new IvParameterSpec(iv));
-            return cipher.doFinal(padded);
-        } catch (InvalidKeyException | NoSuchPaddingException | NoSuchAlgorithmException |
-                 IllegalBlockSizeException | BadPaddingException |
-                 InvalidAlgorithmParameterException e) {
-            //This should never happen
-            throw new RuntimeException(e);
-        } finally {
-            Arrays.fill(padded, (byte) 0);
-        }
+        final ByteBuffer padded = dst.duplicate();
+        padded.flip();
+        padded.position(start);
+        final ByteBuffer cryptogram = dst.duplicate();
+        cryptogram.position(start);
+        crypto.encrypt(padded, cryptogram, encCounter++);
     }
 
-    byte[] decrypt(byte[] encrypted) throws BadResponseException {
-        // Decrypt
-        byte[] decrypted = null;
-        try {
-            @SuppressWarnings("GetInstance")
-            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, keys.senc);
-            byte[] ivData = ByteBuffer.allocate(16).put((byte) 0x80).put(new byte[11])
-                    .putInt(encCounter - 1).array();
-            byte[] iv = cipher.doFinal(ivData);
-
-            cipher = Cipher.getInstance("AES/CBC/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, keys.senc, new IvParameterSpec(iv));
-            decrypted = cipher.doFinal(encrypted);
-            for (int i = decrypted.length - 1; i > 0; i--) {
-                if (decrypted[i] == (byte) 0x80) {
-                    Logger.trace(logger, "Plaintext resp: {}", ByteUtils.bytesToHex(decrypted));
-                    return Arrays.copyOf(decrypted, i);
-                } else if (decrypted[i] != 0x00) {
-                    break;
+    /**
+     * Decrypts the remaining bytes of {@code encrypted} and writes the unpadded plaintext to {@code dst}.
+     * <p>
+     * {@code dst} may share content with {@code encrypted}, i.e. the response can be decrypted in place.
+     */
+    void decrypt(ByteBuffer encrypted, ByteBuffer dst) throws BadResponseException {
+        decrypt(encrypted, dst, encCounter);
+    }
+
+    /**
+     * Decrypts a response with the encryption counter of a snapshot, leaving the state as it is
+     *
+     * @see #decrypt(ByteBuffer, ByteBuffer)
+     */
+    void decrypt(ByteBuffer encrypted, ByteBuffer dst, Context context) throws BadResponseException {
+        decrypt(encrypted, dst, context.encCounter);
+    }
+
+    private void decrypt(ByteBuffer encrypted, ByteBuffer dst, int encCounter) throws BadResponseException {
+        final int start = dst.position();
+        final int length = encrypted.remaining();
+        crypto.decrypt(encrypted, dst.duplicate(), encCounter - 1);
+        for (int i = start + length - 1; i > start; i--) {
+            final byte b = dst.get(i);
+            if (b == (byte) 0x80) {
+                dst.position(i);
+                if (logger.isTraceEnabled()) {
+                    final ByteBuffer plaintext = dst.duplicate();
+                    plaintext.flip();
+                    plaintext.position(start);
+                    Logger.trace(logger, "Plaintext resp: {}", ByteUtils.bytesToHex(plaintext));
                 }
+                return;
+            } else if (b != 0x00) {
+                break;
             }
-            throw new BadResponseException("Bad padding");
-        } catch (InvalidKeyException | NoSuchPaddingException | NoSuchAlgorithmException |
-                 IllegalBlockSizeException | BadPaddingException |
-                 InvalidAlgorithmParameterException e) {
-            //This should never happen
-            throw new RuntimeException(e);
-        } finally {
-            if (decrypted != null) {
-                Arrays.fill(decrypted, (byte) 0);
-            }
         }
+        for (int i = start; i < start + length; i++) {
+            dst.put(i, (byte) 0);
+        }
+        throw new BadResponseException("Bad padding");
     }
 
-    byte[] mac(byte[] data, ScpMode mode) {
-        try {
-            final Mac mac = Mac.getInstance("AESCMAC");
-            mac.init(keys.smac);
-            mac.update(macChain);
-            macChain = mac.doFinal(data);
-            final int macSize = ScpMode.getBlobSizeByMode(mode);
-            return Arrays.copyOf(macChain, macSize);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new UnsupportedOperationException("Cryptography provider does not support AESCMAC", e);
-        }
+    /**
+     * Computes C-MAC over the remaining bytes of {@code data} and updates the MAC chaining value
+     *
+     * @param data the data to MAC, i.e. the command header, Lc and the command data field
+     * @param mode SCP mode defining the MAC size
+     * @param dst  buffer to write the MAC to
+     */
+    void mac(ByteBuffer data, ScpMode mode, ByteBuffer dst) {
+        crypto.cmac(macChain, data, macChain);
+        dst.put(macChain, 0, ScpMode.getBlobSizeByMode(mode));
     }
 
-    byte[] unmac(byte[] data, short sw, ScpMode mode) throws BadResponseException {
-        final int macSize = ScpMode.getBlobSizeByMode(mode);
-        byte[] msg = ByteBuffer.allocate(data.length - macSize + 2).put(data, 0, data.length - macSize)
-                .putShort(sw).array();
+    /**
+     * Verifies R-MAC, that is expected to be the last bytes of {@code data}.
+     * <p>
+     * On success the limit of {@code data} is moved, so that R-MAC is no longer part of the remaining bytes.
+     */
+    void unmac(ByteBuffer data, short sw, ScpMode mode) throws BadResponseException {
+        unmac(data, sw, mode, macChain);
+    }
 
-        try {
-            final Mac mac = Mac.getInstance("AESCMAC");
-            mac.init(keys.srmac);
-            mac.update(macChain);
+    /**
+     * Verifies R-MAC with the MAC chaining value of a snapshot, leaving the state as it is
+     *
+     * @see #unmac(ByteBuffer, short, ScpMode)
+     */
+    void unmac(ByteBuffer data, short sw, ScpMode mode, Context context) throws BadResponseException {
+        unmac(data, sw, mode, context.macChain);
+    }
 
-            byte[] rmac = Arrays.copyOf(mac.doFinal(msg), macSize);
-            if (MessageDigest.isEqual(rmac, Arrays.copyOfRange(data, data.length - macSize, data.length))) {
-                return Arrays.copyOf(msg, msg.length - 2);
-            }
+    private void unmac(ByteBuffer data, short sw, ScpMode mode, byte[] macChain) throws BadResponseException {
+        final int macSize = ScpMode.getBlobSizeByMode(mode);
+        final int macOffset = data.limit() - macSize;
+        if (macOffset < data.position()) {
+            throw new BadResponseException("Wrong MAC");
+        }
+        final ByteBuffer msg = data.duplicate();
+        msg.limit(macOffset);
+        crypto.rmac(macChain, msg, sw, rmac);
+
+        int diff = 0;
+        for (int i = 0; i < macSize; i++) {
+            diff |= rmac[i] ^ data.get(macOffset + i);
+        }
+        if (diff != 0) {
             throw new BadResponseException("Wrong MAC");
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new UnsupportedOperationException("Cryptography provider does not support AESCMAC", e);
         }
+        data.limit(macOffset);
     }
 
-    static Pair<ScpState, byte[]> scp03Init(ApduProcessor processor, Scp03KeyParams keyParams, ScpMode mode, @Nullable byte[] hostChallenge) throws BadResponseException, IOException, ApduException {
+    /**
+     * Pads and encrypts response data as the card does, with the encryption counter of the last wrapped command.
+     * Used to compute the expected responses of a script ahead of time.
+     * <p>
+     * {@code dst} must have room for {@link #getPaddedLength(int)} bytes. Zero size data is not encrypted.
+     */
+    void encryptResponse(ByteBuffer data, ByteBuffer dst) {
+        if (!data.hasRemaining()) {
+            return;
+        }
+        final int start = dst.position();
+        dst.put(data).put((byte) 0x80);
+        while ((dst.position() - start) % BLOCK_SIZE != 0) {
+            dst.put((byte) 0x00);
+        }
+        final ByteBuffer padded = dst.duplicate();
+        padded.flip();
+        padded.position(start);
+        final ByteBuffer cryptogram = dst.duplicate();
+        cryptogram.position(start);
+        crypto.encryptResponse(padded, cryptogram, encCounter - 1);
+    }
+
+    /**
+     * Computes R-MAC as the card does for the response to the last wrapped command, leaving the state as it is
+     *
+     * @param data the response data, i.e. the cryptogram if the response is encrypted
+     * @param dst  buffer to write the R-MAC to
+     */
+    void rmac(ByteBuffer data, short sw, ScpMode mode, ByteBuffer dst) {
+        crypto.rmac(macChain, data.duplicate(), sw, rmac);
+        dst.put(rmac, 0, ScpMode.getBlobSizeByMode(mode));
+    }
+
+    /**
+     * Derives the pseudo-random card challenge, that a card configured for it returns in INITIALIZE UPDATE
+     *
+     * @param sequenceCounter the sequence counter of the key set, incremented by the card with every INITIALIZE UPDATE
+     * @param sdAid           AID of the Security Domain
+     * @return the card challenge
+     */
+    static byte[] deriveCardChallenge(StaticKeys keys, byte[] sequenceCounter, byte[] sdAid, ScpMode mode) {
+        final byte[] context = ByteBuffer.allocate(sequenceCounter.length + sdAid.length)
+                .put(sequenceCounter)
+                .put(sdAid)
+                .array();
+        return StaticKeys.deriveKey(keys.enc, DERIVATION_CARD_CHALLENGE, context,
+                                    ScpMode.getDerivedDataBitsSizeByMode(mode)).getEncoded();
+    }
+
+    /**
+     * Derives the SCP03 session keys and cryptograms from the challenges
+     *
+     * @return the session keys, the card cryptogram and the host cryptogram
+     */
+    static Scp03Handshake deriveScp03Handshake(StaticKeys keys, byte[] hostChallenge, byte[] cardChallenge,
+                                              ScpMode mode) {
+        final byte[] context = ByteBuffer.allocate(hostChallenge.length + cardChallenge.length)
+                .put(hostChallenge)
+                .put(cardChallenge)
+                .array();
+        final SessionKeys sessionKeys = keys.derive(context);
+        final short derivedDataLength = ScpMode.getDerivedDataBitsSizeByMode(mode);
+        return new Scp03Handshake(
+            sessionKeys,
+            StaticKeys.deriveKey(sessionKeys.smac, DERIVATION_CARD_CRYPTOGRAM, context, derivedDataLength)
+                .getEncoded(),
+            StaticKeys.deriveKey(sessionKeys.smac, DERIVATION_HOST_CRYPTOGRAM, context, derivedDataLength)
+                .getEncoded());
+    }
+
+    static final class Scp03Handshake {
+        final SessionKeys sessionKeys;
+        final byte[] cardCryptogram;
+        final byte[] hostCryptogram;
+
+        private Scp03Handshake(SessionKeys sessionKeys, byte[] cardCryptogram, byte[] hostCryptogram) {
+            this.sessionKeys = sessionKeys;
+            this.cardCryptogram = cardCryptogram;
+            this.hostCryptogram = hostCryptogram;
+        }
+    }
+
+    /**
+     * @return the size of the cryptogram for the given plaintext length
+     */
+    static int getPaddedLength(int length) {
+        return length == 0 ? 0 : (length / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    /**
+     * @param sdAid AID of the selected Security Domain, as returned in its FCI, if known, to verify a pseudo-random
+     *              card challenge with
+     */
+    static Pair<ScpState, byte[]> scp03Init(ApduProcessor processor, Scp03KeyParams keyParams, ScpMode mode, SecurityLevel level, @Nullable byte[] hostChallenge, @Nullable byte[] sdAid) throws BadResponseException, IOException, ApduException {
         final int cryptoBlobSize = ScpMode.getBlobSizeByMode(mode);
         if (hostChallenge == null) {
             hostChallenge = RandomUtils.getRandomBytes(cryptoBlobSize);
@@ -205,35 +375,62 @@ class ScpState {
         byte[] keyInfo = new byte[3];
         byte[] cardChallenge = new byte[cryptoBlobSize];
         byte[] cardCryptogram = new byte[cryptoBlobSize];
-        ByteBuffer.wrap(resp.getData())
+        final ByteBuffer respData = resp.dataBuffer()
                 .get(diversificationData)
                 .get(keyInfo)
                 .get(cardChallenge)
                 .get(cardCryptogram);
 
         final byte iParameter = keyInfo[2];
-        checkCardSecurityLevel(iParameter);
+        checkCardSecurityLevel(iParameter, level);
 
-        final int contextSize = cryptoBlobSize * 2;
-        byte[] context = ByteBuffer.allocate(contextSize).put(hostChallenge).put(cardChallenge).array();
-        SessionKeys sessionKeys = keyParams.keys.derive(context);
-
-        final short derivedDataLength = ScpMode.getDerivedDataBitsSizeByMode(mode);
-        byte[] genCardCryptogram = StaticKeys.deriveKey(sessionKeys.smac, (byte) 0x00, context, derivedDataLength)
-                .getEncoded();
-        if (!MessageDigest.isEqual(genCardCryptogram, cardCryptogram)) {
+        final Scp03Handshake handshake = deriveScp03Handshake(keyParams.keys, hostChallenge, cardChallenge, mode);
+        if (!MessageDigest.isEqual(handshake.cardCryptogram, cardCryptogram)) {
             throw new BadResponseException("Wrong SCP03 key set");
         }
 
-        byte[] hostCryptogram = StaticKeys.deriveKey(sessionKeys.smac, (byte) 0x01, context, derivedDataLength)
-                .getEncoded();
-        return new Pair<>(new ScpState(sessionKeys, new byte[16]), hostCryptogram);
+        // Checked after the cryptogram, so that a wrong key set is reported as such
+        if ((iParameter & I_PSEUDO_RANDOM_CARD_CHALLENGE) != 0 && sdAid != null
+            && respData.remaining() >= SEQUENCE_COUNTER_SIZE) {
+            final byte[] sequenceCounter = new byte[SEQUENCE_COUNTER_SIZE];
+            respData.get(sequenceCounter);
+            if (!MessageDigest.isEqual(deriveCardChallenge(keyParams.keys, sequenceCounter, sdAid, mode),
+                                       cardChallenge)) {
+                throw new BadResponseException("Wrong SCP03 card challenge");
+            }
+        }
+        return new Pair<>(new ScpState(handshake.sessionKeys, new byte[16]), handshake.hostCryptogram);
     }
 
     static ScpState scp11Init(ApduProcessor processor,
                               Scp11KeyParams keyParams,
                               @Nullable KeyPair ephemeralKeyPair)
             throws BadResponseException, IOException, ApduException {
+        return scp11Init(processor, keyParams, ephemeralKeyPair, MaxApduSize.SHORT);
+    }
+
+    /**
+     * @param maxCommandDataSize maximum command data size supported by the processor, defines the PERFORM SECURITY
+     *                           OPERATION chunk size
+     */
+    static ScpState scp11Init(ApduProcessor processor,
+                              Scp11KeyParams keyParams,
+                              @Nullable KeyPair ephemeralKeyPair,
+                              int maxCommandDataSize)
+            throws BadResponseException, IOException, ApduException {
+        return scp11Init(processor, keyParams, ephemeralKeyPair, null, maxCommandDataSize);
+    }
+
+    /**
+     * @param ephemeralPublicKeyValues the public key of {@code ephemeralKeyPair} converted in advance, or null to
+     *                                 convert it here
+     */
+    static ScpState scp11Init(ApduProcessor processor,
+                              Scp11KeyParams keyParams,
+                              @Nullable KeyPair ephemeralKeyPair,
+                              @Nullable PublicKeyValues.Ec ephemeralPublicKeyValues,
+                              int maxCommandDataSize)
+            throws BadResponseException, IOException, ApduException {
         // GPC v2.3 Amendment F (SCP11) v1.4 §7.1.1
         byte params;
         byte kid = keyParams.getKeyRef().getKid();
@@ -264,6 +461,7 @@ class ScpState {
                 byte p2 = (byte) (oceRef.getKid() | (i < n ? 0x80 : 0x00));
                 ApduResponse resp = sendPerformSecurityApdu(
                     processor,
+                    maxCommandDataSize,
                     new Apdu(
                         0x80 /*CLA*/,
                         SecurityDomainSession.INS_PERFORM_SECURITY_OPERATION,
@@ -278,11 +476,10 @@ class ScpState {
             }
         }
 
-        byte[] keyUsage = new byte[]{0x3C}; // AUTHENTICATED | C_MAC | C_DECRYPTION | R_MAC | R_ENCRYPTION
+        byte[] keyUsage = new byte[]{keyParams.securityLevel.getScp11KeyUsage()};
         byte[] keyType = new byte[]{(byte) 0x88}; // AES
         final int keySizeInBytes = keyParams.sessionKeysAlg.getKeySizeInBytes();
-        final int keyLenSize = 1;
-        byte[] keyLen = ByteUtils.intToLength(BigInteger.valueOf(keySizeInBytes), keyLenSize);
+        byte[] keyLen = new byte[]{(byte) keySizeInBytes};
 
         // Host ephemeral key
         try {
@@ -301,28 +498,20 @@ class ScpState {
             }
 
 
-            PublicKeyValues.Ec epkOceEckaValues = (PublicKeyValues.Ec) PublicKeyValues.fromPublicKey(epkOceEcka);
+            PublicKeyValues.Ec epkOceEckaValues = ephemeralKeyPair != null && ephemeralPublicKeyValues != null
+                ? ephemeralPublicKeyValues
+                : (PublicKeyValues.Ec) PublicKeyValues.fromPublicKey(epkOceEcka);
 
             // GPC v2.3 Amendment F (SCP11) v1.4 §7.6.2.3
-            byte[] data = Tlvs.encodeList(
-                    Arrays.asList(
-                            new Tlv(
-                                    0xA6,
-                                    Tlvs.encodeList(
-                                            Arrays.asList(
-                                                    new Tlv(0x90, new byte[]{0x11, params}),
-                                                    new Tlv(0x95, keyUsage),
-                                                    new Tlv(0x80, keyType),
-                                                    new Tlv(0x81, keyLen)
-                                            )
-                                    )
-                            ),
-                            new Tlv(
-                                    0x5F49,
-                                    epkOceEckaValues.getEncodedPoint()
-                            )
-                    )
-            );
+            byte[] data = new TlvWriter()
+                    .begin(0xA6)
+                    .put(0x90, new byte[]{0x11, params})
+                    .put(0x95, keyUsage)
+                    .put(0x80, keyType)
+                    .put(0x81, keyLen)
+                    .end()
+                    .put(0x5F49, epkOceEckaValues.getEncodedPoint())
+                    .toByteArray();
 
             // Static host key (SCP11a/c), or ephemeral key again (SCP11b)
             PrivateKey skOceEcka = keyParams.skOceEcka != null ? keyParams.skOceEcka : eskOceEcka;
@@ -346,9 +535,9 @@ class ScpState {
             byte[] receipt = Tlvs.unpackValue(0x86, tlvs.get(1).getBytes());
 
             // GPC v2.3 Amendment F (SCP11) v1.3 §3.1.2 Key Derivation
-            byte[] keyAgreementData = ByteBuffer.allocate(data.length + epkSdEckaTlv.getBytes().length)
+            byte[] keyAgreementData = ByteBuffer.allocate(data.length + epkSdEckaTlv.getBytesBuffer().remaining())
                     .put(data)
-                    .put(epkSdEckaTlv.getBytes())
+                    .put(epkSdEckaTlv.getBytesBuffer())
                     .array();
             byte[] sharedInfo = ByteBuffer.allocate(keyUsage.length + keyType.length + keyLen.length)
                     .put(keyUsage)
@@ -363,12 +552,23 @@ class ScpState {
                     .toPublicKey(), true);
             byte[] ka1 = keyAgreement.generateSecret();
 
-            keyAgreement.init(skOceEcka);
-            keyAgreement.doPhase(pkSdEcka, true);
-            byte[] ka2 = keyAgreement.generateSecret();
+            // Static shared secret doesn't depend on the session for SCP11a/c, so it can be cached
+            final StaticSharedSecretCache cache = keyParams.staticSecretCache;
+            final Object cacheKey = keyParams.staticSecretCacheKey;
+            byte[] ka2 = cache != null && cacheKey != null ? cache.get(cacheKey) : null;
+            if (ka2 == null) {
+                keyAgreement.init(skOceEcka);
+                keyAgreement.doPhase(pkSdEcka, true);
+                ka2 = keyAgreement.generateSecret();
+                if (cache != null && cacheKey != null) {
+                    cache.put(cacheKey, ka2);
+                }
+            }
 
             byte[] keyMaterial = ByteBuffer.allocate(ka1.length + ka2.length).put(ka1).put(ka2)
                     .array();
+            Arrays.fill(ka1, (byte) 0);
+            Arrays.fill(ka2, (byte) 0);
 
             final int keysNum = 5;
             final int allKeysSize = keySizeInBytes * keysNum;
@@ -385,6 +585,7 @@ class ScpState {
                 System.arraycopy(digest, 0, keyData, i * hashSize, digest.length);
                 Arrays.fill(digest, (byte) 0);
             }
+            Arrays.fill(keyMaterial, (byte) 0);
             List<SecretKey> keys = new ArrayList<>();
             for (int i = 0; i < keysNum; i++) {
                 keys.add(new SecretKeySpec(keyData, i * keySizeInBytes, keySizeInBytes, "AES"));
@@ -393,9 +594,7 @@ class ScpState {
 
             // 5 keys were derived. One for verification of receipt, 4 keys to use
             SecretKey key = keys.get(0);
-            final Mac mac = Mac.getInstance("AESCMAC");
-            mac.init(key);
-            byte[] genReceipt = mac.doFinal(keyAgreementData);
+            byte[] genReceipt = AesCmac.mac(key, keyAgreementData);
             if (!MessageDigest.isEqual(receipt, genReceipt)) {
                 throw new BadResponseException("Receipt does not match");
             }
@@ -425,13 +624,12 @@ class ScpState {
 
     // TODO: Investigate if separate ApduProcessor class is convenient
     private static ApduResponse sendPerformSecurityApdu(final ApduProcessor processor,
+                                                        final int maxChunk,
                                                         final Apdu apdu) throws BadResponseException, IOException {
-        final byte[] data = apdu.getData();
-        int offset = 0;
-        int shortApduMaxChunk = 0xFF;
-        byte[] chunk;
-        while (data.length - offset > shortApduMaxChunk) {
-            chunk = Arrays.copyOfRange(data, offset, (offset + shortApduMaxChunk));
+        final ByteBuffer data = apdu.dataBuffer();
+        while (data.remaining() > maxChunk) {
+            final ByteBuffer chunk = data.duplicate();
+            chunk.limit(chunk.position() + maxChunk);
             ApduResponse response = processor.sendApdu(new Apdu(
                     (byte) (apdu.getCla() | 0x10),
                     apdu.getIns(),
@@ -443,29 +641,28 @@ class ScpState {
             if (response.getSw() != SW.OK) {
                 return response;
             }
-            offset += shortApduMaxChunk;
+            data.position(data.position() + maxChunk);
         }
-        chunk = Arrays.copyOfRange(data, offset, data.length);
         return processor.sendApdu(
             new Apdu(
                 apdu.getCla(),
                 apdu.getIns(),
                 apdu.getP1(),
                 apdu.getP2(),
-                chunk,
+                data,
                 apdu.getLe(),
                 apdu.isForceAddLe()));
     }
 
     // Secure Channel Protocol '03' v1.2, "Table 5-1: Values of Parameter “i”"
-    private static void checkCardSecurityLevel(final byte iParameter) {
+    static void checkCardSecurityLevel(final byte iParameter, final SecurityLevel level) {
         final byte rMacMask = 0b01000000;
         final boolean isRMacSupported = ((iParameter & rMacMask) != 0);
         final byte rEncryptionMask = 0b00100000;
         final boolean isREncryptionSupported = ((iParameter & rEncryptionMask) != 0);
-        if (!isRMacSupported || !isREncryptionSupported) {
-            throw new UnsupportedOperationException("Only maximum security level is supported: " +
-                "C-DECRYPTION, R-ENCRYPTION, C-MAC, and R-MAC. Card doesn't support R-MAC or R-ENCRYPTION");
+        if ((level.responseMac && !isRMacSupported) || (level.responseEncryption && !isREncryptionSupported)) {
+            throw new UnsupportedOperationException("Security level " + level + " is not supported by the card. " +
+                "Card doesn't support R-MAC or R-ENCRYPTION");
         }
     }
 }
@@ -42,15 +42,34 @@
  *   - Added missed JavaDocs
  *   - Added storeAllowlist() method variant for SCP11c mode with allowlist counter
  *   - Added BF21 tag parsing in GET DATA (Certificate Store) response processing
+ *   - Added sendAndReceive() variant over caller-supplied ByteBuffers
+ *   - Added authenticate() variant with the session security level
+ *   - Added setEphemeralKeyPool() method
+ *   - Added sendAndReceive() variant streaming the command data from an InputStream
+ *   - Build command data with TlvWriter, fixed adding to fixed-size list in storeAllowlist()
+ *   - Parse certificates of the Certificate Store as the response chunks arrive
+ *   - Decode and encode GlobalPlatform data objects with declarative TLV schemas
+ *   - Added sendAndReceive() variant sending independent commands in batches, read CA identifiers in one batch
+ *   - Added setPipelineExecutor() method
+ *   - Reject unexpected tags in Key Information and Certificate Store
  */
 
 package com.samsung.openscp;
 
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+import com.samsung.openscp.GlobalPlatformSchemas.Allowlist;
+import com.samsung.openscp.GlobalPlatformSchemas.CaIdentifiers;
+import com.samsung.openscp.GlobalPlatformSchemas.CaIssuer;
+import com.samsung.openscp.GlobalPlatformSchemas.CardRecognitionData;
+import com.samsung.openscp.GlobalPlatformSchemas.CertificateStore;
+import com.samsung.openscp.GlobalPlatformSchemas.DeleteKey;
+import com.samsung.openscp.GlobalPlatformSchemas.GeneratedKey;
+import com.samsung.openscp.GlobalPlatformSchemas.KeyInformation;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Closeable;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.KeyPair;
@@ -66,6 +85,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 import javax.crypto.SecretKey;
@@ -127,6 +147,34 @@ public class SecurityDomainSession implements Closeable {
         protocol.close();
     }
 
+    /**
+     * Enables pipelining of independent secured commands sent with {@link #sendAndReceive(List)} over connections,
+     * that do not implement {@link BatchSmartCardConnection}. The next commands are wrapped while the previous ones
+     * are on the wire, and the responses are unwrapped while the next commands are on the wire.
+     *
+     * <p>
+     * The card I/O must start on another thread promptly, so the executor should have a thread to spare for it. If
+     * the executor runs the task on the calling thread, like a direct executor, rejects it, or does not start it
+     * within 100 ms, like a saturated pool or the single thread executor the calling thread runs on, the commands are
+     * sent one by one instead.
+     *
+     * @param executor executor to run the card I/O on while the calling thread wraps and unwraps, or null to disable
+     * @param depth    the maximum number of commands wrapped ahead of the responses, e.g. 2
+     */
+    public void setPipelineExecutor(@Nullable Executor executor, int depth) {
+        protocol.setPipeline(executor, depth);
+    }
+
+    /**
+     * Sets the pool of pre-generated SCP11 ephemeral OCE key pairs, used by subsequent SCP11 authentications.
+     * Without the pool the key pair is generated during the authentication.
+     *
+     * @param ephemeralKeyPool pool of ephemeral key pairs, may be shared between sessions, or null to disable
+     */
+    public void setEphemeralKeyPool(@Nullable EphemeralKeyPool ephemeralKeyPool) {
+        protocol.setEphemeralKeyPool(ephemeralKeyPool);
+    }
+
     /**
      * Select Security Domain
      */
@@ -144,6 +192,21 @@ public class SecurityDomainSession implements Closeable {
         authenticate(keyParams, mode, hostChallenge);
     }
 
+    /**
+     * Initialize SCP and authenticate the session with the given security level.
+     * <p>
+     * Lower security levels skip unused secure messaging transformations, e.g. for bulk reads of non-sensitive data.
+     * For SCP11 the security level is defined by {@link Scp11KeyParams} and must match the given one.
+     *
+     * @param keyParams SCP key parameters
+     * @param mode      SCP mode
+     * @param level     security level of the session
+     */
+    public void authenticate(ScpKeyParams keyParams, ScpMode mode, SecurityLevel level)
+            throws BadResponseException, ApduException, IOException {
+        authenticate(keyParams, mode, level, null);
+    }
+
     /**
      * Execute GET DATA command
      *
@@ -155,15 +218,18 @@ public class SecurityDomainSession implements Closeable {
      * @throws IOException   in case of connection and communication error
      */
     public byte[] getData(short tag, @Nullable byte[] data) throws ApduException, IOException {
-        return protocol.sendAndReceive(
-            new Apdu(
-                0 /*CLA*/,
-                INS_GET_DATA,
-                tag >> 8,
-                tag & 0xff,
-                data,
-                0x00 /*Le*/,
-                true /*forceAddLe*/));
+        return protocol.sendAndReceive(getDataCommand(tag, data));
+    }
+
+    private static Apdu getDataCommand(short tag, @Nullable byte[] data) {
+        return new Apdu(
+            0 /*CLA*/,
+            INS_GET_DATA,
+            tag >> 8,
+            tag & 0xff,
+            data,
+            0x00 /*Le*/,
+            true /*forceAddLe*/);
     }
 
     /**
@@ -176,7 +242,8 @@ public class SecurityDomainSession implements Closeable {
      * @throws BadResponseException if the TLV tag differs from expectedTag
      */
     public byte[] getCardRecognitionData() throws ApduException, IOException, BadResponseException {
-        return Tlvs.unpackValue(0x73, getData(TAG_CARD_RECOGNITION_DATA, null));
+        TlvSchema.Decoded crd = CardRecognitionData.SCHEMA.decode(getData(TAG_CARD_RECOGNITION_DATA, null));
+        return crd.getBytes(CardRecognitionData.CARD_RECOGNITION_DATA);
     }
 
     /**
@@ -190,8 +257,11 @@ public class SecurityDomainSession implements Closeable {
      */
     public Map<KeyRef, Map<Byte, Byte>> getKeyInformation() throws ApduException, IOException, BadResponseException {
         Map<KeyRef, Map<Byte, Byte>> keys = new HashMap<>();
-        for (Tlv tlv : Tlvs.decodeList(getData(TAG_KEY_INFORMATION, null))) {
-            ByteBuffer data = ByteBuffer.wrap(Tlvs.unpackValue(0xC0, tlv.getBytes()));
+        TlvSchema.Decoded keyInformation = KeyInformation.SCHEMA.decode(getData(TAG_KEY_INFORMATION, null));
+        for (int row = keyInformation.first(KeyInformation.KEY_INFORMATION_TEMPLATE);
+             row >= 0;
+             row = keyInformation.next(row)) {
+            ByteBuffer data = keyInformation.getValue(row);
             KeyRef keyRef = new KeyRef(data.get(), data.get());
             Map<Byte, Byte> components = new HashMap<>();
             while (data.hasRemaining()) {
@@ -216,26 +286,37 @@ public class SecurityDomainSession implements Closeable {
     public List<ScpCertificate> getCertificateBundle(KeyRef keyRef)
             throws ApduException, IOException, CertificateException, BadResponseException {
         Logger.debug(logger, "Getting certificate bundle for key={}", keyRef);
-        List<ScpCertificate> certificates = new ArrayList<>();
+        CertificateStoreListener listener = new CertificateStoreListener();
         try {
-            byte[] resp = getData(TAG_CERTIFICATE_STORE, new Tlv(0xA6, new Tlv(0x83, keyRef.getBytes()).getBytes()).getBytes());
-            byte[] certificatesListEncoded = Tlvs.unpackValue(Short.toUnsignedInt(TAG_CERTIFICATE_STORE), resp);
-            for (Tlv der : Tlvs.decodeList(certificatesListEncoded)) {
-                final byte[] certificateBytes = der.getBytes();
-                final boolean isGlobalPlatformCertificate = GlobalPlatformScpCertificate
-                    .isGlobalPlatformCertificate(certificateBytes);
-                final ScpCertificate certificate = isGlobalPlatformCertificate ?
-                    GlobalPlatformScpCertificate.parse(certificateBytes) :
-                    X509ScpCertificate.parse(certificateBytes);
-                certificates.add(certificate);
-            }
+            protocol.sendAndReceive(
+                new Apdu(
+                    0 /*CLA*/,
+                    INS_GET_DATA,
+                    TAG_CERTIFICATE_STORE >> 8,
+                    TAG_CERTIFICATE_STORE & 0xff,
+                    CertificateStore.REQUEST.encoder()
+                        .put(CertificateStore.REQUEST_KEY_REFERENCE, keyRef.getBytes())
+                        .encode(),
+                    0x00 /*Le*/,
+                    true /*forceAddLe*/),
+                new TlvDecoder(listener));
         } catch (ApduException e) {
             // On REFERENCED_DATA_NOT_FOUND return empty list
             if (e.getSw() != SW.REFERENCED_DATA_NOT_FOUND) {
                 throw e;
             }
+            return new ArrayList<>();
+        } catch (BadResponseException e) {
+            if (e.getCause() instanceof CertificateException) {
+                throw (CertificateException) e.getCause();
+            }
+            throw e;
+        }
+        if (!listener.storeReceived) {
+            throw new BadResponseException(String.format("Expected tag: %02x, got end of data",
+                                                         CertificateStore.CERTIFICATE_STORE.tag));
         }
-        return certificates;
+        return listener.certificates;
     }
 
     /**
@@ -253,34 +334,50 @@ public class SecurityDomainSession implements Closeable {
             throw new IllegalArgumentException("At least one of kloc and klcc must be true");
         }
         Logger.debug(logger, "Getting CA identifiers KLOC={}, KLCC={}", kloc, klcc);
-        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        // Both lists are read in a single batch, if the connection supports it
+        List<Apdu> commands = new ArrayList<>(2);
         if (kloc) {
-            try {
-                data.write(getData(TAG_CA_KLOC_IDENTIFIERS, null));
-            } catch (ApduException e) {
-                if (e.getSw() != SW.REFERENCED_DATA_NOT_FOUND) {
-                    throw e;
-                }
-            }
+            commands.add(getDataCommand(TAG_CA_KLOC_IDENTIFIERS, null));
         }
         if (klcc) {
-            try {
-                data.write(getData(TAG_CA_KLCC_IDENTIFIERS, null));
-            } catch (ApduException e) {
-                if (e.getSw() != SW.REFERENCED_DATA_NOT_FOUND) {
-                    throw e;
-                }
-            }
+            commands.add(getDataCommand(TAG_CA_KLCC_IDENTIFIERS, null));
         }
-        List<Tlv> tlvs = Tlvs.decodeList(data.toByteArray());
         Map<KeyRef, byte[]> identifiers = new HashMap<>();
-        for (int i = 0; i < tlvs.size(); i += 2) {
-            ByteBuffer ref = ByteBuffer.wrap(tlvs.get(i + 1).getValue());
-            identifiers.put(new KeyRef(ref.get(), ref.get()), tlvs.get(i).getValue());
+        for (byte[] responseBytes : protocol.sendAndReceiveBatch(
+                commands, sw -> sw != SW.OK && sw != SW.REFERENCED_DATA_NOT_FOUND)) {
+            ApduResponse response = new ApduResponse(responseBytes);
+            if (response.getSw() == SW.REFERENCED_DATA_NOT_FOUND) {
+                continue;
+            }
+            if (response.getSw() != SW.OK) {
+                throw new ApduException(response.getSw());
+            }
+            readCaIdentifiers(response.getData(), identifiers);
         }
         return identifiers;
     }
 
+    /**
+     * Reads pairs of CA identifier (KLOC or KLCC) and key reference TLVs from a GET DATA response
+     */
+    private static void readCaIdentifiers(byte[] data, Map<KeyRef, byte[]> identifiers) throws IOException {
+        try {
+            TlvSchema.Decoded decoded = CaIdentifiers.SCHEMA.decode(data);
+            if (decoded.count(CaIdentifiers.IDENTIFIER) != decoded.count(CaIdentifiers.KEY_REFERENCE)) {
+                throw new BadResponseException("Key reference is absent");
+            }
+            for (int identifier = decoded.first(CaIdentifiers.IDENTIFIER),
+                     keyReference = decoded.first(CaIdentifiers.KEY_REFERENCE);
+                 identifier >= 0;
+                 identifier = decoded.next(identifier), keyReference = decoded.next(keyReference)) {
+                ByteBuffer ref = decoded.getValue(keyReference);
+                identifiers.put(new KeyRef(ref.get(), ref.get()), decoded.getBytes(identifier));
+            }
+        } catch (BadResponseException e) {
+            throw new IOException(e);
+        }
+    }
+
     /**
      * Execute the STORE DATA command
      *
@@ -305,18 +402,16 @@ public class SecurityDomainSession implements Closeable {
      */
     public void storeCertificateBundle(KeyRef keyRef, List<X509Certificate> certificates) throws ApduException, IOException {
         Logger.debug(logger, "Storing certificate bundle for {}", keyRef);
-        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        TlvSchema.Encoder data = CertificateStore.STORE.encoder()
+                .put(CertificateStore.STORE_KEY_REFERENCE, keyRef.getBytes());
         for (X509Certificate cert : certificates) {
             try {
-                data.write(cert.getEncoded());
+                data.putEncoded(CertificateStore.STORE_CERTIFICATE, cert.getEncoded());
             } catch (CertificateEncodingException e) {
                 throw new IllegalArgumentException("Failed to get encoded version of certificate", e);
             }
         }
-        storeData(Tlvs.encodeList(Arrays.asList(
-                new Tlv(0xA6, new Tlv(0x83, keyRef.getBytes()).getBytes()),
-                new Tlv(TAG_CERTIFICATE_STORE, data.toByteArray())
-        )));
+        storeData(data.encode());
         Logger.info(logger, "Certificate bundle stored");
     }
 
@@ -353,18 +448,14 @@ public class SecurityDomainSession implements Closeable {
     public void storeAllowlist(KeyRef keyRef, List<BigInteger> serials, Integer allowlistCounter)
             throws ApduException, IOException {
         Logger.debug(logger, "Storing serial allowlist for {}", keyRef);
-        ByteArrayOutputStream data = new ByteArrayOutputStream();
-        for (BigInteger serial : serials) {
-            data.write(new Tlv(0x93, serial.toByteArray()).getBytes());
-        }
-        final List<Tlv> cmdData = Arrays.asList(new Tlv(0xA6, new Tlv(0x83, keyRef.getBytes()).getBytes()));
+        TlvSchema.Encoder data = Allowlist.SCHEMA.encoder().put(Allowlist.KEY_REFERENCE, keyRef.getBytes());
         if (allowlistCounter != null) {
-            final int counterSizeBytes = 2;
-            byte[] counterBytes = ByteUtils.intToLength(BigInteger.valueOf(allowlistCounter), counterSizeBytes);
-            cmdData.add(new Tlv(0x92, counterBytes));
+            data.put(Allowlist.COUNTER, allowlistCounter);
+        }
+        for (BigInteger serial : serials) {
+            data.put(Allowlist.SERIAL_NUMBER, serial.toByteArray());
         }
-        cmdData.add(new Tlv(0x70, data.toByteArray()));
-        storeData(Tlvs.encodeList(cmdData));
+        storeData(data.encode());
         Logger.info(logger, "Serial allowlist stored");
     }
 
@@ -385,11 +476,11 @@ public class SecurityDomainSession implements Closeable {
             case ScpKid.SCP11c:
                 klcc = 1;
         }
-        storeData(new Tlv(0xA6, Tlvs.encodeList(Arrays.asList(
-                new Tlv(0x80, new byte[]{klcc}),
-                new Tlv(0x42, ski),
-                new Tlv(0x83, keyRef.getBytes())
-        ))).getBytes());
+        storeData(CaIssuer.SCHEMA.encoder()
+                .put(CaIssuer.KLCC, klcc)
+                .put(CaIssuer.SUBJECT_KEY_IDENTIFIER, ski)
+                .put(CaIssuer.KEY_REFERENCE, keyRef.getBytes())
+                .encode());
         Logger.info(logger, "CA issuer SKI stored");
     }
 
@@ -419,14 +510,14 @@ public class SecurityDomainSession implements Closeable {
             }
         }
         Logger.debug(logger, "Deleting keys matching {}", keyRef);
-        List<Tlv> tlvs = new ArrayList<>();
+        TlvSchema.Encoder data = DeleteKey.SCHEMA.encoder();
         if (kid != 0) {
-            tlvs.add(new Tlv(0xD0, new byte[]{kid}));
+            data.put(DeleteKey.KEY_IDENTIFIER, kid & 0xFF);
         }
         if (kvn != 0) {
-            tlvs.add(new Tlv(0xD2, new byte[]{kvn}));
+            data.put(DeleteKey.KEY_VERSION_NUMBER, kvn & 0xFF);
         }
-        protocol.sendAndReceive(new Apdu(0x80, INS_DELETE, 0, deleteLast ? 1 : 0, Tlvs.encodeList(tlvs)));
+        protocol.sendAndReceive(new Apdu(0x80, INS_DELETE, 0, deleteLast ? 1 : 0, data.encode()));
         Logger.info(logger, "Keys deleted");
     }
 
@@ -443,14 +534,12 @@ public class SecurityDomainSession implements Closeable {
         Logger.debug(logger, "Generating new key for {}" +
                 (replaceKvn == 0 ? "" : String.format(Locale.ROOT, ", replacing KVN=0x%02x", replaceKvn)), keyRef);
 
-        byte[] params = new Tlv(KEY_TYPE_ECC_KEY_PARAMS, new byte[]{0}).getBytes();
-        byte[] data = ByteBuffer
-                .allocate(params.length + 1)
-                .put(keyRef.getKvn())
-                .put(params)
-                .array();
+        byte[] data = new TlvWriter()
+                .putRaw(keyRef.getKvn())
+                .put(KEY_TYPE_ECC_KEY_PARAMS, (byte) 0)
+                .toByteArray();
         byte[] resp = protocol.sendAndReceive(new Apdu(0x80, INS_GENERATE_KEY, replaceKvn, keyRef.getKid(), data));
-        byte[] encodedPoint = Tlvs.unpackValue(KEY_TYPE_ECC_PUBLIC_KEY, resp);
+        byte[] encodedPoint = GeneratedKey.SCHEMA.decode(resp).getBytes(GeneratedKey.PUBLIC_KEY);
         return PublicKeyValues.Ec.fromEncodedPoint(EllipticCurveValues.SECP256R1, encodedPoint);
     }
 
@@ -475,15 +564,15 @@ public class SecurityDomainSession implements Closeable {
             throw new IllegalStateException("No session DEK key available");
         }
 
-        ByteBuffer data = ByteBuffer.allocate(1 + 3 * (18 + 4)).put(keyRef.getKvn());
+        TlvWriter data = new TlvWriter().putRaw(keyRef.getKvn());
         ByteBuffer expected = ByteBuffer.allocate(1 + 3 * 3).put(keyRef.getKvn());
         for (SecretKey key : Arrays.asList(keys.enc, keys.mac, keys.dek)) {
             byte[] kcv = Arrays.copyOf(ScpState.cbcEncrypt(key, DEFAULT_KCV_IV), 3);
             byte[] keyBytes = key.getEncoded();
             try {
-                data.put(new Tlv(KEY_TYPE_AES, dataEncryptor.encrypt(keyBytes)).getBytes())
-                        .put((byte) kcv.length)
-                        .put(kcv);
+                data.put(KEY_TYPE_AES, dataEncryptor.encrypt(keyBytes))
+                        .putRaw((byte) kcv.length)
+                        .putRaw(kcv);
             } finally {
                 Arrays.fill(keyBytes, (byte) 0);
             }
@@ -495,7 +584,7 @@ public class SecurityDomainSession implements Closeable {
                      INS_PUT_KEY,
                      replaceKvn,
                      0x80 | keyRef.getKid(),
-                     data.array(),
+                     data.toByteArray(),
                      0x00 /*Le*/,
                      true /*forceAddLe*/));
         if (!MessageDigest.isEqual(resp, expected.array())) {
@@ -524,18 +613,17 @@ public class SecurityDomainSession implements Closeable {
             throw new IllegalStateException("No session DEK key available");
         }
 
-        ByteArrayOutputStream data = new ByteArrayOutputStream();
-        data.write(keyRef.getKvn());
+        TlvWriter data = new TlvWriter().putRaw(keyRef.getKvn());
         byte[] expected = new byte[]{keyRef.getKvn()};
 
         byte[] keyBytes = ((PrivateKeyValues.Ec) secretKey).getSecret();
         try {
-            data.write(new Tlv(KEY_TYPE_ECC_PRIVATE_KEY, dataEncryptor.encrypt(keyBytes)).getBytes());
+            data.put(KEY_TYPE_ECC_PRIVATE_KEY, dataEncryptor.encrypt(keyBytes));
         } finally {
             Arrays.fill(keyBytes, (byte) 0);
         }
-        data.write(new Tlv(KEY_TYPE_ECC_KEY_PARAMS, new byte[]{0x00}).getBytes());
-        data.write((byte) 0);
+        data.put(KEY_TYPE_ECC_KEY_PARAMS, (byte) 0x00);
+        data.putRaw((byte) 0);
 
         byte[] resp = protocol.sendAndReceive(new Apdu(0x80, INS_PUT_KEY, replaceKvn, keyRef.getKid(), data.toByteArray()));
         if (!MessageDigest.isEqual(resp, expected)) {
@@ -561,13 +649,12 @@ public class SecurityDomainSession implements Closeable {
             throw new IllegalArgumentException("Public key must be of type SECP256R1");
         }
 
-        ByteArrayOutputStream data = new ByteArrayOutputStream();
-        data.write(keyRef.getKvn());
+        TlvWriter data = new TlvWriter().putRaw(keyRef.getKvn());
         byte[] expected = new byte[]{keyRef.getKvn()};
 
-        data.write(new Tlv(KEY_TYPE_ECC_PUBLIC_KEY, ((PublicKeyValues.Ec) publicKey).getEncodedPoint()).getBytes());
-        data.write(new Tlv(KEY_TYPE_ECC_KEY_PARAMS, new byte[]{0x00}).getBytes());
-        data.write((byte) 0);
+        data.put(KEY_TYPE_ECC_PUBLIC_KEY, ((PublicKeyValues.Ec) publicKey).getEncodedPoint());
+        data.put(KEY_TYPE_ECC_KEY_PARAMS, (byte) 0x00);
+        data.putRaw((byte) 0);
 
         byte[] resp = protocol.sendAndReceive(new Apdu(0x80, INS_PUT_KEY, replaceKvn, keyRef.getKid(), data.toByteArray()));
         if (!MessageDigest.isEqual(resp, expected)) {
@@ -645,6 +732,34 @@ public class SecurityDomainSession implements Closeable {
         return protocol.sendAndReceive(apdu);
     }
 
+    /**
+     * Send independent Command APDUs to the smart card, receives the Response APDU payloads.
+     * <p>
+     * If the connection implements {@link BatchSmartCardConnection}, the commands are sent in batches, within a
+     * secure channel wrapped ahead of time. Otherwise they are sent one by one, or pipelined within a secure channel,
+     * see {@link #setPipelineExecutor}. The commands are sent in order and
+     * sending stops at the first error response, the commands after it are not sent.
+     * <p>
+     * NOTE: SW is not included to returned data
+     *
+     * @param apdus Command APDUs to send, none of them may depend on the response to another one
+     * @return Response APDU data payloads, one per command
+     *
+     * @throws ApduException in case if received error in APDU response
+     * @throws IOException   in case of connection and communication error
+     */
+    public List<byte[]> sendAndReceive(List<Apdu> apdus) throws ApduException, IOException {
+        List<byte[]> responses = new ArrayList<>(apdus.size());
+        for (byte[] responseBytes : protocol.sendAndReceiveBatch(apdus, StopCondition.onError())) {
+            ApduResponse response = new ApduResponse(responseBytes);
+            if (response.getSw() != SW.OK) {
+                throw new ApduException(response.getSw());
+            }
+            responses.add(response.getData());
+        }
+        return responses;
+    }
+
     /**
      * Send Command APDU to the smart card, receives the raw Response APDU
      *
@@ -658,6 +773,74 @@ public class SecurityDomainSession implements Closeable {
         return protocol.sendAndReceiveApdu(apdu);
     }
 
+    /**
+     * Send Command APDU to the smart card, writes the Response APDU payload to the caller-supplied buffer.
+     * <p>
+     * Within a secure channel the command is padded, encrypted and MACed, and the response is un-MACed and
+     * decrypted in place, so no intermediate copies of the payload are allocated. Data, that does not fit into a
+     * single command, is sent with command chaining, every segment is secured as a separate command.
+     * <p>
+     * NOTE: SW is not included to returned data
+     *
+     * @param cla      CLA byte of the Command APDU
+     * @param ins      INS byte of the Command APDU
+     * @param p1       P1 byte of the Command APDU
+     * @param p2       P2 byte of the Command APDU
+     * @param data     Command APDU data payload, its remaining bytes are consumed
+     * @param le       Le value of the Command APDU, 0 to omit Le
+     * @param response buffer to write Response APDU data payload to. Within a secure channel it must have room
+     *                 for the padded response cryptogram
+     * @return the number of bytes written to {@code response}
+     *
+     * @throws ApduException in case if received error in APDU response
+     * @throws IOException   in case of connection and communication error
+     */
+    public int sendAndReceive(int cla, int ins, int p1, int p2, ByteBuffer data, int le, ByteBuffer response)
+            throws ApduException, IOException {
+        return protocol.sendAndReceive(
+                Apdu.validateByte(cla, "CLA"),
+                Apdu.validateByte(ins, "INS"),
+                Apdu.validateByte(p1, "P1"),
+                Apdu.validateByte(p2, "P2"),
+                data,
+                le,
+                response);
+    }
+
+    /**
+     * Send Command APDU with the data read from a stream to the smart card, writes the Response APDU payload to the
+     * caller-supplied buffer.
+     * <p>
+     * Within a secure channel the data is read and sent segment by segment with command chaining, every segment is
+     * padded, encrypted and MACed as a separate command. So a large payload is never buffered as a whole.
+     * <p>
+     * NOTE: SW is not included to returned data
+     *
+     * @param cla      CLA byte of the Command APDU
+     * @param ins      INS byte of the Command APDU
+     * @param p1       P1 byte of the Command APDU
+     * @param p2       P2 byte of the Command APDU
+     * @param data     Command APDU data payload, is read until the end of the stream and not closed
+     * @param le       Le value of the last Command APDU, 0 to omit Le
+     * @param response buffer to write Response APDU data payload to. Within a secure channel it must have room
+     *                 for the padded response cryptogram
+     * @return the number of bytes written to {@code response}
+     *
+     * @throws ApduException in case if received error in APDU response
+     * @throws IOException   in case of connection and communication error
+     */
+    public int sendAndReceive(int cla, int ins, int p1, int p2, InputStream data, int le, ByteBuffer response)
+            throws ApduException, IOException {
+        return protocol.sendAndReceive(
+                Apdu.validateByte(cla, "CLA"),
+                Apdu.validateByte(ins, "INS"),
+                Apdu.validateByte(p1, "P1"),
+                Apdu.validateByte(p2, "P2"),
+                data,
+                le,
+                response);
+    }
+
     void authenticate(ScpKeyParams keyParams, ScpMode mode, @Nullable KeyPair ephemeralKeys)
             throws BadResponseException, ApduException, IOException {
         dataEncryptor = protocol.initScp(keyParams, mode, ephemeralKeys);
@@ -665,6 +848,55 @@ public class SecurityDomainSession implements Closeable {
 
     void authenticate(ScpKeyParams keyParams, ScpMode mode, @Nullable byte[] hostChallenge)
             throws BadResponseException, ApduException, IOException {
-        dataEncryptor = protocol.initScp(keyParams, mode, hostChallenge);
+        authenticate(keyParams, mode, null, hostChallenge);
+    }
+
+    void authenticate(ScpKeyParams keyParams,
+                      ScpMode mode,
+                      @Nullable SecurityLevel level,
+                      @Nullable byte[] hostChallenge)
+            throws BadResponseException, ApduException, IOException {
+        dataEncryptor = protocol.initScp(keyParams, mode, level, hostChallenge);
+    }
+
+    /**
+     * Parses each certificate of the Certificate Store as soon as it is received
+     */
+    private static class CertificateStoreListener implements TlvDecoder.Listener {
+        private final List<ScpCertificate> certificates = new ArrayList<>();
+        private boolean storeReceived = false;
+
+        @Override
+        public boolean descend(int tag, int depth) throws BadResponseException {
+            if (depth > 0 || storeReceived) {
+                return false;
+            }
+            if (tag != CertificateStore.CERTIFICATE_STORE.tag) {
+                throw new BadResponseException(String.format("Expected tag: %02x, got %02x",
+                                                             CertificateStore.CERTIFICATE_STORE.tag, tag));
+            }
+            storeReceived = true;
+            return true;
+        }
+
+        @Override
+        public void onTlv(Tlv tlv, int depth) throws BadResponseException {
+            if (depth == 0) {
+                return; // Data after the Certificate Store is ignored
+            }
+            final boolean isGlobalPlatformCertificate = tlv.getTag() == CertificateStore.GP_CERTIFICATE.tag;
+            if (!isGlobalPlatformCertificate && tlv.getTag() != CertificateStore.X509_CERTIFICATE.tag) {
+                throw new BadResponseException(String.format("Certificate Store: unexpected tag %02x", tlv.getTag()));
+            }
+            final byte[] certificateBytes = tlv.getBytes();
+            try {
+                final ScpCertificate certificate = isGlobalPlatformCertificate ?
+                    GlobalPlatformScpCertificate.parse(certificateBytes) :
+                    X509ScpCertificate.parse(certificateBytes);
+                certificates.add(certificate);
+            } catch (CertificateException e) {
+                throw new BadResponseException("Invalid certificate", e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
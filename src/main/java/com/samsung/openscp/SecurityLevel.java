@@ -0,0 +1,79 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+/**
+ * Security level of the secure channel session, which defines the secure messaging applied to commands and
+ * responses. C-MAC is always applied.
+ *
+ * @see "Secure Channel Protocol '03' v1.2, section 5.1.1 EXTERNAL AUTHENTICATE Command Message"
+ * @see "GlobalPlatform Card Specification v2.3.1, Table 11-17: Key Usage Qualifier Coding"
+ */
+public enum SecurityLevel {
+    /** C-MAC */
+    C_MAC(false, false, false),
+
+    /** C-MAC and R-MAC */
+    C_MAC_R_MAC(false, true, false),
+
+    /** C-DECRYPTION and C-MAC */
+    C_DECRYPTION_C_MAC(true, false, false),
+
+    /** C-DECRYPTION, R-ENCRYPTION, C-MAC, and R-MAC */
+    C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC(true, true, true);
+
+    final boolean commandEncryption;
+    final boolean responseMac;
+    final boolean responseEncryption;
+
+    SecurityLevel(final boolean commandEncryption, final boolean responseMac, final boolean responseEncryption) {
+        this.commandEncryption = commandEncryption;
+        this.responseMac = responseMac;
+        this.responseEncryption = responseEncryption;
+    }
+
+    /**
+     * @return P1 parameter of SCP03 EXTERNAL AUTHENTICATE command
+     */
+    final byte getScp03SecurityLevel() {
+        return (byte) (0x01 | (commandEncryption ? 0x02 : 0) | (responseMac ? 0x10 : 0) |
+                       (responseEncryption ? 0x20 : 0));
+    }
+
+    /**
+     * Key Usage Qualifier bits, "Table 11-17: Key Usage Qualifier Coding"
+     */
+    private static final int KEY_USAGE_SECURE_MESSAGING_IN_RESPONSE = 0x20;
+    private static final int KEY_USAGE_SECURE_MESSAGING_IN_COMMAND = 0x10;
+    private static final int KEY_USAGE_CONFIDENTIALITY = 0x08;
+    private static final int KEY_USAGE_CRYPTOGRAPHIC_CHECKSUM = 0x04;
+
+    /**
+     * @return Key Usage Qualifier of SCP11 session keys
+     */
+    final byte getScp11KeyUsage() {
+        // C-MAC is always applied: secure messaging in command with a cryptographic checksum
+        int keyUsage = KEY_USAGE_SECURE_MESSAGING_IN_COMMAND | KEY_USAGE_CRYPTOGRAPHIC_CHECKSUM;
+        if (responseMac || responseEncryption) {
+            keyUsage |= KEY_USAGE_SECURE_MESSAGING_IN_RESPONSE;
+        }
+        if (commandEncryption || responseEncryption) {
+            keyUsage |= KEY_USAGE_CONFIDENTIALITY;
+        }
+        return (byte) keyUsage;
+    }
+}
@@ -0,0 +1,69 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fallback {@link BatchSmartCardConnection}, that sends the commands of a batch one by one with
+ * {@link SmartCardConnection#sendAndReceive(byte[])}
+ */
+final class SequentialBatchConnection implements BatchSmartCardConnection {
+    private final SmartCardConnection connection;
+
+    SequentialBatchConnection(SmartCardConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public List<byte[]> transmitBatch(List<ByteBuffer> commands, StopCondition stopCondition) throws IOException {
+        final List<byte[]> responses = new ArrayList<>(commands.size());
+        for (ByteBuffer command : commands) {
+            final byte[] apdu = new byte[command.remaining()];
+            command.get(apdu);
+            final ApduResponse response = new ApduResponse(connection.sendAndReceive(apdu));
+            responses.add(response.getBytes());
+            if (stopCondition.shouldStop(response.getSw())) {
+                break;
+            }
+        }
+        return responses;
+    }
+
+    @Override
+    public byte[] sendAndReceive(byte[] apdu) throws IOException {
+        return connection.sendAndReceive(apdu);
+    }
+
+    @Override
+    public int sendAndReceive(ByteBuffer command, ByteBuffer response) throws IOException {
+        return connection.sendAndReceive(command, response);
+    }
+
+    @Override
+    public boolean isExtendedLengthApduSupported() {
+        return connection.isExtendedLengthApduSupported();
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+}
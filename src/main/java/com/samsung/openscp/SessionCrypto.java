@@ -0,0 +1,154 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Internal per-session crypto engine for SCP secure messaging.
+ * <p>
+ * Cipher instances and {@link AesCmac} engines are keyed with S-ENC, S-MAC and S-RMAC once, when the session is
+ * established. Afterwards only the ICV is re-initialized per command.
+ */
+final class SessionCrypto {
+    private static final int BLOCK_SIZE = 16;
+
+    private final SecretKey senc;
+    private final Cipher icvCipher;
+    private final Cipher cbcEncryptCipher;
+    private final Cipher cbcDecryptCipher;
+    private final AesCmac cmac;
+    private final AesCmac rmac;
+    private final byte[] counterBlock = new byte[BLOCK_SIZE];
+    private final byte[] icv = new byte[BLOCK_SIZE];
+
+    SessionCrypto(SessionKeys keys) {
+        senc = keys.senc;
+        try {
+            @SuppressWarnings("GetInstance") Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding");
+            ecb.init(Cipher.ENCRYPT_MODE, keys.senc);
+            icvCipher = ecb;
+            cbcEncryptCipher = Cipher.getInstance("AES/CBC/NoPadding");
+            cbcEncryptCipher.init(Cipher.ENCRYPT_MODE, keys.senc, new IvParameterSpec(icv));
+            cbcDecryptCipher = Cipher.getInstance("AES/CBC/NoPadding");
+            cbcDecryptCipher.init(Cipher.DECRYPT_MODE, keys.senc, new IvParameterSpec(icv));
+        } catch (GeneralSecurityException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        }
+        cmac = new AesCmac(keys.smac);
+        rmac = new AesCmac(keys.srmac);
+    }
+
+    /**
+     * Encrypts padded command data with S-ENC in CBC mode
+     *
+     * @param padded  command data, padded to the AES block size
+     * @param output  buffer to write the cryptogram to, may share content with {@code padded}
+     * @param counter encryption counter of the command
+     */
+    void encrypt(ByteBuffer padded, ByteBuffer output, int counter) {
+        try {
+            cbcEncryptCipher.init(Cipher.ENCRYPT_MODE, senc, new IvParameterSpec(icv(0x00, counter)));
+            cbcEncryptCipher.doFinal(padded, output);
+        } catch (GeneralSecurityException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Encrypts padded response data with S-ENC in CBC mode, as the card does
+     *
+     * @param padded  response data, padded to the AES block size
+     * @param output  buffer to write the cryptogram to, may share content with {@code padded}
+     * @param counter encryption counter of the command the response belongs to
+     */
+    void encryptResponse(ByteBuffer padded, ByteBuffer output, int counter) {
+        try {
+            cbcEncryptCipher.init(Cipher.ENCRYPT_MODE, senc, new IvParameterSpec(icv(0x80, counter)));
+            cbcEncryptCipher.doFinal(padded, output);
+        } catch (GeneralSecurityException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decrypts response data cryptogram with S-ENC in CBC mode
+     *
+     * @param encrypted response data cryptogram
+     * @param output    buffer to write the padded response data to, may share content with {@code encrypted}
+     * @param counter   encryption counter of the command the response belongs to
+     */
+    void decrypt(ByteBuffer encrypted, ByteBuffer output, int counter) {
+        try {
+            cbcDecryptCipher.init(Cipher.DECRYPT_MODE, senc, new IvParameterSpec(icv(0x80, counter)));
+            cbcDecryptCipher.doFinal(encrypted, output);
+        } catch (GeneralSecurityException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Computes C-MAC with S-MAC over the MAC chaining value and the data
+     *
+     * @param macChain MAC chaining value
+     * @param data     MACed data
+     * @param output   16 bytes array to write the full-size MAC to, may be {@code macChain} itself
+     */
+    void cmac(byte[] macChain, ByteBuffer data, byte[] output) {
+        cmac.update(macChain, 0, macChain.length);
+        cmac.update(data);
+        cmac.doFinal(output, 0);
+    }
+
+    /**
+     * Computes R-MAC with S-RMAC over the MAC chaining value, the response data and the status word
+     *
+     * @param macChain MAC chaining value
+     * @param data     response data without the R-MAC
+     * @param sw       status word of the response
+     * @param output   16 bytes array to write the full-size MAC to
+     */
+    void rmac(byte[] macChain, ByteBuffer data, short sw, byte[] output) {
+        rmac.update(macChain, 0, macChain.length);
+        rmac.update(data);
+        rmac.update((byte) (sw >> 8));
+        rmac.update((byte) sw);
+        rmac.doFinal(output, 0);
+    }
+
+    // Secure Channel Protocol '03' v1.2, "6.2.6 APDU Command Data Field Encryption" and
+    // "6.2.7 APDU Response Data Field Encryption"
+    private byte[] icv(int firstByte, int counter) throws GeneralSecurityException {
+        Arrays.fill(counterBlock, (byte) 0);
+        counterBlock[0] = (byte) firstByte;
+        counterBlock[12] = (byte) (counter >>> 24);
+        counterBlock[13] = (byte) (counter >>> 16);
+        counterBlock[14] = (byte) (counter >>> 8);
+        counterBlock[15] = (byte) counter;
+        icvCipher.doFinal(counterBlock, 0, BLOCK_SIZE, icv, 0);
+        return icv;
+    }
+}
@@ -33,6 +33,10 @@
  * Modifications include:
  *   - Package and import statements updated during code move from the original project
  *   - Add flag to force include 0x00 Le in formatApdu() method
+ *   - Chain commands over slices of the data buffer of the APDU without copying it
+ *   - Format commands in the command buffer of an arena
+ *   - Encode the logical channel number of the connection into CLA
+ *   - Pass the turn of a logical channel on, when a command chain fails before its last command
  */
 
 package com.samsung.openscp;
@@ -44,19 +48,22 @@ class ShortApduProcessor extends ApduFormatProcessor {
     private static final int SHORT_APDU_MAX_CHUNK = 0xff;
 
     ShortApduProcessor(SmartCardConnection connection) {
-        super(connection);
+        this(connection, new ApduArena());
+    }
+
+    ShortApduProcessor(SmartCardConnection connection, ApduArena arena) {
+        super(connection, arena, ApduArena.SHORT_RESPONSE_LENGTH);
     }
 
     @Override
-    byte[] formatApdu(byte cla,
+    ByteBuffer formatApdu(byte cla,
                       byte ins,
                       byte p1,
                       byte p2,
-                      byte[] data,
-                      int offset,
-                      int length,
+                      ByteBuffer data,
                       int le,
                       boolean forceAddLe) {
+        final int length = data.remaining();
         if (length > SHORT_APDU_MAX_CHUNK) {
             throw new IllegalArgumentException("Length must be no greater than " + SHORT_APDU_MAX_CHUNK);
         }
@@ -69,52 +76,62 @@ class ShortApduProcessor extends ApduFormatProcessor {
         if (shouldAddLe) {
             bufSize++;
         }
-        ByteBuffer buf = ByteBuffer.allocate(bufSize)
-                .put(cla)
+        ByteBuffer buf = arena.command(bufSize)
+                .put(LogicalChannel.encodeCla(cla, channel))
                 .put(ins)
                 .put(p1)
                 .put(p2);
         if (length > 0) {
-            buf.put((byte) length).put(data, offset, length);
+            buf.put((byte) length).put(data.duplicate());
         }
         if (shouldAddLe) {
             buf.put((byte) le);
         }
-        return buf.array();
+        buf.flip();
+        return buf;
     }
 
+    @Override
+    boolean isSingleCommand(Apdu apdu) {
+        return apdu.dataLength() <= SHORT_APDU_MAX_CHUNK;
+    }
+
+    /**
+     * If a command of the chain fails before the last one is sent, the turn of a logical channel kept for the chain
+     * is passed on, see {@link ChannelMultiplexer}
+     */
     @Override
     public ApduResponse sendApdu(Apdu apdu) throws IOException {
-        byte[] data = apdu.getData();
-        int offset = 0;
-        while (data.length - offset > SHORT_APDU_MAX_CHUNK) {
-            ApduResponse response = new ApduResponse(
-                connection.sendAndReceive(
+        ByteBuffer data = apdu.dataBuffer();
+        try {
+            while (data.remaining() > SHORT_APDU_MAX_CHUNK) {
+                ByteBuffer chunk = data.duplicate();
+                chunk.limit(chunk.position() + SHORT_APDU_MAX_CHUNK);
+                ApduResponse response = exchange(
                     formatApdu((byte) (apdu.getCla() | 0x10),
-                                apdu.getIns(),
-                                apdu.getP1(),
-                                apdu.getP2(),
-                                data,
-                                offset,
-                                SHORT_APDU_MAX_CHUNK,
-                                apdu.getLe(),
-                                apdu.isForceAddLe())));
-            if (response.getSw() != SW.OK) {
-                return response;
+                               apdu.getIns(),
+                               apdu.getP1(),
+                               apdu.getP2(),
+                               chunk,
+                               apdu.getLe(),
+                               apdu.isForceAddLe()));
+                if (response.getSw() != SW.OK) {
+                    return response;
+                }
+                data.position(data.position() + SHORT_APDU_MAX_CHUNK);
             }
-            offset += SHORT_APDU_MAX_CHUNK;
-        }
-        return new ApduResponse(
-            connection.sendAndReceive(
+            return exchange(
                 formatApdu(apdu.getCla(),
                            apdu.getIns(),
                            apdu.getP1(),
                            apdu.getP2(),
                            data,
-                           offset,
-                           data.length - offset,
                            apdu.getLe(),
-                           apdu.isForceAddLe())));
+                           apdu.isForceAddLe()));
+        } catch (IOException | RuntimeException e) {
+            LogicalChannel.abortChain(connection);
+            throw e;
+        }
     }
 
     @Override
@@ -35,12 +35,15 @@
  *   - Remove extending the YubiKeyConnection class
  *   - Remove getTransport() & getAtr() methods
  *   - YubiKey/YubiKit/Yubico mentions removed from code and comments
+ *   - Added sendAndReceive() variant over buffers, to be overridden by connections transmitting without copies
+ *   - Hand responses, that don't fit into the buffer of the sendAndReceive() variant over buffers, back to the library
  */
 
 package com.samsung.openscp;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A connection capable of sending APDUs and receiving their responses.
@@ -55,6 +58,35 @@ public interface SmartCardConnection extends Closeable {
      */
     byte[] sendAndReceive(byte[] apdu) throws IOException;
 
+    /**
+     * Sends a command APDU held in a buffer to the smart card, and writes the response to a buffer.
+     * <p>
+     * The library formats commands and assembles responses in buffers reused across commands, and sends them with
+     * this method. The default implementation copies the command and the response to and from
+     * {@link #sendAndReceive(byte[])}. Connections, that can transmit from and receive into buffers directly, like
+     * {@code javax.smartcardio.CardChannel.transmit(ByteBuffer, ByteBuffer)}, may override it to avoid the copies.
+     * <p>
+     * The response buffer has room for the response length expected for the command. A connection may return more,
+     * e.g. a reader sending GET RESPONSE automatically returns the full response. The default implementation then
+     * hands the response back to the library, which receives it into a larger buffer. Connections, that may return
+     * more than {@code response.remaining()} bytes, should therefore not override this method.
+     *
+     * @param command  The binary APDU data to be sent, its remaining bytes are consumed.
+     * @param response The buffer to write the response to, has room for the expected response length.
+     * @return The length of the response written to {@code response}
+     * @throws IOException in case of communication error
+     */
+    default int sendAndReceive(ByteBuffer command, ByteBuffer response) throws IOException {
+        final byte[] apdu = new byte[command.remaining()];
+        command.get(apdu);
+        final byte[] received = sendAndReceive(apdu);
+        if (received.length > response.remaining()) {
+            throw new ResponseOverflowException(received);
+        }
+        response.put(received);
+        return received.length;
+    }
+
     /**
      * Standard APDUs have a 1-byte length field, allowing a maximum of 255 payload bytes,
      * which results in a maximum APDU length of 261 bytes. Extended length APDUs have a 3-byte length field,
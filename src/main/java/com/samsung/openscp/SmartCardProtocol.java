@@ -39,25 +39,51 @@
  *   - Removed configure(), enableWorkarounds(), setEnableTouchWorkaround() & setApduFormat() methods
  *   - Removed redundant `public` access modifiers
  *   - Removed check for extended APDU usage for SCP, used max APDU based on the connection settings
+ *   - Added sendAndReceive() variant over caller-supplied ByteBuffers
+ *   - Parametrized initScp() & initScp03() methods with the security level
+ *   - Take SCP11 ephemeral keys from the optional pool
+ *   - Use extended APDUs during SCP11 authentication, if supported by the connection
+ *   - Use extended APDUs for secured commands, if supported by the connection
+ *   - Added sendAndReceive() variant streaming the command data from an InputStream
  *   - Added sendAndReceiveApdu() method to receive raw RAPDU bytes
+ *   - Added sendAndReceive() variant decoding the response TLVs as the response chunks arrive
+ *   - Read response data through the zero-copy accessors
+ *   - Format commands and assemble responses in a per-protocol buffer arena
+ *   - Added sendAndReceiveBatch() method sending independent commands in batches
+ *   - Pipeline independent secured commands over connections without batch support
+ *   - Remember the AID from the FCI of the selected application to verify the SCP03 pseudo-random card challenge
  */
 
 package com.samsung.openscp;
 
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
 import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Support class for communication over a SmartCardConnection.
  * <p>
  * This class handles APDU encoding and chaining, and implements workarounds for known issues.
+ * <p>
+ * Commands are formatted and responses assembled in an {@link ApduArena} owned by the instance, and the returned
+ * response data is copied out of it. An instance must not be used by several threads at once.
  */
 class SmartCardProtocol implements Closeable {
     private static final byte INS_SELECT = (byte) 0xa4;
     private static final byte P1_SELECT = (byte) 0x04;
     private static final byte P2_SELECT = (byte) 0x00;
+    private static final int FCI_TEMPLATE_TAG = 0x6F;
+    private static final int DF_NAME_TAG = 0x84;
 
     private static final byte INS_SEND_REMAINING = (byte) 0xc0;
 
@@ -65,12 +91,27 @@ class SmartCardProtocol implements Closeable {
 
     private final SmartCardConnection connection;
 
+    private final BatchSmartCardConnection batchConnection;
+
+    private final ApduArena arena = new ApduArena();
+
     private boolean extendedApdus = false;
 
     private int maxApduSize = MaxApduSize.SHORT;
 
     private ApduProcessor processor;
 
+    @Nullable
+    private EphemeralKeyPool ephemeralKeyPool;
+
+    @Nullable
+    private Executor pipelineExecutor;
+
+    private int pipelineDepth;
+
+    @Nullable
+    private byte[] selectedAid;
+
     /**
      * Create new instance of {@link SmartCardProtocol}
      * and selects the application for use
@@ -83,8 +124,9 @@ class SmartCardProtocol implements Closeable {
 
     SmartCardProtocol(SmartCardConnection connection, byte insSendRemaining) {
         this.connection = connection;
+        this.batchConnection = BatchSmartCardConnection.sequential(connection);
         this.insSendRemaining = insSendRemaining;
-        processor = new ChainedResponseProcessor(connection, false, maxApduSize, insSendRemaining);
+        processor = new ChainedResponseProcessor(connection, arena, false, maxApduSize, insSendRemaining);
     }
 
     private void resetProcessor(@Nullable ApduProcessor processor) throws IOException {
@@ -92,7 +134,8 @@ class SmartCardProtocol implements Closeable {
         if (processor != null) {
             this.processor = processor;
         } else {
-            this.processor = new ChainedResponseProcessor(connection, extendedApdus, maxApduSize, insSendRemaining);
+            this.processor = new ChainedResponseProcessor(connection, arena, extendedApdus, maxApduSize,
+                                                          insSendRemaining);
         }
     }
 
@@ -102,6 +145,25 @@ class SmartCardProtocol implements Closeable {
         connection.close();
     }
 
+    /**
+     * @param ephemeralKeyPool pool to take SCP11 ephemeral OCE key pairs from, null to generate them inline
+     */
+    void setEphemeralKeyPool(@Nullable EphemeralKeyPool ephemeralKeyPool) {
+        this.ephemeralKeyPool = ephemeralKeyPool;
+    }
+
+    /**
+     * @param executor executor to run the transport stage of pipelined commands on, null to disable pipelining
+     * @param depth    the maximum number of commands wrapped ahead
+     */
+    void setPipeline(@Nullable Executor executor, int depth) {
+        if (executor != null && depth <= 0) {
+            throw new IllegalArgumentException("Pipeline depth must be positive");
+        }
+        this.pipelineExecutor = executor;
+        this.pipelineDepth = depth;
+    }
+
     /**
      * @return the underlying connection
      */
@@ -119,8 +181,11 @@ class SmartCardProtocol implements Closeable {
      */
     byte[] select(byte[] aid) throws IOException, ApplicationNotAvailableException {
         resetProcessor(null);
+        selectedAid = null;
         try {
-            return sendAndReceive(new Apdu(0, INS_SELECT, P1_SELECT, P2_SELECT, aid));
+            final byte[] response = sendAndReceive(new Apdu(0, INS_SELECT, P1_SELECT, P2_SELECT, aid));
+            selectedAid = fciAid(response);
+            return response;
         } catch (ApduException e) {
             // NEO sometimes returns INVALID_INSTRUCTION instead of FILE_NOT_FOUND
             if (e.getSw() == SW.FILE_NOT_FOUND || e.getSw() == SW.INVALID_INSTRUCTION) {
@@ -130,6 +195,21 @@ class SmartCardProtocol implements Closeable {
         }
     }
 
+    /**
+     * The AID may have been selected partially, so the full AID is taken from the FCI
+     *
+     * @param response the response to SELECT
+     * @return the DF name (tag 84) of the FCI template (tag 6F), or null if the response doesn't carry it
+     */
+    @Nullable
+    private static byte[] fciAid(byte[] response) {
+        try {
+            return Tlvs.decodeMap(Tlvs.unpackValue(FCI_TEMPLATE_TAG, response)).get(DF_NAME_TAG);
+        } catch (BadResponseException | IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
     /**
      * Sends APDU command and receives byte array from connection
      * <p>
@@ -158,19 +238,166 @@ class SmartCardProtocol implements Closeable {
         return sendAndReceiveResponse(command).getBytes();
     }
 
+    /**
+     * Sends independent APDU commands, in batches if the connection implements {@link BatchSmartCardConnection}
+     * <p>
+     * With an established secure channel the commands of a batch are wrapped ahead of time. If a batch stops early,
+     * the secure channel state is rolled back to the last command sent, so that the commands not sent are wrapped
+     * again. If the connection does not support batches and a pipeline executor is set, secured commands are
+     * pipelined instead, see {@link #setPipeline}.
+     *
+     * @param commands      well-structured commands that need to be sent
+     * @param stopCondition the condition to stop sending the commands after a response
+     * @return raw RAPDU bytes, one per command sent. If fewer responses than commands are returned, the last one met
+     * the stop condition
+     * @throws IOException in case of connection and communication error
+     */
+    List<byte[]> sendAndReceiveBatch(List<Apdu> commands, StopCondition stopCondition) throws IOException {
+        try {
+            if (pipelineExecutor != null && processor instanceof ScpProcessor
+                && !(connection instanceof BatchSmartCardConnection)) {
+                return ((ScpProcessor) processor).sendPipelined(commands, stopCondition, pipelineExecutor,
+                                                                pipelineDepth);
+            }
+            if (processor instanceof ChainedResponseProcessor) {
+                return ((ChainedResponseProcessor) processor).sendBatch(batchConnection, commands, stopCondition);
+            }
+            final List<byte[]> responses = new ArrayList<>(commands.size());
+            for (Apdu command : commands) {
+                final ApduResponse response = processor.sendApdu(command);
+                responses.add(response.getBytes());
+                if (stopCondition.shouldStop(response.getSw())) {
+                    break;
+                }
+            }
+            return responses;
+        } catch (BadResponseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Sends APDU command and decodes the TLVs of the response data
+     * <p>
+     * Without secure messaging, the response chunks are decoded as they arrive, so that decoding overlaps with the
+     * communication and the full response is never held in memory. TLVs are emitted to the listener of the decoder
+     * before the final status of the response is known.
+     *
+     * @param command well-structured command that needs to be sent
+     * @param decoder the decoder to feed the response data to, finished after the response is received
+     * @throws IOException          in case of connection and communication error
+     * @throws ApduException        in case if received error in APDU response
+     * @throws BadResponseException if the response data is not well-formed TLV or the listener aborts decoding
+     */
+    void sendAndReceive(Apdu command, TlvDecoder decoder) throws IOException, ApduException, BadResponseException {
+        final short sw;
+        if (processor instanceof ChainedResponseProcessor) {
+            sw = ((ChainedResponseProcessor) processor).sendApdu(command, decoder);
+        } else {
+            final ApduResponse response = processor.sendApdu(command);
+            sw = response.getSw();
+            if (sw == SW.OK) {
+                decoder.feed(response.dataBuffer());
+            }
+        }
+        if (sw != SW.OK) {
+            throw new ApduException(sw);
+        }
+        decoder.finish();
+    }
+
+    /**
+     * Sends APDU command built from a header and a data buffer and writes the response data to a buffer
+     * <p>
+     * With an established secure channel the command is wrapped and the response unwrapped in place, without
+     * intermediate copies of the payload. Data, that does not fit into a single command, is sent with command
+     * chaining.
+     *
+     * @param data     the command data, its remaining bytes are consumed
+     * @param le       the expected response length
+     * @param response buffer to write the response data to, must have room for the padded response cryptogram
+     * @return the number of response data bytes written
+     * @throws IOException   in case of connection and communication error
+     * @throws ApduException in case if received error in APDU response
+     */
+    int sendAndReceive(byte cla, byte ins, byte p1, byte p2, ByteBuffer data, int le, ByteBuffer response)
+            throws IOException, ApduException {
+        final int start = response.position();
+        final short sw;
+        try {
+            if (processor instanceof ScpProcessor) {
+                sw = ((ScpProcessor) processor).sendApdu(cla, ins, p1, p2, data, le, response);
+            } else {
+                final ApduResponse resp = processor.sendApdu(new Apdu(cla, ins, p1, p2, data, le, false));
+                data.position(data.limit());
+                sw = resp.getSw();
+                if (sw == SW.OK) {
+                    response.put(resp.dataBuffer());
+                }
+            }
+        } catch (BadResponseException e) {
+            throw new IOException(e);
+        }
+        if (sw != SW.OK) {
+            response.position(start);
+            throw new ApduException(sw);
+        }
+        return response.position() - start;
+    }
+
+    /**
+     * Sends APDU command built from a header and the data read from a stream, and writes the response data to a
+     * buffer
+     * <p>
+     * With an established secure channel the data is read, wrapped and sent segment by segment with command
+     * chaining. Otherwise the data is read into memory and sent as a single command.
+     *
+     * @param data     the command data, is read until the end of the stream
+     * @param le       the expected response length
+     * @param response buffer to write the response data to, must have room for the padded response cryptogram
+     * @return the number of response data bytes written
+     * @throws IOException   in case of connection and communication error
+     * @throws ApduException in case if received error in APDU response
+     */
+    int sendAndReceive(byte cla, byte ins, byte p1, byte p2, InputStream data, int le, ByteBuffer response)
+            throws IOException, ApduException {
+        if (!(processor instanceof ScpProcessor)) {
+            final ByteArrayOutputStream commandData = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[MaxApduSize.SHORT];
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                commandData.write(buffer, 0, read);
+            }
+            return sendAndReceive(cla, ins, p1, p2, ByteBuffer.wrap(commandData.toByteArray()), le, response);
+        }
+        final int start = response.position();
+        final short sw;
+        try {
+            sw = ((ScpProcessor) processor).sendApdu(cla, ins, p1, p2, data, le, response);
+        } catch (BadResponseException e) {
+            throw new IOException(e);
+        }
+        if (sw != SW.OK) {
+            response.position(start);
+            throw new ApduException(sw);
+        }
+        return response.position() - start;
+    }
+
     @Nullable DataEncryptor initScp(ScpKeyParams keyParams, ScpMode mode)
             throws IOException, ApduException, BadResponseException {
-        return initScp(keyParams, mode, null, null);
+        return initScp(keyParams, mode, null, null, null);
     }
 
-    @Nullable DataEncryptor initScp(ScpKeyParams keyParams, ScpMode mode, @Nullable byte[] hostChallenge)
+    @Nullable DataEncryptor initScp(ScpKeyParams keyParams, ScpMode mode, @Nullable SecurityLevel level,
+                                    @Nullable byte[] hostChallenge)
             throws IOException, ApduException, BadResponseException {
-        return initScp(keyParams, mode, hostChallenge, null);
+        return initScp(keyParams, mode, level, hostChallenge, null);
     }
 
     @Nullable DataEncryptor initScp(ScpKeyParams keyParams, ScpMode mode, @Nullable KeyPair ephemeralKeys)
             throws IOException, ApduException, BadResponseException {
-        return initScp(keyParams, mode, null, ephemeralKeys);
+        return initScp(keyParams, mode, null, null, ephemeralKeys);
     }
 
     private ApduResponse sendAndReceiveResponse(Apdu command) throws IOException, ApduException {
@@ -185,22 +412,33 @@ class SmartCardProtocol implements Closeable {
         }
     }
 
+    /**
+     * @param level security level of the session. For SCP03 defaults to the maximum security level. For SCP11 the
+     *              level is defined by {@link Scp11KeyParams}, so if set, it must match.
+     */
     private @Nullable DataEncryptor initScp(ScpKeyParams keyParams,
                                             ScpMode mode,
+                                            @Nullable SecurityLevel level,
                                             @Nullable byte[] hostChallenge,
                                             @Nullable KeyPair ephemeralKeys)
             throws IOException, ApduException, BadResponseException {
         try {
+            extendedApdus = connection.isExtendedLengthApduSupported();
+            maxApduSize = extendedApdus ? MaxApduSize.EXTENDED : MaxApduSize.SHORT;
             ScpState state;
             if (keyParams instanceof Scp03KeyParams) {
-                state = initScp03((Scp03KeyParams) keyParams, mode, hostChallenge);
+                if (level == null) {
+                    level = SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC;
+                }
+                state = initScp03((Scp03KeyParams) keyParams, mode, level, hostChallenge);
             } else if (keyParams instanceof Scp11KeyParams) {
+                if (level != null && level != ((Scp11KeyParams) keyParams).securityLevel) {
+                    throw new IllegalArgumentException("SCP11 security level must be set in Scp11KeyParams");
+                }
                 state = initScp11((Scp11KeyParams) keyParams, ephemeralKeys, mode);
             } else {
                 throw new IllegalArgumentException("Unsupported ScpKeyParams");
             }
-            extendedApdus = connection.isExtendedLengthApduSupported();
-            maxApduSize = extendedApdus ? MaxApduSize.EXTENDED : MaxApduSize.SHORT;
             return state.getDataEncryptor();
         } catch (ApduException e) {
             if (e.getSw() == SW.CLASS_NOT_SUPPORTED) {
@@ -210,13 +448,15 @@ class SmartCardProtocol implements Closeable {
         }
     }
 
-    private ScpState initScp03(Scp03KeyParams keyParams, ScpMode mode, @Nullable byte[] hostChallenge) throws IOException, ApduException, BadResponseException {
-        Pair<ScpState, byte[]> pair = ScpState.scp03Init(processor, keyParams, mode, hostChallenge);
-        ScpProcessor processor = new ScpProcessor(connection, pair.first, maxApduSize, insSendRemaining, mode);
+    private ScpState initScp03(Scp03KeyParams keyParams, ScpMode mode, SecurityLevel level, @Nullable byte[] hostChallenge) throws IOException, ApduException, BadResponseException {
+        Pair<ScpState, byte[]> pair = ScpState.scp03Init(processor, keyParams, mode, level, hostChallenge,
+                                                                 selectedAid);
+        ScpProcessor processor = new ScpProcessor(connection, arena, pair.first, extendedApdus, maxApduSize,
+                                                  insSendRemaining, mode, level);
 
         // Send EXTERNAL AUTHENTICATE
-        // P1 = C-DECRYPTION, R-ENCRYPTION, C-MAC, and R-MAC
-        ApduResponse resp = processor.sendApdu(new Apdu(0x84, 0x82, 0x33, 0, pair.second), false);
+        // P1 = security level
+        ApduResponse resp = processor.sendApdu(new Apdu(0x84, 0x82, level.getScp03SecurityLevel(), 0, pair.second), false);
         if (resp.getSw() != SW.OK) {
             throw new ApduException(resp.getSw());
         }
@@ -226,8 +466,19 @@ class SmartCardProtocol implements Closeable {
 
     private ScpState initScp11(Scp11KeyParams keyParams, @Nullable KeyPair ephemeralKeys, ScpMode mode)
             throws IOException, ApduException, BadResponseException {
-        ScpState scp = ScpState.scp11Init(processor, keyParams, ephemeralKeys);
-        resetProcessor(new ScpProcessor(connection, scp, maxApduSize, insSendRemaining, mode));
+        PublicKeyValues.Ec ephemeralPublicKeyValues = null;
+        if (ephemeralKeys == null && ephemeralKeyPool != null) {
+            final EphemeralKeyPool.PooledKeyPair pooled = ephemeralKeyPool.take(keyParams.pkSdEcka);
+            ephemeralKeys = pooled.keyPair;
+            ephemeralPublicKeyValues = pooled.publicKeyValues;
+        }
+        // Certificates are uploaded with a single extended PERFORM SECURITY OPERATION each, if supported
+        resetProcessor(null);
+        final int maxCommandDataSize = extendedApdus ? maxApduSize - MaxApduSize.EXTENDED_OVERHEAD : MaxApduSize.SHORT;
+        ScpState scp = ScpState.scp11Init(processor, keyParams, ephemeralKeys, ephemeralPublicKeyValues,
+                                          maxCommandDataSize);
+        resetProcessor(new ScpProcessor(connection, arena, scp, extendedApdus, maxApduSize, insSendRemaining, mode,
+                                        keyParams.securityLevel));
         return scp;
     }
 }
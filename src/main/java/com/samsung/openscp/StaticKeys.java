@@ -36,17 +36,15 @@
  *   - All AES keys sizes support added
  *   - Code refactored
  *   - Add missed JavaDocs
+ *   - Use built-in AES-CMAC implementation for key derivation
  */
 
 package com.samsung.openscp;
 
 import javax.annotation.Nullable;
-import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
 /**
@@ -109,8 +107,6 @@ public class StaticKeys {
                         .array();
             }
             return new SecretKeySpec(digest, 0, derivedDataLength, "AES");
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new UnsupportedOperationException("Cryptography provider does not support AESCMAC", e);
         } finally {
             if (digest != null) {
                 Arrays.fill(digest, (byte) 0);
@@ -133,10 +129,7 @@ public class StaticKeys {
                 .array();
     }
 
-    private static byte[] doAesCmac(final SecretKey aesKey, final byte[] derivationInputData)
-            throws NoSuchAlgorithmException, InvalidKeyException {
-        final Mac mac = Mac.getInstance("AESCMAC");
-        mac.init(aesKey);
-        return mac.doFinal(derivationInputData);
+    private static byte[] doAesCmac(final SecretKey aesKey, final byte[] derivationInputData) {
+        return AesCmac.mac(aesKey, derivationInputData);
     }
 }
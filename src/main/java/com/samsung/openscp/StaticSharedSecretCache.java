@@ -0,0 +1,193 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of SCP11a/c static shared secrets (ShSes), i.e. ECDH(SK.OCE.ECKA, PK.SD.ECKA).
+ * <p>
+ * The static shared secret depends only on the OCE static private key and the SD static public key, so when the
+ * same OCE re-authenticates against the same Security Domain it can be reused and only the ephemeral key agreement
+ * is performed. The least recently used secret is evicted when the cache is full. Evicted secrets are zeroized.
+ * <p>
+ * OCE private keys, that don't expose their encoding, like keys held by a PKCS#11 token, are identified by the key
+ * object, so their secrets are reused as long as the same key object is used.
+ * <p>
+ * The instance is thread-safe and may be shared by several {@link Scp11KeyParams} and sessions.
+ */
+public final class StaticSharedSecretCache {
+    private final int maxEntries;
+    private final LinkedHashMap<Object, byte[]> secrets;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * @param maxEntries maximum number of (OCE key, SD key) pairs to keep
+     */
+    public StaticSharedSecretCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+        secrets = new LinkedHashMap<Object, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, byte[]> eldest) {
+                if (size() > StaticSharedSecretCache.this.maxEntries) {
+                    Arrays.fill(eldest.getValue(), (byte) 0);
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return number of lookups that found the secret
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of lookups that didn't find the secret
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of secrets evicted because the cache was full
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return ratio of lookups that found the secret, 0 if there were no lookups
+     */
+    public synchronized double getHitRatio() {
+        final long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * @return number of cached secrets
+     */
+    public synchronized int size() {
+        return secrets.size();
+    }
+
+    /**
+     * Zeroizes and removes all cached secrets. Statistics are kept.
+     */
+    public synchronized void clear() {
+        for (Iterator<byte[]> it = secrets.values().iterator(); it.hasNext(); ) {
+            Arrays.fill(it.next(), (byte) 0);
+            it.remove();
+        }
+    }
+
+    /**
+     * @param key the key returned by {@link #keyOf}
+     * @return a copy of the cached secret, to be zeroized by the caller, or null if there is none
+     */
+    synchronized byte[] get(final Object key) {
+        final byte[] secret = secrets.get(key);
+        if (secret == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return Arrays.copyOf(secret, secret.length);
+    }
+
+    /**
+     * Caches a copy of the secret
+     *
+     * @param key the key returned by {@link #keyOf}
+     */
+    synchronized void put(final Object key, final byte[] secret) {
+        final byte[] previous = secrets.put(key, Arrays.copyOf(secret, secret.length));
+        if (previous != null) {
+            Arrays.fill(previous, (byte) 0);
+        }
+    }
+
+    /**
+     * Computes the cache key of a pair of keys. It is computed once per {@link Scp11KeyParams}, not per handshake.
+     * <p>
+     * The private key is not kept in the cache, only its fingerprint together with the public key. Keys, that
+     * don't expose their encoding, like PKCS#11 private keys, are identified by the key object instead, so their
+     * secrets are only found for the same key object, and the cache references the key object until the entry is
+     * evicted.
+     */
+    static Object keyOf(final PrivateKey skOceEcka, final PublicKey pkSdEcka) {
+        final byte[] encodedPublicKey = pkSdEcka.getEncoded();
+        final byte[] encodedPrivateKey = skOceEcka.getEncoded();
+        if (encodedPrivateKey == null || encodedPublicKey == null) {
+            return new IdentityKey(skOceEcka, pkSdEcka);
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(encodedPublicKey);
+            digest.update(encodedPrivateKey);
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            //This should never happen
+            throw new RuntimeException(e);
+        } finally {
+            Arrays.fill(encodedPrivateKey, (byte) 0);
+        }
+    }
+
+    private static final class IdentityKey {
+        private final PrivateKey skOceEcka;
+        private final PublicKey pkSdEcka;
+
+        IdentityKey(final PrivateKey skOceEcka, final PublicKey pkSdEcka) {
+            this.skOceEcka = skOceEcka;
+            this.pkSdEcka = pkSdEcka;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IdentityKey)) {
+                return false;
+            }
+            final IdentityKey other = (IdentityKey) o;
+            return skOceEcka == other.skOceEcka && pkSdEcka == other.pkSdEcka;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(skOceEcka) + System.identityHashCode(pkSdEcka);
+        }
+    }
+}
@@ -33,13 +33,14 @@
  * Modifications include:
  *   - Package and import statements updated during code move from the original project
  *   - Removed redundant `public` access modifiers
+ *   - Parsed Tlv references the source array instead of copying and re-encoding it
+ *   - Encode tag and length with TlvWriter instead of BigInteger and ByteArrayOutputStream
  */
 
 package com.samsung.openscp;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
-import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Locale;
@@ -48,11 +49,16 @@ import java.util.Locale;
  * Tag, length, Value structure that helps to parse APDU response data.
  * <p>
  * This class handles BER-TLV encoded data with determinate length.
+ * <p>
+ * A parsed Tlv is a view over the source array: it only records the tag and the offsets of the header and the
+ * value, so nothing is copied until {@link #getValue()} or {@link #getBytes()} is called. The source must not be
+ * modified while the Tlv is in use.
  */
 class Tlv {
     private final int tag;
     private final int length;
     private final byte[] bytes;
+    private final int start;
     private final int offset;
 
     /**
@@ -60,27 +66,32 @@ class Tlv {
      */
     Tlv(int tag, @Nullable byte[] value) {
         this.tag = tag;
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-
-        byte[] tagBytes = BigInteger.valueOf(tag).toByteArray();
-        int stripLeading = tagBytes[0] == 0 ? 1 : 0;
-        stream.write(tagBytes, stripLeading, tagBytes.length - stripLeading);
-
         length = value == null ? 0 : value.length;
-        if (length < 0x80) {
-            stream.write(length);
-        } else {
-            byte[] lnBytes = BigInteger.valueOf(length).toByteArray();
-            stripLeading = lnBytes[0] == 0 ? 1 : 0;
-            stream.write(0x80 | lnBytes.length - stripLeading);
-            stream.write(lnBytes, stripLeading, lnBytes.length - stripLeading);
-        }
+        offset = TlvWriter.getTagLength(tag) + TlvWriter.getLengthLength(length);
+        start = 0;
+        bytes = new byte[offset + length];
 
-        offset = stream.size();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        TlvWriter.putTag(buffer, tag);
+        TlvWriter.putLength(buffer, length);
         if (value != null) {
-            stream.write(value, 0, length);
+            buffer.put(value);
         }
-        bytes = stream.toByteArray();
+    }
+
+    /**
+     * Creates a view over an encoded Tlv
+     *
+     * @param bytes  the source array
+     * @param start  the offset of the tag in the source array
+     * @param offset the offset of the value in the source array
+     */
+    private Tlv(int tag, int length, byte[] bytes, int start, int offset) {
+        this.tag = tag;
+        this.length = length;
+        this.bytes = bytes;
+        this.start = start;
+        this.offset = offset;
     }
 
     /**
@@ -97,6 +108,13 @@ class Tlv {
         return Arrays.copyOfRange(bytes, offset, offset + length);
     }
 
+    /**
+     * Returns the value without copying it. The buffer shares content with the Tlv and must not be modified.
+     */
+    ByteBuffer getValueBuffer() {
+        return ByteBuffer.wrap(bytes, offset, length).slice();
+    }
+
     /**
      * Returns the length of the value.
      */
@@ -108,7 +126,15 @@ class Tlv {
      * Returns the Tlv as a BER-TLV encoded byte array.
      */
     byte[] getBytes() {
-        return Arrays.copyOf(bytes, bytes.length);
+        return Arrays.copyOfRange(bytes, start, offset + length);
+    }
+
+    /**
+     * Returns the BER-TLV encoding without copying it. The buffer shares content with the Tlv and must not be
+     * modified.
+     */
+    ByteBuffer getBytesBuffer() {
+        return ByteBuffer.wrap(bytes, start, offset + length - start).slice();
     }
 
     @Override
@@ -143,7 +169,14 @@ class Tlv {
         return parse(data, 0, data.length);
     }
 
+    /**
+     * Parse a Tlv from the current position of the buffer and advance the position past it.
+     * <p>
+     * If the buffer is backed by an accessible array, the Tlv is a view over it. Otherwise the encoded Tlv is
+     * copied once.
+     */
     static Tlv parseFrom(ByteBuffer buffer) {
+        final int start = buffer.position();
         int tag = buffer.get() & 0xFF;
         if ((tag & 0x1F) == 0x1F) { // Long form tag
             tag = (tag << 8) | (buffer.get() & 0xFF);
@@ -162,9 +195,23 @@ class Tlv {
                 length = (length << 8) | (buffer.get() & 0xff);
             }
         }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
 
-        byte[] value = new byte[length];
-        buffer.get(value);
-        return new Tlv(tag, value);
+        final int headerLength = buffer.position() - start;
+        final Tlv tlv;
+        if (buffer.hasArray()) {
+            final int arrayStart = buffer.arrayOffset() + start;
+            tlv = new Tlv(tag, length, buffer.array(), arrayStart, arrayStart + headerLength);
+        } else {
+            final byte[] encoded = new byte[headerLength + length];
+            final ByteBuffer source = buffer.duplicate();
+            source.position(start);
+            source.get(encoded);
+            tlv = new Tlv(tag, length, encoded, 0, headerLength);
+        }
+        buffer.position(buffer.position() + length);
+        return tlv;
     }
 }
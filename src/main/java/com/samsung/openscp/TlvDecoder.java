@@ -0,0 +1,212 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Push-style decoder of BER-TLV encoded data with determinate length, fed with chunks of data as they arrive.
+ * <p>
+ * The chunks may split TLVs at any byte. Each complete TLV is emitted to a {@link Listener}, which may also choose to
+ * descend into a constructed TLV: its children are then emitted one by one as they complete, instead of buffering
+ * the whole constructed TLV. Only the TLV being received is held in memory, so the memory used is bounded by the
+ * largest single element emitted.
+ * <p>
+ * The decoder is not thread safe.
+ */
+final class TlvDecoder {
+    /**
+     * Receives the TLVs decoded by a {@link TlvDecoder}
+     */
+    interface Listener {
+        /**
+         * Called when the header of a TLV has been received
+         *
+         * @param tag   the tag of the TLV
+         * @param depth the number of constructed TLVs the decoder has descended into
+         * @return true to descend into the TLV and receive its children instead of the TLV itself
+         * @throws BadResponseException to abort decoding
+         */
+        default boolean descend(int tag, int depth) throws BadResponseException {
+            return false;
+        }
+
+        /**
+         * Called when a TLV has been received completely
+         *
+         * @param tlv   the TLV, owned by the listener
+         * @param depth the number of constructed TLVs the decoder has descended into
+         * @throws BadResponseException to abort decoding
+         */
+        void onTlv(Tlv tlv, int depth) throws BadResponseException;
+    }
+
+    static final int DEFAULT_MAX_ELEMENT_LENGTH = 0x10000;
+    private static final int MAX_HEADER_LENGTH = 8;
+
+    private final Listener listener;
+    private final int maxElementLength;
+
+    private final byte[] header = new byte[MAX_HEADER_LENGTH];
+    private int headerLength;
+    private int tag;
+    private int valueLength;
+
+    private byte[] element;
+    private int elementFilled;
+
+    private long consumed;
+    private long[] levelEnds = new long[4];
+    private int depth;
+
+    TlvDecoder(Listener listener) {
+        this(listener, DEFAULT_MAX_ELEMENT_LENGTH);
+    }
+
+    /**
+     * @param listener         the listener to emit the TLVs to
+     * @param maxElementLength the maximum length of an emitted TLV, including its header
+     */
+    TlvDecoder(Listener listener, int maxElementLength) {
+        this.listener = listener;
+        this.maxElementLength = maxElementLength;
+    }
+
+    /**
+     * Decodes the next chunk of data, emitting every TLV it completes
+     *
+     * @param chunk the data, its remaining bytes are consumed
+     * @throws BadResponseException if the data is malformed or the listener aborts decoding
+     */
+    void feed(ByteBuffer chunk) throws BadResponseException {
+        while (chunk.hasRemaining()) {
+            if (element == null) {
+                header[headerLength++] = chunk.get();
+                consumed++;
+                if (!decodeHeader()) {
+                    if (depth > 0 && consumed >= levelEnds[depth - 1]) {
+                        throw new BadResponseException("TLV header exceeds its parent");
+                    }
+                    continue;
+                }
+                if (depth > 0 && valueLength > levelEnds[depth - 1] - consumed) {
+                    throw new BadResponseException("TLV value exceeds its parent");
+                }
+                if (listener.descend(tag, depth)) {
+                    pushLevel(consumed + valueLength);
+                    headerLength = 0;
+                    popCompletedLevels();
+                    continue;
+                }
+                if (valueLength > maxElementLength - headerLength) {
+                    throw new BadResponseException("TLV exceeds the maximum length of " + maxElementLength);
+                }
+                element = Arrays.copyOf(header, headerLength + valueLength);
+                elementFilled = headerLength;
+                headerLength = 0;
+            }
+
+            final int length = Math.min(chunk.remaining(), element.length - elementFilled);
+            chunk.get(element, elementFilled, length);
+            elementFilled += length;
+            consumed += length;
+            if (elementFilled == element.length) {
+                final Tlv tlv = Tlv.parseFrom(ByteBuffer.wrap(element));
+                element = null;
+                listener.onTlv(tlv, depth);
+                popCompletedLevels();
+            }
+        }
+    }
+
+    void feed(byte[] chunk) throws BadResponseException {
+        feed(ByteBuffer.wrap(chunk));
+    }
+
+    /**
+     * Ends the data and resets the decoder, so that it can be reused
+     *
+     * @throws BadResponseException if the data ended within a TLV
+     */
+    void finish() throws BadResponseException {
+        final boolean complete = headerLength == 0 && element == null && depth == 0;
+        headerLength = 0;
+        element = null;
+        depth = 0;
+        consumed = 0;
+        if (!complete) {
+            throw new BadResponseException("Data ended within a TLV");
+        }
+    }
+
+    /**
+     * @return true if the header is complete, in which case tag and valueLength are set
+     */
+    private boolean decodeHeader() throws BadResponseException {
+        int offset = 0;
+        int tag = header[offset++] & 0xFF;
+        if ((tag & 0x1F) == 0x1F) { // Long form tag
+            do {
+                if (offset == headerLength) {
+                    return false;
+                }
+                if (tag >>> 24 != 0) {
+                    throw new BadResponseException("Tag is too long");
+                }
+                tag = (tag << 8) | (header[offset++] & 0xFF);
+            } while ((tag & 0x80) == 0x80);
+        }
+        if (offset == headerLength) {
+            return false;
+        }
+
+        int length = header[offset++] & 0xFF;
+        if (length == 0x80) {
+            throw new BadResponseException("Indefinite length not supported");
+        } else if (length > 0x80) {
+            final int lengthLn = length - 0x80;
+            if (lengthLn > 3) {
+                throw new BadResponseException("Length is too long");
+            }
+            if (headerLength < offset + lengthLn) {
+                return false;
+            }
+            length = 0;
+            for (int i = 0; i < lengthLn; i++) {
+                length = (length << 8) | (header[offset++] & 0xFF);
+            }
+        }
+
+        this.tag = tag;
+        valueLength = length;
+        return true;
+    }
+
+    private void pushLevel(long end) {
+        if (depth == levelEnds.length) {
+            levelEnds = Arrays.copyOf(levelEnds, depth * 2);
+        }
+        levelEnds[depth++] = end;
+    }
+
+    private void popCompletedLevels() {
+        while (depth > 0 && levelEnds[depth - 1] == consumed) {
+            depth--;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Index of one level of BER-TLV encoded data, mapping tags to the location of their values in the source array.
+ * <p>
+ * Unlike {@link Tlvs#decodeMap(byte[])}, tags are not boxed and values are not copied: the entries are kept in
+ * insertion order in a primitive array of (tag, offset, length) triples, and an open-addressing table with linear
+ * probing maps each tag to its entry. Every TLV of the level has its own entry, so repeated tags remain reachable by
+ * position, while lookups by tag resolve to the first occurrence.
+ * <p>
+ * The source array must not be modified while the index is in use.
+ */
+final class TlvIndex {
+    private static final int ENTRY_SIZE = 3;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final byte[] data;
+    private int[] entries = new int[INITIAL_CAPACITY * ENTRY_SIZE];
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int size;
+
+    /**
+     * @param data the TLVs to index, all bytes of the array are indexed
+     * @throws BadResponseException if the data is not a sequence of well-formed TLVs
+     */
+    TlvIndex(byte[] data) throws BadResponseException {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * @param data   the array holding the TLVs to index
+     * @param offset the offset of the first TLV
+     * @param length the length of the TLVs to index
+     * @throws BadResponseException if the data is not a sequence of well-formed TLVs
+     */
+    TlvIndex(byte[] data, int offset, int length) throws BadResponseException {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("Range is outside of the data");
+        }
+        this.data = data;
+
+        final int end = offset + length;
+        while (offset < end) {
+            int tag = readByte(offset++, end);
+            if ((tag & 0x1F) == 0x1F) { // Long form tag
+                do {
+                    if (tag >>> 24 != 0) {
+                        throw new BadResponseException("Tag is too long");
+                    }
+                    tag = (tag << 8) | readByte(offset++, end);
+                } while ((tag & 0x80) == 0x80);
+            }
+
+            int valueLength = readByte(offset++, end);
+            if (valueLength == 0x80) {
+                throw new BadResponseException("Indefinite length not supported");
+            } else if (valueLength > 0x80) {
+                final int lengthLn = valueLength - 0x80;
+                if (lengthLn > 3) {
+                    throw new BadResponseException("Length is too long");
+                }
+                valueLength = 0;
+                for (int i = 0; i < lengthLn; i++) {
+                    valueLength = (valueLength << 8) | readByte(offset++, end);
+                }
+            }
+            if (valueLength > end - offset) {
+                throw new BadResponseException("TLV value exceeds the available data");
+            }
+
+            add(tag, offset, valueLength);
+            offset += valueLength;
+        }
+    }
+
+    /**
+     * @return the number of TLVs in the indexed level
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the tag of the entry at the given position in insertion order
+     */
+    int getTagAt(int index) {
+        return entries[checkIndex(index) * ENTRY_SIZE];
+    }
+
+    /**
+     * @return a copy of the value of the entry at the given position in insertion order
+     */
+    byte[] getValueAt(int index) {
+        final int entry = checkIndex(index) * ENTRY_SIZE;
+        final int offset = entries[entry + 1];
+        return Arrays.copyOfRange(data, offset, offset + entries[entry + 2]);
+    }
+
+    /**
+     * @return the position of the entry with the given tag in insertion order, or -1 if the tag is absent
+     */
+    int indexOf(int tag) {
+        final int mask = slots.length - 1;
+        for (int slot = hash(tag) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int index = slots[slot] - 1;
+            if (entries[index * ENTRY_SIZE] == tag) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    boolean contains(int tag) {
+        return indexOf(tag) >= 0;
+    }
+
+    /**
+     * @return a copy of the value of the given tag, or null if the tag is absent
+     */
+    byte[] getValue(int tag) {
+        final int index = indexOf(tag);
+        return index < 0 ? null : getValueAt(index);
+    }
+
+    /**
+     * @return the value of the given tag, sharing content with the source data, or null if the tag is absent
+     */
+    ByteBuffer getValueBuffer(int tag) {
+        final int index = indexOf(tag);
+        if (index < 0) {
+            return null;
+        }
+        final int entry = index * ENTRY_SIZE;
+        return ByteBuffer.wrap(data, entries[entry + 1], entries[entry + 2]).slice();
+    }
+
+    /**
+     * Indexes the value of a constructed TLV, without copying it
+     *
+     * @param tag the tag of the constructed TLV
+     * @return the index of the TLVs in its value
+     * @throws BadResponseException if the tag is absent or its value is not a sequence of well-formed TLVs
+     */
+    TlvIndex getNested(int tag) throws BadResponseException {
+        final int index = indexOf(tag);
+        if (index < 0) {
+            throw new BadResponseException(String.format("Expected tag: %02x", tag));
+        }
+        final int entry = index * ENTRY_SIZE;
+        return new TlvIndex(data, entries[entry + 1], entries[entry + 2]);
+    }
+
+    private void add(int tag, int offset, int length) {
+        if ((size + 1) * ENTRY_SIZE > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        final int entry = size * ENTRY_SIZE;
+        entries[entry] = tag;
+        entries[entry + 1] = offset;
+        entries[entry + 2] = length;
+        size++;
+
+        final int mask = slots.length - 1;
+        int slot = hash(tag) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (entries[(slots[slot] - 1) * ENTRY_SIZE] == tag) {
+                return; // Lookups resolve to the first occurrence
+            }
+        }
+        slots[slot] = size;
+
+        // Keep the load factor at or below 1/2
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        final int[] previous = slots;
+        slots = new int[capacity];
+        final int mask = capacity - 1;
+        for (int entry : previous) {
+            if (entry != 0) {
+                int slot = hash(entries[(entry - 1) * ENTRY_SIZE]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry;
+            }
+        }
+    }
+
+    private static int hash(int tag) {
+        final int h = tag * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int readByte(int offset, int end) throws BadResponseException {
+        if (offset >= end) {
+            throw new BadResponseException("TLV header exceeds the available data");
+        }
+        return data[offset] & 0xFF;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,244 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Pull-style cursor over BER-TLV encoded data with determinate length.
+ * <p>
+ * The reader walks the data in place, one TLV at a time, without building intermediate collections or copying
+ * values. {@link #next()} moves to the next TLV of the current level, {@link #enter()} descends into the value of
+ * the current TLV and {@link #exit()} returns to the level of the parent TLV, right after it.
+ * <p>
+ * The values returned by {@link #value()} share content with the source data, which must not be modified while the
+ * reader is in use.
+ */
+final class TlvReader {
+    private final ByteBuffer data;
+    private int[] levelEnds = new int[4];
+    private int depth;
+
+    private int levelEnd;
+    private int position;
+    private int start = -1;
+    private int tag;
+    private int valueOffset;
+    private int valueLength;
+
+    /**
+     * @param data the data to read, its remaining bytes are read and its position is not changed
+     */
+    TlvReader(ByteBuffer data) {
+        this.data = data.duplicate();
+        position = data.position();
+        levelEnd = data.limit();
+    }
+
+    TlvReader(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * @return true if there is a TLV after the current one at the current level
+     */
+    boolean hasNext() {
+        return getNextPosition() < levelEnd;
+    }
+
+    /**
+     * Moves to the next TLV at the current level, skipping the value of the current one
+     *
+     * @return false if the end of the current level is reached
+     * @throws BadResponseException if the TLV is malformed or exceeds the current level
+     */
+    boolean next() throws BadResponseException {
+        position = getNextPosition();
+        start = -1;
+        if (position >= levelEnd) {
+            return false;
+        }
+
+        int offset = position;
+        int tag = readByte(offset++);
+        if ((tag & 0x1F) == 0x1F) { // Long form tag
+            do {
+                if (tag >>> 24 != 0) {
+                    throw new BadResponseException("Tag is too long");
+                }
+                tag = (tag << 8) | readByte(offset++);
+            } while ((tag & 0x80) == 0x80);
+        }
+
+        int length = readByte(offset++);
+        if (length == 0x80) {
+            throw new BadResponseException("Indefinite length not supported");
+        } else if (length > 0x80) {
+            final int lengthLn = length - 0x80;
+            if (lengthLn > 3) {
+                throw new BadResponseException("Length is too long");
+            }
+            length = 0;
+            for (int i = 0; i < lengthLn; i++) {
+                length = (length << 8) | readByte(offset++);
+            }
+        }
+        if (length > levelEnd - offset) {
+            throw new BadResponseException("TLV value exceeds the available data");
+        }
+
+        this.tag = tag;
+        start = position;
+        valueOffset = offset;
+        valueLength = length;
+        return true;
+    }
+
+    /**
+     * Moves to the next TLV at the current level, which must have the expected tag
+     *
+     * @throws BadResponseException if there is no next TLV or its tag differs from expectedTag
+     */
+    void next(int expectedTag) throws BadResponseException {
+        if (!next()) {
+            throw new BadResponseException(String.format("Expected tag: %02x, got end of data", expectedTag));
+        }
+        if (tag != expectedTag) {
+            throw new BadResponseException(String.format("Expected tag: %02x, got %02x", expectedTag, tag));
+        }
+    }
+
+    /**
+     * @return the tag of the current TLV
+     */
+    int tag() {
+        checkCurrent();
+        return tag;
+    }
+
+    /**
+     * @return the value length of the current TLV
+     */
+    int valueLength() {
+        checkCurrent();
+        return valueLength;
+    }
+
+    /**
+     * @return the index of the first byte of the current TLV in the source data
+     */
+    int offset() {
+        checkCurrent();
+        return start;
+    }
+
+    /**
+     * @return the index of the first value byte of the current TLV in the source data
+     */
+    int valueOffset() {
+        checkCurrent();
+        return valueOffset;
+    }
+
+    /**
+     * @return the value of the current TLV, shares content with the source data
+     */
+    ByteBuffer value() {
+        checkCurrent();
+        final ByteBuffer value = data.duplicate();
+        value.limit(valueOffset + valueLength);
+        value.position(valueOffset);
+        return value.slice();
+    }
+
+    /**
+     * @return a copy of the value of the current TLV
+     */
+    byte[] valueBytes() {
+        checkCurrent();
+        return copy(valueOffset, valueOffset + valueLength);
+    }
+
+    /**
+     * @return a copy of the current TLV in BER-TLV encoding
+     */
+    byte[] encodedBytes() {
+        checkCurrent();
+        return copy(start, valueOffset + valueLength);
+    }
+
+    /**
+     * Descends into the value of the current TLV. The next call of {@link #next()} moves to its first child.
+     */
+    void enter() {
+        checkCurrent();
+        if (depth == levelEnds.length) {
+            levelEnds = Arrays.copyOf(levelEnds, depth * 2);
+        }
+        levelEnds[depth++] = levelEnd;
+        levelEnd = valueOffset + valueLength;
+        position = valueOffset;
+        start = -1;
+    }
+
+    /**
+     * Returns to the level of the TLV entered last. The next call of {@link #next()} moves to its next sibling.
+     */
+    void exit() {
+        if (depth == 0) {
+            throw new IllegalStateException("Not entered");
+        }
+        position = levelEnd;
+        levelEnd = levelEnds[--depth];
+        start = -1;
+    }
+
+    /**
+     * Skips all the remaining TLVs of the current level, so that {@link #next()} returns false
+     */
+    void skip() {
+        position = levelEnd;
+        start = -1;
+    }
+
+    private int getNextPosition() {
+        return start < 0 ? position : valueOffset + valueLength;
+    }
+
+    private int readByte(int offset) throws BadResponseException {
+        if (offset >= levelEnd) {
+            throw new BadResponseException("TLV header exceeds the available data");
+        }
+        return data.get(offset) & 0xFF;
+    }
+
+    private byte[] copy(int from, int to) {
+        final byte[] bytes = new byte[to - from];
+        final ByteBuffer source = data.duplicate();
+        source.limit(to);
+        source.position(from);
+        source.get(bytes);
+        return bytes;
+    }
+
+    private void checkCurrent() {
+        if (start < 0) {
+            throw new IllegalStateException("No current TLV");
+        }
+    }
+}
@@ -0,0 +1,522 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Declarative description of a BER-TLV structure, used to decode and encode it.
+ * <p>
+ * A schema is declared once as a tree of {@link Element}s, each with a tag, a {@link Cardinality} and a {@link Type}.
+ * Constructing the schema compiles the tree into numbered elements with per-level tag lookup tables. Decoding
+ * validates the data against the schema in a single pass and records the location of every element occurrence in a
+ * {@link Decoded} table of primitive rows over the source data, values are copied only when requested. Encoding
+ * collects the values per element and writes them in the declared order with a {@link TlvWriter}.
+ * <p>
+ * Elements are looked up by the Element objects themselves, which act as precompiled paths. Tags, that are not
+ * declared at a level, are skipped when decoding, as cards may add proprietary data objects. Schemas of structures
+ * with a fixed layout are declared {@link #strict}, so that undeclared tags are rejected instead.
+ * <p>
+ * Schemas are immutable and can be shared between threads.
+ */
+final class TlvSchema {
+    enum Cardinality {
+        /** Zero or one occurrence */
+        OPTIONAL,
+        /** Exactly one occurrence */
+        REQUIRED,
+        /** Any number of occurrences */
+        REPEATED
+    }
+
+    enum Type {
+        /** Primitive value of arbitrary content */
+        BYTES,
+        /** Primitive big-endian unsigned integer of up to 4 bytes */
+        UNSIGNED,
+        /** Constructed value, holding the child elements */
+        CONSTRUCTED
+    }
+
+    /**
+     * Element of a schema, also serving as the path to look the element up in decoded data
+     */
+    static final class Element {
+        final int tag;
+        final Cardinality cardinality;
+        final Type type;
+        final int length; // Fixed value length, or -1 if any
+        private final Element[] children;
+        private int[] childTags;
+
+        private TlvSchema schema;
+        private int id;
+
+        private Element(int tag, Cardinality cardinality, Type type, int length, Element[] children) {
+            this.tag = tag;
+            this.cardinality = cardinality;
+            this.type = type;
+            this.length = length;
+            this.children = children;
+        }
+
+        private int indexOf(int tag) {
+            for (int i = 0; i < childTags.length; i++) {
+                if (childTags[i] == tag) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%02x", tag);
+        }
+    }
+
+    static Element bytes(int tag, Cardinality cardinality) {
+        return new Element(tag, cardinality, Type.BYTES, -1, new Element[0]);
+    }
+
+    /**
+     * @param length the fixed value length
+     */
+    static Element bytes(int tag, Cardinality cardinality, int length) {
+        return new Element(tag, cardinality, Type.BYTES, length, new Element[0]);
+    }
+
+    /**
+     * @param length the fixed value length, from 1 to 4 bytes
+     */
+    static Element unsigned(int tag, Cardinality cardinality, int length) {
+        if (length < 1 || length > 4) {
+            throw new IllegalArgumentException("Unsigned value must be 1 to 4 bytes long");
+        }
+        return new Element(tag, cardinality, Type.UNSIGNED, length, new Element[0]);
+    }
+
+    static Element constructed(int tag, Cardinality cardinality, Element... children) {
+        return new Element(tag, cardinality, Type.CONSTRUCTED, -1, children);
+    }
+
+    private final String name;
+    private final Element root;
+    private final int size;
+    private final boolean strict;
+
+    /**
+     * @param name     the name of the structure, used in error messages
+     * @param elements the top level elements, in encoding order
+     */
+    TlvSchema(String name, Element... elements) {
+        this(name, false, elements);
+    }
+
+    private TlvSchema(String name, boolean strict, Element... elements) {
+        this.name = name;
+        this.strict = strict;
+        root = constructed(0, Cardinality.REQUIRED, elements);
+        size = compile(root, 0);
+    }
+
+    /**
+     * @param name     the name of the structure, used in error messages
+     * @param elements the top level elements, in encoding order
+     * @return a schema rejecting tags, that are not declared at a level, when decoding
+     */
+    static TlvSchema strict(String name, Element... elements) {
+        return new TlvSchema(name, true, elements);
+    }
+
+    private int compile(Element element, int id) {
+        if (element.schema != null) {
+            throw new IllegalArgumentException("Element " + element + " is already used in a schema");
+        }
+        element.schema = this;
+        element.id = id++;
+        element.childTags = new int[element.children.length];
+        for (int i = 0; i < element.children.length; i++) {
+            final int tag = element.children[i].tag;
+            if (element.indexOf(tag) >= 0) {
+                throw new IllegalArgumentException("Tag " + element.children[i] + " is declared twice at a level");
+            }
+            element.childTags[i] = tag;
+            id = compile(element.children[i], id);
+        }
+        return id;
+    }
+
+    /**
+     * Decodes and validates data against the schema
+     *
+     * @param data the encoded data, must not be modified while the result is in use
+     * @return the occurrences of the schema elements in the data
+     * @throws BadResponseException if the data is malformed or does not match the schema
+     */
+    Decoded decode(byte[] data) throws BadResponseException {
+        final Decoded decoded = new Decoded(data);
+        decodeLevel(new TlvReader(data), root, -1, decoded);
+        return decoded;
+    }
+
+    private void decodeLevel(TlvReader reader, Element parent, int parentRow, Decoded decoded)
+            throws BadResponseException {
+        final int[] counts = new int[parent.children.length];
+        while (reader.next()) {
+            final int index = parent.indexOf(reader.tag());
+            if (index < 0) {
+                if (strict) {
+                    throw new BadResponseException(
+                        String.format("%s: unexpected tag %02x", name, reader.tag()));
+                }
+                continue;
+            }
+            final Element element = parent.children[index];
+            if (++counts[index] > 1 && element.cardinality != Cardinality.REPEATED) {
+                throw new BadResponseException(
+                    String.format("%s: tag %s occurs more than once", name, element));
+            }
+            if (element.length >= 0 && reader.valueLength() != element.length) {
+                throw new BadResponseException(
+                    String.format("%s: tag %s must have %d bytes, got %d", name, element, element.length,
+                                  reader.valueLength()));
+            }
+
+            final int row = decoded.add(element, parentRow, reader.offset(), reader.valueOffset(),
+                                        reader.valueLength());
+            if (element.type == Type.CONSTRUCTED) {
+                reader.enter();
+                decodeLevel(reader, element, row, decoded);
+                reader.exit();
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0 && parent.children[i].cardinality == Cardinality.REQUIRED) {
+                throw new BadResponseException(String.format("%s: tag %s is missing", name, parent.children[i]));
+            }
+        }
+    }
+
+    /**
+     * @return a new encoder of data matching the schema
+     */
+    Encoder encoder() {
+        return new Encoder();
+    }
+
+    private void checkOwned(Element element) {
+        if (element.schema != this || element == root) {
+            throw new IllegalArgumentException("Element " + element + " is not part of the " + name + " schema");
+        }
+    }
+
+    /**
+     * Occurrences of schema elements in decoded data.
+     * <p>
+     * Each occurrence is a row, identified by its index. The rows of an element are linked in data order, starting
+     * from {@link #first(Element)}.
+     */
+    final class Decoded {
+        private static final int ROW_SIZE = 6;
+        private static final int ELEMENT = 0;
+        private static final int PARENT = 1;
+        private static final int START = 2;
+        private static final int VALUE_OFFSET = 3;
+        private static final int VALUE_LENGTH = 4;
+        private static final int NEXT = 5;
+
+        private final byte[] data;
+        private final int[] firstRows = new int[size];
+        private final int[] lastRows = new int[size];
+        private final int[] counts = new int[size];
+        private int[] rows = new int[8 * ROW_SIZE];
+        private int rowCount;
+
+        private Decoded(byte[] data) {
+            this.data = data;
+            Arrays.fill(firstRows, -1);
+        }
+
+        private int add(Element element, int parentRow, int start, int valueOffset, int valueLength) {
+            if ((rowCount + 1) * ROW_SIZE > rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            final int row = rowCount++;
+            final int base = row * ROW_SIZE;
+            rows[base + ELEMENT] = element.id;
+            rows[base + PARENT] = parentRow;
+            rows[base + START] = start;
+            rows[base + VALUE_OFFSET] = valueOffset;
+            rows[base + VALUE_LENGTH] = valueLength;
+            rows[base + NEXT] = -1;
+            if (firstRows[element.id] < 0) {
+                firstRows[element.id] = row;
+            } else {
+                rows[lastRows[element.id] * ROW_SIZE + NEXT] = row;
+            }
+            lastRows[element.id] = row;
+            counts[element.id]++;
+            return row;
+        }
+
+        /**
+         * @return the number of occurrences of the element
+         */
+        int count(Element element) {
+            checkOwned(element);
+            return counts[element.id];
+        }
+
+        /**
+         * @return the row of the first occurrence of the element, or -1 if it is absent
+         */
+        int first(Element element) {
+            checkOwned(element);
+            return firstRows[element.id];
+        }
+
+        /**
+         * @return the row of the first occurrence of the element within the given occurrence of its parent, or -1
+         */
+        int first(Element element, int parentRow) {
+            int row = first(element);
+            while (row >= 0 && rows[row * ROW_SIZE + PARENT] != parentRow) {
+                row = next(row);
+            }
+            return row;
+        }
+
+        /**
+         * @return the row of the next occurrence of the same element, or -1 if there is none
+         */
+        int next(int row) {
+            return rows[checkRow(row) + NEXT];
+        }
+
+        /**
+         * @return the row of the enclosing occurrence, or -1 for top level elements
+         */
+        int parent(int row) {
+            return rows[checkRow(row) + PARENT];
+        }
+
+        /**
+         * @return a copy of the value of the first occurrence of the element, or null if it is absent
+         */
+        @Nullable
+        byte[] getBytes(Element element) {
+            final int row = first(element);
+            return row < 0 ? null : getBytes(row);
+        }
+
+        /**
+         * @return a copy of the value of the occurrence
+         */
+        byte[] getBytes(int row) {
+            final int base = checkRow(row);
+            final int offset = rows[base + VALUE_OFFSET];
+            return Arrays.copyOfRange(data, offset, offset + rows[base + VALUE_LENGTH]);
+        }
+
+        /**
+         * @return the value of the occurrence, sharing content with the source data
+         */
+        ByteBuffer getValue(int row) {
+            final int base = checkRow(row);
+            return ByteBuffer.wrap(data, rows[base + VALUE_OFFSET], rows[base + VALUE_LENGTH]).slice();
+        }
+
+        /**
+         * @return the value of an occurrence of an {@link Type#UNSIGNED} element
+         */
+        int getUnsigned(int row) {
+            final int base = checkRow(row);
+            final int offset = rows[base + VALUE_OFFSET];
+            int value = 0;
+            for (int i = 0; i < rows[base + VALUE_LENGTH]; i++) {
+                value = (value << 8) | (data[offset + i] & 0xFF);
+            }
+            return value;
+        }
+
+        /**
+         * @return a copy of the occurrence in BER-TLV encoding
+         */
+        byte[] getEncoded(int row) {
+            final int base = checkRow(row);
+            return Arrays.copyOfRange(data, rows[base + START], rows[base + VALUE_OFFSET] + rows[base + VALUE_LENGTH]);
+        }
+
+        private int checkRow(int row) {
+            if (row < 0 || row >= rowCount) {
+                throw new IndexOutOfBoundsException("Row: " + row + ", rows: " + rowCount);
+            }
+            return row * ROW_SIZE;
+        }
+    }
+
+    /**
+     * Collects element values and encodes them in the order declared by the schema.
+     * <p>
+     * Constructed elements are written if they are required or contain a value. The values of the children make up a
+     * single occurrence of a constructed element, further occurrences of a repeated constructed element are put with
+     * {@link #putEncoded(Element, byte[])} and written before it.
+     */
+    final class Encoder {
+        private final Object[] values = new Object[size];
+
+        private Encoder() {
+        }
+
+        /**
+         * Sets the value of a primitive element, or adds one for a repeated element
+         */
+        Encoder put(Element element, byte[] value) {
+            checkOwned(element);
+            if (element.type == Type.CONSTRUCTED) {
+                throw new IllegalArgumentException("Element " + element + " is constructed");
+            }
+            if (element.length >= 0 && value.length != element.length) {
+                throw new IllegalArgumentException(
+                    String.format("Element %s must have %d bytes, got %d", element, element.length, value.length));
+            }
+            set(element, value);
+            return this;
+        }
+
+        /**
+         * Sets the value of an {@link Type#UNSIGNED} element, or adds one for a repeated element
+         */
+        Encoder put(Element element, int value) {
+            checkOwned(element);
+            if (element.type != Type.UNSIGNED) {
+                throw new IllegalArgumentException("Element " + element + " is not unsigned");
+            }
+            if (element.length < 4 && (value < 0 || value >>> (element.length * 8) != 0)) {
+                throw new IllegalArgumentException(
+                    String.format("Value is too large to be represented in %d bytes", element.length));
+            }
+            final byte[] bytes = new byte[element.length];
+            for (int i = bytes.length - 1; i >= 0; i--) {
+                bytes[i] = (byte) value;
+                value >>>= 8;
+            }
+            set(element, bytes);
+            return this;
+        }
+
+        /**
+         * Sets an element, or adds one for a repeated element, from its complete BER-TLV encoding, which is written
+         * as is
+         */
+        Encoder putEncoded(Element element, byte[] encoded) {
+            checkOwned(element);
+            final Tlv tlv = Tlv.parse(encoded);
+            if (tlv.getTag() != element.tag || tlv.getBytesBuffer().remaining() != encoded.length) {
+                throw new IllegalArgumentException("Data is not a single TLV with tag " + element);
+            }
+            set(element, tlv);
+            return this;
+        }
+
+        /**
+         * @return the encoded data
+         * @throws IllegalStateException if a required element has no value
+         */
+        byte[] encode() {
+            final TlvWriter writer = new TlvWriter();
+            for (Element element : root.children) {
+                write(writer, element);
+            }
+            return writer.toByteArray();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void set(Element element, Object value) {
+            if (element.cardinality != Cardinality.REPEATED) {
+                values[element.id] = value;
+                return;
+            }
+            if (values[element.id] == null) {
+                values[element.id] = new ArrayList<>();
+            }
+            ((List<Object>) values[element.id]).add(value);
+        }
+
+        private void write(TlvWriter writer, Element element) {
+            final Object value = values[element.id];
+            if (element.type == Type.CONSTRUCTED) {
+                final boolean childValues = hasChildValue(element);
+                if (value != null && childValues && element.cardinality != Cardinality.REPEATED) {
+                    throw new IllegalStateException("Element " + element + " is put both encoded and by children");
+                }
+                if (value != null) {
+                    writeValues(writer, element, value);
+                }
+                if (childValues || (value == null && element.cardinality == Cardinality.REQUIRED)) {
+                    writer.begin(element.tag);
+                    for (Element child : element.children) {
+                        write(writer, child);
+                    }
+                    writer.end();
+                }
+                return;
+            }
+
+            if (value == null) {
+                if (element.cardinality == Cardinality.REQUIRED) {
+                    throw new IllegalStateException("Element " + element + " is required");
+                }
+            } else {
+                writeValues(writer, element, value);
+            }
+        }
+
+        private void writeValues(TlvWriter writer, Element element, Object value) {
+            if (value instanceof List) {
+                for (Object item : (List<?>) value) {
+                    writeValue(writer, element, item);
+                }
+            } else {
+                writeValue(writer, element, value);
+            }
+        }
+
+        private boolean hasChildValue(Element element) {
+            for (Element child : element.children) {
+                if (values[child.id] != null || hasChildValue(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void writeValue(TlvWriter writer, Element element, Object value) {
+            if (value instanceof Tlv) {
+                writer.putRaw(((Tlv) value).getBytes());
+            } else {
+                writer.put(element.tag, (byte[]) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encoder of BER-TLV structures, which writes every byte exactly once.
+ * <p>
+ * The structure is described first with {@link #begin(int)}/{@link #end()} for constructed TLVs and
+ * {@link #put(int, byte[])} for primitive ones, while the nested lengths are calculated. Then
+ * {@link #writeTo(ByteBuffer)} encodes it in a single pass into a caller-provided buffer.
+ * <p>
+ * Values are referenced, not copied, so they must not be modified until the structure is written.
+ */
+final class TlvWriter {
+    private static final int BEGIN = 0;
+    private static final int PRIMITIVE = 1;
+    private static final int RAW = 2;
+
+    private int count;
+    private int[] types = new int[8];
+    private int[] tags = new int[8];
+    private int[] lengths = new int[8];
+    private byte[][] values = new byte[8][];
+    private int[] offsets = new int[8];
+
+    private int depth;
+    private int[] open = new int[4];
+    private int[] parentSizes = new int[4];
+
+    private int size;
+
+    /**
+     * Begins a constructed TLV, which contains everything added until the matching {@link #end()}
+     */
+    TlvWriter begin(int tag) {
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            parentSizes = Arrays.copyOf(parentSizes, depth * 2);
+        }
+        open[depth] = add(BEGIN, tag, null, 0, 0);
+        parentSizes[depth++] = size;
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Ends the constructed TLV begun last
+     */
+    TlvWriter end() {
+        if (depth == 0) {
+            throw new IllegalStateException("No constructed TLV to end");
+        }
+        final int index = open[--depth];
+        lengths[index] = size;
+        size = parentSizes[depth] + getEncodedLength(tags[index], size);
+        return this;
+    }
+
+    /**
+     * Adds a primitive TLV
+     */
+    TlvWriter put(int tag, byte[] value) {
+        return put(tag, value, 0, value.length);
+    }
+
+    /**
+     * Adds a primitive TLV with the given range of {@code value}
+     */
+    TlvWriter put(int tag, byte[] value, int offset, int length) {
+        add(PRIMITIVE, tag, value, offset, length);
+        size += getEncodedLength(tag, length);
+        return this;
+    }
+
+    /**
+     * Adds a primitive TLV with a single byte value
+     */
+    TlvWriter put(int tag, byte value) {
+        return put(tag, new byte[]{value});
+    }
+
+    /**
+     * Adds a primitive TLV with an unsigned big-endian integer value of the given length
+     */
+    TlvWriter putUnsigned(int tag, int value, int valueLength) {
+        if (value < 0 || (valueLength < 4 && value >>> (8 * valueLength) != 0)) {
+            throw new IllegalArgumentException("value is too large to be represented in " + valueLength + " bytes");
+        }
+        final byte[] bytes = new byte[valueLength];
+        for (int i = 0; i < valueLength && i < 4; i++) {
+            bytes[valueLength - 1 - i] = (byte) (value >>> (8 * i));
+        }
+        return put(tag, bytes);
+    }
+
+    /**
+     * Adds already encoded data, which is written as is
+     */
+    TlvWriter putRaw(byte[] data) {
+        add(RAW, 0, data, 0, data.length);
+        size += data.length;
+        return this;
+    }
+
+    /**
+     * Adds a single byte, which is written as is
+     */
+    TlvWriter putRaw(byte value) {
+        return putRaw(new byte[]{value});
+    }
+
+    /**
+     * @return the length of the encoded structure
+     */
+    int getLength() {
+        checkEnded();
+        return size;
+    }
+
+    /**
+     * Encodes the structure into {@code buffer}, which must have at least {@link #getLength()} bytes remaining
+     */
+    void writeTo(ByteBuffer buffer) {
+        checkEnded();
+        for (int i = 0; i < count; i++) {
+            switch (types[i]) {
+                case BEGIN:
+                    putTag(buffer, tags[i]);
+                    putLength(buffer, lengths[i]);
+                    break;
+                case PRIMITIVE:
+                    putTag(buffer, tags[i]);
+                    putLength(buffer, lengths[i]);
+                    buffer.put(values[i], offsets[i], lengths[i]);
+                    break;
+                default:
+                    buffer.put(values[i], offsets[i], lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the encoded structure
+     */
+    byte[] toByteArray() {
+        final byte[] encoded = new byte[getLength()];
+        writeTo(ByteBuffer.wrap(encoded));
+        return encoded;
+    }
+
+    /**
+     * @return the length of the tag and length fields together with the value
+     */
+    static int getEncodedLength(int tag, int length) {
+        return getTagLength(tag) + getLengthLength(length) + length;
+    }
+
+    static int getTagLength(int tag) {
+        int tagLength = 1;
+        while (tagLength < 4 && (tag >>> (8 * tagLength)) != 0) {
+            tagLength++;
+        }
+        return tagLength;
+    }
+
+    static int getLengthLength(int length) {
+        if (length < 0x80) {
+            return 1;
+        }
+        int lengthLn = 1;
+        while (lengthLn < 4 && (length >>> (8 * lengthLn)) != 0) {
+            lengthLn++;
+        }
+        return 1 + lengthLn;
+    }
+
+    static void putTag(ByteBuffer buffer, int tag) {
+        for (int i = getTagLength(tag) - 1; i >= 0; i--) {
+            buffer.put((byte) (tag >>> (8 * i)));
+        }
+    }
+
+    static void putLength(ByteBuffer buffer, int length) {
+        if (length < 0x80) {
+            buffer.put((byte) length);
+            return;
+        }
+        final int lengthLn = getLengthLength(length) - 1;
+        buffer.put((byte) (0x80 | lengthLn));
+        for (int i = lengthLn - 1; i >= 0; i--) {
+            buffer.put((byte) (length >>> (8 * i)));
+        }
+    }
+
+    private int add(int type, int tag, byte[] value, int offset, int length) {
+        if (count == types.length) {
+            final int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            values = Arrays.copyOf(values, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        types[count] = type;
+        tags[count] = tag;
+        values[count] = value;
+        offsets[count] = offset;
+        lengths[count] = length;
+        return count++;
+    }
+
+    private void checkEnded() {
+        if (depth != 0) {
+            throw new IllegalStateException("Constructed TLV is not ended");
+        }
+    }
+}
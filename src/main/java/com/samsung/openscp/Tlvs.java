@@ -33,11 +33,12 @@
  * Modifications include:
  *   - Package and import statements updated during code move from the original project
  *   - Removed redundant `public` access modifiers
+ *   - Decode into Tlv views over the source data instead of copies
+ *   - Encode without intermediate copies
  */
 
 package com.samsung.openscp;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -51,16 +52,28 @@ class Tlvs {
 
     /**
      * Decodes a sequence of BER-TLV encoded data into a list of Tlvs.
+     * <p>
+     * The Tlvs are views over {@code data}, which must not be modified while they are in use.
      *
      * @param data sequence of TLV encoded data
      * @return list of Tlvs
      */
     static List<Tlv> decodeList(byte[] data) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
+        return decodeList(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes the remaining BER-TLV encoded data of a buffer into a list of Tlvs, consuming it.
+     * <p>
+     * If the buffer is backed by an accessible array, the Tlvs are views over it.
+     *
+     * @param data sequence of TLV encoded data
+     * @return list of Tlvs
+     */
+    static List<Tlv> decodeList(ByteBuffer data) {
         List<Tlv> tlvs = new ArrayList<>();
-        while (buffer.hasRemaining()) {
-            Tlv tlv = Tlv.parseFrom(buffer);
-            tlvs.add(tlv);
+        while (data.hasRemaining()) {
+            tlvs.add(Tlv.parseFrom(data));
         }
         return tlvs;
     }
@@ -74,11 +87,27 @@ class Tlvs {
      * @return map of Tag-Value pairs
      */
     static Map<Integer, byte[]> decodeMap(byte[] data) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
         Map<Integer, byte[]> tlvs = new LinkedHashMap<>();
-        while (buffer.hasRemaining()) {
-            Tlv tlv = Tlv.parseFrom(buffer);
-            tlvs.put(tlv.getTag(), tlv.getValue());
+        for (Map.Entry<Integer, Tlv> entry : decodeTlvMap(ByteBuffer.wrap(data)).entrySet()) {
+            tlvs.put(entry.getKey(), entry.getValue().getValue());
+        }
+        return tlvs;
+    }
+
+    /**
+     * Decodes the remaining BER-TLV encoded data of a buffer into a mapping of Tag-Tlv pairs, consuming it.
+     * <p>
+     * Iteration order is preserved. If the same tag occurs more than once only the latest will be kept. If the
+     * buffer is backed by an accessible array, the Tlvs are views over it.
+     *
+     * @param data sequence of TLV encoded data
+     * @return map of Tag-Tlv pairs
+     */
+    static Map<Integer, Tlv> decodeTlvMap(ByteBuffer data) {
+        Map<Integer, Tlv> tlvs = new LinkedHashMap<>();
+        while (data.hasRemaining()) {
+            Tlv tlv = Tlv.parseFrom(data);
+            tlvs.put(tlv.getTag(), tlv);
         }
         return tlvs;
     }
@@ -90,12 +119,15 @@ class Tlvs {
      * @return the data encoded as a sequence of TLV values
      */
     static byte[] encodeList(Iterable<? extends Tlv> list) {
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        int length = 0;
+        for (Tlv tlv : list) {
+            length += tlv.getBytesBuffer().remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
         for (Tlv tlv : list) {
-            byte[] tlvBytes = tlv.getBytes();
-            stream.write(tlvBytes, 0, tlvBytes.length);
+            buffer.put(tlv.getBytesBuffer());
         }
-        return stream.toByteArray();
+        return buffer.array();
     }
 
     /**
@@ -107,13 +139,12 @@ class Tlvs {
      * @return the data encoded as a sequence of TLV values
      */
     static byte[] encodeMap(Map<Integer, byte[]> map) {
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        TlvWriter writer = new TlvWriter();
         for (Map.Entry<Integer, byte[]> entry : map.entrySet()) {
-            Tlv tlv = new Tlv(entry.getKey(), entry.getValue());
-            byte[] tlvBytes = tlv.getBytes();
-            stream.write(tlvBytes, 0, tlvBytes.length);
+            byte[] value = entry.getValue();
+            writer.put(entry.getKey(), value == null ? new byte[0] : value);
         }
-        return stream.toByteArray();
+        return writer.toByteArray();
     }
 
     /**
@@ -126,9 +157,31 @@ class Tlvs {
      */
     static byte[] unpackValue(int expectedTag, byte[] tlvData) throws BadResponseException {
         Tlv tlv = Tlv.parse(tlvData, 0, tlvData.length);
+        checkTag(expectedTag, tlv);
+        return tlv.getValue();
+    }
+
+    /**
+     * Decode a single TLV encoded object from the remaining data of a buffer, returning only the value without
+     * copying it.
+     *
+     * @param expectedTag the expected tag value of the given TLV data
+     * @param tlvData     the TLV data, is consumed
+     * @return the value of the TLV, shares content with {@code tlvData}
+     * @throws BadResponseException if the TLV tag differs from expectedTag
+     */
+    static ByteBuffer unpackValue(int expectedTag, ByteBuffer tlvData) throws BadResponseException {
+        Tlv tlv = Tlv.parseFrom(tlvData);
+        if (tlvData.hasRemaining()) {
+            throw new IllegalArgumentException("Extra data remaining");
+        }
+        checkTag(expectedTag, tlv);
+        return tlv.getValueBuffer();
+    }
+
+    private static void checkTag(int expectedTag, Tlv tlv) throws BadResponseException {
         if (tlv.getTag() != expectedTag) {
             throw new BadResponseException(String.format("Expected tag: %02x, got %02x", expectedTag, tlv.getTag()));
         }
-        return tlv.getValue();
     }
 }
@@ -0,0 +1,75 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// RFC 4493, "4. Test Vectors"
+public class AesCmacTests {
+    private static final SecretKey KEY = new SecretKeySpec(
+        BytesUtils.hexToBytes("2B7E151628AED2A6ABF7158809CF4F3C"), "AES");
+    private static final byte[] MESSAGE = BytesUtils.hexToBytes(
+        "6BC1BEE22E409F96E93D7E117393172AAE2D8A571E03AC9C9EB76FAC45AF8E51" +
+        "30C81C46A35CE411E5FBC1191A0A52EFF69F2445DF4F9B17AD2B417BE66C3710");
+
+    @Test
+    void emptyMessage() {
+        assertArrayEquals(BytesUtils.hexToBytes("BB1D6929E95937287FA37D129B756746"),
+                          AesCmac.mac(KEY, new byte[0]));
+    }
+
+    @Test
+    void singleBlockMessage() {
+        assertArrayEquals(BytesUtils.hexToBytes("070A16B46B4D4144F79BDD9DD04A287C"),
+                          AesCmac.mac(KEY, Arrays.copyOf(MESSAGE, 16)));
+    }
+
+    @Test
+    void partialBlockMessage() {
+        assertArrayEquals(BytesUtils.hexToBytes("DFA66747DE9AE63030CA32611497C827"),
+                          AesCmac.mac(KEY, Arrays.copyOf(MESSAGE, 40)));
+    }
+
+    @Test
+    void multipleBlocksMessage() {
+        assertArrayEquals(BytesUtils.hexToBytes("51F0BEBF7E3B9D92FC49741779363CFE"), AesCmac.mac(KEY, MESSAGE));
+    }
+
+    @Test
+    void incrementalUpdateIsReusable() {
+        final AesCmac cmac = new AesCmac(KEY);
+        final byte[] mac = new byte[AesCmac.BLOCK_SIZE];
+        for (int round = 0; round < 2; round++) {
+            cmac.update(MESSAGE[0]);
+            cmac.update(MESSAGE, 1, 20);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(MESSAGE.length - 21);
+            direct.put(MESSAGE, 21, MESSAGE.length - 21);
+            direct.flip();
+            cmac.update(direct);
+            assertFalse(direct.hasRemaining());
+            cmac.doFinal(mac, 0);
+            assertArrayEquals(BytesUtils.hexToBytes("51F0BEBF7E3B9D92FC49741779363CFE"), mac);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApduArenaTests {
+    @Test
+    void responseGrowsKeepingContent() {
+        final ApduArena arena = new ApduArena();
+        final ByteBuffer response = arena.response(ApduArena.SHORT_RESPONSE_LENGTH);
+        response.put(BytesUtils.hexToBytes("01026102"));
+
+        final ByteBuffer extended = arena.extendResponse(2, ApduArena.SHORT_RESPONSE_LENGTH * 2);
+        assertNotSame(response, extended);
+        assertEquals(2, extended.position());
+        assertTrue(extended.remaining() >= ApduArena.SHORT_RESPONSE_LENGTH * 2);
+        extended.put(BytesUtils.hexToBytes("03049000"));
+
+        final ApduResponse wrapped = arena.wrapResponse(extended.position());
+        assertEquals(SW.OK, wrapped.getSw());
+        assertArrayEquals(BytesUtils.hexToBytes("01020304"), wrapped.getData());
+
+        // The grown buffer is kept for later responses
+        assertSame(extended, arena.response(ApduArena.SHORT_RESPONSE_LENGTH));
+        assertEquals(0, extended.position());
+    }
+
+    @Test
+    void commandBufferIsReused() {
+        final ApduArena arena = new ApduArena();
+        final ByteBuffer command = arena.command(5);
+        command.put(BytesUtils.hexToBytes("00A4040000"));
+        assertSame(command, arena.command(ApduArena.SHORT_COMMAND_LENGTH));
+        assertEquals(0, command.position());
+        assertNotSame(command, arena.command(ApduArena.SHORT_COMMAND_LENGTH + 1));
+    }
+
+    @Test
+    void exchangesReuseBuffers() throws IOException, BadResponseException {
+        final List<ByteBuffer> responseBuffers = new ArrayList<>();
+        final SmartCardConnection connection = new SmartCardConnection() {
+            @Override
+            public byte[] sendAndReceive(byte[] apdu) {
+                throw new AssertionError("Commands are sent from buffers");
+            }
+
+            @Override
+            public int sendAndReceive(ByteBuffer command, ByteBuffer response) {
+                responseBuffers.add(response);
+                final byte ins = command.get(1);
+                command.position(command.limit());
+                final byte[] received = BytesUtils.hexToBytes(ins == (byte) 0xC0 ? "03049000" : "01026102");
+                response.put(received);
+                return received.length;
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        final ApduArena arena = new ApduArena();
+        final ChainedResponseProcessor processor =
+            new ChainedResponseProcessor(connection, arena, false, MaxApduSize.SHORT, (byte) 0xC0);
+        for (int i = 0; i < 2; i++) {
+            final ApduResponse response = processor.sendApdu(new Apdu(0, 0xCA, 0x00, 0x66, null));
+            assertEquals(SW.OK, response.getSw());
+            assertArrayEquals(BytesUtils.hexToBytes("01020304"), response.getData());
+        }
+
+        // The buffer grows once for the first GET RESPONSE and is reused from then on
+        assertEquals(4, responseBuffers.size());
+        assertNotSame(responseBuffers.get(0), responseBuffers.get(1));
+        assertSame(responseBuffers.get(1), responseBuffers.get(2));
+        assertSame(responseBuffers.get(1), responseBuffers.get(3));
+    }
+
+    @Test
+    void responsesLongerThanShortAreReceived() throws IOException, BadResponseException {
+        // A reader sending GET RESPONSE automatically returns more than a short response at once
+        final byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final SmartCardConnection connection = new SmartCardConnection() {
+            @Override
+            public byte[] sendAndReceive(byte[] apdu) {
+                final byte[] response = new byte[apdu[1] == (byte) 0xC0 ? 602 : 402];
+                final int offset = apdu[1] == (byte) 0xC0 ? 400 : 0;
+                System.arraycopy(data, offset, response, 0, response.length - 2);
+                response[response.length - 2] = (byte) (apdu[1] == (byte) 0xC0 ? 0x90 : 0x61);
+                return response;
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        final ChainedResponseProcessor processor =
+            new ChainedResponseProcessor(connection, new ApduArena(), false, MaxApduSize.SHORT, (byte) 0xC0);
+        for (int i = 0; i < 2; i++) {
+            final ApduResponse response = processor.sendApdu(new Apdu(0, 0xCA, 0x00, 0x66, null));
+            assertEquals(SW.OK, response.getSw());
+            assertArrayEquals(data, response.getData());
+        }
+    }
+}
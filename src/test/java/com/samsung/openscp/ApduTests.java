@@ -0,0 +1,84 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApduTests {
+    @Test
+    void commandDataIsExposedReadOnly() {
+        final Apdu apdu = new Apdu(0x80, 0xCA, 0x00, 0x66, BytesUtils.hexToBytes("010203"));
+        assertEquals(3, apdu.dataLength());
+
+        final ByteBuffer data = apdu.dataBuffer();
+        assertTrue(data.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> data.put(0, (byte) 0));
+
+        // Consuming a view does not affect the APDU
+        data.get();
+        assertEquals(3, apdu.dataBuffer().remaining());
+        assertArrayEquals(BytesUtils.hexToBytes("010203"), apdu.getData());
+    }
+
+    @Test
+    void commandFromBufferDoesNotConsumeIt() {
+        final ByteBuffer source = ByteBuffer.wrap(BytesUtils.hexToBytes("AABBCCDD"));
+        source.position(1);
+        source.limit(3);
+
+        final Apdu apdu = new Apdu(0x00, 0xA4, 0x04, 0x00, source, 0, false);
+        assertEquals(1, source.position());
+        assertEquals(3, source.limit());
+        assertArrayEquals(BytesUtils.hexToBytes("BBCC"), apdu.getData());
+    }
+
+    @Test
+    void responseWrapsRangeWithoutCopying() {
+        final byte[] received = BytesUtils.hexToBytes("FF0102039000FF");
+        final ApduResponse response = new ApduResponse(received, 1, 5);
+        assertEquals(SW.OK, response.getSw());
+        assertEquals((byte) 0x90, response.sw1());
+        assertEquals((byte) 0x00, response.sw2());
+        assertEquals(3, response.dataLength());
+
+        final ByteBuffer data = response.dataBuffer();
+        assertTrue(data.isReadOnly());
+        assertEquals(3, data.remaining());
+        received[1] = 0x0A;
+        assertEquals(0x0A, data.get(0));
+        assertArrayEquals(BytesUtils.hexToBytes("0A0203"), response.getData());
+        assertArrayEquals(BytesUtils.hexToBytes("0A02039000"), response.getBytes());
+    }
+
+    @Test
+    void responseCanBeRecycled() {
+        final ApduResponse response = new ApduResponse(BytesUtils.hexToBytes("01026110"));
+        assertEquals(0x61, response.sw1());
+        assertSame(response, response.reset(BytesUtils.hexToBytes("6A82")));
+        assertEquals(SW.FILE_NOT_FOUND, response.getSw());
+        assertEquals(0, response.dataLength());
+        assertEquals(0, response.dataBuffer().remaining());
+
+        assertThrows(IllegalArgumentException.class, () -> response.reset(new byte[1]));
+        assertThrows(IndexOutOfBoundsException.class, () -> response.reset(new byte[4], 3, 2));
+    }
+}
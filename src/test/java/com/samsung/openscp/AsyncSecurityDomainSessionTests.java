@@ -0,0 +1,167 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.InputTestData;
+import com.samsung.openscp.testdata.OutputTestData;
+import com.samsung.openscp.testdata.SmartCardEmulation;
+import com.samsung.openscp.testdata.SmartCardScp03Aes128S8ModeEmulation;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncSecurityDomainSessionTests {
+    @Test
+    void operationsRunInCallOrder() throws Exception {
+        final SmartCardScp03Aes128S8ModeEmulation card = new SmartCardScp03Aes128S8ModeEmulation();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            getStatusTest(new AsyncSecurityDomainSession(card, executor, new BouncyCastleProvider()), card);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void responsesOfAsyncConnectionAreAwaited() throws Exception {
+        final SmartCardScp03Aes128S8ModeEmulation card = new SmartCardScp03Aes128S8ModeEmulation();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final ExecutorService reader = Executors.newSingleThreadExecutor();
+        final AsyncSmartCardConnection connection = new AsyncSmartCardConnection() {
+            @Override
+            public CompletableFuture<byte[]> sendAndReceive(byte[] apdu) {
+                return CompletableFuture.supplyAsync(() -> card.sendAndReceive(apdu), reader);
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            getStatusTest(new AsyncSecurityDomainSession(connection, executor, new BouncyCastleProvider()), card);
+        } finally {
+            executor.shutdown();
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    void blockingAdapterOnSessionExecutorDoesNotDeadlock() throws Exception {
+        final SmartCardScp03Aes128S8ModeEmulation card = new SmartCardScp03Aes128S8ModeEmulation();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            getStatusTest(new AsyncSecurityDomainSession(AsyncSmartCardConnection.fromBlocking(card, executor),
+                                                         executor, new BouncyCastleProvider()), card);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void blockingAdapterIsCalledOnItsExecutor() throws Exception {
+        final SmartCardScp03Aes128S8ModeEmulation card = new SmartCardScp03Aes128S8ModeEmulation();
+        final Set<String> callingThreads = ConcurrentHashMap.newKeySet();
+        final SmartCardConnection recordingCard = new SmartCardConnection() {
+            @Override
+            public byte[] sendAndReceive(byte[] apdu) {
+                callingThreads.add(Thread.currentThread().getName());
+                return card.sendAndReceive(apdu);
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "session"));
+        final ExecutorService reader = Executors.newSingleThreadExecutor(r -> new Thread(r, "reader"));
+        try {
+            getStatusTest(new AsyncSecurityDomainSession(AsyncSmartCardConnection.fromBlocking(recordingCard, reader),
+                                                         executor, new BouncyCastleProvider()), card);
+        } finally {
+            executor.shutdown();
+            reader.shutdown();
+        }
+        assertEquals(Collections.singleton("reader"), callingThreads);
+    }
+
+    @Test
+    void failedOperationDoesNotStopQueue() throws Exception {
+        final SmartCardEmulation card = new SmartCardEmulation(
+            new byte[][]{BytesUtils.hexToBytes("00CA006600"), BytesUtils.hexToBytes("00CA006600")},
+            new byte[][]{BytesUtils.hexToBytes("6A88"), BytesUtils.hexToBytes("01029000")});
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final AsyncSecurityDomainSession session = new AsyncSecurityDomainSession(card, executor);
+            final CompletableFuture<byte[]> failed = session.getData((short) 0x66, null);
+            final CompletableFuture<byte[]> succeeded = session.getData((short) 0x66, null);
+
+            final ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+            assertTrue(e.getCause() instanceof ApduException);
+            assertEquals(SW.REFERENCED_DATA_NOT_FOUND, ((ApduException) e.getCause()).getSw());
+            assertArrayEquals(BytesUtils.hexToBytes("0102"), succeeded.get());
+            assertTrue(card.isAllExpectedCapdusReceived());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Queues the authentication and the commands without waiting, then checks the results
+     */
+    private static void getStatusTest(final AsyncSecurityDomainSession session,
+                                      final SmartCardScp03Aes128S8ModeEmulation card) throws Exception {
+        final CompletableFuture<Void> authenticated = session.authenticate(
+            new Scp03KeyParams(new KeyRef((byte) 0x01, (byte) 0x30), InputTestData.staticKeysAes128),
+            ScpMode.S8, InputTestData.hostChallengeS8);
+        final CompletableFuture<byte[]> packages = session.sendAndReceive(getStatus(InputTestData.LIST_PACKAGES_ID));
+        final CompletableFuture<byte[]> applets = session.sendAndReceive(getStatus(InputTestData.LIST_APPLETS_ID));
+        final CompletableFuture<byte[]> issuerDomain =
+            session.sendAndReceive(getStatus(InputTestData.LIST_ISSUER_DOMAIN_ID));
+        final CompletableFuture<Void> closed = session.close();
+
+        authenticated.get();
+        assertArrayEquals(OutputTestData.LIST_PACKAGES_RSP_PLAIN_DATA, packages.get());
+        assertArrayEquals(OutputTestData.LIST_APPLETS_RSP_PLAIN_DATA, applets.get());
+        assertArrayEquals(OutputTestData.LIST_ISSUER_DOMAIN_RSP_PLAIN_DATA, issuerDomain.get());
+        closed.get();
+        assertTrue(card.isAllExpectedCapdusReceived());
+    }
+
+    private static Apdu getStatus(final byte elementId) {
+        return new Apdu(0x80, 0xF2, elementId, 0x00, BytesUtils.hexToBytes("4F00"));
+    }
+}
@@ -0,0 +1,210 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+import com.samsung.openscp.testdata.InputTestData;
+import com.samsung.openscp.testdata.OutputTestData;
+import com.samsung.openscp.testdata.SmartCardScp03Aes128S8ModeEmulation;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchSmartCardConnectionTests {
+    @Test
+    void securedCommandsAreWrappedAhead() throws IOException, ApduException, BadResponseException {
+        final SmartCardScp03Aes128S8ModeEmulation card = new SmartCardScp03Aes128S8ModeEmulation();
+        final RecordingBatchConnection connection = new RecordingBatchConnection(card);
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(connection);
+        session.authenticate(new Scp03KeyParams(new KeyRef((byte) 0x01, (byte) 0x30), InputTestData.staticKeysAes128),
+                             ScpMode.S8, InputTestData.hostChallengeS8);
+
+        final List<byte[]> responses = session.sendAndReceive(Arrays.asList(
+            getStatus(InputTestData.LIST_PACKAGES_ID),
+            getStatus(InputTestData.LIST_APPLETS_ID),
+            getStatus(InputTestData.LIST_ISSUER_DOMAIN_ID)));
+
+        assertEquals(Arrays.asList(3), connection.batchSizes);
+        assertEquals(3, responses.size());
+        assertArrayEquals(OutputTestData.LIST_PACKAGES_RSP_PLAIN_DATA, responses.get(0));
+        assertArrayEquals(OutputTestData.LIST_APPLETS_RSP_PLAIN_DATA, responses.get(1));
+        assertArrayEquals(OutputTestData.LIST_ISSUER_DOMAIN_RSP_PLAIN_DATA, responses.get(2));
+        assertTrue(card.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void unsentSecuredCommandsAreRolledBack() throws IOException, BadResponseException {
+        final Apdu first = new Apdu(0x80, 0xE2, 0x90, 0x00, BytesUtils.hexToBytes("0102"));
+        final Apdu second = new Apdu(0x80, 0xE2, 0x90, 0x00, BytesUtils.hexToBytes("0304"));
+
+        // The first command fails, the second one is sent on its own afterwards
+        final List<byte[]> sequential = new ArrayList<>();
+        final ScpProcessor reference = createCMacProcessor(new ScriptedConnection(sequential));
+        assertEquals(SW.REFERENCED_DATA_NOT_FOUND, reference.sendApdu(first).getSw());
+        assertEquals(SW.OK, reference.sendApdu(second).getSw());
+
+        final List<byte[]> batched = new ArrayList<>();
+        final ScriptedConnection connection = new ScriptedConnection(batched);
+        final ScpProcessor processor = createCMacProcessor(connection);
+        final List<byte[]> responses = processor.sendBatch(connection, Arrays.asList(first, second),
+                                                           StopCondition.onError());
+        assertEquals(1, responses.size());
+        assertEquals(SW.OK, processor.sendApdu(second).getSw());
+
+        assertEquals(2, batched.size());
+        assertArrayEquals(sequential.get(0), batched.get(0));
+        assertArrayEquals(sequential.get(1), batched.get(1));
+    }
+
+    @Test
+    void batchIsCutToReadRemainingData() throws IOException, BadResponseException {
+        final List<byte[]> received = new ArrayList<>();
+        final ScriptedConnection connection = new ScriptedConnection(received);
+        final ChainedResponseProcessor processor =
+            new ChainedResponseProcessor(connection, false, MaxApduSize.SHORT, (byte) 0xC0);
+
+        final List<byte[]> responses = processor.sendBatch(connection, Arrays.asList(
+            new Apdu(0x80, 0xCA, 0x00, 0x01, null),
+            new Apdu(0x80, 0xCA, 0x00, 0x61, null),
+            new Apdu(0x80, 0xCA, 0x00, 0x02, null)), StopCondition.onError());
+
+        // The first batch stops after the second command, the third one is sent in another batch
+        assertEquals(Arrays.asList(3, 1), connection.batchSizes);
+        assertEquals(3, responses.size());
+        assertEquals("019000", BytesUtils.bytesToHex(responses.get(0)));
+        assertEquals("020304059000", BytesUtils.bytesToHex(responses.get(1)));
+        assertEquals("029000", BytesUtils.bytesToHex(responses.get(2)));
+    }
+
+    @Test
+    void sequentialAdapterStopsOnCondition() throws IOException {
+        final List<byte[]> received = new ArrayList<>();
+        final BatchSmartCardConnection connection = BatchSmartCardConnection.sequential(new SmartCardConnection() {
+            @Override
+            public byte[] sendAndReceive(byte[] apdu) {
+                received.add(apdu);
+                return BytesUtils.hexToBytes(apdu[3] == 0x02 ? "6A88" : "9000");
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        final List<byte[]> responses = connection.transmitBatch(Arrays.asList(
+            ByteBuffer.wrap(BytesUtils.hexToBytes("80CA0001")),
+            ByteBuffer.wrap(BytesUtils.hexToBytes("80CA0002")),
+            ByteBuffer.wrap(BytesUtils.hexToBytes("80CA0003"))), StopCondition.onError());
+
+        assertEquals(2, received.size());
+        assertEquals(2, responses.size());
+        assertEquals("6a88", BytesUtils.bytesToHex(responses.get(1)));
+    }
+
+    private static Apdu getStatus(final byte elementId) {
+        return new Apdu(0x80, 0xF2, elementId, 0x00, BytesUtils.hexToBytes("4F00"));
+    }
+
+    private static ScpProcessor createCMacProcessor(final SmartCardConnection connection) {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        return new ScpProcessor(
+            connection,
+            new ScpState(new SessionKeys(key, key, key, null), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC);
+    }
+
+    /**
+     * Sends the batches through the fallback adapter, recording their sizes
+     */
+    private static class RecordingBatchConnection implements BatchSmartCardConnection {
+        final List<Integer> batchSizes = new ArrayList<>();
+        private final BatchSmartCardConnection delegate;
+
+        RecordingBatchConnection(final SmartCardConnection connection) {
+            delegate = new SequentialBatchConnection(connection);
+        }
+
+        RecordingBatchConnection() {
+            delegate = new SequentialBatchConnection(this);
+        }
+
+        @Override
+        public List<byte[]> transmitBatch(List<ByteBuffer> commands, StopCondition stopCondition) throws IOException {
+            batchSizes.add(commands.size());
+            return delegate.transmitBatch(commands, stopCondition);
+        }
+
+        @Override
+        public byte[] sendAndReceive(byte[] apdu) throws IOException {
+            return delegate.sendAndReceive(apdu);
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Answers GET RESPONSE with the last two bytes of data, secured STORE DATA with 6A88 for the first command and
+     * 9000 after, and other commands by P2: 61 with two bytes of data and two more available, otherwise with P2 as
+     * data
+     */
+    private static class ScriptedConnection extends RecordingBatchConnection {
+        private final List<byte[]> received;
+
+        ScriptedConnection(final List<byte[]> received) {
+            this.received = received;
+        }
+
+        @Override
+        public byte[] sendAndReceive(byte[] apdu) {
+            received.add(apdu);
+            if (apdu[1] == (byte) 0xC0) {
+                return BytesUtils.hexToBytes("04059000");
+            }
+            if (apdu[2] == (byte) 0x90) {
+                return BytesUtils.hexToBytes(received.size() == 1 ? "6A88" : "9000");
+            }
+            if (apdu[3] == 0x61) {
+                return BytesUtils.hexToBytes("02036102");
+            }
+            return new byte[]{apdu[3], (byte) 0x90, 0x00};
+        }
+    }
+}
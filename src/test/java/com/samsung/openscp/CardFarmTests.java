@@ -0,0 +1,185 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.InputTestData;
+import com.samsung.openscp.testdata.OutputTestData;
+import com.samsung.openscp.testdata.SmartCardScp03Aes128S8ModeEmulation;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardFarmTests {
+    private static final CardFarm.SessionJob<Void> AUTHENTICATION = session -> {
+        session.authenticate(new Scp03KeyParams(new KeyRef((byte) 0x01, (byte) 0x30), InputTestData.staticKeysAes128),
+                             ScpMode.S8, InputTestData.hostChallengeS8);
+        return null;
+    };
+
+    private static final CardFarm.SessionJob<byte[]> LIST_PACKAGES = session -> session.sendAndReceive(
+        new Apdu(0x80, 0xF2, InputTestData.LIST_PACKAGES_ID, 0x00, BytesUtils.hexToBytes("4F00")));
+
+    static {
+        Security.insertProviderAt(new BouncyCastleProvider(), 1);
+    }
+
+    @Test
+    void sessionsOfReaderAreLimited() throws Exception {
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger maxOpen = new AtomicInteger();
+        final List<Future<byte[]>> results = new ArrayList<>();
+
+        try (CardFarm farm = new CardFarm(Executors.newFixedThreadPool(8), 1)) {
+            farm.setReaderLimit("reader", 2);
+            for (int i = 0; i < 8; i++) {
+                results.add(farm.submit("reader", () -> new CountingConnection(
+                                            new SmartCardScp03Aes128S8ModeEmulation(), open, maxOpen),
+                                        AUTHENTICATION, LIST_PACKAGES));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(OutputTestData.LIST_PACKAGES_RSP_PLAIN_DATA, result.get());
+            }
+        }
+        assertTrue(maxOpen.get() <= 2);
+        assertEquals(0, open.get());
+    }
+
+    @Test
+    void readerLimitCannotBeChangedOnceUsed() throws IOException {
+        try (CardFarm farm = new CardFarm()) {
+            farm.setReaderLimit("reader", 2);
+            assertThrows(IllegalStateException.class, () -> farm.setReaderLimit("reader", 3));
+            assertThrows(IllegalArgumentException.class, () -> farm.setReaderLimit("other", 0));
+        }
+    }
+
+    @Test
+    void scopeJoinsResultsInForkOrder() throws Exception {
+        try (CardFarm farm = new CardFarm(Executors.newFixedThreadPool(4), 4);
+             CardFarm.Scope<byte[]> scope = farm.openScope()) {
+            for (int i = 0; i < 3; i++) {
+                scope.fork("reader" + i, SmartCardScp03Aes128S8ModeEmulation::new, AUTHENTICATION, LIST_PACKAGES);
+            }
+            final List<byte[]> results = scope.join();
+
+            assertEquals(3, results.size());
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(OutputTestData.LIST_PACKAGES_RSP_PLAIN_DATA, results.get(i));
+            }
+        }
+    }
+
+    @Test
+    void failedTaskCancelsScope() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(2);
+        final CountDownLatch interrupted = new CountDownLatch(2);
+        final CardFarm.SessionJob<Void> noAuthentication = session -> null;
+
+        try (CardFarm farm = new CardFarm(Executors.newFixedThreadPool(4), 4);
+             CardFarm.Scope<Void> scope = farm.openScope()) {
+            for (int i = 0; i < 2; i++) {
+                scope.fork("reader" + i, SmartCardScp03Aes128S8ModeEmulation::new, noAuthentication,
+                           session -> {
+                               blocked.countDown();
+                               try {
+                                   new CountDownLatch(1).await();
+                               } catch (InterruptedException e) {
+                                   interrupted.countDown();
+                               }
+                               return null;
+                           });
+            }
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+            scope.fork("reader2", () -> {
+                throw new IOException("Reader removed");
+            }, noAuthentication, session -> null);
+
+            final ExecutionException e = assertThrows(ExecutionException.class, scope::join);
+            assertTrue(e.getCause() instanceof IOException);
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void cancelledTaskCancelsScope() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(3);
+        final CountDownLatch interrupted = new CountDownLatch(3);
+        final CardFarm.SessionJob<Void> noAuthentication = session -> null;
+
+        try (CardFarm farm = new CardFarm(Executors.newFixedThreadPool(4), 4);
+             CardFarm.Scope<Void> scope = farm.openScope()) {
+            final List<Future<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                tasks.add(scope.fork("reader" + i, SmartCardScp03Aes128S8ModeEmulation::new, noAuthentication,
+                                     session -> {
+                                         blocked.countDown();
+                                         try {
+                                             new CountDownLatch(1).await();
+                                         } catch (InterruptedException e) {
+                                             interrupted.countDown();
+                                         }
+                                         return null;
+                                     }));
+            }
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+            tasks.get(0).cancel(true);
+
+            assertThrows(CancellationException.class, scope::join);
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static final class CountingConnection implements SmartCardConnection {
+        private final SmartCardConnection card;
+        private final AtomicInteger open;
+
+        CountingConnection(SmartCardConnection card, AtomicInteger open, AtomicInteger maxOpen) {
+            this.card = card;
+            this.open = open;
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+        }
+
+        @Override
+        public byte[] sendAndReceive(byte[] apdu) throws IOException {
+            return card.sendAndReceive(apdu);
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return card.isExtendedLengthApduSupported();
+        }
+
+        @Override
+        public void close() throws IOException {
+            open.decrementAndGet();
+            card.close();
+        }
+    }
+}
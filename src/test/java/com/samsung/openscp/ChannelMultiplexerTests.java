@@ -0,0 +1,240 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.SmartCardEmulation;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelMultiplexerTests {
+    @Test
+    void channelNumberIsEncodedIntoCla() {
+        assertEquals((byte) 0x00, LogicalChannel.encodeCla((byte) 0x00, 0));
+        assertEquals((byte) 0x01, LogicalChannel.encodeCla((byte) 0x00, 1));
+        assertEquals((byte) 0x87, LogicalChannel.encodeCla((byte) 0x84, 3));
+        assertEquals((byte) 0x93, LogicalChannel.encodeCla((byte) 0x90, 3));
+        assertEquals((byte) 0xC0, LogicalChannel.encodeCla((byte) 0x80, 4));
+        assertEquals((byte) 0xE1, LogicalChannel.encodeCla((byte) 0x84, 5));
+        assertEquals((byte) 0xFF, LogicalChannel.encodeCla((byte) 0x94, 19));
+    }
+
+    @Test
+    void sessionsOnChannelsShareConnection() throws Exception {
+        final SmartCardEmulation card = new SmartCardEmulation(
+            new byte[][]{
+                BytesUtils.hexToBytes("0070000001"),
+                BytesUtils.hexToBytes("01CA006600"),
+                BytesUtils.hexToBytes("00CA006600"),
+                BytesUtils.hexToBytes("01CA00C000"),
+                BytesUtils.hexToBytes("01C00000"),
+                BytesUtils.hexToBytes("01708001")},
+            new byte[][]{
+                BytesUtils.hexToBytes("019000"),
+                BytesUtils.hexToBytes("01029000"),
+                BytesUtils.hexToBytes("A19000"),
+                BytesUtils.hexToBytes("036101"),
+                BytesUtils.hexToBytes("049000"),
+                BytesUtils.hexToBytes("9000")});
+        final ChannelMultiplexer multiplexer = new ChannelMultiplexer(card);
+        final SecurityDomainSession basic = new SecurityDomainSession(multiplexer.basicChannel());
+        final SecurityDomainSession channel = new SecurityDomainSession(multiplexer.openChannel());
+
+        assertArrayEquals(BytesUtils.hexToBytes("0102"), channel.getData((short) 0x66, null));
+        assertArrayEquals(BytesUtils.hexToBytes("A1"), basic.getData((short) 0x66, null));
+        assertArrayEquals(BytesUtils.hexToBytes("0304"), channel.getData((short) 0xC0, null));
+        channel.close();
+
+        assertTrue(card.isAllExpectedCapdusReceived());
+        assertThrows(IOException.class, () -> channel.getData((short) 0x66, null));
+    }
+
+    @Test
+    void secureMessagingMacCoversChannelCla() throws Exception {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        final RecordingConnection card = new RecordingConnection(
+            BytesUtils.hexToBytes("029000"), BytesUtils.hexToBytes("9000"));
+        final ChannelMultiplexer multiplexer = new ChannelMultiplexer(card);
+        final ScpProcessor processor = new ScpProcessor(
+            multiplexer.openChannel(),
+            new ScpState(new SessionKeys(key, key, key, null), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC);
+
+        processor.sendApdu(new Apdu(0x80, 0xF2, 0x40, 0x00, BytesUtils.hexToBytes("4F00")));
+
+        final byte[] command = card.last;
+        assertEquals((byte) 0x86, command[0]);
+        final ByteBuffer mac = ByteBuffer.allocate(8);
+        new ScpState(new SessionKeys(key, key, key, null), new byte[16])
+            .mac(ByteBuffer.wrap(command, 0, command.length - 8), ScpMode.S8, mac);
+        assertArrayEquals(mac.array(), Arrays.copyOfRange(command, command.length - 8, command.length));
+    }
+
+    @Test
+    void exchangesKeepTheirTurn() throws Exception {
+        final InterleavingCheckingConnection card = new InterleavingCheckingConnection();
+        final ChannelMultiplexer multiplexer = new ChannelMultiplexer(card);
+        final SecurityDomainSession first = new SecurityDomainSession(multiplexer.openChannel());
+        final SecurityDomainSession second = new SecurityDomainSession(multiplexer.openChannel());
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (SecurityDomainSession session : Arrays.asList(first, second)) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        // Chained over two commands, and answered in two chunks
+                        session.sendAndReceive(new Apdu(0x80, 0xE2, 0x90, 0x00, new byte[300]));
+                        assertArrayEquals(BytesUtils.hexToBytes("0102"), session.getData((short) 0x66, null));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertNull(card.violation, card.violation);
+    }
+
+    @Test
+    void abandonedChainPassesTurnOn() throws Exception {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        final RecordingConnection card = new RecordingConnection(
+            BytesUtils.hexToBytes("019000"),
+            // The response to the first segment of the chain fails R-MAC verification
+            BytesUtils.hexToBytes("000102030405060708099000"),
+            BytesUtils.hexToBytes("A19000"));
+        final ChannelMultiplexer multiplexer = new ChannelMultiplexer(card);
+        final ScpProcessor processor = new ScpProcessor(
+            multiplexer.openChannel(),
+            new ScpState(new SessionKeys(key, key, key, key), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC_R_MAC);
+
+        assertThrows(BadResponseException.class,
+                     () -> processor.sendApdu(new Apdu(0x80, 0xE2, 0x90, 0x00, new byte[300])));
+        assertEquals((byte) 0x95, card.last[0]);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<byte[]> other = executor.submit(
+                () -> multiplexer.basicChannel().sendAndReceive(BytesUtils.hexToBytes("00CA006600")));
+            assertArrayEquals(BytesUtils.hexToBytes("A19000"), other.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void channelNumberOutOfRangeIsClosed() {
+        final SmartCardEmulation card = new SmartCardEmulation(
+            new byte[][]{BytesUtils.hexToBytes("0070000001"), BytesUtils.hexToBytes("00708014")},
+            new byte[][]{BytesUtils.hexToBytes("149000"), BytesUtils.hexToBytes("9000")});
+        final ChannelMultiplexer multiplexer = new ChannelMultiplexer(card);
+        assertThrows(IOException.class, multiplexer::openChannel);
+        assertTrue(card.isAllExpectedCapdusReceived());
+    }
+
+    /**
+     * Answers GET DATA in two chunks and accepts chained commands, recording the first command, that was sent
+     * between the commands of another channel's exchange
+     */
+    private static final class InterleavingCheckingConnection implements SmartCardConnection {
+        private int openedChannels = 0;
+        private int exchangeChannel = -1;
+        private String violation;
+
+        @Override
+        public synchronized byte[] sendAndReceive(final byte[] apdu) {
+            final int channel = (apdu[0] & 0x40) == 0 ? apdu[0] & 0x03 : (apdu[0] & 0x0F) + 4;
+            if (exchangeChannel != -1 && channel != exchangeChannel && violation == null) {
+                violation = "Channel " + channel + " interleaved with channel " + exchangeChannel;
+            }
+            Thread.yield();
+            exchangeChannel = -1;
+            switch (apdu[1]) {
+                case 0x70:
+                    return new byte[]{(byte) ++openedChannels, (byte) 0x90, 0x00};
+                case (byte) 0xCA:
+                    exchangeChannel = channel;
+                    return BytesUtils.hexToBytes("016101");
+                case (byte) 0xC0:
+                    return BytesUtils.hexToBytes("029000");
+                default:
+                    if ((apdu[0] & 0x10) != 0) {
+                        exchangeChannel = channel;
+                    }
+                    return BytesUtils.hexToBytes("9000");
+            }
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class RecordingConnection implements SmartCardConnection {
+        private final byte[][] responses;
+        private int next = 0;
+        private byte[] last;
+
+        RecordingConnection(final byte[]... responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public byte[] sendAndReceive(final byte[] apdu) {
+            last = apdu;
+            return responses[next++];
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.SmartCardEmulation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentSecurityDomainSessionTests {
+    @Test
+    void higherPriorityIsServedFirstWithoutStarvation() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ConcurrentSecurityDomainSession session = new ConcurrentSecurityDomainSession(
+                new SmartCardEmulation(new byte[0][], new byte[0][]), executor);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<String> order = Collections.synchronizedList(new ArrayList<>());
+            session.submit(s -> {
+                started.countDown();
+                return release.await(10, TimeUnit.SECONDS);
+            });
+            // The queues are empty while the first operation runs
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            final List<CompletableFuture<?>> results = new ArrayList<>();
+            for (int i = 1; i <= 6; i++) {
+                results.add(session.submit(ConcurrentSecurityDomainSession.Priority.LOW, record(order, "L" + i)));
+            }
+            for (int i = 1; i <= 6; i++) {
+                results.add(session.submit(ConcurrentSecurityDomainSession.Priority.HIGH, record(order, "H" + i)));
+            }
+            release.countDown();
+            for (CompletableFuture<?> result : results) {
+                result.get();
+            }
+
+            assertEquals(Arrays.asList("H1", "H2", "H3", "H4", "L1", "H5", "H6", "L2", "L3", "L4", "L5", "L6"),
+                         order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void identicalQueuedGetDataIsCoalesced() throws Exception {
+        final SmartCardEmulation card = new SmartCardEmulation(
+            new byte[][]{BytesUtils.hexToBytes("00CA006600"), BytesUtils.hexToBytes("00CA0066010100")},
+            new byte[][]{BytesUtils.hexToBytes("01029000"), BytesUtils.hexToBytes("03049000")});
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ConcurrentSecurityDomainSession session = new ConcurrentSecurityDomainSession(card, executor);
+            final CountDownLatch release = new CountDownLatch(1);
+            session.submit(s -> release.await(10, TimeUnit.SECONDS));
+            final List<CompletableFuture<byte[]>> coalesced = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                coalesced.add(session.getData(ConcurrentSecurityDomainSession.Priority.NORMAL, (short) 0x66, null,
+                                              true));
+            }
+            final CompletableFuture<byte[]> other = session.getData(
+                ConcurrentSecurityDomainSession.Priority.NORMAL, (short) 0x66, new byte[]{0x01}, true);
+            release.countDown();
+
+            for (CompletableFuture<byte[]> result : coalesced) {
+                assertArrayEquals(BytesUtils.hexToBytes("0102"), result.get());
+            }
+            assertNotSame(coalesced.get(0).get(), coalesced.get(1).get());
+            assertArrayEquals(BytesUtils.hexToBytes("0304"), other.get());
+            assertTrue(card.isAllExpectedCapdusReceived());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void commandsOfManyThreadsDoNotOverlap() throws Exception {
+        final AtomicBoolean busy = new AtomicBoolean();
+        final AtomicInteger sent = new AtomicInteger();
+        final SmartCardConnection connection = new SmartCardConnection() {
+            @Override
+            public byte[] sendAndReceive(byte[] apdu) {
+                assertTrue(busy.compareAndSet(false, true));
+                sent.incrementAndGet();
+                busy.set(false);
+                return new byte[]{(byte) 0x90, 0x00};
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            final ConcurrentSecurityDomainSession session = new ConcurrentSecurityDomainSession(connection, executor);
+            final List<CompletableFuture<CompletableFuture<byte[]>>> submitted = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                final ConcurrentSecurityDomainSession.Priority priority =
+                    ConcurrentSecurityDomainSession.Priority.values()[i % 3];
+                submitted.add(CompletableFuture.supplyAsync(
+                    () -> session.sendAndReceive(priority, new Apdu(0x80, 0xCA, 0x00, 0x66, null)), callers));
+            }
+            for (CompletableFuture<CompletableFuture<byte[]>> result : submitted) {
+                assertArrayEquals(new byte[0], result.get().get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(400, sent.get());
+        } finally {
+            executor.shutdown();
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    void sessionIsClosedAfterQueuedOperations() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ConcurrentSecurityDomainSession session = new ConcurrentSecurityDomainSession(
+                new SmartCardEmulation(new byte[0][], new byte[0][]), executor);
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<String> order = Collections.synchronizedList(new ArrayList<>());
+            session.submit(s -> release.await(10, TimeUnit.SECONDS));
+            final CompletableFuture<String> cancelled = session.submit(record(order, "cancelled"));
+            final CompletableFuture<String> low =
+                session.submit(ConcurrentSecurityDomainSession.Priority.LOW, record(order, "low"));
+            final CompletableFuture<Void> closed = session.close();
+            assertThrows(IllegalStateException.class, () -> session.submit(record(order, "late")));
+            cancelled.cancel(false);
+            release.countDown();
+
+            closed.get();
+            assertEquals("low", low.get());
+            assertEquals(Collections.singletonList("low"), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void coalescedGetDataAfterCloseIsRejected() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ConcurrentSecurityDomainSession session = new ConcurrentSecurityDomainSession(
+                new SmartCardEmulation(new byte[0][], new byte[0][]), executor);
+            session.close().get();
+
+            // The rejected request must not be left for identical requests to wait for
+            for (int i = 0; i < 2; i++) {
+                assertThrows(IllegalStateException.class, () -> session.getData(
+                    ConcurrentSecurityDomainSession.Priority.NORMAL, (short) 0x0066, null, true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ConcurrentSecurityDomainSession.Operation<String> record(final List<String> order,
+                                                                             final String name) {
+        return session -> {
+            order.add(name);
+            return name;
+        };
+    }
+}
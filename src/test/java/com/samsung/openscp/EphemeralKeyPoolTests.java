@@ -0,0 +1,102 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EphemeralKeyPoolTests {
+    @Test
+    void keyPairsAreSingleUse() throws GeneralSecurityException {
+        final PublicKey pkSdEcka = generateKeyPair("secp256r1").getPublic();
+        final List<KeyPair> taken = new ArrayList<>();
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(3, 1, Runnable::run)) {
+            pool.prefill(pkSdEcka);
+            for (int i = 0; i < 10; i++) {
+                final KeyPair keyPair = pool.take(pkSdEcka).keyPair;
+                for (KeyPair previous : taken) {
+                    assertNotSame(previous, keyPair);
+                    assertNotEquals(previous.getPublic(), keyPair.getPublic());
+                }
+                assertEquals(((ECPublicKey) pkSdEcka).getParams().getCurve(),
+                             ((ECPublicKey) keyPair.getPublic()).getParams().getCurve());
+                taken.add(keyPair);
+            }
+            assertEquals(10, pool.getHitCount());
+            assertEquals(0, pool.getMissCount());
+        }
+    }
+
+    @Test
+    void emptyPoolGeneratesInline() throws GeneralSecurityException {
+        final PublicKey p256 = generateKeyPair("secp256r1").getPublic();
+        final PublicKey p384 = generateKeyPair("secp384r1").getPublic();
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(2, 0, runnable -> { })) {
+            final KeyPair keyPair = pool.take(p384).keyPair;
+            assertEquals(((ECPublicKey) p384).getParams().getCurve(),
+                         ((ECPublicKey) keyPair.getPublic()).getParams().getCurve());
+            assertNotNull(pool.take(p256));
+            assertEquals(0, pool.getHitCount());
+            assertEquals(2, pool.getMissCount());
+        }
+    }
+
+    @Test
+    void publicKeysAreConvertedWhenPooled() throws GeneralSecurityException {
+        final PublicKey pkSdEcka = generateKeyPair("secp256r1").getPublic();
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(2, 0, Runnable::run)) {
+            pool.prefill(pkSdEcka);
+            final EphemeralKeyPool.PooledKeyPair pooled = pool.take(pkSdEcka);
+            final PublicKeyValues.Ec expected =
+                (PublicKeyValues.Ec) PublicKeyValues.fromPublicKey(pooled.keyPair.getPublic());
+            assertArrayEquals(expected.getEncodedPoint(), pooled.publicKeyValues.getEncodedPoint());
+        }
+    }
+
+    @Test
+    void refillsDoNotOverlap() throws GeneralSecurityException {
+        final PublicKey pkSdEcka = generateKeyPair("secp256r1").getPublic();
+        final List<Runnable> refills = new ArrayList<>();
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(4, 3, refills::add)) {
+            for (int i = 0; i < 3; i++) {
+                pool.take(pkSdEcka);
+            }
+            // Takes during a refill are served by the running refill
+            assertEquals(1, refills.size());
+            refills.get(0).run();
+            pool.take(pkSdEcka);
+            assertEquals(1, pool.getHitCount());
+            assertEquals(2, refills.size());
+        }
+    }
+
+    private static KeyPair generateKeyPair(final String curve) throws GeneralSecurityException {
+        final KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec(curve));
+        return kpg.generateKeyPair();
+    }
+}
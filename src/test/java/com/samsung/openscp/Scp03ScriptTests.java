@@ -0,0 +1,158 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.InputTestData;
+import com.samsung.openscp.testdata.SmartCardEmulation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Scp03ScriptTests {
+    private static final byte[] SD_AID = BytesUtils.hexToBytes("A000000151000000");
+    private static final byte[] SELECT = BytesUtils.hexToBytes("00A4040008A000000151000000");
+    private static final byte[] OK = BytesUtils.hexToBytes("9000");
+    private static final byte[] SELECT_FCI = BytesUtils.hexToBytes("6F0A8408A0000001510000009000");
+    private static final byte[] DIVERSIFICATION_DATA = BytesUtils.hexToBytes("A1A01243058551312085");
+    private static final byte I_PARAMETER = 0x70;
+    private static final int SEQUENCE_COUNTER = 0x00082A;
+    private static final Scp03KeyParams KEY_PARAMS =
+        new Scp03KeyParams(new KeyRef((byte) 0x01, (byte) 0x30), InputTestData.staticKeysAes128);
+
+    private static final Apdu PUT = new Apdu(0x80, 0xE2, 0x90, 0x00, BytesUtils.hexToBytes("0102030405"));
+    private static final Apdu GET = new Apdu(0x80, 0xCA, 0x00, 0x66, null);
+    private static final byte[] GET_DATA = BytesUtils.hexToBytes("6610730E06072A864886FC6B01600B0609");
+
+    @Test
+    void compiledScriptMatchesOnlineSession() throws Exception {
+        for (SecurityLevel level : SecurityLevel.values()) {
+            final Scp03Script script = compile(level);
+            final SmartCardEmulation card = new SmartCardEmulation(withSelect(script, false), withSelect(script, true));
+            final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+            session.select(SD_AID);
+            session.authenticate(KEY_PARAMS, ScpMode.S8, level, InputTestData.hostChallengeS8);
+
+            assertArrayEquals(new byte[0], session.sendAndReceive(PUT), level.toString());
+            assertArrayEquals(GET_DATA, session.sendAndReceive(GET), level.toString());
+            assertTrue(card.isAllExpectedCapdusReceived());
+        }
+    }
+
+    @Test
+    void replayerRunsDecodedScript() throws Exception {
+        final Scp03Script script = Scp03Script.decode(
+            compile(SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC).encode());
+        assertEquals(4, script.size());
+
+        final SmartCardEmulation card = new SmartCardEmulation(steps(script, false), steps(script, true));
+        new Scp03ScriptReplayer(card).replay(script);
+        assertTrue(card.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void replayerRejectsUnexpectedResponse() {
+        final Scp03Script script = compile(SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC);
+        final byte[][] responses = steps(script, true);
+        responses[3][0] ^= 0x01;
+        assertThrows(BadResponseException.class,
+                     () -> new Scp03ScriptReplayer(new SmartCardEmulation(steps(script, false), responses))
+                         .replay(script));
+
+        responses[3] = BytesUtils.hexToBytes("6A88");
+        assertThrows(ApduException.class,
+                     () -> new Scp03ScriptReplayer(new SmartCardEmulation(steps(script, false), responses))
+                         .replay(script));
+    }
+
+    @Test
+    void wrongCardChallengeIsRejected() throws Exception {
+        final Scp03Script script = compile(SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC);
+        final byte[] initializeUpdateResponse = script.getExpectedResponse(0);
+        // The sequence counter is the last field of the response, the card challenge no longer derives from it
+        initializeUpdateResponse[initializeUpdateResponse.length - 3] ^= 0x01;
+        final SmartCardEmulation card = new SmartCardEmulation(
+            new byte[][]{SELECT, script.getCommand(0)},
+            new byte[][]{SELECT_FCI, initializeUpdateResponse});
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        session.select(SD_AID);
+        final BadResponseException e = assertThrows(BadResponseException.class,
+            () -> session.authenticate(KEY_PARAMS, ScpMode.S8, InputTestData.hostChallengeS8));
+        assertEquals("Wrong SCP03 card challenge", e.getMessage());
+    }
+
+    @Test
+    void firstAvailableKeyVersionIsRejected() {
+        // The card answers INITIALIZE UPDATE with the actual KVN, so the expected response can't be compiled
+        final Scp03KeyParams firstAvailable =
+            new Scp03KeyParams(new KeyRef((byte) 0x01, (byte) 0x00), InputTestData.staticKeysAes128);
+        assertThrows(IllegalArgumentException.class, () -> new Scp03ScriptCompiler(
+            firstAvailable, ScpMode.S8, SecurityLevel.C_MAC, SD_AID, DIVERSIFICATION_DATA, I_PARAMETER,
+            SEQUENCE_COUNTER));
+    }
+
+    @Test
+    void malformedScriptIsRejected() {
+        final byte[] encoded = compile(SecurityLevel.C_MAC).encode();
+        assertThrows(IllegalArgumentException.class,
+                     () -> Scp03Script.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        encoded[0] = 0;
+        assertThrows(IllegalArgumentException.class, () -> Scp03Script.decode(encoded));
+    }
+
+    @Test
+    void oversizedScriptIsNotEncoded() {
+        final byte[] command = BytesUtils.hexToBytes("80CA006600");
+        assertThrows(IllegalArgumentException.class, () -> new Scp03Script(
+            Collections.singletonList(new byte[0x10000]), Collections.singletonList(OK)).encode());
+        assertThrows(IllegalArgumentException.class, () -> new Scp03Script(
+            Collections.singletonList(command), Collections.singletonList(new byte[0x10000])).encode());
+        assertThrows(IllegalArgumentException.class, () -> new Scp03Script(
+            Collections.nCopies(0x10000, command), Collections.nCopies(0x10000, OK)).encode());
+
+        final Scp03Script largest = new Scp03Script(
+            Collections.singletonList(new byte[0xFFFF]), Collections.singletonList(OK));
+        assertEquals(0xFFFF, Scp03Script.decode(largest.encode()).getCommand(0).length);
+    }
+
+    private static Scp03Script compile(SecurityLevel level) {
+        return new Scp03ScriptCompiler(KEY_PARAMS, ScpMode.S8, level, SD_AID, DIVERSIFICATION_DATA, I_PARAMETER,
+                                       SEQUENCE_COUNTER, InputTestData.hostChallengeS8)
+            .add(PUT)
+            .add(GET, GET_DATA)
+            .compile();
+    }
+
+    private static byte[][] steps(Scp03Script script, boolean responses) {
+        final byte[][] steps = new byte[script.size()][];
+        for (int i = 0; i < script.size(); i++) {
+            steps[i] = responses ? script.getExpectedResponse(i) : script.getCommand(i);
+        }
+        return steps;
+    }
+
+    private static byte[][] withSelect(Scp03Script script, boolean responses) {
+        final List<byte[]> steps = new ArrayList<>();
+        steps.add(responses ? OK : SELECT);
+        steps.addAll(Arrays.asList(steps(script, responses)));
+        return steps.toArray(new byte[0][]);
+    }
+}
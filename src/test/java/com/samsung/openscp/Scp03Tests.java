@@ -27,8 +27,16 @@ import com.samsung.openscp.testdata.SmartCardScp03Aes256S8ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardEmulation;
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Scp03Tests {
@@ -80,6 +88,245 @@ public class Scp03Tests {
                      new SmartCardScp03Aes256S16ModeEmulation());
     }
 
+    @Test
+    void aes128S8ModeByteBufferApi() throws IOException, ApduException, BadResponseException {
+        byteBufferApiTest(InputTestData.staticKeysAes128,
+                          ScpMode.S8,
+                          InputTestData.hostChallengeS8,
+                          new SmartCardScp03Aes128S8ModeEmulation());
+    }
+
+    @Test
+    void aes256S16ModeByteBufferApi() throws IOException, ApduException, BadResponseException {
+        byteBufferApiTest(InputTestData.staticKeysAes256,
+                          ScpMode.S16,
+                          InputTestData.hostChallengeS16,
+                          new SmartCardScp03Aes256S16ModeEmulation());
+    }
+
+    @Test
+    void cMacSecurityLevelCommandIsNotEncrypted() throws IOException, BadResponseException {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        final byte[] response = BytesUtils.hexToBytes("AABB9000");
+        final SmartCardEmulation connection = new SmartCardEmulation(
+            new byte[][]{BytesUtils.hexToBytes("84F240000A4F00" + "52B40B15300B1C10")},
+            new byte[][]{response});
+        final ScpProcessor processor = new ScpProcessor(
+            connection,
+            new ScpState(new SessionKeys(key, key, key, null), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC);
+
+        final ApduResponse resp = processor.sendApdu(
+            new Apdu(0x80, 0xF2, 0x40, 0x00, BytesUtils.hexToBytes("4F00")));
+
+        assertArrayEquals(response, resp.getBytes());
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void extendedApduIsUsedForLongSecuredCommand() throws IOException, BadResponseException {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        final byte[] data = new byte[300];
+        Arrays.fill(data, (byte) 0xA5);
+        final byte[] response = BytesUtils.hexToBytes("9000");
+        // Lc = 300 bytes of data + 8 bytes of C-MAC, the C-MAC covers the 3-byte Lc
+        final SmartCardEmulation connection = new SmartCardEmulation(
+            new byte[][]{BytesUtils.hexToBytes("84E29000000134" + BytesUtils.bytesToHex(data) + "650E35DD5F4C8579")},
+            new byte[][]{response},
+            true);
+        final ScpProcessor processor = new ScpProcessor(
+            connection,
+            new ScpState(new SessionKeys(key, key, key, null), new byte[16]),
+            true,
+            MaxApduSize.EXTENDED,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC);
+
+        final ApduResponse resp = processor.sendApdu(new Apdu(0x80, 0xE2, 0x90, 0x00, data));
+
+        assertArrayEquals(response, resp.getBytes());
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void longSecuredCommandIsChainedFromByteBuffer() throws IOException, BadResponseException {
+        final byte[] data = new byte[300];
+        Arrays.fill(data, (byte) 0xA5);
+        final SmartCardEmulation connection = createChainedCommandEmulation(data);
+
+        final short sw = createCMacProcessor(connection).sendApdu(
+            (byte) 0x80, (byte) 0xE2, (byte) 0x90, (byte) 0x00, ByteBuffer.wrap(data), 0, ByteBuffer.allocate(0));
+
+        assertEquals(SW.OK, sw);
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void longSecuredCommandIsChainedFromInputStream() throws IOException, BadResponseException {
+        final byte[] data = new byte[300];
+        Arrays.fill(data, (byte) 0xA5);
+        final SmartCardEmulation connection = createChainedCommandEmulation(data);
+
+        final short sw = createCMacProcessor(connection).sendApdu(
+            (byte) 0x80, (byte) 0xE2, (byte) 0x90, (byte) 0x00, new ByteArrayInputStream(data), 0,
+            ByteBuffer.allocate(0));
+
+        assertEquals(SW.OK, sw);
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void longEncryptedCommandIsChainedFromApdu() throws IOException, BadResponseException {
+        final SmartCardEmulation connection = createEncryptedChainedCommandEmulation();
+        final ApduResponse response = createEncryptingProcessor(connection).sendApdu(
+            new Apdu(0x80, 0xE2, 0x90, 0x00, createChainedCommandData()));
+
+        assertEquals(SW.OK, response.getSw());
+        assertArrayEquals(BytesUtils.hexToBytes("CAFEBABE"), response.getData());
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void longEncryptedCommandIsChainedFromByteBuffer() throws IOException, BadResponseException {
+        final SmartCardEmulation connection = createEncryptedChainedCommandEmulation();
+        final ByteBuffer response = ByteBuffer.allocate(16);
+        final short sw = createEncryptingProcessor(connection).sendApdu(
+            (byte) 0x80, (byte) 0xE2, (byte) 0x90, (byte) 0x00, ByteBuffer.wrap(createChainedCommandData()), 0,
+            response);
+
+        assertEquals(SW.OK, sw);
+        assertArrayEquals(BytesUtils.hexToBytes("CAFEBABE"), Arrays.copyOf(response.array(), response.position()));
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void longEncryptedCommandIsChainedFromInputStream() throws IOException, BadResponseException {
+        final SmartCardEmulation connection = createEncryptedChainedCommandEmulation();
+        final ByteBuffer response = ByteBuffer.allocate(16);
+        final short sw = createEncryptingProcessor(connection).sendApdu(
+            (byte) 0x80, (byte) 0xE2, (byte) 0x90, (byte) 0x00, new ByteArrayInputStream(createChainedCommandData()),
+            0, response);
+
+        assertEquals(SW.OK, sw);
+        assertArrayEquals(BytesUtils.hexToBytes("CAFEBABE"), Arrays.copyOf(response.array(), response.position()));
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    private static byte[] createChainedCommandData() {
+        final byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    /**
+     * Each segment is padded and encrypted with its own counter value, 239 bytes in the first one and 61 bytes in
+     * the second one. The response to each segment is encrypted with the counter value of its command and R-MACed
+     * over the MAC chaining value of its command. The data of the response to the first segment is discarded.
+     */
+    private static SmartCardEmulation createEncryptedChainedCommandEmulation() {
+        return new SmartCardEmulation(
+            new byte[][]{
+                BytesUtils.hexToBytes("94E29000F8D1B150FAEDBB76C8D7ACE79214DCF975D6FA7954D1423C9E564AAE64ED0502FF"
+                                      + "E43417884646D993CA416E9B7489AC2C88A2840F251CAACC4499040BC81876282085E37D5B"
+                                      + "55BDCA384CED2E639871F2F122BBBA4C70D00AB122DB75000A102B6C3FC533BF9F6BD5833D"
+                                      + "86444D255FA1E77BFB43EBDAD366AAECD45C0EE631A1CFAFB66886A6A04EBB548D04064CA2"
+                                      + "A873CD96C39B00558F28F42B33A0212EBD7C4799335BA7CD1E945DC44C192D78492996DDE1"
+                                      + "D89048C86528B529C5E94530D351C336F6CB9ACA8A679AE2EEE49E7691CC2F99E258E5396C"
+                                      + "531E2CEE91ED71048CADDE5154F6F60E57C50DFCD0D7BA261741B3ED55363F"),
+                BytesUtils.hexToBytes("84E29000484E7B7EC8DB6B22099F0A143F7D6B42A289BBA959AC0B938119D2DBFF9E9F4931"
+                                      + "E439CF77D2C373629B1FC405807C1B99173EE6282A39E85CF2F61A1D7008B044D708A795C1"
+                                      + "F9B09A")},
+            new byte[][]{
+                BytesUtils.hexToBytes("F9772D8164D5E7646531A1DD7A8BB9639A705DC89E6E99DD9000"),
+                BytesUtils.hexToBytes("0F51A09A0865E06A904577538475689687A89C4A14C4C1A09000")});
+    }
+
+    private static ScpProcessor createEncryptingProcessor(final SmartCardConnection connection) {
+        return new ScpProcessor(
+            connection,
+            new ScpState(new SessionKeys(
+                new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES"),
+                new SecretKeySpec(BytesUtils.hexToBytes("505152535455565758595A5B5C5D5E5F"), "AES"),
+                new SecretKeySpec(BytesUtils.hexToBytes("606162636465666768696A6B6C6D6E6F"), "AES"),
+                null), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC);
+    }
+
+    /**
+     * Each segment is C-MACed as a separate command: the first one with the chaining bit in CLA and 247 bytes of
+     * data, the MAC of the second one is chained from the first one
+     */
+    private static SmartCardEmulation createChainedCommandEmulation(final byte[] data) {
+        final String hex = BytesUtils.bytesToHex(data);
+        return new SmartCardEmulation(
+            new byte[][]{
+                BytesUtils.hexToBytes("94E29000FF" + hex.substring(0, 247 * 2) + "0C1E5CAC3510D7B5"),
+                BytesUtils.hexToBytes("84E290003D" + hex.substring(247 * 2) + "592DAD654B5684F9")},
+            new byte[][]{BytesUtils.hexToBytes("9000"), BytesUtils.hexToBytes("9000")});
+    }
+
+    private static ScpProcessor createCMacProcessor(final SmartCardConnection connection) {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        return new ScpProcessor(
+            connection,
+            new ScpState(new SessionKeys(key, key, key, null), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC);
+    }
+
+    private void byteBufferApiTest(final StaticKeys staticKeys,
+                                   final ScpMode mode,
+                                   final byte[] hostChallenge,
+                                   final SmartCardEmulation connection)
+            throws IOException, ApduException, BadResponseException {
+        final KeyRef keyRef = new KeyRef((byte) 0x01, (byte) 0x30);
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(connection);
+        final Scp03KeyParams keyParams = new Scp03KeyParams(keyRef, staticKeys);
+        session.authenticate(keyParams, mode, hostChallenge);
+
+        final ByteBuffer heapResponse = ByteBuffer.allocate(1024);
+        final ByteBuffer directResponse = ByteBuffer.allocateDirect(1024);
+        executeGetStatusCmd(session, InputTestData.LIST_PACKAGES_ID, OutputTestData.LIST_PACKAGES_RSP_PLAIN_DATA,
+                            heapResponse);
+        executeGetStatusCmd(session, InputTestData.LIST_APPLETS_ID, OutputTestData.LIST_APPLETS_RSP_PLAIN_DATA,
+                            directResponse);
+        executeGetStatusCmd(session, InputTestData.LIST_ISSUER_DOMAIN_ID,
+                            OutputTestData.LIST_ISSUER_DOMAIN_RSP_PLAIN_DATA, heapResponse);
+
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    private static void executeGetStatusCmd(final SecurityDomainSession session,
+                                            final byte elementId,
+                                            final byte[] rapduExpected,
+                                            final ByteBuffer response) throws IOException, ApduException {
+        response.clear();
+        final ByteBuffer data = ByteBuffer.wrap(ByteUtils.hexToBytes("4F00"));
+        final int length = session.sendAndReceive(0x80, 0xF2, elementId, 0x00, data, 0, response);
+
+        assertFalse(data.hasRemaining());
+        assertEquals(rapduExpected.length, length);
+        assertEquals(length, response.position());
+        final byte[] rapdu = new byte[length];
+        response.flip();
+        response.get(rapdu);
+        assertArrayEquals(rapduExpected, rapdu);
+    }
+
     private void positiveTest(final StaticKeys staticKeys,
                               final ScpMode mode,
                               final byte[] hostChallenge,
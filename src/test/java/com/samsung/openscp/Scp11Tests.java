@@ -24,31 +24,47 @@ import com.samsung.openscp.testdata.SmartCardEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aGpP256Aes128S8ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aP256Aes128S16ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aP256Aes128S8ModeEmulation;
+import com.samsung.openscp.testdata.SmartCardScp11aP256Aes128S8ModeExtendedApduEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aP256Aes192S8ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aP256Aes256S8ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11cP256Aes128S8ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aBP256Aes128S8ModeEmulation;
 import com.samsung.openscp.testdata.SmartCardScp11aP384Aes128S8ModeEmulation;
 
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.generators.KDF2BytesGenerator;
+import org.bouncycastle.crypto.macs.CMac;
+import org.bouncycastle.crypto.params.KDFParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.KeyAgreement;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Scp11Tests {
@@ -174,6 +190,76 @@ public class Scp11Tests {
                 Scp11TestData.ESK_OCE_ECKA_P256);
         }
 
+        @Test
+        void p256Aes128S8ModeExtendedApduPositive() throws ApduException, CertificateException, IOException,
+                NoSuchAlgorithmException, InvalidKeySpecException, BadResponseException {
+            p256PositiveTest(ScpMode.S8, AesAlg.AES_128, new SmartCardScp11aP256Aes128S8ModeExtendedApduEmulation());
+        }
+
+        @Test
+        void p256Aes128S8ModeStaticSecretCache() throws ApduException, CertificateException, IOException,
+                NoSuchAlgorithmException, InvalidKeySpecException, BadResponseException {
+            final StaticSharedSecretCache cache = new StaticSharedSecretCache(1);
+            for (int i = 0; i < 2; i++) {
+                positiveTest(
+                    KID,
+                    ScpMode.S8,
+                    AesAlg.AES_128,
+                    new SmartCardScp11aP256Aes128S8ModeEmulation(),
+                    Scp11TestData.SK_OCE_ECKA_P256,
+                    Scp11TestData.X509_CERT_OCE_ECKA_P256,
+                    Scp11TestData.EPK_OCE_ECKA_P256,
+                    Scp11TestData.ESK_OCE_ECKA_P256,
+                    cache);
+            }
+            assertEquals(1, cache.getMissCount());
+            assertEquals(1, cache.getHitCount());
+            assertEquals(0.5, cache.getHitRatio(), 0.0);
+            assertEquals(1, cache.size());
+
+            cache.clear();
+            assertEquals(0, cache.size());
+        }
+
+        @Test
+        void staticSecretCacheIdentifiesOpaqueKeysByObject() throws NoSuchAlgorithmException, InvalidKeySpecException {
+            // Like a PKCS#11 private key, that doesn't expose its encoding
+            final PrivateKey opaqueKey = new PrivateKey() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public String getAlgorithm() {
+                    return "EC";
+                }
+
+                @Override
+                public String getFormat() {
+                    return null;
+                }
+
+                @Override
+                public byte[] getEncoded() {
+                    return null;
+                }
+            };
+            final PublicKey pkSdEcka = createEcPublicKey(Scp11TestData.EPK_OCE_ECKA_P256);
+            final StaticSharedSecretCache cache = new StaticSharedSecretCache(2);
+            final Scp11KeyParams keyParams = new Scp11KeyParams(
+                new KeyRef(KID, (byte) 0x03), pkSdEcka, new KeyRef(Scp11TestData.OCE_KID, (byte) 0x03), opaqueKey,
+                Collections.singletonList(Scp11TestData.X509_CERT_OCE_ECKA_P256), AesAlg.AES_128,
+                SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC, cache);
+
+            cache.put(keyParams.staticSecretCacheKey, new byte[]{1, 2, 3});
+            assertArrayEquals(new byte[]{1, 2, 3}, cache.get(StaticSharedSecretCache.keyOf(opaqueKey, pkSdEcka)));
+
+            final PrivateKey encodedKey = createEcPrivateKey(Scp11TestData.SK_OCE_ECKA_P256);
+            assertNull(cache.get(StaticSharedSecretCache.keyOf(encodedKey, pkSdEcka)));
+            cache.put(StaticSharedSecretCache.keyOf(encodedKey, pkSdEcka), new byte[]{4});
+            assertArrayEquals(new byte[]{4},
+                              cache.get(StaticSharedSecretCache.keyOf(
+                                  createEcPrivateKey(Scp11TestData.SK_OCE_ECKA_P256), pkSdEcka)));
+        }
+
         private void p256PositiveTest(final ScpMode mode,
                                       final AesAlg sessionKeysAlg,
                                       final SmartCardEmulation connection)
@@ -193,6 +279,104 @@ public class Scp11Tests {
         }
     }
 
+    @Nested
+    class SecurityLevels {
+        @Test
+        void keyUsageQualifiers() {
+            assertEquals(0x14, SecurityLevel.C_MAC.getScp11KeyUsage());
+            assertEquals(0x34, SecurityLevel.C_MAC_R_MAC.getScp11KeyUsage());
+            assertEquals(0x1C, SecurityLevel.C_DECRYPTION_C_MAC.getScp11KeyUsage());
+            assertEquals(0x3C, SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC.getScp11KeyUsage());
+        }
+
+        /**
+         * The card side of the transcript is calculated with Bouncy Castle primitives: X9.63 KDF, AES-CMAC
+         */
+        @Test
+        void scp11bCMacSession() throws Exception {
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            final KeyPair sdStatic = generator.generateKeyPair();
+            final KeyPair sdEphemeral = generator.generateKeyPair();
+            final KeyPair oceEphemeral =
+                createKeyPair(Scp11TestData.EPK_OCE_ECKA_P256, Scp11TestData.ESK_OCE_ECKA_P256);
+            final byte[] epkOce = encodedPoint((ECPublicKey) oceEphemeral.getPublic());
+            final byte[] epkSdTlv = BytesUtils.hexToBytes(
+                "5F4941" + BytesUtils.bytesToHex(encodedPoint((ECPublicKey) sdEphemeral.getPublic())));
+
+            // Control Reference Template: SCP11b, key usage C-MAC (14), AES-128 session keys
+            final byte[] authenticateData = BytesUtils.hexToBytes(
+                "A60D" + "90021100" + "950114" + "800188" + "810110" + "5F4941" + BytesUtils.bytesToHex(epkOce));
+            final byte[] keyMaterial = concat(
+                ecdh(sdEphemeral.getPrivate(), oceEphemeral.getPublic()),
+                ecdh(sdStatic.getPrivate(), oceEphemeral.getPublic()));
+            final KDF2BytesGenerator kdf = new KDF2BytesGenerator(new SHA256Digest());
+            kdf.init(new KDFParameters(keyMaterial, BytesUtils.hexToBytes("148810")));
+            final byte[] keys = new byte[5 * 16];
+            kdf.generateBytes(keys, 0, keys.length);
+            final byte[] receipt = cmac(Arrays.copyOfRange(keys, 0, 16), concat(authenticateData, epkSdTlv));
+
+            final byte[] macChain = cmac(Arrays.copyOfRange(keys, 32, 48), concat(receipt,
+                BytesUtils.hexToBytes("84F280000A" + "4F00")));
+            final SmartCardEmulation card = new SmartCardEmulation(
+                new byte[][]{
+                    BytesUtils.hexToBytes("80880313" + "53" + BytesUtils.bytesToHex(authenticateData) + "00"),
+                    BytesUtils.hexToBytes("84F280000A" + "4F00" + BytesUtils.bytesToHex(
+                        Arrays.copyOf(macChain, 8)))},
+                new byte[][]{
+                    concat(epkSdTlv, BytesUtils.hexToBytes("8610"), receipt, BytesUtils.hexToBytes("9000")),
+                    // Without R-MAC the response data is returned as is
+                    BytesUtils.hexToBytes("E3024F00" + "9000")});
+
+            final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+            final Scp11KeyParams keyParams = new Scp11KeyParams(
+                new KeyRef(ScpKid.SCP11b, (byte) 0x03), sdStatic.getPublic(), AesAlg.AES_128, SecurityLevel.C_MAC);
+            session.authenticate(keyParams, ScpMode.S8, oceEphemeral);
+            assertArrayEquals(BytesUtils.hexToBytes("E3024F00"),
+                              session.sendAndReceive(new Apdu(0x80, 0xF2, 0x80, 0x00,
+                                                                     BytesUtils.hexToBytes("4F00"))));
+            assertTrue(card.isAllExpectedCapdusReceived());
+        }
+
+        private byte[] ecdh(final PrivateKey privateKey, final PublicKey publicKey) throws Exception {
+            final KeyAgreement agreement = KeyAgreement.getInstance("ECDH", new BouncyCastleProvider());
+            agreement.init(privateKey);
+            agreement.doPhase(publicKey, true);
+            return agreement.generateSecret();
+        }
+
+        private byte[] cmac(final byte[] key, final byte[] data) {
+            final CMac mac = new CMac(AESEngine.newInstance());
+            mac.init(new KeyParameter(key));
+            mac.update(data, 0, data.length);
+            final byte[] result = new byte[mac.getMacSize()];
+            mac.doFinal(result, 0);
+            return result;
+        }
+
+        private byte[] encodedPoint(final ECPublicKey publicKey) {
+            final byte[] point = new byte[65];
+            point[0] = 0x04;
+            copyCoordinate(publicKey.getW().getAffineX(), point, 1);
+            copyCoordinate(publicKey.getW().getAffineY(), point, 33);
+            return point;
+        }
+
+        private void copyCoordinate(final BigInteger coordinate, final byte[] point, final int offset) {
+            final byte[] bytes = coordinate.toByteArray();
+            final int length = Math.min(bytes.length, 32);
+            System.arraycopy(bytes, bytes.length - length, point, offset + 32 - length, length);
+        }
+
+        private byte[] concat(final byte[]... parts) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (byte[] part : parts) {
+                out.write(part, 0, part.length);
+            }
+            return out.toByteArray();
+        }
+    }
+
     private void p256PositiveTest(final byte kid,
                                   final ScpMode mode,
                                   final AesAlg sessionKeysAlg,
@@ -220,6 +404,20 @@ public class Scp11Tests {
                               final byte[] eskOceEcka)
             throws ApduException, CertificateException, IOException, NoSuchAlgorithmException, InvalidKeySpecException,
                 BadResponseException {
+        positiveTest(kid, mode, sessionKeysAlg, connection, skOceEcka, certOceEcka, epkOceEcka, eskOceEcka, null);
+    }
+
+    private void positiveTest(final byte kid,
+                              final ScpMode mode,
+                              final AesAlg sessionKeysAlg,
+                              final SmartCardEmulation connection,
+                              final byte[] skOceEcka,
+                              final byte[] certOceEcka,
+                              final byte[] epkOceEcka,
+                              final byte[] eskOceEcka,
+                              final StaticSharedSecretCache cache)
+            throws ApduException, CertificateException, IOException, NoSuchAlgorithmException, InvalidKeySpecException,
+                BadResponseException {
         final KeyRef keyRef = new KeyRef(kid, (byte) 0x03);
 
         final SecurityDomainSession session = TestUtils.initSecurityDomainSession(connection);
@@ -228,7 +426,8 @@ public class Scp11Tests {
 
         final int eckaCertPosition = sdCertChain.size() - 1;
         final PublicKey pkSdEcka = sdCertChain.get(eckaCertPosition).getPublicKey();
-        final Scp11KeyParams keyParams = createKeyParams(keyRef, pkSdEcka, skOceEcka, certOceEcka, sessionKeysAlg);
+        final Scp11KeyParams keyParams =
+            createKeyParams(keyRef, pkSdEcka, skOceEcka, certOceEcka, sessionKeysAlg, cache);
         final KeyPair ephemeralKeyPair = createKeyPair(epkOceEcka, eskOceEcka);
         session.authenticate(keyParams, mode, ephemeralKeyPair);
 
@@ -244,7 +443,8 @@ public class Scp11Tests {
                                                   final PublicKey pkSdEcka,
                                                   final byte[] skOceEckaBytes,
                                                   final byte[] certOceEckaBytes,
-                                                  final AesAlg sessionKeysAlg)
+                                                  final AesAlg sessionKeysAlg,
+                                                  final StaticSharedSecretCache cache)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
         final KeyRef oceKeyRef = new KeyRef(Scp11TestData.OCE_KID, sessionRef.getKvn());
         final PrivateKey skOceEcka = createEcPrivateKey(skOceEckaBytes);
@@ -255,7 +455,9 @@ public class Scp11Tests {
                 oceKeyRef,
                 skOceEcka,
                 certChain,
-                sessionKeysAlg
+                sessionKeysAlg,
+                SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC,
+                cache
         );
     }
 
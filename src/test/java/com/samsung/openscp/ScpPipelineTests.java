@@ -0,0 +1,223 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.BatchSmartCardConnection.StopCondition;
+import com.samsung.openscp.testdata.InputTestData;
+import com.samsung.openscp.testdata.OutputTestData;
+import com.samsung.openscp.testdata.SmartCardScp03Aes128S8ModeEmulation;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScpPipelineTests {
+    private static final Apdu FIRST = new Apdu(0x80, 0xE2, 0x90, 0x00, BytesUtils.hexToBytes("0102"));
+    private static final Apdu SECOND = new Apdu(0x80, 0xE2, 0x90, 0x00, BytesUtils.hexToBytes("0304"));
+    private static final Apdu THIRD = new Apdu(0x80, 0xE2, 0x90, 0x00, BytesUtils.hexToBytes("0506"));
+
+    @Test
+    void securedCommandsArePipelined() throws Exception {
+        final SmartCardScp03Aes128S8ModeEmulation card = new SmartCardScp03Aes128S8ModeEmulation();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+            session.setPipelineExecutor(executor, 2);
+            session.authenticate(
+                new Scp03KeyParams(new KeyRef((byte) 0x01, (byte) 0x30), InputTestData.staticKeysAes128),
+                ScpMode.S8, InputTestData.hostChallengeS8);
+
+            final List<byte[]> responses = session.sendAndReceive(Arrays.asList(
+                getStatus(InputTestData.LIST_PACKAGES_ID),
+                getStatus(InputTestData.LIST_APPLETS_ID),
+                getStatus(InputTestData.LIST_ISSUER_DOMAIN_ID)));
+
+            assertEquals(3, responses.size());
+            assertArrayEquals(OutputTestData.LIST_PACKAGES_RSP_PLAIN_DATA, responses.get(0));
+            assertArrayEquals(OutputTestData.LIST_APPLETS_RSP_PLAIN_DATA, responses.get(1));
+            assertArrayEquals(OutputTestData.LIST_ISSUER_DOMAIN_RSP_PLAIN_DATA, responses.get(2));
+            assertTrue(card.isAllExpectedCapdusReceived());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void unsentCommandsAreRolledBackOnStop() throws Exception {
+        final List<byte[]> sequential = new ArrayList<>();
+        final ScpProcessor reference = createCMacProcessor(new ScriptedConnection(sequential, 1, -1));
+        assertEquals(SW.REFERENCED_DATA_NOT_FOUND, reference.sendApdu(FIRST).getSw());
+        assertEquals(SW.OK, reference.sendApdu(SECOND).getSw());
+
+        final List<byte[]> pipelined = new ArrayList<>();
+        final ScpProcessor processor = createCMacProcessor(new ScriptedConnection(pipelined, 1, -1));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<byte[]> responses = processor.sendPipelined(
+                Arrays.asList(FIRST, SECOND, THIRD), StopCondition.onError(), executor, 3);
+            assertEquals(1, responses.size());
+            assertEquals(SW.OK, processor.sendApdu(SECOND).getSw());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2, pipelined.size());
+        assertArrayEquals(sequential.get(0), pipelined.get(0));
+        assertArrayEquals(sequential.get(1), pipelined.get(1));
+    }
+
+    @Test
+    void transportFailureRollsBackToLastResponse() throws Exception {
+        final List<byte[]> sequential = new ArrayList<>();
+        final ScpProcessor reference = createCMacProcessor(new ScriptedConnection(sequential, -1, -1));
+        reference.sendApdu(FIRST);
+        reference.sendApdu(THIRD);
+
+        final List<byte[]> pipelined = new ArrayList<>();
+        final ScpProcessor processor = createCMacProcessor(new ScriptedConnection(pipelined, -1, 2));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThrows(IOException.class, () -> processor.sendPipelined(
+                Arrays.asList(FIRST, SECOND, THIRD), StopCondition.onError(), executor, 3));
+            assertEquals(SW.OK, processor.sendApdu(THIRD).getSw());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(3, pipelined.size());
+        assertArrayEquals(sequential.get(0), pipelined.get(0));
+        assertArrayEquals(sequential.get(1), pipelined.get(2));
+    }
+
+    @Test
+    void directExecutorSendsCommandsOneByOne() throws Exception {
+        final List<byte[]> sequential = new ArrayList<>();
+        final ScpProcessor reference = createCMacProcessor(new ScriptedConnection(sequential, -1, -1));
+        reference.sendApdu(FIRST);
+        reference.sendApdu(SECOND);
+        reference.sendApdu(THIRD);
+
+        final List<byte[]> pipelined = new ArrayList<>();
+        final ScpProcessor processor = createCMacProcessor(new ScriptedConnection(pipelined, -1, -1));
+        final List<byte[]> responses = processor.sendPipelined(
+            Arrays.asList(FIRST, SECOND, THIRD), StopCondition.onError(), Runnable::run, 1);
+
+        assertEquals(3, responses.size());
+        assertEquals(3, pipelined.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertArrayEquals(sequential.get(i), pipelined.get(i));
+        }
+    }
+
+    @Test
+    void executorNotStartingStageSendsCommandsOneByOne() throws Exception {
+        final List<byte[]> sequential = new ArrayList<>();
+        final ScpProcessor reference = createCMacProcessor(new ScriptedConnection(sequential, -1, -1));
+        reference.sendApdu(FIRST);
+        reference.sendApdu(SECOND);
+
+        final List<byte[]> pipelined = new ArrayList<>();
+        final ScpProcessor processor = createCMacProcessor(new ScriptedConnection(pipelined, -1, -1));
+        // Like a saturated pool, the stage is queued and starts only after the commands have been sent
+        final List<Runnable> queued = new ArrayList<>();
+        final List<byte[]> responses = processor.sendPipelined(
+            Arrays.asList(FIRST, SECOND), StopCondition.onError(), queued::add, 2);
+        queued.forEach(Runnable::run);
+
+        assertEquals(2, responses.size());
+        assertEquals(2, pipelined.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertArrayEquals(sequential.get(i), pipelined.get(i));
+        }
+    }
+
+    @Test
+    void rejectingExecutorSendsCommandsOneByOne() throws Exception {
+        final List<byte[]> pipelined = new ArrayList<>();
+        final ScpProcessor processor = createCMacProcessor(new ScriptedConnection(pipelined, -1, -1));
+        final List<byte[]> responses = processor.sendPipelined(
+            Arrays.asList(FIRST, SECOND), StopCondition.onError(),
+            command -> {
+                throw new RejectedExecutionException();
+            }, 2);
+
+        assertEquals(2, responses.size());
+        assertEquals(2, pipelined.size());
+    }
+
+    private static Apdu getStatus(final byte elementId) {
+        return new Apdu(0x80, 0xF2, elementId, 0x00, BytesUtils.hexToBytes("4F00"));
+    }
+
+    private static ScpProcessor createCMacProcessor(final SmartCardConnection connection) {
+        final SecretKey key = new SecretKeySpec(BytesUtils.hexToBytes("404142434445464748494A4B4C4D4E4F"), "AES");
+        return new ScpProcessor(
+            connection,
+            new ScpState(new SessionKeys(key, key, key, null), new byte[16]),
+            false,
+            MaxApduSize.SHORT,
+            (byte) 0xC0,
+            ScpMode.S8,
+            SecurityLevel.C_MAC);
+    }
+
+    /**
+     * Records the commands, answers one command with 6A88, fails on another one and answers the rest with 9000
+     */
+    private static final class ScriptedConnection implements SmartCardConnection {
+        private final List<byte[]> received;
+        private final int failingCommand;
+        private final int brokenCommand;
+
+        /**
+         * @param failingCommand the number of the command answered with 6A88, starting at 1, or -1
+         * @param brokenCommand  the number of the command failing with IOException, starting at 1, or -1
+         */
+        ScriptedConnection(final List<byte[]> received, final int failingCommand, final int brokenCommand) {
+            this.received = received;
+            this.failingCommand = failingCommand;
+            this.brokenCommand = brokenCommand;
+        }
+
+        @Override
+        public byte[] sendAndReceive(byte[] apdu) throws IOException {
+            received.add(apdu);
+            if (received.size() == brokenCommand) {
+                throw new IOException("Card removed");
+            }
+            return BytesUtils.hexToBytes(received.size() == failingCommand ? "6A88" : "9000");
+        }
+
+        @Override
+        public boolean isExtendedLengthApduSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
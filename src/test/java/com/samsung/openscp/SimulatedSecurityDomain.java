@@ -0,0 +1,1013 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.GlobalPlatformSchemas.Allowlist;
+import com.samsung.openscp.GlobalPlatformSchemas.CaIssuer;
+import com.samsung.openscp.GlobalPlatformSchemas.CertificateStore;
+import com.samsung.openscp.GlobalPlatformSchemas.DeleteKey;
+
+import javax.annotation.Nullable;
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.ECPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process Security Domain implementing the card side of SCP03 and SCP11 over {@link SmartCardConnection}
+ * <p>
+ * Unlike {@link com.samsung.openscp.testdata.SmartCardEmulation}, which replays recorded APDUs, the simulator
+ * generates real random challenges and ephemeral keys, keeps a key store and unwraps and wraps secured messages, so
+ * any number of sessions can be run against it, e.g. in throughput and soak tests.
+ * <p>
+ * Supported commands: SELECT, INITIALIZE UPDATE, EXTERNAL AUTHENTICATE, PERFORM SECURITY OPERATION, MUTUAL
+ * AUTHENTICATE, INTERNAL AUTHENTICATE, GET DATA (card recognition data, key information, certificate store, CA
+ * identifiers), PUT KEY, STORE DATA, DELETE and GET RESPONSE, on the basic channel. Command chaining and responses
+ * longer than 256 bytes are supported.
+ * <p>
+ * OCE certificate chains are not validated, only the allowlist of the OCE key is checked against the leaf
+ * certificate. The keys are kept in memory in plain, so the simulator must not be used with production keys.
+ * <p>
+ * Commands are processed one at a time, like a card does. Use an instance per simulated card for concurrent
+ * sessions.
+ */
+final class SimulatedSecurityDomain implements SmartCardConnection {
+    static final byte[] ISD_AID = BytesUtils.hexToBytes("A000000151000000");
+
+    private static final byte CLA_SECURE_MESSAGING = 0x04;
+    private static final byte CLA_CHAINING = 0x10;
+
+    private static final byte INS_SELECT = (byte) 0xA4;
+    private static final byte INS_GET_RESPONSE = (byte) 0xC0;
+    private static final byte INS_GET_DATA = (byte) 0xCA;
+    private static final byte INS_PUT_KEY = (byte) 0xD8;
+    private static final byte INS_STORE_DATA = (byte) 0xE2;
+    private static final byte INS_DELETE = (byte) 0xE4;
+
+    private static final int TAG_CARD_RECOGNITION_DATA = 0x0066;
+    private static final int TAG_KEY_INFORMATION = 0x00E0;
+    private static final int TAG_CA_KLOC_IDENTIFIERS = 0xFF33;
+    private static final int TAG_CA_KLCC_IDENTIFIERS = 0xFF34;
+    private static final int TAG_CERTIFICATE_STORE = 0xBF21;
+
+    private static final int KEY_TYPE_AES = 0x88;
+    private static final int KEY_TYPE_ECC_PUBLIC_KEY = 0xB0;
+    private static final int KEY_TYPE_ECC_PRIVATE_KEY = 0xB1;
+    private static final int KEY_TYPE_ECC_KEY_PARAMS = 0xF0;
+    private static final byte[] KCV_IV = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+
+    // Secure Channel Protocol '03' v1.2, "Table 5-1: Values of Parameter “i”": R-MAC and R-ENCRYPTION support
+    private static final byte I_PARAMETER = 0b01100000;
+    private static final int MAX_SHORT_RESPONSE = 256;
+
+    private final byte[] aid;
+    private final byte[] diversificationData = RandomUtils.getRandomBytes(10);
+    private final Map<Integer, StaticKeys> scp03Keys = new LinkedHashMap<>();
+    private final Map<Integer, Integer> sequenceCounters = new HashMap<>();
+    private final Map<KeyRef, PrivateKey> scp11Keys = new LinkedHashMap<>();
+    private final Map<KeyRef, PublicKey> oceCaKeys = new LinkedHashMap<>();
+    private final Map<KeyRef, List<byte[]>> certificateStores = new HashMap<>();
+    private final Map<KeyRef, Set<BigInteger>> allowlists = new HashMap<>();
+    private final Map<KeyRef, byte[]> klocIdentifiers = new LinkedHashMap<>();
+    private final Map<KeyRef, byte[]> klccIdentifiers = new LinkedHashMap<>();
+    private boolean pseudoRandomCardChallenge;
+    private ScpMode scp11Mode = ScpMode.S8;
+    private boolean extendedLengthApdus;
+
+    @Nullable
+    private PendingScp03 pendingScp03;
+    @Nullable
+    private Session session;
+    @Nullable
+    private PublicKey oceKey;
+    private final ByteArrayOutputStream chainedData = new ByteArrayOutputStream();
+    @Nullable
+    private byte[] remainingResponse;
+    private int remainingOffset;
+
+    SimulatedSecurityDomain() {
+        this(ISD_AID);
+    }
+
+    /**
+     * @param aid AID of the Security Domain, selected by SELECT
+     */
+    SimulatedSecurityDomain(byte[] aid) {
+        this.aid = aid.clone();
+    }
+
+    /**
+     * Adds an SCP03 key set
+     */
+    synchronized SimulatedSecurityDomain putScp03Keys(int kvn, StaticKeys keys) {
+        scp03Keys.put(kvn, keys);
+        sequenceCounters.putIfAbsent(kvn, 0);
+        return this;
+    }
+
+    /**
+     * Adds an SCP11 key, SK.SD.ECKA, with its certificate chain returned by GET DATA (Certificate Store)
+     *
+     * @param keyRef       KID 0x11, 0x13 or 0x15 and KVN of the key
+     * @param key          the private key
+     * @param certificates encoded certificates, with the leaf certificate last
+     */
+    synchronized SimulatedSecurityDomain putScp11Key(KeyRef keyRef, PrivateKey key, List<byte[]> certificates) {
+        scp11Keys.put(keyRef, key);
+        certificateStores.put(keyRef, new ArrayList<>(certificates));
+        return this;
+    }
+
+    /**
+     * Derives SCP03 card challenges from the sequence counter and the AID instead of generating them at random
+     */
+    synchronized SimulatedSecurityDomain setPseudoRandomCardChallenge(boolean pseudoRandomCardChallenge) {
+        this.pseudoRandomCardChallenge = pseudoRandomCardChallenge;
+        return this;
+    }
+
+    /**
+     * Sets the SCP mode of SCP11 sessions. Unlike SCP03, it is not negotiated, so it must match the host.
+     */
+    synchronized SimulatedSecurityDomain setScp11Mode(ScpMode scp11Mode) {
+        this.scp11Mode = scp11Mode;
+        return this;
+    }
+
+    /**
+     * Sets whether the card reports extended length APDU support, short APDUs are used by default
+     */
+    synchronized SimulatedSecurityDomain setExtendedLengthApdus(boolean extendedLengthApdus) {
+        this.extendedLengthApdus = extendedLengthApdus;
+        return this;
+    }
+
+    byte[] getDiversificationData() {
+        return diversificationData.clone();
+    }
+
+    /**
+     * @return the sequence counter of an SCP03 key set, incremented by every INITIALIZE UPDATE with it
+     */
+    synchronized int getSequenceCounter(int kvn) {
+        final Integer counter = sequenceCounters.get(kvn);
+        if (counter == null) {
+            throw new IllegalArgumentException("No SCP03 key set with KVN " + kvn);
+        }
+        return counter;
+    }
+
+    @Override
+    public synchronized byte[] sendAndReceive(byte[] apdu) {
+        final Command command;
+        try {
+            command = Command.parse(apdu);
+        } catch (IllegalArgumentException e) {
+            return sw(SW.WRONG_LENGTH);
+        }
+        if (command.ins == INS_GET_RESPONSE && (command.cla & 0xFC) == 0) {
+            return getResponse();
+        }
+        remainingResponse = null;
+        final byte[] response = process(command);
+        if (!command.extended && response.length - 2 > MAX_SHORT_RESPONSE) {
+            remainingResponse = response;
+            remainingOffset = 0;
+            return getResponse();
+        }
+        return response;
+    }
+
+    @Override
+    public synchronized boolean isExtendedLengthApduSupported() {
+        return extendedLengthApdus;
+    }
+
+    /**
+     * Ends the session, like a card reset
+     */
+    @Override
+    public synchronized void close() {
+        resetSession();
+    }
+
+    private byte[] process(Command command) {
+        if ((command.cla & 0xE3) != 0 && (command.cla & 0xE3) != 0x80) {
+            return sw(SW.CLASS_NOT_SUPPORTED);
+        }
+        final boolean secure = (command.cla & CLA_SECURE_MESSAGING) != 0;
+        final Session secureSession = secure ? session : null;
+        try {
+            byte[] data;
+            if (secure && command.ins == SecurityDomainSession.INS_EXTERNAL_AUTHENTICATE && pendingScp03 != null) {
+                return externalAuthenticate(command);
+            } else if (secure) {
+                data = unwrap(command);
+            } else {
+                // A command without secure messaging ends the session
+                session = null;
+                data = command.data();
+            }
+
+            if ((command.cla & CLA_CHAINING) != 0) {
+                chainedData.write(data, 0, data.length);
+                return wrap(secureSession, new byte[0]);
+            }
+            if (chainedData.size() > 0) {
+                chainedData.write(data, 0, data.length);
+                data = chainedData.toByteArray();
+                chainedData.reset();
+            }
+            return wrap(secureSession, dispatch(command, data, secureSession));
+        } catch (SwException e) {
+            chainedData.reset();
+            return sw(e.sw);
+        }
+    }
+
+    /**
+     * A secured command, that fails verification, ends the session
+     */
+    private byte[] unwrap(Command command) throws SwException {
+        try {
+            if (session == null) {
+                throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+            }
+            return session.unwrap(command);
+        } catch (SwException e) {
+            resetSession();
+            throw e;
+        }
+    }
+
+    private byte[] dispatch(Command command, byte[] data, @Nullable Session secureSession) throws SwException {
+        final byte p1 = (byte) (command.p1 & 0x7F);
+        switch (command.ins) {
+            case INS_SELECT:
+                return select(command, data);
+            case SecurityDomainSession.INS_INITIALIZE_UPDATE:
+                return initializeUpdate(command, data);
+            case SecurityDomainSession.INS_PERFORM_SECURITY_OPERATION:
+                performSecurityOperation(p1, command.p2, data);
+                return new byte[0];
+            case SecurityDomainSession.INS_EXTERNAL_AUTHENTICATE:
+            case SecurityDomainSession.INS_INTERNAL_AUTHENTICATE:
+                return scp11Authenticate(command, data);
+            case INS_GET_DATA:
+                return getData(((command.p1 & 0xFF) << 8) | (command.p2 & 0xFF), data);
+            case INS_PUT_KEY:
+                checkOceAuthenticated(secureSession);
+                return putKey(command, data, secureSession);
+            case INS_STORE_DATA:
+                checkOceAuthenticated(secureSession);
+                storeData(data);
+                return new byte[0];
+            case INS_DELETE:
+                checkOceAuthenticated(secureSession);
+                delete(command, data);
+                return new byte[0];
+            default:
+                throw new SwException(SW.INVALID_INSTRUCTION);
+        }
+    }
+
+    private byte[] select(Command command, byte[] data) throws SwException {
+        // Selecting by a partial AID, i.e. a prefix of the AID, returns the full AID in the FCI
+        if (command.p1 != 0x04 || data.length > aid.length
+            || !Arrays.equals(data, Arrays.copyOf(aid, data.length))) {
+            throw new SwException(SW.FILE_NOT_FOUND);
+        }
+        resetSession();
+        return new TlvWriter().begin(0x6F).put(0x84, aid).end().toByteArray();
+    }
+
+    private byte[] initializeUpdate(Command command, byte[] hostChallenge) throws SwException {
+        resetSession();
+        final ScpMode mode;
+        if (hostChallenge.length == ScpMode.getBlobSizeByMode(ScpMode.S8)) {
+            mode = ScpMode.S8;
+        } else if (hostChallenge.length == ScpMode.getBlobSizeByMode(ScpMode.S16)) {
+            mode = ScpMode.S16;
+        } else {
+            throw new SwException(SW.WRONG_LENGTH);
+        }
+        int kvn = command.p1 & 0xFF;
+        if (kvn == 0 && !scp03Keys.isEmpty()) {
+            kvn = scp03Keys.keySet().iterator().next();
+        }
+        final StaticKeys keys = scp03Keys.get(kvn);
+        if (keys == null) {
+            throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+        }
+        final int counter = sequenceCounters.merge(kvn, 1, Integer::sum);
+        final byte[] sequenceCounter = {(byte) (counter >> 16), (byte) (counter >> 8), (byte) counter};
+        final byte[] cardChallenge = pseudoRandomCardChallenge
+            ? ScpState.deriveCardChallenge(keys, sequenceCounter, aid, mode)
+            : RandomUtils.getRandomBytes(ScpMode.getBlobSizeByMode(mode));
+        final ScpState.Scp03Handshake handshake =
+            ScpState.deriveScp03Handshake(keys, hostChallenge, cardChallenge, mode);
+        pendingScp03 = new PendingScp03(handshake, mode);
+
+        final byte iParameter = (byte) (I_PARAMETER |
+                                        (pseudoRandomCardChallenge ? ScpState.I_PSEUDO_RANDOM_CARD_CHALLENGE : 0));
+        return ByteBuffer.allocate(diversificationData.length + 3 + cardChallenge.length * 2 + 3)
+            .put(diversificationData)
+            .put((byte) kvn).put((byte) 0x03).put(iParameter)
+            .put(cardChallenge)
+            .put(handshake.cardCryptogram)
+            .put(sequenceCounter)
+            .array();
+    }
+
+    private byte[] externalAuthenticate(Command command) throws SwException {
+        final PendingScp03 pending = pendingScp03;
+        pendingScp03 = null;
+        if (pending == null) {
+            throw new SwException(SW.CONDITIONS_NOT_SATISFIED);
+        }
+        final SecurityLevel level = findLevel(command.p1, true);
+        final Session handshakeSession = new Session(pending.handshake.sessionKeys, new byte[16],
+                                                     SecurityLevel.C_MAC, pending.mode, true);
+        final byte[] hostCryptogram = handshakeSession.unwrap(command);
+        if (!MessageDigest.isEqual(pending.handshake.hostCryptogram, hostCryptogram)) {
+            throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+        }
+        session = new Session(pending.handshake.sessionKeys, handshakeSession.macChain, level, pending.mode, true);
+        return sw(SW.OK);
+    }
+
+    private void performSecurityOperation(byte kvn, byte p2, byte[] certificate) throws SwException {
+        final boolean leaf = (p2 & 0x80) == 0;
+        if (!leaf) {
+            // The chain is not validated, only the leaf certificate is used
+            return;
+        }
+        final KeyRef oceRef = new KeyRef((byte) (p2 & 0x7F), kvn);
+        try {
+            if (GlobalPlatformScpCertificate.isGlobalPlatformCertificate(certificate)) {
+                oceKey = GlobalPlatformScpCertificate.parse(certificate).getPublicKey();
+                return;
+            }
+            final X509Certificate x509 = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(certificate));
+            final Set<BigInteger> allowlist = allowlists.get(oceRef);
+            if (allowlist != null && !allowlist.contains(x509.getSerialNumber())) {
+                throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+            }
+            oceKey = x509.getPublicKey();
+        } catch (CertificateException e) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+    }
+
+    private byte[] scp11Authenticate(Command command, byte[] data) throws SwException {
+        final byte kid = command.p2;
+        final byte params;
+        switch (kid) {
+            case ScpKid.SCP11a:
+                params = 0b01;
+                break;
+            case ScpKid.SCP11b:
+                params = 0b00;
+                break;
+            case ScpKid.SCP11c:
+                params = 0b11;
+                break;
+            default:
+                throw new SwException(SW.WRONG_PARAMETERS_P1P2);
+        }
+        final boolean internal = command.ins == SecurityDomainSession.INS_INTERNAL_AUTHENTICATE;
+        if (internal != (kid == ScpKid.SCP11b)) {
+            throw new SwException(SW.WRONG_PARAMETERS_P1P2);
+        }
+        final ECPrivateKey skSdEcka = (ECPrivateKey) scp11Keys.get(new KeyRef(kid, command.p1));
+        if (skSdEcka == null) {
+            throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+        }
+        final PublicKey pkOceEcka = oceKey;
+        oceKey = null;
+        if (kid != ScpKid.SCP11b && pkOceEcka == null) {
+            throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+        }
+
+        final byte[] keyUsage;
+        final byte[] keyType;
+        final byte[] keyLength;
+        final byte[] epkOceEckaPoint;
+        try {
+            final List<Tlv> tlvs = Tlvs.decodeList(data);
+            final Map<Integer, byte[]> controlReference = Tlvs.decodeMap(Tlvs.unpackValue(0xA6, tlvs.get(0).getBytes()));
+            if (!Arrays.equals(controlReference.get(0x90), new byte[]{0x11, params})) {
+                throw new SwException(SW.INCORRECT_PARAMETERS);
+            }
+            keyUsage = controlReference.get(0x95);
+            keyType = controlReference.get(0x80);
+            keyLength = controlReference.get(0x81);
+            epkOceEckaPoint = Tlvs.unpackValue(0x5F49, tlvs.get(1).getBytes());
+        } catch (BadResponseException | RuntimeException e) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+        if (keyUsage == null || keyUsage.length != 1 || keyType == null || keyType.length != 1 ||
+            (keyType[0] & 0xFF) != KEY_TYPE_AES || keyLength == null || keyLength.length != 1) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+        final SecurityLevel level = findLevel(keyUsage[0], false);
+        final int keySize = keyLength[0];
+        if (keySize != 16 && keySize != 24 && keySize != 32) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+
+        try {
+            final ECParameterSpec curve = skSdEcka.getParams();
+            final PublicKey epkOceEcka = decodePoint(curve, epkOceEckaPoint);
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(curve);
+            final KeyPair ephemeral = generator.generateKeyPair();
+            final byte[] epkSdEcka = new TlvWriter()
+                .put(0x5F49, encodePoint((ECPublicKey) ephemeral.getPublic()))
+                .toByteArray();
+
+            final byte[] ka1 = agree(ephemeral.getPrivate(), epkOceEcka);
+            final byte[] ka2 = agree(skSdEcka, kid == ScpKid.SCP11b ? epkOceEcka : pkOceEcka);
+            final SecretKey[] keys = deriveScp11Keys(concat(ka1, ka2), concat(keyUsage, keyType, keyLength), keySize);
+            final byte[] receipt = AesCmac.mac(keys[0], concat(data, epkSdEcka));
+
+            session = new Session(new SessionKeys(keys[1], keys[2], keys[3], keys[4]), receipt, level, scp11Mode,
+                                  kid != ScpKid.SCP11b);
+            return concat(epkSdEcka, new TlvWriter().put(0x86, receipt).toByteArray());
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+    }
+
+    private byte[] getData(int tag, byte[] data) throws SwException {
+        switch (tag) {
+            case TAG_CARD_RECOGNITION_DATA:
+                // GlobalPlatform Card Specification v2.3.1, "H.2 Structure of Card Recognition Data"
+                return new TlvWriter()
+                    .begin(0x73)
+                    .put(0x06, BytesUtils.hexToBytes("2A864886FC6B01"))
+                    .begin(0x60).put(0x06, BytesUtils.hexToBytes("2A864886FC6B020203")).end()
+                    .begin(0x63).put(0x06, BytesUtils.hexToBytes("2A864886FC6B03")).end()
+                    .begin(0x64).put(0x06, BytesUtils.hexToBytes("2A864886FC6B040370")).end()
+                    .begin(0x64).put(0x06, BytesUtils.hexToBytes("2A864886FC6B040B00")).end()
+                    .end()
+                    .toByteArray();
+            case TAG_KEY_INFORMATION:
+                return keyInformation();
+            case TAG_CERTIFICATE_STORE:
+                final List<byte[]> certificates;
+                try {
+                    final byte[] keyRef = CertificateStore.REQUEST.decode(data)
+                        .getBytes(CertificateStore.REQUEST_KEY_REFERENCE);
+                    certificates = certificateStores.get(new KeyRef(keyRef[0], keyRef[1]));
+                } catch (BadResponseException e) {
+                    throw new SwException(SW.INCORRECT_PARAMETERS);
+                }
+                if (certificates == null) {
+                    throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+                }
+                final TlvWriter store = new TlvWriter().begin(TAG_CERTIFICATE_STORE);
+                for (byte[] certificate : certificates) {
+                    store.putRaw(certificate);
+                }
+                return store.end().toByteArray();
+            case TAG_CA_KLOC_IDENTIFIERS:
+                return caIdentifiers(klocIdentifiers);
+            case TAG_CA_KLCC_IDENTIFIERS:
+                return caIdentifiers(klccIdentifiers);
+            default:
+                throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+        }
+    }
+
+    private byte[] keyInformation() {
+        final TlvWriter writer = new TlvWriter();
+        for (Map.Entry<Integer, StaticKeys> keySet : scp03Keys.entrySet()) {
+            final int keySize = keySet.getValue().enc.getEncoded().length;
+            for (byte kid = 1; kid <= 3; kid++) {
+                writer.put(0xC0, new byte[]{kid, (byte) (int) keySet.getKey(), (byte) KEY_TYPE_AES, (byte) keySize});
+            }
+        }
+        for (KeyRef keyRef : scp11Keys.keySet()) {
+            writer.put(0xC0, new byte[]{keyRef.getKid(), keyRef.getKvn(), (byte) KEY_TYPE_ECC_PRIVATE_KEY, 32});
+        }
+        for (KeyRef keyRef : oceCaKeys.keySet()) {
+            writer.put(0xC0, new byte[]{keyRef.getKid(), keyRef.getKvn(), (byte) KEY_TYPE_ECC_PUBLIC_KEY, 32});
+        }
+        return writer.toByteArray();
+    }
+
+    private static byte[] caIdentifiers(Map<KeyRef, byte[]> identifiers) throws SwException {
+        if (identifiers.isEmpty()) {
+            throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+        }
+        final TlvWriter writer = new TlvWriter();
+        for (Map.Entry<KeyRef, byte[]> identifier : identifiers.entrySet()) {
+            writer.put(0x42, identifier.getValue()).put(0x83, identifier.getKey().getBytes());
+        }
+        return writer.toByteArray();
+    }
+
+    private byte[] putKey(Command command, byte[] data, Session secureSession) throws SwException {
+        final int replaceKvn = command.p1 & 0xFF;
+        final byte kid = (byte) (command.p2 & 0x7F);
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            final byte kvn = buffer.get();
+            final KeyRef keyRef = new KeyRef(kid, kvn);
+            if (kid == ScpKid.SCP03) {
+                final ByteBuffer response = ByteBuffer.allocate(1 + 3 * 3).put(kvn);
+                final byte[][] keys = new byte[3][];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = decryptKey(secureSession, readKeyComponent(buffer, KEY_TYPE_AES));
+                    final byte[] kcv = new byte[buffer.get()];
+                    buffer.get(kcv);
+                    final SecretKey key = new SecretKeySpec(keys[i], "AES");
+                    if (!MessageDigest.isEqual(kcv, Arrays.copyOf(ScpState.cbcEncrypt(key, KCV_IV), kcv.length))) {
+                        throw new SwException(SW.INCORRECT_PARAMETERS);
+                    }
+                    response.put(kcv);
+                }
+                checkReplace(scp03Keys.containsKey(kvn & 0xFF), replaceKvn, scp03Keys.containsKey(replaceKvn));
+                scp03Keys.remove(replaceKvn);
+                putScp03Keys(kvn & 0xFF, new StaticKeys(keys[0], keys[1], keys[2]));
+                return response.array();
+            }
+            final boolean privateKey = kid == ScpKid.SCP11a || kid == ScpKid.SCP11b || kid == ScpKid.SCP11c;
+            final Map<KeyRef, ?> store = privateKey ? scp11Keys : oceCaKeys;
+            checkReplace(store.containsKey(keyRef), replaceKvn, store.containsKey(new KeyRef(kid, (byte) replaceKvn)));
+            store.remove(new KeyRef(kid, (byte) replaceKvn));
+            final ECParameterSpec curve = secp256r1();
+            if (privateKey) {
+                final byte[] secret = decryptKey(secureSession, readKeyComponent(buffer, KEY_TYPE_ECC_PRIVATE_KEY));
+                scp11Keys.put(keyRef, KeyFactory.getInstance("EC")
+                    .generatePrivate(new ECPrivateKeySpec(new BigInteger(1, secret), curve)));
+                Arrays.fill(secret, (byte) 0);
+            } else {
+                oceCaKeys.put(keyRef, decodePoint(curve, readKeyComponent(buffer, KEY_TYPE_ECC_PUBLIC_KEY)));
+            }
+            readKeyComponent(buffer, KEY_TYPE_ECC_KEY_PARAMS);
+            return new byte[]{kvn};
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+    }
+
+    private static void checkReplace(boolean exists, int replaceKvn, boolean replacedExists) throws SwException {
+        if (replaceKvn == 0 && exists) {
+            throw new SwException(SW.CONDITIONS_NOT_SATISFIED);
+        }
+        if (replaceKvn != 0 && !replacedExists) {
+            throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+        }
+    }
+
+    private static byte[] readKeyComponent(ByteBuffer buffer, int type) throws SwException {
+        if ((buffer.get() & 0xFF) != type) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+        final byte[] value = new byte[buffer.get() & 0xFF];
+        buffer.get(value);
+        return value;
+    }
+
+    private static byte[] decryptKey(Session secureSession, byte[] encrypted) throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, secureSession.keys.dek, new IvParameterSpec(new byte[16]));
+        return cipher.doFinal(encrypted);
+    }
+
+    private void storeData(byte[] data) throws SwException {
+        try {
+            final List<Tlv> tlvs = Tlvs.decodeList(data);
+            if (tlvs.size() == 1) {
+                final TlvSchema.Decoded caIssuer = CaIssuer.SCHEMA.decode(data);
+                final byte[] keyRef = caIssuer.getBytes(CaIssuer.KEY_REFERENCE);
+                final boolean klcc = caIssuer.getUnsigned(caIssuer.first(CaIssuer.KLCC)) != 0;
+                (klcc ? klccIdentifiers : klocIdentifiers).put(new KeyRef(keyRef[0], keyRef[1]),
+                                                                caIssuer.getBytes(CaIssuer.SUBJECT_KEY_IDENTIFIER));
+            } else if (tlvs.get(1).getTag() == TAG_CERTIFICATE_STORE) {
+                final TlvSchema.Decoded store = CertificateStore.STORE.decode(data);
+                final byte[] keyRef = store.getBytes(CertificateStore.STORE_KEY_REFERENCE);
+                final List<byte[]> certificates = new ArrayList<>();
+                for (int row = store.first(CertificateStore.STORE_CERTIFICATE); row >= 0; row = store.next(row)) {
+                    certificates.add(store.getEncoded(row));
+                }
+                certificateStores.put(new KeyRef(keyRef[0], keyRef[1]), certificates);
+            } else {
+                final TlvSchema.Decoded allowlist = Allowlist.SCHEMA.decode(data);
+                final byte[] keyRef = allowlist.getBytes(Allowlist.KEY_REFERENCE);
+                final Set<BigInteger> serials = new HashSet<>();
+                for (int row = allowlist.first(Allowlist.SERIAL_NUMBER); row >= 0; row = allowlist.next(row)) {
+                    serials.add(new BigInteger(allowlist.getBytes(row)));
+                }
+                allowlists.put(new KeyRef(keyRef[0], keyRef[1]), serials);
+            }
+        } catch (BadResponseException | RuntimeException e) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+    }
+
+    private void delete(Command command, byte[] data) throws SwException {
+        final int kid;
+        final int kvn;
+        try {
+            final TlvSchema.Decoded decoded = DeleteKey.SCHEMA.decode(data);
+            final int kidRow = decoded.first(DeleteKey.KEY_IDENTIFIER);
+            final int kvnRow = decoded.first(DeleteKey.KEY_VERSION_NUMBER);
+            kid = kidRow < 0 ? 0 : decoded.getUnsigned(kidRow);
+            kvn = kvnRow < 0 ? 0 : decoded.getUnsigned(kvnRow);
+        } catch (BadResponseException e) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+        if (kid == 0 && kvn == 0) {
+            throw new SwException(SW.INCORRECT_PARAMETERS);
+        }
+
+        final List<Integer> scp03Deleted = new ArrayList<>();
+        if (kid == 0 || kid == ScpKid.SCP03) {
+            for (int keySet : scp03Keys.keySet()) {
+                if (kvn == 0 || keySet == kvn) {
+                    scp03Deleted.add(keySet);
+                }
+            }
+        }
+        final List<KeyRef> ecDeleted = new ArrayList<>();
+        for (KeyRef keyRef : concatKeys(scp11Keys.keySet(), oceCaKeys.keySet())) {
+            if ((kid == 0 || (keyRef.getKid() & 0xFF) == kid) && (kvn == 0 || (keyRef.getKvn() & 0xFF) == kvn)) {
+                ecDeleted.add(keyRef);
+            }
+        }
+        if (scp03Deleted.isEmpty() && ecDeleted.isEmpty()) {
+            throw new SwException(SW.REFERENCED_DATA_NOT_FOUND);
+        }
+        final boolean deleteLast = command.p2 == 1;
+        if (!deleteLast && scp03Deleted.size() == scp03Keys.size() && ecDeleted.size() ==
+                                                                      scp11Keys.size() + oceCaKeys.size()) {
+            throw new SwException(SW.CONDITIONS_NOT_SATISFIED);
+        }
+        for (int keySet : scp03Deleted) {
+            scp03Keys.remove(keySet);
+        }
+        for (KeyRef keyRef : ecDeleted) {
+            scp11Keys.remove(keyRef);
+            oceCaKeys.remove(keyRef);
+            certificateStores.remove(keyRef);
+        }
+    }
+
+    private static List<KeyRef> concatKeys(Set<KeyRef> first, Set<KeyRef> second) {
+        final List<KeyRef> keys = new ArrayList<>(first);
+        keys.addAll(second);
+        return keys;
+    }
+
+    private static void checkOceAuthenticated(@Nullable Session secureSession) throws SwException {
+        if (secureSession == null || !secureSession.oceAuthenticated) {
+            throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+        }
+    }
+
+    private static SecurityLevel findLevel(byte value, boolean scp03) throws SwException {
+        for (SecurityLevel level : SecurityLevel.values()) {
+            if ((scp03 ? level.getScp03SecurityLevel() : level.getScp11KeyUsage()) == value) {
+                return level;
+            }
+        }
+        throw new SwException(SW.INCORRECT_PARAMETERS);
+    }
+
+    /**
+     * The response to a secured command is wrapped with the session the command came in, even if the command ended
+     * it, e.g. INITIALIZE UPDATE starting a new session
+     */
+    private byte[] wrap(@Nullable Session secureSession, byte[] data) {
+        if (secureSession == null) {
+            return concat(data, sw(SW.OK));
+        }
+        return secureSession.wrap(data);
+    }
+
+    private byte[] getResponse() {
+        final byte[] response = remainingResponse;
+        if (response == null) {
+            return sw(SW.CONDITIONS_NOT_SATISFIED);
+        }
+        final int dataLength = response.length - 2;
+        final int chunkLength = Math.min(MAX_SHORT_RESPONSE, dataLength - remainingOffset);
+        final int left = dataLength - remainingOffset - chunkLength;
+        final byte[] chunk;
+        if (left == 0) {
+            chunk = Arrays.copyOfRange(response, remainingOffset, response.length);
+            remainingResponse = null;
+        } else {
+            chunk = Arrays.copyOf(Arrays.copyOfRange(response, remainingOffset, remainingOffset + chunkLength),
+                                  chunkLength + 2);
+            chunk[chunkLength] = 0x61;
+            chunk[chunkLength + 1] = (byte) Math.min(left, 0xFF);
+        }
+        remainingOffset += chunkLength;
+        return chunk;
+    }
+
+    private void resetSession() {
+        session = null;
+        pendingScp03 = null;
+        oceKey = null;
+        chainedData.reset();
+    }
+
+    /**
+     * GPC v2.3 Amendment F (SCP11) v1.4 §6.5.2.3, X9.63 key derivation with SHA-256 of receipt key, S-ENC, S-MAC,
+     * S-RMAC and DEK
+     */
+    private static SecretKey[] deriveScp11Keys(byte[] keyMaterial, byte[] sharedInfo, int keySize)
+            throws GeneralSecurityException {
+        final SecretKey[] keys = new SecretKey[5];
+        final ByteArrayOutputStream keyData = new ByteArrayOutputStream();
+        for (int counter = 1; keyData.size() < keys.length * keySize; counter++) {
+            final MessageDigest hash = MessageDigest.getInstance("SHA-256");
+            hash.update(keyMaterial);
+            hash.update(ByteBuffer.allocate(4).putInt(counter).array());
+            hash.update(sharedInfo);
+            final byte[] digest = hash.digest();
+            keyData.write(digest, 0, digest.length);
+        }
+        final byte[] bytes = keyData.toByteArray();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new SecretKeySpec(bytes, i * keySize, keySize, "AES");
+        }
+        Arrays.fill(bytes, (byte) 0);
+        return keys;
+    }
+
+    private static byte[] agree(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+        final KeyAgreement keyAgreement = KeyAgreement.getInstance("ECDH");
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(publicKey, true);
+        return keyAgreement.generateSecret();
+    }
+
+    private static ECParameterSpec secp256r1() throws GeneralSecurityException {
+        final AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec("secp256r1"));
+        return parameters.getParameterSpec(ECParameterSpec.class);
+    }
+
+    private static PublicKey decodePoint(ECParameterSpec curve, byte[] encoded) throws GeneralSecurityException {
+        final int size = fieldSize(curve);
+        if (encoded.length != 1 + 2 * size || encoded[0] != 0x04) {
+            throw new GeneralSecurityException("Unsupported EC point encoding");
+        }
+        final ECPoint point = new ECPoint(new BigInteger(1, Arrays.copyOfRange(encoded, 1, 1 + size)),
+                                          new BigInteger(1, Arrays.copyOfRange(encoded, 1 + size, encoded.length)));
+        return KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, curve));
+    }
+
+    private static byte[] encodePoint(ECPublicKey key) {
+        final int size = fieldSize(key.getParams());
+        final ByteBuffer point = ByteBuffer.allocate(1 + 2 * size).put((byte) 0x04);
+        for (BigInteger coordinate : Arrays.asList(key.getW().getAffineX(), key.getW().getAffineY())) {
+            final byte[] bytes = coordinate.toByteArray();
+            final int length = Math.min(bytes.length, size);
+            point.position(point.position() + size - length);
+            point.put(bytes, bytes.length - length, length);
+        }
+        return point.array();
+    }
+
+    private static int fieldSize(ECParameterSpec curve) {
+        return (curve.getCurve().getField().getFieldSize() + 7) / 8;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] sw(short sw) {
+        return new byte[]{(byte) (sw >> 8), (byte) sw};
+    }
+
+    /**
+     * A parsed command APDU, short or extended
+     */
+    private static final class Command {
+        final byte[] apdu;
+        final byte cla;
+        final byte ins;
+        final byte p1;
+        final byte p2;
+        final int dataOffset;
+        final int dataLength;
+        final boolean extended;
+
+        private Command(byte[] apdu, int dataOffset, int dataLength, boolean extended) {
+            this.apdu = apdu;
+            this.cla = apdu[0];
+            this.ins = apdu[1];
+            this.p1 = apdu[2];
+            this.p2 = apdu[3];
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.extended = extended;
+        }
+
+        static Command parse(byte[] apdu) {
+            if (apdu.length < 4) {
+                throw new IllegalArgumentException("APDU is too short");
+            }
+            if (apdu.length <= 5) {
+                // Case 1 or case 2 short
+                return new Command(apdu, apdu.length, 0, false);
+            }
+            if (apdu[4] != 0) {
+                final int lc = apdu[4] & 0xFF;
+                if (apdu.length != 5 + lc && apdu.length != 6 + lc) {
+                    throw new IllegalArgumentException("Wrong Lc");
+                }
+                return new Command(apdu, 5, lc, false);
+            }
+            if (apdu.length == 7) {
+                // Case 2 extended
+                return new Command(apdu, 7, 0, true);
+            }
+            final int lc = ((apdu[5] & 0xFF) << 8) | (apdu[6] & 0xFF);
+            if (apdu.length != 7 + lc && apdu.length != 9 + lc) {
+                throw new IllegalArgumentException("Wrong Lc");
+            }
+            return new Command(apdu, 7, lc, true);
+        }
+
+        byte[] data() {
+            return Arrays.copyOfRange(apdu, dataOffset, dataOffset + dataLength);
+        }
+    }
+
+    /**
+     * SCP03 session keys and cryptograms between INITIALIZE UPDATE and EXTERNAL AUTHENTICATE
+     */
+    private static final class PendingScp03 {
+        final ScpState.Scp03Handshake handshake;
+        final ScpMode mode;
+
+        PendingScp03(ScpState.Scp03Handshake handshake, ScpMode mode) {
+            this.handshake = handshake;
+            this.mode = mode;
+        }
+    }
+
+    /**
+     * Card side of secure messaging: verifies C-MAC and decrypts commands, encrypts responses and appends R-MAC
+     */
+    private static final class Session {
+        final SessionKeys keys;
+        final SecurityLevel level;
+        final int macSize;
+        final boolean oceAuthenticated;
+        final AesCmac cmac;
+        final AesCmac rmac;
+        byte[] macChain;
+        private int encCounter = 1;
+        private int commandCounter;
+
+        Session(SessionKeys keys, byte[] macChain, SecurityLevel level, ScpMode mode, boolean oceAuthenticated) {
+            this.keys = keys;
+            this.macChain = macChain.clone();
+            this.level = level;
+            this.macSize = ScpMode.getBlobSizeByMode(mode);
+            this.oceAuthenticated = oceAuthenticated;
+            cmac = new AesCmac(keys.smac);
+            rmac = new AesCmac(keys.srmac);
+        }
+
+        byte[] unwrap(Command command) throws SwException {
+            if (command.dataLength < macSize) {
+                throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+            }
+            final int macOffset = command.dataOffset + command.dataLength - macSize;
+            final byte[] mac = new byte[AesCmac.BLOCK_SIZE];
+            cmac.update(macChain, 0, macChain.length);
+            cmac.update(command.apdu, 0, macOffset);
+            cmac.doFinal(mac, 0);
+            if (!MessageDigest.isEqual(Arrays.copyOf(mac, macSize),
+                                       Arrays.copyOfRange(command.apdu, macOffset, macOffset + macSize))) {
+                throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+            }
+            macChain = mac;
+
+            final byte[] data = Arrays.copyOfRange(command.apdu, command.dataOffset, macOffset);
+            if (!level.commandEncryption) {
+                return data;
+            }
+            commandCounter = encCounter++;
+            if (data.length == 0) {
+                return data;
+            }
+            final byte[] padded = crypt(Cipher.DECRYPT_MODE, 0x00, commandCounter, data);
+            int end = padded.length - 1;
+            while (end > 0 && padded[end] == 0x00) {
+                end--;
+            }
+            if (padded[end] != (byte) 0x80) {
+                throw new SwException(SW.SECURITY_CONDITION_NOT_SATISFIED);
+            }
+            return Arrays.copyOf(padded, end);
+        }
+
+        byte[] wrap(byte[] data) {
+            if (level.responseEncryption && data.length > 0) {
+                final byte[] padded = Arrays.copyOf(data, ScpState.getPaddedLength(data.length));
+                padded[data.length] = (byte) 0x80;
+                data = crypt(Cipher.ENCRYPT_MODE, 0x80, commandCounter, padded);
+            }
+            final byte[] response = Arrays.copyOf(data, data.length + (level.responseMac ? macSize : 0) + 2);
+            if (level.responseMac) {
+                final byte[] mac = new byte[AesCmac.BLOCK_SIZE];
+                rmac.update(macChain, 0, macChain.length);
+                rmac.update(data, 0, data.length);
+                rmac.update((byte) (SW.OK >> 8));
+                rmac.update((byte) SW.OK);
+                rmac.doFinal(mac, 0);
+                System.arraycopy(mac, 0, response, data.length, macSize);
+            }
+            response[response.length - 2] = (byte) (SW.OK >> 8);
+            response[response.length - 1] = (byte) SW.OK;
+            return response;
+        }
+
+        private byte[] crypt(int mode, int icvFirstByte, int counter, byte[] data) {
+            try {
+                @SuppressWarnings("GetInstance") final Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding");
+                ecb.init(Cipher.ENCRYPT_MODE, keys.senc);
+                final byte[] counterBlock = ByteBuffer.allocate(16).put((byte) icvFirstByte).putInt(12, counter)
+                    .array();
+                final Cipher cbc = Cipher.getInstance("AES/CBC/NoPadding");
+                cbc.init(mode, keys.senc, new IvParameterSpec(ecb.doFinal(counterBlock)));
+                return cbc.doFinal(data);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class SwException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final short sw;
+
+        SwException(short sw) {
+            super(null, null, false, false);
+            this.sw = sw;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.InputTestData;
+import com.samsung.openscp.testdata.Scp11TestData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatedSecurityDomainTests {
+    private static final KeyRef SCP03_KEY_REF = new KeyRef(ScpKid.SCP03, (byte) 0x30);
+    private static final Scp03KeyParams SCP03_KEY_PARAMS =
+        new Scp03KeyParams(SCP03_KEY_REF, InputTestData.staticKeysAes128);
+    private static final KeyRef OCE_KEY_REF = new KeyRef(Scp11TestData.OCE_KID, (byte) 0x01);
+
+    @Test
+    void scp03SessionsInAllModesAndLevels() throws Exception {
+        final SimulatedSecurityDomain card = newCard();
+        for (ScpMode mode : ScpMode.values()) {
+            for (SecurityLevel level : SecurityLevel.values()) {
+                final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+                session.select(SimulatedSecurityDomain.ISD_AID);
+                session.authenticate(SCP03_KEY_PARAMS, mode, level);
+
+                final Map<KeyRef, Map<Byte, Byte>> keyInformation = session.getKeyInformation();
+                assertEquals(3, keyInformation.size(), mode + " " + level);
+                assertTrue(keyInformation.containsKey(SCP03_KEY_REF));
+                assertNotNull(session.getCardRecognitionData());
+            }
+        }
+        assertEquals(ScpMode.values().length * SecurityLevel.values().length, card.getSequenceCounter(0x30));
+    }
+
+    @Test
+    void longResponsesAreChained() throws Exception {
+        for (boolean extended : new boolean[]{false, true}) {
+            final SimulatedSecurityDomain card = newCard().setExtendedLengthApdus(extended);
+            final KeyRef sdKeyRef = new KeyRef(ScpKid.SCP11b, (byte) 0x01);
+            card.putScp11Key(sdKeyRef, generateKeyPair().getPrivate(),
+                             Collections.singletonList(Scp11TestData.X509_CERT_OCE_ECKA_P256));
+            final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+            session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8);
+
+            final List<ScpCertificate> certificates = session.getCertificateBundle(sdKeyRef);
+            assertEquals(1, certificates.size());
+            assertArrayEquals(Scp11TestData.X509_CERT_OCE_ECKA_P256, certificates.get(0).getEncoded());
+        }
+    }
+
+    @Test
+    void importedKeysReplaceDeletedKeys() throws Exception {
+        final SimulatedSecurityDomain card = newCard();
+        final StaticKeys newKeys = new StaticKeys(RandomUtils.getRandomBytes(16), RandomUtils.getRandomBytes(16),
+                                                  RandomUtils.getRandomBytes(16));
+        final KeyRef newKeyRef = new KeyRef(ScpKid.SCP03, (byte) 0x31);
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8);
+        session.putKey(newKeyRef, newKeys, 0);
+
+        session.authenticate(new Scp03KeyParams(newKeyRef, newKeys), ScpMode.S16);
+        session.deleteKey(SCP03_KEY_REF, false);
+        assertFalse(session.getKeyInformation().containsKey(SCP03_KEY_REF));
+
+        final ApduException e = assertThrows(ApduException.class,
+                                             () -> session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8));
+        assertEquals(SW.REFERENCED_DATA_NOT_FOUND, e.getSw());
+    }
+
+    @Test
+    void wrongKeysAreRejected() {
+        final SimulatedSecurityDomain card = newCard();
+        final StaticKeys wrongKeys = new StaticKeys(RandomUtils.getRandomBytes(16), RandomUtils.getRandomBytes(16),
+                                                    RandomUtils.getRandomBytes(16));
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        final BadResponseException e = assertThrows(BadResponseException.class,
+            () -> session.authenticate(new Scp03KeyParams(SCP03_KEY_REF, wrongKeys), ScpMode.S8));
+        assertEquals("Wrong SCP03 key set", e.getMessage());
+    }
+
+    @Test
+    void pseudoRandomCardChallengeIsVerifiedAfterPartialSelect() throws Exception {
+        final SimulatedSecurityDomain card = newCard().setPseudoRandomCardChallenge(true);
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        session.select(Arrays.copyOf(SimulatedSecurityDomain.ISD_AID, 5));
+        session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8);
+        assertTrue(session.getKeyInformation().containsKey(SCP03_KEY_REF));
+
+        // The cryptogram is checked before the card challenge
+        final StaticKeys wrongKeys = new StaticKeys(RandomUtils.getRandomBytes(16), RandomUtils.getRandomBytes(16),
+                                                    RandomUtils.getRandomBytes(16));
+        session.select(SimulatedSecurityDomain.ISD_AID);
+        final BadResponseException e = assertThrows(BadResponseException.class,
+            () -> session.authenticate(new Scp03KeyParams(SCP03_KEY_REF, wrongKeys), ScpMode.S8));
+        assertEquals("Wrong SCP03 key set", e.getMessage());
+    }
+
+    @Test
+    void scp11bSessionDoesNotAuthenticateOce() throws Exception {
+        final KeyPair sdKeyPair = generateKeyPair();
+        final KeyRef sdKeyRef = new KeyRef(ScpKid.SCP11b, (byte) 0x01);
+        final SimulatedSecurityDomain card = newCard()
+            .putScp11Key(sdKeyRef, sdKeyPair.getPrivate(), Collections.emptyList());
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        session.authenticate(new Scp11KeyParams(sdKeyRef, sdKeyPair.getPublic(), AesAlg.AES_256), ScpMode.S8);
+        assertTrue(session.getKeyInformation().containsKey(sdKeyRef));
+
+        final ApduException e = assertThrows(ApduException.class,
+                                             () -> session.storeCaIssuer(OCE_KEY_REF, new byte[20]));
+        assertEquals(SW.SECURITY_CONDITION_NOT_SATISFIED, e.getSw());
+    }
+
+    @Test
+    void scp11bSessionsTakeEphemeralKeysFromPool() throws Exception {
+        final KeyPair sdKeyPair = generateKeyPair();
+        final KeyRef sdKeyRef = new KeyRef(ScpKid.SCP11b, (byte) 0x01);
+        final SimulatedSecurityDomain card = newCard()
+            .putScp11Key(sdKeyRef, sdKeyPair.getPrivate(), Collections.emptyList());
+        final Scp11KeyParams keyParams = new Scp11KeyParams(sdKeyRef, sdKeyPair.getPublic(), AesAlg.AES_128);
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(2, 1, Runnable::run)) {
+            pool.prefill(sdKeyPair.getPublic());
+            for (int i = 0; i < 3; i++) {
+                final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+                session.setEphemeralKeyPool(pool);
+                session.authenticate(keyParams, ScpMode.S8);
+                assertTrue(session.getKeyInformation().containsKey(sdKeyRef));
+            }
+            assertEquals(3, pool.getHitCount());
+            assertEquals(0, pool.getMissCount());
+        }
+    }
+
+    @Test
+    void scp11aSessionChecksAllowlist() throws Exception {
+        final KeyPair sdKeyPair = generateKeyPair();
+        final KeyRef sdKeyRef = new KeyRef(ScpKid.SCP11a, (byte) 0x01);
+        final SimulatedSecurityDomain card = newCard()
+            .putScp11Key(sdKeyRef, sdKeyPair.getPrivate(), Collections.emptyList());
+        final X509Certificate oceCertificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(Scp11TestData.X509_CERT_OCE_ECKA_P256));
+        final PrivateKey skOceEcka = KeyFactory.getInstance("EC")
+            .generatePrivate(new PKCS8EncodedKeySpec(Scp11TestData.SK_OCE_ECKA_P256));
+        final Scp11KeyParams keyParams = new Scp11KeyParams(
+            sdKeyRef, sdKeyPair.getPublic(), OCE_KEY_REF, skOceEcka,
+            Collections.singletonList(Scp11TestData.X509_CERT_OCE_ECKA_P256), AesAlg.AES_128);
+
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8);
+        session.storeAllowlist(OCE_KEY_REF, Collections.singletonList(BigInteger.ONE));
+        final ApduException e = assertThrows(ApduException.class,
+                                             () -> session.authenticate(keyParams, ScpMode.S8));
+        assertEquals(SW.SECURITY_CONDITION_NOT_SATISFIED, e.getSw());
+
+        session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8);
+        session.storeAllowlist(OCE_KEY_REF, Collections.singletonList(oceCertificate.getSerialNumber()));
+        session.authenticate(keyParams, ScpMode.S8);
+        final byte[] ski = BytesUtils.hexToBytes("E225C62F5E33CA02D23D9D83D0685B4EB2FEBC11");
+        session.storeCaIssuer(OCE_KEY_REF, ski);
+        assertArrayEquals(ski, session.getSupportedCaIdentifiers(true, true).get(OCE_KEY_REF));
+    }
+
+    @Test
+    void concurrentSessionsOnCardFarm() throws Exception {
+        final int cards = 8;
+        final int sessionsPerCard = 10;
+        final List<SimulatedSecurityDomain> simulators = new ArrayList<>();
+        final List<Future<Integer>> results = new ArrayList<>();
+        try (CardFarm farm = new CardFarm(Executors.newFixedThreadPool(cards), 1)) {
+            for (int i = 0; i < cards; i++) {
+                final SimulatedSecurityDomain card = newCard();
+                simulators.add(card);
+                for (int j = 0; j < sessionsPerCard; j++) {
+                    results.add(farm.submit("reader-" + i, () -> card, SCP03_KEY_PARAMS, ScpMode.S8,
+                                            session -> session.getKeyInformation().size()));
+                }
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(3, (int) result.get());
+            }
+        }
+        for (SimulatedSecurityDomain card : simulators) {
+            assertEquals(sessionsPerCard, card.getSequenceCounter(0x30));
+        }
+    }
+
+    @Test
+    void compiledScriptReplaysOnCard() throws Exception {
+        final SimulatedSecurityDomain card = newCard().setPseudoRandomCardChallenge(true);
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(card);
+        session.select(SimulatedSecurityDomain.ISD_AID);
+        session.authenticate(SCP03_KEY_PARAMS, ScpMode.S8);
+        final byte[] keyInformation = session.getData((short) 0xE0, null);
+
+        final Scp03Script script = new Scp03ScriptCompiler(
+            SCP03_KEY_PARAMS, ScpMode.S8, SecurityLevel.C_DECRYPTION_R_ENCRYPTION_C_MAC_R_MAC,
+            SimulatedSecurityDomain.ISD_AID, card.getDiversificationData(), (byte) 0x70,
+            card.getSequenceCounter(0x30) + 1)
+            .add(new Apdu(0x80, 0xCA, 0x00, 0xE0, (byte[]) null, 0x00, true), keyInformation)
+            .add(new Apdu(0x80, 0xCA, 0x00, 0xE0, (byte[]) null, 0x00, true), keyInformation)
+            .compile();
+        new Scp03ScriptReplayer(card).replay(script);
+
+        // The sequence counter has moved on, so the same script no longer matches the card challenge
+        assertThrows(BadResponseException.class, () -> new Scp03ScriptReplayer(card).replay(script));
+    }
+
+    private static SimulatedSecurityDomain newCard() {
+        return new SimulatedSecurityDomain().putScp03Keys(0x30, InputTestData.staticKeysAes128);
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+}
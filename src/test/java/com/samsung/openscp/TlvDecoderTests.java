@@ -0,0 +1,167 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TlvDecoderTests {
+    // BF21 { 7F21 { 93 01 01 }, 7F21 { 93 02 0203 } }, 83 02 0103
+    private static final byte[] STORE = BytesUtils.hexToBytes(
+        "BF210D" + "7F2103930101" + "7F210493020203" + "83020103");
+
+    private static class Recorder implements TlvDecoder.Listener {
+        final List<String> events = new ArrayList<>();
+        private final int descendTag;
+
+        Recorder(int descendTag) {
+            this.descendTag = descendTag;
+        }
+
+        @Override
+        public boolean descend(int tag, int depth) {
+            return tag == descendTag;
+        }
+
+        @Override
+        public void onTlv(Tlv tlv, int depth) {
+            events.add(depth + ":" + BytesUtils.bytesToHex(tlv.getBytes()).toUpperCase());
+        }
+    }
+
+    @Test
+    void emitWholeElementsRegardlessOfChunking() throws BadResponseException {
+        for (int chunkLength = 1; chunkLength <= STORE.length; chunkLength++) {
+            final Recorder recorder = new Recorder(0xBF21);
+            final TlvDecoder decoder = new TlvDecoder(recorder);
+            for (int offset = 0; offset < STORE.length; offset += chunkLength) {
+                decoder.feed(ByteBuffer.wrap(STORE, offset, Math.min(chunkLength, STORE.length - offset)));
+            }
+            decoder.finish();
+            assertEquals(3, recorder.events.size());
+            assertEquals("1:7F2103930101", recorder.events.get(0));
+            assertEquals("1:7F210493020203", recorder.events.get(1));
+            assertEquals("0:83020103", recorder.events.get(2));
+        }
+    }
+
+    @Test
+    void emitConstructedElementWithoutDescending() throws BadResponseException {
+        final Recorder recorder = new Recorder(0);
+        final TlvDecoder decoder = new TlvDecoder(recorder);
+        decoder.feed(STORE);
+        decoder.finish();
+        assertEquals(2, recorder.events.size());
+        assertEquals("0:BF210D7F21039301017F210493020203", recorder.events.get(0));
+    }
+
+    @Test
+    void descendIntoEmptyAndNestedElements() throws BadResponseException {
+        // A1 { A2 { }, A2 { 81 00 } }, 82 00
+        final Recorder recorder = new Recorder(0xA2) {
+            @Override
+            public boolean descend(int tag, int depth) {
+                return tag == 0xA1 || tag == 0xA2;
+            }
+        };
+        final TlvDecoder decoder = new TlvDecoder(recorder);
+        decoder.feed(BytesUtils.hexToBytes("A106A200A20281008200"));
+        decoder.finish();
+        assertEquals(2, recorder.events.size());
+        assertEquals("2:8100", recorder.events.get(0));
+        assertEquals("0:8200", recorder.events.get(1));
+    }
+
+    @Test
+    void rejectMalformedData() throws BadResponseException {
+        final TlvDecoder decoder = new TlvDecoder(new Recorder(0xA1));
+        // Data ends within a TLV, the decoder is reusable afterwards
+        decoder.feed(BytesUtils.hexToBytes("8403AABB"));
+        assertThrows(BadResponseException.class, decoder::finish);
+        decoder.feed(BytesUtils.hexToBytes("8400"));
+        decoder.finish();
+
+        // Child TLV exceeds the value of its parent
+        assertThrows(BadResponseException.class,
+            () -> new TlvDecoder(new Recorder(0xA1)).feed(BytesUtils.hexToBytes("A1028103AABBCC")));
+        // Child header exceeds the value of its parent
+        assertThrows(BadResponseException.class,
+            () -> new TlvDecoder(new Recorder(0xA1)).feed(BytesUtils.hexToBytes("A1015F2000")));
+        // Indefinite length
+        assertThrows(BadResponseException.class,
+            () -> new TlvDecoder(new Recorder(0)).feed(BytesUtils.hexToBytes("8480")));
+        // Element longer than allowed
+        assertThrows(BadResponseException.class,
+            () -> new TlvDecoder(new Recorder(0), 8).feed(BytesUtils.hexToBytes("8407")));
+    }
+
+    @Test
+    void elementsAreEmittedAsResponseChunksArrive() throws IOException, BadResponseException {
+        final List<String> events = new ArrayList<>();
+        final byte[][] responses = {
+            BytesUtils.hexToBytes("BF210D7F21039301017F216109"),
+            BytesUtils.hexToBytes("0493020203830201039000"),
+        };
+        final SmartCardConnection connection = new SmartCardConnection() {
+            private int index = 0;
+
+            @Override
+            public byte[] sendAndReceive(byte[] apdu) {
+                events.add("response " + index);
+                return responses[index++];
+            }
+
+            @Override
+            public boolean isExtendedLengthApduSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final TlvDecoder decoder = new TlvDecoder(new TlvDecoder.Listener() {
+            @Override
+            public boolean descend(int tag, int depth) {
+                return tag == 0xBF21;
+            }
+
+            @Override
+            public void onTlv(Tlv tlv, int depth) {
+                events.add("tlv " + BytesUtils.bytesToHex(tlv.getBytes()).toUpperCase());
+            }
+        });
+
+        final ChainedResponseProcessor processor =
+            new ChainedResponseProcessor(connection, false, MaxApduSize.SHORT, (byte) 0xC0);
+        assertEquals(SW.OK, processor.sendApdu(new Apdu(0, 0xCA, 0xBF, 0x21, null), decoder));
+        decoder.finish();
+
+        assertEquals(5, events.size());
+        assertEquals("response 0", events.get(0));
+        assertEquals("tlv 7F2103930101", events.get(1));
+        assertEquals("response 1", events.get(2));
+        assertEquals("tlv 7F210493020203", events.get(3));
+        assertEquals("tlv 83020103", events.get(4));
+    }
+}
@@ -0,0 +1,115 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.cert.CertificateException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TlvIndexTests {
+    // 7F21 { 93 01 01, 7F49 { B0 02 AABB, F0 01 00 }, 5F37 00 }, 83 02 0103
+    private static final byte[] NESTED = BytesUtils.hexToBytes(
+        "7F2110" + "930101" + "7F4907" + "B002AABB" + "F00100" + "5F3700" + "83020103");
+
+    @Test
+    void lookupNestedStructure() throws BadResponseException {
+        final TlvIndex index = new TlvIndex(NESTED);
+        assertEquals(2, index.size());
+        assertEquals(0x7F21, index.getTagAt(0));
+        assertEquals(0x83, index.getTagAt(1));
+        assertArrayEquals(BytesUtils.hexToBytes("0103"), index.getValue(0x83));
+        assertNull(index.getValue(0x93));
+        assertEquals(-1, index.indexOf(0x93));
+
+        final TlvIndex certificate = index.getNested(0x7F21);
+        assertEquals(3, certificate.size());
+        assertEquals(2, certificate.indexOf(0x5F37));
+        assertArrayEquals(new byte[0], certificate.getValue(0x5F37));
+
+        final TlvIndex publicKey = certificate.getNested(0x7F49);
+        assertArrayEquals(BytesUtils.hexToBytes("AABB"), publicKey.getValue(0xB0));
+        assertArrayEquals(new byte[]{0x00}, publicKey.getValue(0xF0));
+
+        final ByteBuffer point = publicKey.getValueBuffer(0xB0);
+        assertEquals(2, point.remaining());
+        assertSame(NESTED, point.array());
+
+        assertThrows(BadResponseException.class, () -> index.getNested(0x93));
+    }
+
+    @Test
+    void repeatedTagsKeepTheirPositions() throws BadResponseException {
+        // AlgorithmIdentifier of an EC key: two OBJECT IDENTIFIERs in a row
+        final TlvIndex index = new TlvIndex(BytesUtils.hexToBytes("0601AA0602BBCC0500"));
+        assertEquals(3, index.size());
+        assertArrayEquals(BytesUtils.hexToBytes("AA"), index.getValueAt(0));
+        assertArrayEquals(BytesUtils.hexToBytes("BBCC"), index.getValueAt(1));
+        assertEquals(0x05, index.getTagAt(2));
+        assertArrayEquals(BytesUtils.hexToBytes("AA"), index.getValue(0x06));
+        assertEquals(2, index.indexOf(0x05));
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() throws BadResponseException {
+        final int count = 100;
+        final TlvWriter writer = new TlvWriter();
+        for (int i = 0; i < count; i++) {
+            writer.put(0x5F00 | i, new byte[]{(byte) i});
+        }
+        final TlvIndex index = new TlvIndex(writer.toByteArray());
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.indexOf(0x5F00 | i));
+            assertEquals(0x5F00 | i, index.getTagAt(i));
+            assertArrayEquals(new byte[]{(byte) i}, index.getValue(0x5F00 | i));
+        }
+        assertEquals(-1, index.indexOf(0x5F00 | count));
+    }
+
+    @Test
+    void indexesRangeOfArray() throws BadResponseException {
+        final TlvIndex index = new TlvIndex(NESTED, 3, 16);
+        assertEquals(3, index.size());
+        assertEquals(0x93, index.getTagAt(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.getTagAt(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> new TlvIndex(NESTED, 3, NESTED.length));
+    }
+
+    @Test
+    void rejectMalformedData() {
+        // Truncated value
+        assertThrows(BadResponseException.class, () -> new TlvIndex(BytesUtils.hexToBytes("8403AABB")));
+        // Truncated header
+        assertThrows(BadResponseException.class, () -> new TlvIndex(BytesUtils.hexToBytes("5F")));
+        // Indefinite length
+        assertThrows(BadResponseException.class, () -> new TlvIndex(BytesUtils.hexToBytes("8480")));
+        // Child TLV exceeds the value of its parent
+        assertThrows(BadResponseException.class,
+            () -> new TlvIndex(BytesUtils.hexToBytes("A1028103AABBCC")).getNested(0xA1));
+    }
+
+    @Test
+    void malformedGlobalPlatformCertificateIsRejected() {
+        assertThrows(CertificateException.class,
+            () -> GlobalPlatformScpCertificate.parse(BytesUtils.hexToBytes("7F2105930301")));
+        assertThrows(CertificateException.class,
+            () -> GlobalPlatformScpCertificate.parse(BytesUtils.hexToBytes("7F2103930101")));
+    }
+}
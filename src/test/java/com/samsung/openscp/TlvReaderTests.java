@@ -0,0 +1,133 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TlvReaderTests {
+    // 7F21 { 93 01 01, 7F49 { B0 02 AABB, F0 01 00 }, 5F37 00 }, 83 02 0103
+    private static final byte[] NESTED = BytesUtils.hexToBytes(
+        "7F2110" + "930101" + "7F4907" + "B002AABB" + "F00100" + "5F3700" + "83020103");
+
+    @Test
+    void walkNestedStructure() throws BadResponseException {
+        final TlvReader reader = new TlvReader(NESTED);
+
+        reader.next(0x7F21);
+        assertEquals(0x10, reader.valueLength());
+        reader.enter();
+        reader.next(0x93);
+        assertArrayEquals(new byte[]{0x01}, reader.valueBytes());
+        reader.next(0x7F49);
+        reader.enter();
+        reader.next(0xB0);
+        final ByteBuffer point = reader.value();
+        assertEquals(2, point.remaining());
+        assertEquals((byte) 0xAA, point.get(0));
+        reader.exit();
+        assertTrue(reader.next());
+        assertEquals(0x5F37, reader.tag());
+        assertEquals(0, reader.valueLength());
+        assertFalse(reader.hasNext());
+        assertFalse(reader.next());
+        reader.exit();
+
+        reader.next(0x83);
+        assertArrayEquals(BytesUtils.hexToBytes("83020103"), reader.encodedBytes());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void skipRemainingTlvsOfLevel() throws BadResponseException {
+        final TlvReader reader = new TlvReader(NESTED);
+
+        reader.next(0x7F21);
+        reader.enter();
+        reader.next(0x93);
+        reader.skip();
+        assertFalse(reader.next());
+        reader.exit();
+        reader.next(0x83);
+    }
+
+    @Test
+    void readerDoesNotChangeSourcePosition() throws BadResponseException {
+        final ByteBuffer source = ByteBuffer.wrap(NESTED);
+        source.position(NESTED.length - 4);
+
+        final TlvReader reader = new TlvReader(source);
+        reader.next(0x83);
+
+        assertEquals(NESTED.length - 4, source.position());
+    }
+
+    @Test
+    void malformedDataIsRejected() throws BadResponseException {
+        assertThrows(BadResponseException.class, () -> new TlvReader(BytesUtils.hexToBytes("8403AABB")).next());
+        assertThrows(BadResponseException.class, () -> new TlvReader(BytesUtils.hexToBytes("7F")).next());
+        assertThrows(BadResponseException.class, () -> new TlvReader(BytesUtils.hexToBytes("8480")).next());
+        assertThrows(BadResponseException.class, () -> new TlvReader(NESTED).next(0x7F49));
+
+        // Child TLV exceeds the value of its parent
+        final TlvReader reader = new TlvReader(BytesUtils.hexToBytes("A1028103AABBCC"));
+        reader.next(0xA1);
+        reader.enter();
+        assertThrows(BadResponseException.class, reader::next);
+    }
+
+    @Test
+    void parseEcKeysEncoding() throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        final KeyPair keyPair = generator.generateKeyPair();
+
+        final PrivateKeyValues.Ec privateKeyValues =
+            (PrivateKeyValues.Ec) PrivateKeyValues.fromPrivateKey(keyPair.getPrivate());
+        assertEquals(EllipticCurveValues.SECP256R1, privateKeyValues.getCurveParams());
+        assertEquals(((ECPrivateKey) keyPair.getPrivate()).getS(), new BigInteger(1, privateKeyValues.getSecret()));
+
+        final PublicKeyValues.Ec publicKeyValues =
+            (PublicKeyValues.Ec) PublicKeyValues.fromPublicKey(keyPair.getPublic());
+        assertEquals(keyPair.getPublic(), publicKeyValues.toPublicKey());
+    }
+
+    @Test
+    void parsePkcs8RsaKey() throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        final RSAPrivateCrtKey key = (RSAPrivateCrtKey) generator.generateKeyPair().getPrivate();
+
+        final List<BigInteger> values = PrivateKeyValues.Rsa.parsePkcs8RsaKeyValues(key.getEncoded());
+
+        assertEquals(Arrays.asList(key.getModulus(), key.getPublicExponent(), key.getPrivateExponent(),
+                                   key.getPrimeP(), key.getPrimeQ(), key.getPrimeExponentP(),
+                                   key.getPrimeExponentQ(), key.getCrtCoefficient()), values);
+    }
+}
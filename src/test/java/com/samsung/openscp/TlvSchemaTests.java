@@ -0,0 +1,188 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.SmartCardEmulation;
+import org.junit.jupiter.api.Test;
+
+import static com.samsung.openscp.TlvSchema.Cardinality.OPTIONAL;
+import static com.samsung.openscp.TlvSchema.Cardinality.REPEATED;
+import static com.samsung.openscp.TlvSchema.Cardinality.REQUIRED;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TlvSchemaTests {
+    private static final TlvSchema.Element NAME = TlvSchema.bytes(0x5F20, REQUIRED);
+    private static final TlvSchema.Element COUNTER = TlvSchema.unsigned(0x92, OPTIONAL, 2);
+    private static final TlvSchema.Element ENTRY_VALUE = TlvSchema.bytes(0x81, OPTIONAL);
+    private static final TlvSchema.Element ENTRY = TlvSchema.constructed(0x70, REPEATED, ENTRY_VALUE);
+    private static final TlvSchema.Element KEY_REFERENCE = TlvSchema.bytes(0x83, REQUIRED, 2);
+    private static final TlvSchema.Element TEMPLATE = TlvSchema.constructed(0xA6, OPTIONAL, KEY_REFERENCE);
+    // 5F20 { name }, 92 { counter }, 70 { 81 }*, A6 { 83 }
+    private static final TlvSchema SCHEMA = new TlvSchema("Test", NAME, COUNTER, ENTRY, TEMPLATE);
+
+    @Test
+    void decodeAndLookUpPaths() throws BadResponseException {
+        // 5F20 41, 70 { 81 01 }, 99 (undeclared), 70 { }, 92 0102, A6 { 83 1103 }
+        final byte[] data = BytesUtils.hexToBytes("5F200141" + "7003810101" + "9900" + "7000" + "92020102" +
+                                                  "A6048302" + "1103");
+        final TlvSchema.Decoded decoded = SCHEMA.decode(data);
+
+        assertArrayEquals(new byte[]{0x41}, decoded.getBytes(NAME));
+        assertEquals(0x0102, decoded.getUnsigned(decoded.first(COUNTER)));
+        assertArrayEquals(BytesUtils.hexToBytes("1103"), decoded.getBytes(KEY_REFERENCE));
+        assertEquals(decoded.first(TEMPLATE), decoded.parent(decoded.first(KEY_REFERENCE)));
+
+        assertEquals(2, decoded.count(ENTRY));
+        final int first = decoded.first(ENTRY);
+        final int second = decoded.next(first);
+        assertEquals(-1, decoded.next(second));
+        assertArrayEquals(BytesUtils.hexToBytes("7003810101"), decoded.getEncoded(first));
+        assertArrayEquals(new byte[0], decoded.getBytes(second));
+        assertEquals(3, decoded.getValue(first).remaining());
+    }
+
+    @Test
+    void lookUpChildrenOfRepeatedElements() throws BadResponseException {
+        final TlvSchema.Element value = TlvSchema.bytes(0x81, OPTIONAL);
+        final TlvSchema.Element entry = TlvSchema.constructed(0x70, REPEATED, value);
+        final TlvSchema schema = new TlvSchema("Entries", entry);
+
+        final TlvSchema.Decoded decoded = schema.decode(BytesUtils.hexToBytes("7000" + "7003810102"));
+        final int first = decoded.first(entry);
+        final int second = decoded.next(first);
+        assertEquals(-1, decoded.first(value, first));
+        assertArrayEquals(new byte[]{0x02}, decoded.getBytes(decoded.first(value, second)));
+    }
+
+    @Test
+    void rejectDataNotMatchingSchema() {
+        // Required element missing
+        assertThrows(BadResponseException.class, () -> SCHEMA.decode(BytesUtils.hexToBytes("92020102")));
+        // Non-repeated element occurring twice
+        assertThrows(BadResponseException.class,
+            () -> SCHEMA.decode(BytesUtils.hexToBytes("5F2000" + "5F2000")));
+        // Fixed length mismatch
+        assertThrows(BadResponseException.class,
+            () -> SCHEMA.decode(BytesUtils.hexToBytes("5F2000" + "A603830111")));
+        // Required child of an optional element missing
+        assertThrows(BadResponseException.class, () -> SCHEMA.decode(BytesUtils.hexToBytes("5F2000" + "A600")));
+        // Malformed TLV
+        assertThrows(BadResponseException.class, () -> SCHEMA.decode(BytesUtils.hexToBytes("5F2002AA")));
+    }
+
+    @Test
+    void encodeInDeclaredOrder() {
+        final byte[] encoded = SCHEMA.encoder()
+            .put(KEY_REFERENCE, BytesUtils.hexToBytes("1103"))
+            .put(COUNTER, 5)
+            .put(NAME, new byte[]{0x41})
+            .encode();
+        assertArrayEquals(BytesUtils.hexToBytes("5F200141" + "92020005" + "A604830211" + "03"), encoded);
+
+        // Optional constructed element without values is omitted
+        assertArrayEquals(BytesUtils.hexToBytes("5F2000"), SCHEMA.encoder().put(NAME, new byte[0]).encode());
+    }
+
+    @Test
+    void encodeRepeatedConstructedElement() {
+        final byte[] encoded = SCHEMA.encoder()
+            .put(NAME, new byte[0])
+            .putEncoded(ENTRY, BytesUtils.hexToBytes("7003810101"))
+            .putEncoded(ENTRY, BytesUtils.hexToBytes("7000"))
+            .put(ENTRY_VALUE, new byte[]{0x02})
+            .encode();
+        assertArrayEquals(BytesUtils.hexToBytes("5F2000" + "7003810101" + "7000" + "7003810102"), encoded);
+
+        // A non-repeated constructed element occurs once only
+        assertThrows(IllegalStateException.class, () -> SCHEMA.encoder()
+            .put(NAME, new byte[0])
+            .putEncoded(TEMPLATE, BytesUtils.hexToBytes("A604830211" + "03"))
+            .put(KEY_REFERENCE, BytesUtils.hexToBytes("1103"))
+            .encode());
+    }
+
+    @Test
+    void decodeCardRecognitionDataWithProprietaryTemplates() throws BadResponseException {
+        // 73 { 06 <OID>, 60 { 06 <OID> }, 65 { 81 01 }, 66 { 82 01 } }
+        final byte[] data = BytesUtils.hexToBytes("7316" + "0603010203" + "6005" + "0603040506" + "6503810101" +
+                                                  "6603820101");
+        final TlvSchema.Decoded decoded = GlobalPlatformSchemas.CardRecognitionData.SCHEMA.decode(data);
+        assertArrayEquals(data, decoded.getEncoded(
+            decoded.first(GlobalPlatformSchemas.CardRecognitionData.CARD_RECOGNITION_DATA)));
+    }
+
+    @Test
+    void rejectInvalidValues() {
+        assertThrows(IllegalStateException.class, () -> SCHEMA.encoder().encode());
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.encoder().put(COUNTER, 0x10000));
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.encoder().put(COUNTER, -1));
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.encoder().put(KEY_REFERENCE, new byte[3]));
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.encoder().put(ENTRY, new byte[0]));
+        assertThrows(IllegalArgumentException.class,
+            () -> SCHEMA.encoder().putEncoded(NAME, BytesUtils.hexToBytes("5F2100")));
+        assertThrows(IllegalArgumentException.class,
+            () -> SCHEMA.encoder().put(GlobalPlatformSchemas.CaIssuer.KLCC, 1));
+        // Elements belong to a single schema
+        assertThrows(IllegalArgumentException.class, () -> new TlvSchema("Other", NAME));
+    }
+
+    @Test
+    void rejectUndeclaredTagsOfStrictSchemas() throws BadResponseException {
+        final TlvSchema keyInformation = GlobalPlatformSchemas.KeyInformation.SCHEMA;
+        assertEquals(2, keyInformation.decode(BytesUtils.hexToBytes("C00401018810" + "C00401FF8810"))
+            .count(GlobalPlatformSchemas.KeyInformation.KEY_INFORMATION_TEMPLATE));
+        // Wrapped in the E0 template
+        assertThrows(BadResponseException.class,
+            () -> keyInformation.decode(BytesUtils.hexToBytes("E006" + "C00401018810")));
+        assertThrows(BadResponseException.class,
+            () -> keyInformation.decode(BytesUtils.hexToBytes("C00401018810" + "9900")));
+        assertThrows(BadResponseException.class,
+            () -> GlobalPlatformSchemas.CertificateStore.RESPONSE.decode(BytesUtils.hexToBytes("BF2102" + "9900")));
+    }
+
+    @Test
+    void sessionRejectsUnexpectedTags() throws Exception {
+        final SmartCardEmulation card = new SmartCardEmulation(
+            new byte[][]{
+                BytesUtils.hexToBytes("00CA00E000"),
+                BytesUtils.hexToBytes("00CA00E000"),
+                BytesUtils.hexToBytes("00CABF2106A604830211" + "0300")},
+            new byte[][]{
+                BytesUtils.hexToBytes("E006" + "C00401018810" + "9000"),
+                BytesUtils.hexToBytes("E006" + "C00401018810" + "9000"),
+                BytesUtils.hexToBytes("BF2104" + "04020102" + "9000")});
+        final SecurityDomainSession session = new SecurityDomainSession(card);
+
+        assertThrows(BadResponseException.class, session::getKeyInformation);
+        // Nothing is blocked, if the keys can't be read
+        assertThrows(BadResponseException.class, session::reset);
+        assertThrows(BadResponseException.class,
+            () -> session.getCertificateBundle(new KeyRef((byte) 0x11, (byte) 0x03)));
+        assertTrue(card.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void decodeCaIdentifiers() throws BadResponseException {
+        final TlvSchema.Decoded decoded = GlobalPlatformSchemas.CaIdentifiers.SCHEMA.decode(
+            BytesUtils.hexToBytes("4202AABB" + "83021103" + "4201CC" + "83021301"));
+        assertEquals(2, decoded.count(GlobalPlatformSchemas.CaIdentifiers.IDENTIFIER));
+        final int identifier = decoded.next(decoded.first(GlobalPlatformSchemas.CaIdentifiers.IDENTIFIER));
+        final int keyReference = decoded.next(decoded.first(GlobalPlatformSchemas.CaIdentifiers.KEY_REFERENCE));
+        assertArrayEquals(new byte[]{(byte) 0xCC}, decoded.getBytes(identifier));
+        assertArrayEquals(BytesUtils.hexToBytes("1301"), decoded.getBytes(keyReference));
+    }
+}
@@ -0,0 +1,113 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TlvTests {
+    @Test
+    void encodeShortAndLongForms() {
+        assertArrayEquals(BytesUtils.hexToBytes("8300"), new Tlv(0x83, null).getBytes());
+        assertArrayEquals(BytesUtils.hexToBytes("9F0101AA"), new Tlv(0x9F01, new byte[]{(byte) 0xAA}).getBytes());
+        assertArrayEquals(BytesUtils.hexToBytes("7F2181800000"),
+                          Arrays.copyOf(new Tlv(0x7F21, new byte[0x80]).getBytes(), 6));
+        assertArrayEquals(BytesUtils.hexToBytes("0482010000"),
+                          Arrays.copyOf(new Tlv(0x04, new byte[0x100]).getBytes(), 5));
+        assertEquals(4 + 0x100, new Tlv(0x04, new byte[0x100]).getBytes().length);
+    }
+
+    @Test
+    void parsedTlvIsViewOverSource() {
+        final byte[] data = BytesUtils.hexToBytes("00" + "7F2104" + "5F2001AA" + "00");
+        final Tlv tlv = Tlv.parseFrom(ByteBuffer.wrap(data, 1, data.length - 2));
+
+        assertEquals(0x7F21, tlv.getTag());
+        assertEquals(4, tlv.getLength());
+        assertArrayEquals(BytesUtils.hexToBytes("7F21045F2001AA"), tlv.getBytes());
+
+        final ByteBuffer value = tlv.getValueBuffer();
+        assertSame(data, value.array());
+        assertEquals(4, value.arrayOffset());
+        assertEquals(4, value.remaining());
+
+        final Tlv nested = Tlv.parseFrom(value);
+        assertEquals(0x5F20, nested.getTag());
+        assertArrayEquals(new byte[]{(byte) 0xAA}, nested.getValue());
+        assertSame(data, nested.getBytesBuffer().array());
+        assertEquals(4, nested.getBytesBuffer().remaining());
+    }
+
+    @Test
+    void parseFromDirectBuffer() {
+        final byte[] encoded = BytesUtils.hexToBytes("8481800102");
+        final ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length + 0x80 - 2);
+        direct.put(encoded).put(new byte[0x80 - 2]);
+        direct.flip();
+
+        final Tlv tlv = Tlv.parseFrom(direct);
+
+        assertFalse(direct.hasRemaining());
+        assertEquals(0x84, tlv.getTag());
+        assertEquals(0x80, tlv.getLength());
+        assertEquals(0x01, tlv.getValue()[0]);
+    }
+
+    @Test
+    void truncatedValueIsRejected() {
+        assertThrows(BufferUnderflowException.class,
+                     () -> Tlv.parse(BytesUtils.hexToBytes("8403AABB")));
+    }
+
+    @Test
+    void decodeListAndMap() {
+        final byte[] data = BytesUtils.hexToBytes("8101AA" + "8200" + "8102BBCC");
+
+        final List<Tlv> list = Tlvs.decodeList(data);
+        assertEquals(3, list.size());
+        assertEquals(0x82, list.get(1).getTag());
+        assertEquals(0, list.get(1).getLength());
+
+        final Map<Integer, byte[]> map = Tlvs.decodeMap(data);
+        assertEquals(2, map.size());
+        assertArrayEquals(BytesUtils.hexToBytes("BBCC"), map.get(0x81));
+
+        final Map<Integer, Tlv> tlvMap = Tlvs.decodeTlvMap(ByteBuffer.wrap(data));
+        assertSame(data, tlvMap.get(0x81).getValueBuffer().array());
+    }
+
+    @Test
+    void unpackValue() throws BadResponseException {
+        final byte[] data = BytesUtils.hexToBytes("7F4902AABB");
+
+        assertArrayEquals(BytesUtils.hexToBytes("AABB"), Tlvs.unpackValue(0x7F49, data));
+        final ByteBuffer value = Tlvs.unpackValue(0x7F49, ByteBuffer.wrap(data));
+        assertSame(data, value.array());
+        assertEquals(2, value.remaining());
+
+        assertThrows(BadResponseException.class, () -> Tlvs.unpackValue(0x7F21, data));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Tlvs.unpackValue(0x7F49, ByteBuffer.wrap(BytesUtils.hexToBytes("7F4902AABB00"))));
+    }
+}
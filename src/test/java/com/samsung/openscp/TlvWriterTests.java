@@ -0,0 +1,125 @@
+/*!
+ * Copyright 2025 Samsung Electronics Co, Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.samsung.openscp;
+
+import com.samsung.openscp.testdata.Scp11GetDataCmdTestData;
+import com.samsung.openscp.testdata.SmartCardEmulation;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TlvWriterTests {
+    @Test
+    void nestedLengthsAreCalculatedBeforeWriting() {
+        final byte[] longValue = new byte[0x80];
+        final TlvWriter writer = new TlvWriter()
+            .begin(0xA6)
+            .put(0x90, new byte[]{0x11, 0x03})
+            .put(0x95, (byte) 0x3C)
+            .putUnsigned(0x81, 0x10, 1)
+            .end()
+            .begin(0x7F21)
+            .put(0x5F49, longValue)
+            .end();
+
+        final byte[] expected = Tlvs.encodeList(Arrays.asList(
+            new Tlv(0xA6, BytesUtils.hexToBytes("90021103" + "95013C" + "810110")),
+            new Tlv(0x7F21, new Tlv(0x5F49, longValue).getBytes())));
+        assertEquals(expected.length, writer.getLength());
+        assertArrayEquals(expected, writer.toByteArray());
+        assertArrayEquals(BytesUtils.hexToBytes("7F2181845F498180"), Arrays.copyOfRange(expected, 12, 20));
+    }
+
+    @Test
+    void writeIntoCallerBuffer() {
+        final TlvWriter writer = new TlvWriter().putRaw((byte) 0x01).put(0xF0, (byte) 0x00).putRaw((byte) 0x00);
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.put((byte) 0xFF);
+
+        writer.writeTo(buffer);
+
+        assertEquals(6, buffer.position());
+        assertArrayEquals(BytesUtils.hexToBytes("FF01F0010000"), Arrays.copyOf(buffer.array(), 6));
+    }
+
+    @Test
+    void invalidStructureIsRejected() {
+        assertThrows(IllegalStateException.class, () -> new TlvWriter().begin(0x30).getLength());
+        assertThrows(IllegalStateException.class, () -> new TlvWriter().end());
+        assertThrows(IllegalArgumentException.class, () -> new TlvWriter().putUnsigned(0x92, 0x10000, 2));
+        assertThrows(IllegalArgumentException.class, () -> new TlvWriter().putUnsigned(0x92, -1, 2));
+    }
+
+    @Test
+    void publicKeyEncodingMatchesJca() throws GeneralSecurityException {
+        final KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        final PublicKey ecPublicKey = ec.generateKeyPair().getPublic();
+        assertArrayEquals(ecPublicKey.getEncoded(), PublicKeyValues.fromPublicKey(ecPublicKey).getEncoded());
+
+        final KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(1024);
+        final PublicKey rsaPublicKey = rsa.generateKeyPair().getPublic();
+        assertArrayEquals(rsaPublicKey.getEncoded(), PublicKeyValues.fromPublicKey(rsaPublicKey).getEncoded());
+    }
+
+    @Test
+    void storeAllowlistWithCounter() throws ApduException, IOException {
+        final SmartCardEmulation connection = new SmartCardEmulation(
+            new byte[][]{BytesUtils.hexToBytes("00E2900013" + "A60483021301" + "92020005" + "70079301019302" + "0080")},
+            new byte[][]{BytesUtils.hexToBytes("9000")});
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(connection);
+
+        session.storeAllowlist(new KeyRef((byte) 0x13, (byte) 0x01),
+                               Arrays.asList(BigInteger.ONE, BigInteger.valueOf(0x80)), 5);
+
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+
+    @Test
+    void storeCertificateBundle() throws GeneralSecurityException, ApduException, IOException {
+        final X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(Scp11GetDataCmdTestData.X509_FIRST_CERTIFICATE_BYTES));
+        final String der = BytesUtils.bytesToHex(Scp11GetDataCmdTestData.X509_FIRST_CERTIFICATE_BYTES);
+        final String data = "A60483021301" + String.format("BF2182%04X", der.length() / 2) + der;
+        // 544 bytes of data are sent with short APDU command chaining
+        final SmartCardEmulation connection = new SmartCardEmulation(
+            new byte[][]{
+                BytesUtils.hexToBytes("10E29000FF" + data.substring(0, 255 * 2)),
+                BytesUtils.hexToBytes("10E29000FF" + data.substring(255 * 2, 510 * 2)),
+                BytesUtils.hexToBytes("00E2900022" + data.substring(510 * 2))},
+            new byte[][]{BytesUtils.hexToBytes("9000"), BytesUtils.hexToBytes("9000"), BytesUtils.hexToBytes("9000")});
+        final SecurityDomainSession session = TestUtils.initSecurityDomainSession(connection);
+
+        session.storeCertificateBundle(new KeyRef((byte) 0x13, (byte) 0x01), Collections.singletonList(certificate));
+
+        assertTrue(connection.isAllExpectedCapdusReceived());
+    }
+}
@@ -25,12 +25,20 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 public class SmartCardEmulation implements SmartCardConnection {
     private final byte[][] capdusExpected;
     private final byte[][] rapdusToSend;
+    private final boolean isExtendedLengthApduSupported;
     private int apduIndex = 0;
 
     public SmartCardEmulation(final byte[][] capdusExpected, final byte[][] rapdusToSend) {
+        this(capdusExpected, rapdusToSend, false);
+    }
+
+    public SmartCardEmulation(final byte[][] capdusExpected,
+                              final byte[][] rapdusToSend,
+                              final boolean isExtendedLengthApduSupported) {
         assertEquals(capdusExpected.length, rapdusToSend.length);  // self-check
         this.capdusExpected = capdusExpected;
         this.rapdusToSend = rapdusToSend;
+        this.isExtendedLengthApduSupported = isExtendedLengthApduSupported;
     }
 
     @Override
@@ -44,7 +52,7 @@ public class SmartCardEmulation implements SmartCardConnection {
 
     @Override
     public boolean isExtendedLengthApduSupported() {
-        return true;
+        return isExtendedLengthApduSupported;
     }
 
     @Override